@@ -55,10 +55,34 @@ CREATE TABLE `charge_details`  (
   `create_time` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `update_time` datetime(0) NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP(0) COMMENT '更新时间',
   PRIMARY KEY (`id`) USING BTREE,
-  INDEX `idx_charge_order_id`(`charge_order_id`) USING BTREE,
+  UNIQUE INDEX `uk_order_start_time`(`charge_order_id`, `start_time`) USING BTREE,
   INDEX `idx_start_time`(`start_time`) USING BTREE
 ) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '充电明细表' ROW_FORMAT = Dynamic;
 
+-- ----------------------------
+-- Table structure for charge_telemetry_samples
+-- ----------------------------
+DROP TABLE IF EXISTS `charge_telemetry_samples`;
+CREATE TABLE `charge_telemetry_samples`  (
+  `id` bigint(0) NOT NULL AUTO_INCREMENT COMMENT '采样ID',
+  `charge_order_id` bigint(0) NOT NULL COMMENT '充电订单ID',
+  `sample_time` datetime(0) NOT NULL COMMENT '采样时间（降采样后为时间桶起点）',
+  `resolution` tinyint(0) NOT NULL DEFAULT 0 COMMENT '精度：0-原始采样，1-分钟均值',
+  `sample_count` int(0) NOT NULL DEFAULT 1 COMMENT '合并的原始采样数',
+  `voltage_a` decimal(8, 2) NULL DEFAULT NULL COMMENT 'A相电压(V)',
+  `voltage_b` decimal(8, 2) NULL DEFAULT NULL COMMENT 'B相电压(V)',
+  `voltage_c` decimal(8, 2) NULL DEFAULT NULL COMMENT 'C相电压(V)',
+  `current_a` decimal(8, 2) NULL DEFAULT NULL COMMENT 'A相电流(A)',
+  `current_b` decimal(8, 2) NULL DEFAULT NULL COMMENT 'B相电流(A)',
+  `current_c` decimal(8, 2) NULL DEFAULT NULL COMMENT 'C相电流(A)',
+  `power` decimal(10, 3) NULL DEFAULT NULL COMMENT '瞬时功率(kW)',
+  `soc` decimal(5, 2) NULL DEFAULT NULL COMMENT '电池电量百分比',
+  `total_power` decimal(10, 3) NULL DEFAULT NULL COMMENT '累计充电量(度)',
+  PRIMARY KEY (`id`) USING BTREE,
+  INDEX `idx_order_sample_time`(`charge_order_id`, `sample_time`) USING BTREE,
+  INDEX `idx_resolution_sample_time`(`resolution`, `sample_time`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '充电过程采样表' ROW_FORMAT = Dynamic;
+
 -- ----------------------------
 -- Table structure for charge_orders
 -- ----------------------------
@@ -89,12 +113,14 @@ CREATE TABLE `charge_orders`  (
   `coupon_id` bigint(0) NULL DEFAULT NULL COMMENT '使用的优惠券ID',
   `coupon_deduction` decimal(10, 2) NULL DEFAULT 0.00 COMMENT '优惠券抵扣金额',
   `actual_payment` decimal(10, 2) NULL DEFAULT 0.00 COMMENT '实际支付金额',
+  `version` int(0) NOT NULL DEFAULT 0 COMMENT '版本号（乐观锁）',
   PRIMARY KEY (`id`) USING BTREE,
   UNIQUE INDEX `uk_order_no`(`order_no`) USING BTREE,
   UNIQUE INDEX `uk_platform_order_no`(`platform_order_no`) USING BTREE,
   INDEX `idx_user_id`(`user_id`) USING BTREE,
   INDEX `idx_connector_id`(`connector_id`) USING BTREE,
   INDEX `idx_status`(`status`) USING BTREE,
+  INDEX `idx_status_update_time`(`status`, `update_time`) USING BTREE,
   INDEX `idx_create_time`(`create_time`) USING BTREE,
   INDEX `idx_coupon_id`(`coupon_id`) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 6 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '充电订单表' ROW_FORMAT = Dynamic;
@@ -147,7 +173,8 @@ CREATE TABLE `charging_stations`  (
   PRIMARY KEY (`id`) USING BTREE,
   UNIQUE INDEX `uk_station_id`(`station_id`) USING BTREE,
   INDEX `idx_location`(`province`, `city`, `district`) USING BTREE,
-  INDEX `idx_status`(`station_status`) USING BTREE
+  INDEX `idx_status`(`station_status`) USING BTREE,
+  INDEX `idx_lat_lng`(`latitude`, `longitude`) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 4 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '充电站表' ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -238,7 +265,7 @@ CREATE TABLE `user_coupons`  (
   PRIMARY KEY (`id`) USING BTREE,
   UNIQUE INDEX `uk_coupon_code`(`coupon_code`) USING BTREE,
   INDEX `idx_user_status`(`user_id`, `status`) USING BTREE,
-  INDEX `idx_valid_end`(`valid_end`) USING BTREE,
+  INDEX `idx_status_valid_end`(`status`, `valid_end`) USING BTREE,
   INDEX `coupon_template_id`(`coupon_template_id`) USING BTREE,
   CONSTRAINT `user_coupons_ibfk_1` FOREIGN KEY (`user_id`) REFERENCES `users` (`id`) ON DELETE RESTRICT ON UPDATE RESTRICT,
   CONSTRAINT `user_coupons_ibfk_2` FOREIGN KEY (`coupon_template_id`) REFERENCES `coupon_templates` (`id`) ON DELETE RESTRICT ON UPDATE RESTRICT
@@ -0,0 +1,188 @@
+package com.pdsu.charge_palteform.common;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 带指标的有界执行器
+ * <p>
+ * 记录提交、拒绝次数，排队等待耗时和执行耗时；队列满时按拒绝策略处理，而不是无限堆积。
+ * 开启虚拟线程且运行环境支持（JDK 21+）时，每个任务一个虚拟线程，
+ * 通过信号量限制同时存在的任务数；不支持时回退为平台线程池。
+ */
+@Slf4j
+public class InstrumentedExecutor implements Executor {
+
+    public enum RejectionPolicy {
+        /** 抛出 RejectedExecutionException */
+        ABORT,
+        /** 由提交任务的线程执行 */
+        CALLER_RUNS,
+        /** 丢弃任务并记录 */
+        DISCARD
+    }
+
+    private final String name;
+    private final RejectionPolicy rejectionPolicy;
+    private final ThreadPoolExecutor threadPool;
+    private final ExecutorService virtualExecutor;
+    private final Semaphore virtualPermits;
+    private final int capacity;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram execution = new LatencyHistogram();
+
+    public InstrumentedExecutor(String name, int coreSize, int maxSize, int queueCapacity,
+                                boolean virtualThreads, RejectionPolicy rejectionPolicy) {
+        this.name = name;
+        this.rejectionPolicy = rejectionPolicy;
+        this.capacity = Math.max(1, maxSize) + Math.max(0, queueCapacity);
+
+        ExecutorService virtual = virtualThreads ? newVirtualThreadExecutor(name) : null;
+        if (virtual != null) {
+            this.virtualExecutor = virtual;
+            this.virtualPermits = new Semaphore(capacity);
+            this.threadPool = null;
+        } else {
+            AtomicInteger threadIndex = new AtomicInteger();
+            int max = Math.max(1, maxSize);
+            BlockingQueue<Runnable> queue = queueCapacity > 0
+                    ? new LinkedBlockingQueue<>(queueCapacity) : new SynchronousQueue<>();
+            this.threadPool = new ThreadPoolExecutor(Math.min(Math.max(1, coreSize), max), max,
+                    60, TimeUnit.SECONDS, queue, r -> {
+                Thread thread = new Thread(r, name + "-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+            this.threadPool.allowCoreThreadTimeOut(true);
+            this.virtualExecutor = null;
+            this.virtualPermits = null;
+        }
+    }
+
+    /**
+     * JDK 21 起才有虚拟线程，这里通过反射创建，低版本运行时返回 null
+     */
+    private static ExecutorService newVirtualThreadExecutor(String name) {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("当前JDK不支持虚拟线程，执行器{}使用平台线程池", name);
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        submitted.increment();
+        long submitNanos = System.nanoTime();
+        try {
+            if (virtualExecutor != null) {
+                if (!virtualPermits.tryAcquire()) {
+                    throw new RejectedExecutionException("执行器" + name + "已满");
+                }
+                try {
+                    virtualExecutor.execute(() -> {
+                        try {
+                            run(task, submitNanos);
+                        } finally {
+                            virtualPermits.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    virtualPermits.release();
+                    throw e;
+                }
+            } else {
+                threadPool.execute(() -> run(task, submitNanos));
+            }
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            switch (rejectionPolicy) {
+                case CALLER_RUNS:
+                    run(task, submitNanos);
+                    break;
+                case DISCARD:
+                    log.warn("执行器{}队列已满，丢弃任务", name);
+                    break;
+                default:
+                    throw e;
+            }
+        }
+    }
+
+    private void run(Runnable task, long submitNanos) {
+        long startNanos = System.nanoTime();
+        queueWait.record(startNanos - submitNanos);
+        try {
+            task.run();
+            execution.record(System.nanoTime() - startNanos);
+        } catch (RuntimeException | Error e) {
+            failed.increment();
+            execution.recordError(System.nanoTime() - startNanos);
+            throw e;
+        }
+    }
+
+    public void shutdown() {
+        if (virtualExecutor != null) {
+            virtualExecutor.shutdown();
+        } else {
+            threadPool.shutdown();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Stats getStats() {
+        Stats stats = new Stats();
+        stats.setName(name);
+        stats.setVirtualThreads(virtualExecutor != null);
+        stats.setRejectionPolicy(rejectionPolicy.name());
+        stats.setCapacity(capacity);
+        if (threadPool != null) {
+            stats.setPoolSize(threadPool.getPoolSize());
+            stats.setActiveCount(threadPool.getActiveCount());
+            stats.setQueueDepth(threadPool.getQueue().size());
+        } else {
+            stats.setActiveCount(capacity - virtualPermits.availablePermits());
+        }
+        stats.setSubmitted(submitted.sum());
+        stats.setRejected(rejected.sum());
+        stats.setFailed(failed.sum());
+        stats.setQueueWait(queueWait.snapshot());
+        stats.setExecution(execution.snapshot());
+        return stats;
+    }
+
+    /**
+     * 执行器指标快照
+     */
+    @Data
+    public static class Stats {
+        private String name;
+        private boolean virtualThreads;
+        private String rejectionPolicy;
+        /** 最大线程数 + 队列容量 */
+        private int capacity;
+        private int poolSize;
+        private int activeCount;
+        private int queueDepth;
+        private long submitted;
+        private long rejected;
+        private long failed;
+        private LatencyHistogram.Snapshot queueWait;
+        private LatencyHistogram.Snapshot execution;
+    }
+}
@@ -0,0 +1,104 @@
+package com.pdsu.charge_palteform.common;
+
+import lombok.Data;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 轻量级耗时直方图
+ * <p>
+ * 按 2 的幂次划分微秒级桶，记录过程无锁，适合在热点路径上统计接口/任务耗时。
+ * 分位数为桶上界的近似值，精度在 2 倍以内，足够用于观察趋势和定位慢调用。
+ */
+public class LatencyHistogram {
+
+    /** 桶i 覆盖 [2^(i-1), 2^i) 微秒，最后一个桶约为 2^39 微秒（~6天），覆盖所有实际场景 */
+    private static final int BUCKET_COUNT = 40;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一次耗时（纳秒）
+     */
+    public void record(long elapsedNanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+        int index = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets[index].increment();
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * 记录一次失败调用（同时计入耗时）
+     */
+    public void recordError(long elapsedNanos) {
+        errors.increment();
+        record(elapsedNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+
+        Snapshot snapshot = new Snapshot();
+        snapshot.setCount(total);
+        snapshot.setErrors(errors.sum());
+        snapshot.setMaxMs(maxMicros.get() / 1000.0);
+        snapshot.setMeanMs(total == 0 ? 0 : totalMicros.sum() / 1000.0 / total);
+        snapshot.setP50Ms(percentile(counts, total, 0.50));
+        snapshot.setP90Ms(percentile(counts, total, 0.90));
+        snapshot.setP99Ms(percentile(counts, total, 0.99));
+        return snapshot;
+    }
+
+    private double percentile(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long threshold = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= threshold) {
+                long upperMicros = i == 0 ? 1 : 1L << i;
+                return Math.min(upperMicros, maxMicros.get()) / 1000.0;
+            }
+        }
+        return maxMicros.get() / 1000.0;
+    }
+
+    /**
+     * 直方图快照（毫秒）
+     */
+    @Data
+    public static class Snapshot {
+        private long count;
+        private long errors;
+        private double meanMs;
+        private double p50Ms;
+        private double p90Ms;
+        private double p99Ms;
+        private double maxMs;
+    }
+}
@@ -0,0 +1,47 @@
+package com.pdsu.charge_palteform.common;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 简单的匀速限流器
+ * <p>
+ * 按固定间隔发放许可，调用方在 {@link #acquire()} 中等待到属于自己的时间片，
+ * 用于替代循环中的固定 sleep，使请求速率与处理耗时无关。
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;
+    private long nextFreeNanos;
+
+    public RateLimiter(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+    /**
+     * 获取一个许可，必要时阻塞等待
+     *
+     * @return 实际等待的纳秒数
+     */
+    public long acquire() {
+        long now;
+        long grantedAt;
+        synchronized (this) {
+            now = System.nanoTime();
+            if (nextFreeNanos < now) {
+                nextFreeNanos = now;
+            }
+            grantedAt = nextFreeNanos;
+            nextFreeNanos += intervalNanos;
+        }
+        long remaining;
+        while ((remaining = grantedAt - System.nanoTime()) > 0 && !Thread.currentThread().isInterrupted()) {
+            LockSupport.parkNanos(remaining);
+        }
+        return grantedAt - now;
+    }
+}
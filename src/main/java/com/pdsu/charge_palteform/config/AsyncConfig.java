@@ -0,0 +1,78 @@
+package com.pdsu.charge_palteform.config;
+
+import com.pdsu.charge_palteform.common.InstrumentedExecutor;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+import java.util.concurrent.Executor;
+
+/**
+ * 异步执行器配置
+ * <p>
+ * 按用途划分有界执行器，{@code @Async} 需指定执行器名称：
+ * platformIoExecutor（平台调用）、notificationExecutor（实时通知）、
+ * progressNotificationExecutor（充电进度推送）、followUpExecutor（订单跟进）、
+ * orderSyncExecutor（订单同步结果落库）。
+ */
+@Slf4j
+@Configuration
+@EnableAsync
+@RequiredArgsConstructor
+public class AsyncConfig implements AsyncConfigurer {
+
+    public static final String PLATFORM_IO_EXECUTOR = "platformIoExecutor";
+    public static final String NOTIFICATION_EXECUTOR = "notificationExecutor";
+    public static final String PROGRESS_NOTIFICATION_EXECUTOR = "progressNotificationExecutor";
+    public static final String FOLLOW_UP_EXECUTOR = "followUpExecutor";
+    public static final String ORDER_SYNC_EXECUTOR = "orderSyncExecutor";
+
+    private final AsyncExecutorConfig executorConfig;
+
+    @Bean(name = PLATFORM_IO_EXECUTOR, destroyMethod = "shutdown")
+    public InstrumentedExecutor platformIoExecutor() {
+        return create("platform-io", executorConfig.getPlatformIo());
+    }
+
+    @Bean(name = NOTIFICATION_EXECUTOR, destroyMethod = "shutdown")
+    public InstrumentedExecutor notificationExecutor() {
+        return create("notification", executorConfig.getNotification());
+    }
+
+    @Bean(name = PROGRESS_NOTIFICATION_EXECUTOR, destroyMethod = "shutdown")
+    public InstrumentedExecutor progressNotificationExecutor() {
+        return create("progress-notification", executorConfig.getProgressNotification());
+    }
+
+    @Bean(name = FOLLOW_UP_EXECUTOR, destroyMethod = "shutdown")
+    public InstrumentedExecutor followUpExecutor() {
+        return create("follow-up", executorConfig.getFollowUp());
+    }
+
+    @Bean(name = ORDER_SYNC_EXECUTOR, destroyMethod = "shutdown")
+    public InstrumentedExecutor orderSyncExecutor() {
+        return create("order-sync", executorConfig.getOrderSync());
+    }
+
+    private InstrumentedExecutor create(String name, AsyncExecutorConfig.Pool pool) {
+        return new InstrumentedExecutor(name, pool.getCoreSize(), pool.getMaxSize(), pool.getQueueCapacity(),
+                executorConfig.isVirtualThreads(), pool.getRejectionPolicy());
+    }
+
+    /**
+     * 未指定执行器的 {@code @Async} 方法使用订单跟进执行器
+     */
+    @Override
+    public Executor getAsyncExecutor() {
+        return followUpExecutor();
+    }
+
+    @Override
+    public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
+        return (ex, method, params) -> log.error("异步任务{}执行失败", method.getName(), ex);
+    }
+}
@@ -0,0 +1,61 @@
+package com.pdsu.charge_palteform.config;
+
+import com.pdsu.charge_palteform.common.InstrumentedExecutor;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.async")
+public class AsyncExecutorConfig {
+
+    /**
+     * 使用虚拟线程执行异步任务（需要 JDK 21+，低版本自动回退为线程池）
+     */
+    private boolean virtualThreads = false;
+
+    /**
+     * 平台调用及其结果处理
+     */
+    private Pool platformIo = new Pool(8, 16, 1000, InstrumentedExecutor.RejectionPolicy.CALLER_RUNS);
+
+    /**
+     * 实时通知推送（启动、状态变化、完成、故障等），队列满时由提交线程执行，不丢弃
+     */
+    private Pool notification = new Pool(4, 8, 2000, InstrumentedExecutor.RejectionPolicy.CALLER_RUNS);
+
+    /**
+     * 合并后的充电进度推送，下一周期会有更新的进度，队列满时丢弃
+     */
+    private Pool progressNotification = new Pool(2, 4, 1000, InstrumentedExecutor.RejectionPolicy.DISCARD);
+
+    /**
+     * 启动、停止充电后的订单跟进查询
+     */
+    private Pool followUp = new Pool(4, 8, 500, InstrumentedExecutor.RejectionPolicy.CALLER_RUNS);
+
+    /**
+     * 订单同步查询结果落库。任务由 HTTP 客户端回调线程提交，不能由提交线程执行；
+     * 提交数受 app.order-sync.max-concurrency 限制，max-size + queue-capacity 不小于该值时不会拒绝
+     */
+    private Pool orderSync = new Pool(4, 8, 64, InstrumentedExecutor.RejectionPolicy.ABORT);
+
+    @Data
+    public static class Pool {
+        private int coreSize;
+        private int maxSize;
+        private int queueCapacity;
+        private InstrumentedExecutor.RejectionPolicy rejectionPolicy;
+
+        public Pool() {
+        }
+
+        public Pool(int coreSize, int maxSize, int queueCapacity, InstrumentedExecutor.RejectionPolicy rejectionPolicy) {
+            this.coreSize = coreSize;
+            this.maxSize = maxSize;
+            this.queueCapacity = queueCapacity;
+            this.rejectionPolicy = rejectionPolicy;
+        }
+    }
+}
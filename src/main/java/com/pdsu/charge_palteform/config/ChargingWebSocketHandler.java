@@ -6,10 +6,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.*;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
 
 import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 
 @Slf4j
@@ -22,10 +25,22 @@ public class ChargingWebSocketHandler implements WebSocketHandler {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private NotificationConfig notificationConfig;
+
+    private static final String OUTBOUND_ATTRIBUTE = "outboundSession";
+
+    /**
+     * 保存的都是带发送缓冲的会话，多个通知线程可并发发送，慢连接只会积压自己的缓冲
+     */
     private static final Map<Long, WebSocketSession> USER_SESSIONS = new ConcurrentHashMap<>();
 
     private static final Map<String, WebSocketSession> ORDER_SESSIONS = new ConcurrentHashMap<>();
 
+    private static final AtomicLong SENT_FRAMES = new AtomicLong();
+    private static final AtomicLong DROPPED_FRAMES = new AtomicLong();
+    private static final AtomicLong FAILED_FRAMES = new AtomicLong();
+
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
@@ -36,11 +51,13 @@ public class ChargingWebSocketHandler implements WebSocketHandler {
             return;
         }
         Long userId = jwtUtil.getUserIdFromToken(token);
-        USER_SESSIONS.put(userId, session);
+        WebSocketSession outbound = decorate(session);
+        session.getAttributes().put(OUTBOUND_ATTRIBUTE, outbound);
         session.getAttributes().put("userId", userId);
+        USER_SESSIONS.put(userId, outbound);
         log.info("用户{}WebSocket连接建立成功", userId);
         // 发送连接成功消息
-        sendMessage(session, Map.of(
+        sendMessage(outbound, Map.of(
                 "type", "connection",
                 "status", "success",
                 "message", "连接成功"
@@ -59,7 +76,7 @@ public class ChargingWebSocketHandler implements WebSocketHandler {
                     // 订阅订单状态
                     String orderNo = (String) msg.get("orderNo");
                     if (orderNo != null) {
-                        ORDER_SESSIONS.put(orderNo, session);
+                        ORDER_SESSIONS.put(orderNo, outboundOf(session));
                         session.getAttributes().put("subscribedOrder", orderNo);
                         log.info("用户订阅订单: {}", orderNo);
                     }
@@ -68,14 +85,14 @@ public class ChargingWebSocketHandler implements WebSocketHandler {
                     // 取消订阅订单
                     String unsubOrderNo = (String) msg.get("orderNo");
                     if (unsubOrderNo != null) {
-                        ORDER_SESSIONS.remove(unsubOrderNo);
+                        ORDER_SESSIONS.remove(unsubOrderNo, outboundOf(session));
                         session.getAttributes().remove("subscribedOrder");
                         log.info("用户取消订阅订单: {}", unsubOrderNo);
                     }
                     break;
                 case "ping":
                     // 心跳检测
-                    sendMessage(session, Map.of("type", "pong"));
+                    sendMessage(outboundOf(session), Map.of("type", "pong"));
                     break;
                 default:
                     log.warn("未知消息类型: {}", type);
@@ -102,34 +119,72 @@ public class ChargingWebSocketHandler implements WebSocketHandler {
         return false;
     }
 
-    public static void sendToUser(Long userId, Object message) {
-        WebSocketSession session = USER_SESSIONS.get(userId);
-        if (session != null && session.isOpen()) {
-            sendMessage(session, message);
+    /**
+     * 投递给本节点上该用户及订阅该订单的连接，同一连接只发送一次
+     */
+    public static void deliverLocal(Long userId, String orderNo, String json) {
+        WebSocketSession userSession = userId != null ? USER_SESSIONS.get(userId) : null;
+        WebSocketSession orderSession = orderNo != null ? ORDER_SESSIONS.get(orderNo) : null;
+        if (userSession == null && orderSession == null) {
+            return;
         }
-    }
-
-    public static void sendToOrder(String orderNo, Object message) {
-        WebSocketSession session = ORDER_SESSIONS.get(orderNo);
-        if (session != null && session.isOpen()) {
-            sendMessage(session, message);
+        TextMessage textMessage = new TextMessage(json);
+        if (userSession != null && userSession.isOpen()) {
+            sendText(userSession, textMessage);
+        }
+        if (orderSession != null && orderSession != userSession && orderSession.isOpen()) {
+            sendText(orderSession, textMessage);
         }
     }
 
-    public static void broadcast(Object message) {
+    /**
+     * 广播给本节点上的所有在线用户
+     */
+    public static void broadcastLocal(String json) {
+        TextMessage textMessage = new TextMessage(json);
         USER_SESSIONS.values().forEach(session -> {
             if (session.isOpen()) {
-                sendMessage(session, message);
+                sendText(session, textMessage);
             }
         });
     }
 
-    private static void sendMessage(WebSocketSession session, Object message) {
+    /**
+     * 为会话包装有界发送缓冲：发送超时或缓冲超限时按配置丢弃积压消息或关闭连接
+     */
+    private WebSocketSession decorate(WebSocketSession session) {
+        NotificationConfig.Realtime realtime = notificationConfig.getRealtime();
+        ConcurrentWebSocketSessionDecorator.OverflowStrategy strategy =
+                "TERMINATE".equalsIgnoreCase(realtime.getOverflowStrategy())
+                        ? ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE
+                        : ConcurrentWebSocketSessionDecorator.OverflowStrategy.DROP;
+        return new ConcurrentWebSocketSessionDecorator(session, realtime.getSendTimeLimit(),
+                realtime.getSendBufferSizeLimit(), strategy, dropped -> DROPPED_FRAMES.incrementAndGet());
+    }
+
+    private static WebSocketSession outboundOf(WebSocketSession session) {
+        WebSocketSession outbound = (WebSocketSession) session.getAttributes().get(OUTBOUND_ATTRIBUTE);
+        return outbound != null ? outbound : session;
+    }
+
+    private void sendMessage(WebSocketSession session, Object message) {
+        try {
+            sendText(session, new TextMessage(objectMapper.writeValueAsString(message)));
+        } catch (IOException e) {
+            log.error("序列化WebSocket消息失败", e);
+        }
+    }
+
+    private static void sendText(WebSocketSession session, TextMessage message) {
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            String json = mapper.writeValueAsString(message);
-            session.sendMessage(new TextMessage(json));
+            session.sendMessage(message);
+            SENT_FRAMES.incrementAndGet();
+        } catch (SessionLimitExceededException e) {
+            // TERMINATE 策略下缓冲超限，连接已被关闭
+            FAILED_FRAMES.incrementAndGet();
+            log.warn("WebSocket连接发送缓冲超限，已关闭: {}", e.getMessage());
         } catch (IOException e) {
+            FAILED_FRAMES.incrementAndGet();
             log.error("发送WebSocket消息失败", e);
         }
     }
@@ -137,12 +192,14 @@ public class ChargingWebSocketHandler implements WebSocketHandler {
     private void removeSession(WebSocketSession session) {
         Long userId = (Long) session.getAttributes().get("userId");
         String orderNo = (String) session.getAttributes().get("subscribedOrder");
+        WebSocketSession outbound = outboundOf(session);
 
+        // 只移除本连接的登记，避免误删同一用户新建立的连接
         if (userId != null) {
-            USER_SESSIONS.remove(userId);
+            USER_SESSIONS.remove(userId, outbound);
         }
         if (orderNo != null) {
-            ORDER_SESSIONS.remove(orderNo);
+            ORDER_SESSIONS.remove(orderNo, outbound);
         }
     }
 
@@ -167,5 +224,12 @@ public class ChargingWebSocketHandler implements WebSocketHandler {
         return USER_SESSIONS.size();
     }
 
+    /**
+     * 发送统计：{已发送帧数, 因缓冲超限丢弃帧数, 发送失败帧数}
+     */
+    public static long[] getFrameCounts() {
+        return new long[]{SENT_FRAMES.get(), DROPPED_FRAMES.get(), FAILED_FRAMES.get()};
+    }
+
 
 }
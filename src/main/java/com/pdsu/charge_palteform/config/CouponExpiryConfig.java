@@ -0,0 +1,26 @@
+package com.pdsu.charge_palteform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.coupon-expiry")
+public class CouponExpiryConfig {
+
+    /**
+     * 单条更新语句最多标记的优惠券数，控制每个事务持有行锁的数量
+     */
+    private int chunkSize = 2000;
+
+    /**
+     * 两批之间的停顿（毫秒），给在线请求让出数据库资源
+     */
+    private long pauseMillis = 20;
+
+    /**
+     * 集群执行锁的过期时间（秒），每处理一批会续期
+     */
+    private long lockSeconds = 300;
+}
@@ -0,0 +1,21 @@
+package com.pdsu.charge_palteform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.coupon-flash-sale")
+public class CouponFlashSaleConfig {
+
+    /**
+     * 后台线程把抢券结果写入数据库的间隔（毫秒）
+     */
+    private long drainInterval = 200;
+
+    /**
+     * 每批写入 user_coupons 的最大条数
+     */
+    private int drainChunkSize = 500;
+}
@@ -42,4 +42,16 @@ public class EnergyPlatformConfig {
      * Token有效期（秒）
      */
     private Long tokenExpiration = 7200L;
+
+    /**
+     * 平台对接参数是否配置完整
+     */
+    public boolean isComplete() {
+        return hasText(baseUrl) && hasText(operatorId) && hasText(operatorSecret)
+                && hasText(dataSecret) && hasText(dataSecretIv) && hasText(sigSecret);
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
 }
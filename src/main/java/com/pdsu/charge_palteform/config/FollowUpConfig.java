@@ -0,0 +1,51 @@
+package com.pdsu.charge_palteform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.follow-up")
+public class FollowUpConfig {
+
+    /**
+     * 扫描到期跟进任务的间隔（毫秒）
+     */
+    private long pollInterval = 500;
+
+    /**
+     * 每次扫描最多取出的任务数
+     */
+    private int batchSize = 100;
+
+    /**
+     * 任务取出后的处理租约（毫秒），节点宕机未完成的任务在租约到期后重新投递
+     */
+    private long leaseMillis = 60000;
+
+    /**
+     * 启动充电后首次查询平台状态的延迟（毫秒）
+     */
+    private long postStartDelay = 3000;
+
+    /**
+     * 停止充电后首次查询最终状态的延迟（毫秒）
+     */
+    private long postStopDelay = 5000;
+
+    /**
+     * 单个任务最多执行次数（含首次）
+     */
+    private int maxAttempts = 5;
+
+    /**
+     * 重试退避基数（毫秒），第 n 次重试延迟 base * 2^(n-1)
+     */
+    private long backoffBase = 5000;
+
+    /**
+     * 重试退避上限（毫秒）
+     */
+    private long maxBackoff = 60000;
+}
@@ -0,0 +1,31 @@
+package com.pdsu.charge_palteform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.metadata-cache")
+public class MetadataCacheConfig {
+
+    /**
+     * 是否启用充电站/充电桩元数据缓存，关闭时直接查询数据库
+     */
+    private boolean enabled = true;
+
+    /**
+     * 本地缓存每类数据的最大条数
+     */
+    private long localMaxSize = 20000;
+
+    /**
+     * 本地缓存过期时间（秒）
+     */
+    private long localTtl = 600;
+
+    /**
+     * Redis 缓存过期时间（秒）
+     */
+    private long redisTtl = 3600;
+}
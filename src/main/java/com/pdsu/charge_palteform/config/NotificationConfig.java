@@ -21,6 +21,13 @@ public class NotificationConfig {
         private int heartbeatInterval = 30; // 心跳间隔（秒）
         private int reconnectAttempts = 3; // 重连尝试次数
         private long connectionTimeout = 10000; // 连接超时（毫秒）
+        private boolean clusterEnabled = true; // 通过 Redis 频道向所有节点分发通知
+        private int sendTimeLimit = 5000; // 单个连接发送超时（毫秒）
+        private int sendBufferSizeLimit = 64 * 1024; // 单个连接发送缓冲上限（字节）
+        private String overflowStrategy = "DROP"; // 缓冲超限策略：DROP 丢弃积压消息，TERMINATE 关闭连接
+        private long progressInterval = 1000; // 同一订单充电进度通知的合并发送间隔（毫秒），0 为不合并
+        private int dispatchLanes = 4; // 集群通知投递线程数，同一订单固定由一个线程投递
+        private int dispatchQueueCapacity = 2000; // 每个投递线程的待投递上限，满时阻塞订阅分发
     }
 
     @Data
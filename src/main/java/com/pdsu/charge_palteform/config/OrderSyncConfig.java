@@ -0,0 +1,41 @@
+package com.pdsu.charge_palteform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.order-sync")
+public class OrderSyncConfig {
+
+    /**
+     * 是否启用充电中订单状态同步
+     */
+    private boolean enabled = true;
+
+    /**
+     * 同步周期间隔（毫秒），上一轮结束后开始计时
+     */
+    private long interval = 30000;
+
+    /**
+     * 每次从数据库分页读取的订单数
+     */
+    private int batchSize = 200;
+
+    /**
+     * 同时在途的平台查询数上限
+     */
+    private int maxConcurrency = 32;
+
+    /**
+     * 平台查询限流（每秒请求数）
+     */
+    private double rateLimit = 50;
+
+    /**
+     * 异常订单检查间隔（毫秒）
+     */
+    private long abnormalCheckInterval = 300000;
+}
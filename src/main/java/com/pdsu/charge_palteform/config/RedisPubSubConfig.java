@@ -0,0 +1,76 @@
+package com.pdsu.charge_palteform.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Redis 发布订阅配置，用于节点间广播缓存失效等消息
+ * <p>
+ * 容器默认使用 SimpleAsyncTaskExecutor，每条消息新建一个线程且不保证顺序。
+ * 这里改为单线程、有界队列分发：消息按到达顺序依次交给监听器，
+ * 队列满时阻塞订阅线程形成背压，而不是丢弃消息或无限制创建线程。
+ * 监听器只做轻量处理，耗时的投递由各自的执行器完成。
+ */
+@Slf4j
+@Configuration
+public class RedisPubSubConfig {
+
+    /** 待分发消息的上限 */
+    private static final int DISPATCH_QUEUE_CAPACITY = 10_000;
+    /** 订阅线程数，阻塞式连接每个订阅占用一个线程 */
+    private static final int SUBSCRIPTION_THREADS = 2;
+
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor redisListenerExecutor() {
+        BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(DISPATCH_QUEUE_CAPACITY);
+        return new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, queue,
+                namedThreads("redis-listener"), (task, executor) -> {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("redis-listener 已关闭");
+            }
+            try {
+                // 单线程消费，阻塞入队不会打乱消息顺序
+                executor.getQueue().put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("等待分发 Redis 消息时被中断，消息被丢弃");
+            }
+        });
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor redisSubscriptionExecutor() {
+        return new ThreadPoolExecutor(1, SUBSCRIPTION_THREADS, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                namedThreads("redis-subscription"), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.setTaskExecutor(redisListenerExecutor());
+        container.setSubscriptionExecutor(redisSubscriptionExecutor());
+        return container;
+    }
+
+    private static ThreadFactory namedThreads(String name) {
+        AtomicInteger sequence = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -2,13 +2,19 @@ package com.pdsu.charge_palteform.config;
 
 import lombok.extern.slf4j.Slf4j;
 
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.client5.http.impl.async.HttpAsyncClients;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
 import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManager;
+import org.apache.hc.client5.http.impl.nio.PoolingAsyncClientConnectionManagerBuilder;
 
 import org.apache.hc.core5.http.*;
 import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.reactor.IOReactorConfig;
 import org.apache.hc.core5.util.Timeout;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -54,6 +60,37 @@ public class RestTemplateConfig {
         return new RestTemplate(factory);
     }
 
+    /**
+     * 电能平台异步HTTP客户端
+     * 少量IO线程即可承载大量并发请求，等待响应期间不占用业务线程
+     */
+    @Bean(destroyMethod = "close")
+    public CloseableHttpAsyncClient platformAsyncHttpClient() {
+        PoolingAsyncClientConnectionManager connectionManager = PoolingAsyncClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(200)
+                .setMaxConnPerRoute(50)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofSeconds(10))
+                        .build())
+                .build();
+
+        CloseableHttpAsyncClient httpClient = HttpAsyncClients.custom()
+                .setConnectionManager(connectionManager)
+                .setIOReactorConfig(IOReactorConfig.custom()
+                        .setIoThreadCount(Math.max(2, Runtime.getRuntime().availableProcessors() / 2))
+                        .build())
+                .evictExpiredConnections()
+                .setDefaultRequestConfig(org.apache.hc.client5.http.config.RequestConfig.custom()
+                        .setResponseTimeout(Timeout.ofSeconds(30))
+                        .build())
+                .build();
+        httpClient.start();
+
+        log.info("异步HTTP客户端已初始化 - 最大连接数: {}, 每路由最大连接数: {}",
+                connectionManager.getMaxTotal(), connectionManager.getDefaultMaxPerRoute());
+        return httpClient;
+    }
+
     /**
      * 记录连接池状态
      */
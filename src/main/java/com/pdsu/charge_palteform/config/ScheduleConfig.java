@@ -29,6 +29,9 @@ public class ScheduleConfig {
     private final EnergyPlatformService energyPlatformService;
     private final CouponService couponService;
     private final OrderStateManagerService orderStateManagerService; // 新增
+    private final OrderStatusSyncEngine orderStatusSyncEngine;
+    private final ChargeTelemetryStore chargeTelemetryStore;
+    private final OrderStatisticsService orderStatisticsService;
 
     /**
      * 每天凌晨2点同步充电站基础信息
@@ -83,45 +86,13 @@ public class ScheduleConfig {
         }
     }
 
-    @Scheduled(fixedRate = 30000)
+    /**
+     * 同步所有充电中订单的状态和费用（上一轮结束后间隔 app.order-sync.interval 再执行）
+     */
+    @Scheduled(initialDelay = 30000, fixedDelayString = "${app.order-sync.interval:30000}")
     public void syncChargingOrderStatus() {
         log.debug("🔄 开始同步充电中订单状态和费用...");
-        try {
-            // 查询所有充电中的订单
-            List<ChargeOrder> chargingOrders = chargeOrderMapper.selectList(
-                    new LambdaQueryWrapper<ChargeOrder>()
-                            .eq(ChargeOrder::getStatus, 2) // 充电中
-                            .isNotNull(ChargeOrder::getPlatformOrderNo)
-                            .orderByDesc(ChargeOrder::getUpdateTime)
-                            .last("LIMIT 20") // 限制一次处理20个订单
-            );
-
-            if (chargingOrders.isEmpty()) {
-                log.debug("没有需要同步的充电中订单");
-                return;
-            }
-
-            log.info("开始同步{}个充电中订单的状态和费用", chargingOrders.size());
-            int successCount = 0;
-
-            for (ChargeOrder order : chargingOrders) {
-                try {
-                    boolean updated = syncSingleOrderStatus(order);
-                    if (updated) {
-                        successCount++;
-                    }
-                    // 避免请求过于频繁
-                    Thread.sleep(100);
-                } catch (Exception e) {
-                    log.error("同步订单{}状态失败: {}", order.getOrderNo(), e.getMessage());
-                }
-            }
-
-            log.debug("✅ 充电订单状态同步完成，成功更新{}个订单", successCount);
-
-        } catch (Exception e) {
-            log.error("❌ 同步充电订单状态任务异常", e);
-        }
+        orderStatusSyncEngine.runCycle();
     }
 
     @Scheduled(fixedRate =  300000) // 5分钟
@@ -159,6 +130,31 @@ public class ScheduleConfig {
         }
     }
 
+    /**
+     * 充电过程原始采样降采样为分钟均值，清理过期记录
+     */
+    @Scheduled(initialDelay = 120000, fixedDelayString = "${app.telemetry.downsample-interval:600000}")
+    public void downsampleChargeTelemetry() {
+        try {
+            chargeTelemetryStore.downsample();
+        } catch (Exception e) {
+            log.error("充电采样降采样失败", e);
+        }
+    }
+
+    /**
+     * 每天凌晨3点半按数据库重建订单统计计数
+     */
+    @Scheduled(cron = "0 30 3 * * ?")
+    public void reconcileOrderStatistics() {
+        log.info("开始订单统计对账...");
+        try {
+            orderStatisticsService.reconcile();
+        } catch (Exception e) {
+            log.error("订单统计对账失败", e);
+        }
+    }
+
 
     private boolean syncSingleOrderStatus(ChargeOrder order) {
         try {
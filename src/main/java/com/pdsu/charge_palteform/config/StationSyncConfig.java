@@ -0,0 +1,46 @@
+package com.pdsu.charge_palteform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.station-sync")
+public class StationSyncConfig {
+
+    /**
+     * 每页拉取的充电站数（平台上限100）
+     */
+    private int pageSize = 100;
+
+    /**
+     * 落库当前页时提前拉取的页数，0 表示逐页串行拉取
+     */
+    private int prefetchPages = 1;
+
+    /**
+     * 单次同步最多拉取的页数，0 表示不限制
+     */
+    private int maxPages = 0;
+
+    /**
+     * 是否使用批量 upsert 落库，关闭时按行查询后更新/插入
+     */
+    private boolean batchUpsert = true;
+
+    /**
+     * 批量 upsert 单条语句的最大行数
+     */
+    private int upsertChunkSize = 500;
+
+    /**
+     * 充电桩状态索引写回数据库的间隔（毫秒）
+     */
+    private long statusFlushInterval = 2000;
+
+    /**
+     * 批量更新充电桩状态时单条语句的最大充电桩数
+     */
+    private int statusUpdateChunkSize = 500;
+}
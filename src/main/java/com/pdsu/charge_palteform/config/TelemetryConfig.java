@@ -0,0 +1,61 @@
+package com.pdsu.charge_palteform.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "app.telemetry")
+public class TelemetryConfig {
+
+    /**
+     * 充电中订单的电量、费用变化是否先缓存再批量写库；关闭时每次变化立即更新
+     */
+    private boolean writeBehind = true;
+
+    /**
+     * 缓存的电量、费用及充电采样写入数据库的间隔（毫秒）
+     */
+    private long flushInterval = 5000;
+
+    /**
+     * 批量写库单条语句的最大行数
+     */
+    private int flushChunkSize = 500;
+
+    /**
+     * 是否记录充电过程采样（电压、电流、功率、电量百分比）
+     */
+    private boolean samplingEnabled = true;
+
+    /**
+     * 同一订单两次采样的最小间隔（毫秒），间隔内的数据只用于更新订单
+     */
+    private long sampleInterval = 10000;
+
+    /**
+     * 内存中待写入的采样上限，超出时丢弃新采样
+     */
+    private int maxPendingSamples = 50000;
+
+    /**
+     * 原始采样保留时长（小时），超过后降采样为分钟均值
+     */
+    private int rawRetentionHours = 24;
+
+    /**
+     * 分钟均值保留天数，0 为永久保留
+     */
+    private int downsampledRetentionDays = 365;
+
+    /**
+     * 降采样任务执行间隔（毫秒）
+     */
+    private long downsampleInterval = 600000;
+
+    /**
+     * 充电曲线接口单次返回的最大点数，超出时按时间均匀合并
+     */
+    private int maxCurvePoints = 500;
+}
@@ -1,6 +1,7 @@
 package com.pdsu.charge_palteform.config;
 
 
+import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
@@ -10,11 +11,14 @@ import org.springframework.web.socket.server.standard.ServerEndpointExporter;
 
 @Configuration
 @EnableWebSocket
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketConfigurer{
 
+    private final ChargingWebSocketHandler chargingWebSocketHandler;
+
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
-        registry.addHandler(new ChargingWebSocketHandler(), "/ws/charging")
+        registry.addHandler(chargingWebSocketHandler, "/ws/charging")
                 .setAllowedOrigins("*");
     }
 
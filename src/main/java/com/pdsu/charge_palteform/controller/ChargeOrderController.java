@@ -77,4 +77,14 @@ public class ChargeOrderController {
         ChargeOrderDetail response = chargeOrderService.getOrderDetail(userId, orderNo);
         return Result.success(response);
     }
+
+    @Operation(summary = "获取充电曲线", description = "根据订单号获取充电过程的电压、电流、功率、电量曲线及分时段计量")
+    @GetMapping("/curve/{orderNo}")
+    public Result<ChargeCurveResponse> getChargeCurve(
+            HttpServletRequest request,
+            @Parameter(description = "订单号") @PathVariable String orderNo) {
+        Long userId = (Long) request.getAttribute("userId");
+        ChargeCurveResponse response = chargeOrderService.getChargeCurve(userId, orderNo);
+        return Result.success(response);
+    }
 }
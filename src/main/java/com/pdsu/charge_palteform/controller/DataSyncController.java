@@ -1,15 +1,29 @@
 package com.pdsu.charge_palteform.controller;
 
+import com.pdsu.charge_palteform.common.InstrumentedExecutor;
+import com.pdsu.charge_palteform.common.LatencyHistogram;
 import com.pdsu.charge_palteform.common.Result;
+import com.pdsu.charge_palteform.service.ConnectorStatusIndex;
+import com.pdsu.charge_palteform.service.CouponExpiryEngine;
+import com.pdsu.charge_palteform.service.CouponFlashSaleService;
+import com.pdsu.charge_palteform.service.CouponTemplateCache;
 import com.pdsu.charge_palteform.service.DataSyncService;
 import com.pdsu.charge_palteform.service.EnergyPlatformService;
+import com.pdsu.charge_palteform.service.PlatformCallExecutor;
+import com.pdsu.charge_palteform.service.StationMetadataCache;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 @Tag(name = "数据同步管理", description = "与电能平台的数据同步接口")
 @RestController
 @RequestMapping("/api/sync")
@@ -17,6 +31,13 @@ import org.springframework.web.bind.annotation.RestController;
 public class DataSyncController {
     private final DataSyncService dataSyncService;
     private final EnergyPlatformService energyPlatformService;
+    private final PlatformCallExecutor platformCallExecutor;
+    private final ConnectorStatusIndex connectorStatusIndex;
+    private final StationMetadataCache stationMetadataCache;
+    private final CouponTemplateCache couponTemplateCache;
+    private final CouponExpiryEngine couponExpiryEngine;
+    private final CouponFlashSaleService couponFlashSaleService;
+    private final List<InstrumentedExecutor> executors;
 
     @Operation(summary = "测试电能平台连接", description = "测试与电能平台的连接和Token获取")
     @PostMapping("/test_connection")
@@ -61,4 +82,78 @@ public class DataSyncController {
             return Result.error("同步失败: " + e.getMessage());
         }
     }
+
+    @Operation(summary = "平台接口耗时统计", description = "按接口查看电能平台调用次数、失败数和耗时分位数")
+    @GetMapping("/platform_metrics")
+    public Result<Map<String, LatencyHistogram.Snapshot>> platformMetrics() {
+        return Result.success(platformCallExecutor.getMetrics());
+    }
+
+    @Operation(summary = "充电桩状态索引", description = "查看充电桩实时状态索引的规模和写回情况")
+    @GetMapping("/connector_status_index")
+    public Result<ConnectorStatusIndex.IndexStats> connectorStatusIndex() {
+        return Result.success(connectorStatusIndex.getStats());
+    }
+
+    @Operation(summary = "元数据缓存统计", description = "查看充电站/充电桩元数据缓存的命中情况")
+    @GetMapping("/metadata_cache")
+    public Result<Map<String, Object>> metadataCache() {
+        return Result.success(stationMetadataCache.getStats());
+    }
+
+    @Operation(summary = "优惠券模板缓存统计", description = "查看优惠券模板缓存的命中情况")
+    @GetMapping("/coupon_template_cache")
+    public Result<Map<String, Object>> couponTemplateCache() {
+        return Result.success(couponTemplateCache.getStats());
+    }
+
+    @Operation(summary = "清理优惠券模板缓存", description = "修改优惠券模板后清理所有节点的缓存，不传模板ID时全部清理")
+    @PostMapping("/coupon_template_cache/invalidate")
+    public Result<String> invalidateCouponTemplateCache(@RequestParam(required = false) List<Long> templateIds) {
+        couponTemplateCache.invalidate(templateIds);
+        return Result.success("优惠券模板缓存已清理");
+    }
+
+    @Operation(summary = "优惠券秒杀预热", description = "把模板剩余数量和已领取用户加载到 Redis，之后该模板的领取走秒杀方式")
+    @PostMapping("/coupon_flash_sale/preheat")
+    public Result<Map<String, Object>> preheatCouponFlashSale(@RequestParam Long templateId) {
+        return Result.success(couponFlashSaleService.preheat(templateId));
+    }
+
+    @Operation(summary = "结束优惠券秒杀", description = "拒绝之后的秒杀领取，已领取记录全部落库后回到普通方式")
+    @PostMapping("/coupon_flash_sale/close")
+    public Result<String> closeCouponFlashSale(@RequestParam Long templateId) {
+        couponFlashSaleService.close(templateId);
+        return Result.success("优惠券秒杀已结束");
+    }
+
+    @Operation(summary = "优惠券秒杀统计", description = "查看领取次数、Redis 剩余库存和待落库数量")
+    @GetMapping("/coupon_flash_sale")
+    public Result<Map<String, Object>> couponFlashSale() {
+        return Result.success(couponFlashSaleService.getStats());
+    }
+
+    @Operation(summary = "过期优惠券处理统计", description = "查看过期优惠券处理的次数、最近一轮的行数和每秒处理行数")
+    @GetMapping("/coupon_expiry")
+    public Result<CouponExpiryEngine.ExpiryStats> couponExpiry() {
+        return Result.success(couponExpiryEngine.getStats());
+    }
+
+    @Operation(summary = "处理过期优惠券", description = "立即执行一轮过期优惠券处理")
+    @PostMapping("/coupon_expiry")
+    public Result<CouponExpiryEngine.ExpiryResult> runCouponExpiry() {
+        CouponExpiryEngine.ExpiryResult result = couponExpiryEngine.run();
+        if (result == null) {
+            return Result.error("其它节点正在处理过期优惠券");
+        }
+        return Result.success(result);
+    }
+
+    @Operation(summary = "异步执行器状态", description = "查看各异步执行器的队列深度、拒绝次数、排队和执行耗时")
+    @GetMapping("/executors")
+    public Result<List<InstrumentedExecutor.Stats>> executors() {
+        return Result.success(executors.stream()
+                .map(InstrumentedExecutor::getStats)
+                .collect(Collectors.toList()));
+    }
 }
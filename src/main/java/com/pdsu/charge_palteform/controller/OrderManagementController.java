@@ -1,7 +1,14 @@
 package com.pdsu.charge_palteform.controller;
 
 import com.pdsu.charge_palteform.common.Result;
+import com.pdsu.charge_palteform.service.ChargeTelemetryBuffer;
+import com.pdsu.charge_palteform.service.ChargeTelemetryStore;
+import com.pdsu.charge_palteform.service.ClusterNotificationBus;
 import com.pdsu.charge_palteform.service.DataConsistencyService;
+import com.pdsu.charge_palteform.service.FollowUpScheduler;
+import com.pdsu.charge_palteform.service.OrderStatisticsService;
+import com.pdsu.charge_palteform.service.OrderStatusSyncEngine;
+import com.pdsu.charge_palteform.service.ProgressNotificationCoalescer;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -19,6 +26,13 @@ import java.util.Map;
 public class OrderManagementController {
 
     private final DataConsistencyService dataConsistencyService;
+    private final OrderStatusSyncEngine orderStatusSyncEngine;
+    private final ClusterNotificationBus clusterNotificationBus;
+    private final ProgressNotificationCoalescer progressNotificationCoalescer;
+    private final FollowUpScheduler followUpScheduler;
+    private final ChargeTelemetryBuffer chargeTelemetryBuffer;
+    private final ChargeTelemetryStore chargeTelemetryStore;
+    private final OrderStatisticsService orderStatisticsService;
 
     @Operation(summary = "手动触发数据一致性检查", description = "手动检查所有订单的数据一致性")
     @PostMapping("/consistency/check")
@@ -49,36 +63,69 @@ public class OrderManagementController {
         }
     }
 
-    @Operation(summary = "获取数据同步状态", description = "获取当前数据同步服务的运行状态")
+    @Operation(summary = "获取数据同步状态", description = "获取充电订单同步引擎的运行状态、单轮耗时和订单滞后统计")
     @GetMapping("/sync/status")
     public Result<Map<String, Object>> getSyncStatus() {
         try {
-            Map<String, Object> status = new HashMap<>();
-            status.put("syncEnabled", true);
-            status.put("lastCheckTime", System.currentTimeMillis());
-            status.put("status", "running");
-            status.put("message", "数据同步服务运行正常");
-
-            return Result.success(status);
+            return Result.success(orderStatusSyncEngine.getStatus());
         } catch (Exception e) {
             return Result.error("获取状态失败: " + e.getMessage());
         }
     }
 
-    @Operation(summary = "订单状态统计", description = "获取各种状态的订单数量统计")
+    @Operation(summary = "实时通知状态", description = "获取集群通知总线、进度通知合并的统计和本节点在线用户数")
+    @GetMapping("/realtime/status")
+    public Result<Map<String, Object>> getRealtimeStatus() {
+        long[] counts = progressNotificationCoalescer.getCounts();
+        Map<String, Object> coalescer = new HashMap<>();
+        coalescer.put("submitted", counts[0]);
+        coalescer.put("sent", counts[1]);
+        coalescer.put("pendingOrders", counts[2]);
+
+        Map<String, Object> status = new HashMap<>();
+        status.put("bus", clusterNotificationBus.getStats());
+        status.put("progressCoalescer", coalescer);
+        return Result.success(status);
+    }
+
+    @Operation(summary = "订单跟进任务状态", description = "获取启动/停止充电后跟进查询任务的排队、重试和完成情况")
+    @GetMapping("/followup/status")
+    public Result<Map<String, Object>> getFollowUpStatus() {
+        return Result.success(followUpScheduler.getStats());
+    }
+
+    @Operation(summary = "订单电量费用写回状态", description = "获取充电中订单电量、费用写回缓冲的积压、批量大小和写回延迟")
+    @GetMapping("/telemetry/status")
+    public Result<ChargeTelemetryBuffer.BufferStats> getTelemetryStatus() {
+        return Result.success(chargeTelemetryBuffer.getStats());
+    }
+
+    @Operation(summary = "充电采样存储状态", description = "获取充电过程采样的写入、节流、丢弃和降采样情况")
+    @GetMapping("/telemetry/samples/status")
+    public Result<ChargeTelemetryStore.StoreStats> getTelemetrySampleStatus() {
+        return Result.success(chargeTelemetryStore.getStats());
+    }
+
+    @Operation(summary = "订单状态统计", description = "获取各种状态的订单数量统计，可按充电站查询")
     @GetMapping("/statistics")
-    public Result<Map<String, Object>> getOrderStatistics() {
+    public Result<Map<String, Object>> getOrderStatistics(@RequestParam(required = false) String stationId) {
         try {
-            Map<String, Object> statistics = new HashMap<>();
-            // 这里可以添加统计逻辑
-            statistics.put("totalOrders", 0);
-            statistics.put("chargingOrders", 0);
-            statistics.put("completedOrders", 0);
-            statistics.put("failedOrders", 0);
-            statistics.put("lastUpdateTime", System.currentTimeMillis());
-            return Result.success(statistics);
+            return Result.success(orderStatisticsService.getStatistics(stationId));
         } catch (Exception e) {
             return Result.error("获取统计失败: " + e.getMessage());
         }
     }
+
+    @Operation(summary = "订单统计对账", description = "按数据库重建订单统计计数")
+    @PostMapping("/statistics/reconcile")
+    public Result<String> reconcileOrderStatistics() {
+        try {
+            if (!orderStatisticsService.reconcile()) {
+                return Result.error("其它节点正在执行订单统计对账");
+            }
+            return Result.success("订单统计对账完成");
+        } catch (Exception e) {
+            return Result.error("订单统计对账失败: " + e.getMessage());
+        }
+    }
 }
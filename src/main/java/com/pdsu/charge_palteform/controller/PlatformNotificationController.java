@@ -2,21 +2,24 @@ package com.pdsu.charge_palteform.controller;
 
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pdsu.charge_palteform.entity.ChargeOrder;
 import com.pdsu.charge_palteform.entity.platefrom.PlatformRequest;
 import com.pdsu.charge_palteform.entity.platefrom.PlatformResponse;
 import com.pdsu.charge_palteform.entity.platefrom.charge.ChargeStatusData;
 import com.pdsu.charge_palteform.entity.platefrom.station.ConnectorStatusInfo;
+import com.pdsu.charge_palteform.entity.platefrom.station.StationStatusNotification;
 import com.pdsu.charge_palteform.service.ChargeOrderService;
+import com.pdsu.charge_palteform.service.ConnectorStatusIndex;
 import com.pdsu.charge_palteform.service.NotificationService;
 import com.pdsu.charge_palteform.service.OrderStateManagerService;
-import com.pdsu.charge_palteform.utils.AesUtil;
+import com.pdsu.charge_palteform.service.ProgressNotificationCoalescer;
+import com.pdsu.charge_palteform.utils.PlatformCodec;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -36,25 +39,26 @@ public class PlatformNotificationController {
     private final NotificationService notificationService;
     private final ChargeOrderService chargeOrderService;
     private final OrderStateManagerService orderStateManagerService;
+    private final PlatformCodec platformCodec;
     private final ObjectMapper objectMapper;
-
-
-    @Value("${energy.platform.dataSecret}")
-    private String dataSecret;
-
-    @Value("${energy.platform.dataSecretIV}")
-    private String dataSecretIv;
+    private final ConnectorStatusIndex connectorStatusIndex;
+    private final ProgressNotificationCoalescer progressNotificationCoalescer;
 
     @Operation(summary = "设备状态变化推送", description = "接收电能平台推送的设备状态变化")
     @PostMapping("/station_status")
     public PlatformResponse handleStationStatusPush(@RequestBody PlatformRequest request) {
-        log.info("收到充电状态推送: {}", request.getOperatorID());
+        log.debug("收到设备状态推送: {}", request.getOperatorID());
         try {
-            // 解密数据
-            String decryptedData = AesUtil.decrypt(request.getData(), dataSecret, dataSecretIv);
-            log.info("解密后的充电状态数据: {}", decryptedData);
-            // 解析充电状态
-            ChargeStatusData statusData = objectMapper.readValue(decryptedData, ChargeStatusData.class);
+            JsonNode data = platformCodec.decode(request.getData(), JsonNode.class);
+            if (data.has("ConnectorStatusInfo")) {
+                StationStatusNotification notification = objectMapper.treeToValue(data, StationStatusNotification.class);
+                handleConnectorStatusChange(notification.getConnectorStatusInfo());
+                return buildSuccessResponse();
+            }
+
+            // 兼容按充电状态格式推送到该地址的数据
+            ChargeStatusData statusData = objectMapper.treeToValue(data, ChargeStatusData.class);
+            log.debug("解密后的充电状态数据: {}", statusData);
             // 根据平台订单号查找本地订单
             ChargeOrder order = chargeOrderService.getByPlatformOrderNo(statusData.getPlatformOrderNo());
             if (order != null) {
@@ -67,7 +71,7 @@ public class PlatformNotificationController {
             }
             return buildSuccessResponse();
         } catch (Exception e) {
-            log.error("处理充电状态推送失败", e);
+            log.error("处理设备状态推送失败", e);
             return buildErrorResponse("处理失败");
         }
     }
@@ -77,26 +81,29 @@ public class PlatformNotificationController {
     public PlatformResponse handleChargeStatusPush(@RequestBody PlatformRequest request) {
         log.info("收到充电状态推送: {}", request.getOperatorID());
         try {
-            // 解密数据
-            String decryptedData = AesUtil.decrypt(request.getData(), dataSecret, dataSecretIv);
-            log.info("解密后的充电状态数据: {}", decryptedData);
-            // 解析充电状态
-            ChargeStatusData statusData = objectMapper.readValue(decryptedData, ChargeStatusData.class);
+            // 解密并解析充电状态
+            ChargeStatusData statusData = platformCodec.decode(request.getData(), ChargeStatusData.class);
+            log.debug("解密后的充电状态数据: {}", statusData);
             // 根据平台订单号查找本地订单
             ChargeOrder order = chargeOrderService.getOne(
                     new LambdaQueryWrapper<ChargeOrder>()
                             .eq(ChargeOrder::getPlatformOrderNo, statusData.getPlatformOrderNo())
             );
 
+            if (statusData.getConnectorId() != null) {
+                connectorStatusIndex.updatePower(statusData.getConnectorId(), calculatePower(statusData));
+            }
+
             if (order != null) {
                 // 实时推送给用户
-                notificationService.sendChargeStatusNotification(
-                        order.getUserId(), order.getOrderNo(), statusData);
+                // 充电状态变化立即推送，其余按订单合并后定时推送
+                progressNotificationCoalescer.submitStatus(
+                        order.getUserId(), order.getOrderNo(), statusData, false);
 
                 // 如果有进度数据，发送进度通知
                 if (statusData.getTotalPower() != null || statusData.getSoc() != null) {
                     Integer chargeDuration = calculateChargeDuration(order.getStartTime());
-                    notificationService.sendChargeProgressNotification(
+                    progressNotificationCoalescer.submitProgress(
                             order.getUserId(),
                             order.getOrderNo(),
                             statusData.getSoc(),
@@ -121,11 +128,9 @@ public class PlatformNotificationController {
     public PlatformResponse handleChargeCompletePush(@RequestBody PlatformRequest request) {
         log.info("收到充电完成推送: {}", request.getOperatorID());
         try {
-            // 解密数据
-            String decryptedData = AesUtil.decrypt(request.getData(), dataSecret, dataSecretIv);
-            log.info("解密后的充电完成数据: {}", decryptedData);
-            // 解析完成信息
-            Map<String, Object> completeData = objectMapper.readValue(decryptedData, Map.class);
+            // 解密并解析完成信息
+            Map<String, Object> completeData = platformCodec.decode(request.getData(), Map.class);
+            log.debug("解密后的充电完成数据: {}", completeData);
             String platformOrderNo = (String) completeData.get("StartChargeSeq");
             // 查找本地订单
             ChargeOrder order = chargeOrderService.getByPlatformOrderNo(platformOrderNo);
@@ -167,11 +172,9 @@ public class PlatformNotificationController {
     public PlatformResponse handleChargeFaultPush(@RequestBody PlatformRequest request) {
         log.info("收到充电异常推送: {}", request.getOperatorID());
         try {
-            // 解密数据
-            String decryptedData = AesUtil.decrypt(request.getData(), dataSecret, dataSecretIv);
-            log.info("解密后的充电异常数据: {}", decryptedData);
-            // 解析异常信息
-            Map<String, Object> faultData = objectMapper.readValue(decryptedData, Map.class);
+            // 解密并解析异常信息
+            Map<String, Object> faultData = platformCodec.decode(request.getData(), Map.class);
+            log.debug("解密后的充电异常数据: {}", faultData);
             String connectorId = (String) faultData.get("ConnectorID");
             String reason = (String) faultData.get("FaultReason");
             String platformOrderNo = (String) faultData.get("StartChargeSeq");
@@ -181,10 +184,12 @@ public class PlatformNotificationController {
                 order = chargeOrderService.getByPlatformOrderNo(platformOrderNo);
             }
             if (order != null) {
-                // 直接更新为异常状态（不通过状态管理服务，因为这是特殊情况）
-                order.setStatus(6); // 异常
-                order.setStopReason(3); // 设备故障
-                chargeOrderService.updateById(order);
+                // 直接更新为异常状态（不走平台状态合并，因为这是特殊情况），按版本号更新避免覆盖并发写入
+                orderStateManagerService.updateWithVersion(order, current -> {
+                    current.setStatus(6); // 异常
+                    current.setStopReason(3); // 设备故障
+                    return true;
+                });
                 // 发送异常通知
                 notificationService.sendChargeFaultNotification(
                         order.getUserId(), order.getOrderNo(), connectorId, reason);
@@ -208,13 +213,34 @@ public class PlatformNotificationController {
 
 
     private void handleConnectorStatusChange(ConnectorStatusInfo statusInfo) {
-        // 这里可以更新本地充电桩状态
-        // 如果有用户正在关注该充电桩，可以推送状态变化
-        log.info("充电桩{}状态变化: {}", statusInfo.getConnectorID(), statusInfo.getStatus());
-        // 可以实现：
-        // 1. 更新本地充电桩状态
-        // 2. 如果状态变为故障，通知正在充电的用户
-        // 3. 如果状态变为空闲，通知等待的用户
+        if (statusInfo == null || statusInfo.getConnectorID() == null || statusInfo.getStatus() == null) {
+            log.warn("设备状态推送缺少充电桩ID或状态");
+            return;
+        }
+        // 立即写入状态索引，由索引合并批量写回数据库
+        if (connectorStatusIndex.updateStatus(statusInfo.getConnectorID(), statusInfo.getStatus())) {
+            log.info("充电桩{}状态变化: {}", statusInfo.getConnectorID(), statusInfo.getStatus());
+        }
+    }
+
+    /**
+     * 根据三相电压、电流估算充电桩当前功率（kW）
+     */
+    private BigDecimal calculatePower(ChargeStatusData statusData) {
+        BigDecimal watts = BigDecimal.ZERO;
+        boolean hasSample = false;
+        BigDecimal[][] phases = {
+                {statusData.getVoltageA(), statusData.getCurrentA()},
+                {statusData.getVoltageB(), statusData.getCurrentB()},
+                {statusData.getVoltageC(), statusData.getCurrentC()}
+        };
+        for (BigDecimal[] phase : phases) {
+            if (phase[0] != null && phase[1] != null) {
+                watts = watts.add(phase[0].multiply(phase[1]));
+                hasSample = true;
+            }
+        }
+        return hasSample ? watts.movePointLeft(3) : null;
     }
 
     /**
@@ -0,0 +1,38 @@
+package com.pdsu.charge_palteform.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+
+@Data
+@TableName("charge_details")
+public class ChargeDetail {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private Long chargeOrderId;
+
+    private LocalDateTime startTime;
+
+    private LocalDateTime endTime;
+
+    private BigDecimal electricityPrice; // 时段电价(元/度)
+
+    private BigDecimal servicePrice; // 时段服务费(元/度)
+
+    private BigDecimal power; // 时段充电量(度)
+
+    private BigDecimal electricityFee;
+
+    private BigDecimal serviceFee;
+
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createTime;
+
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updateTime;
+}
@@ -67,4 +67,10 @@ public class ChargeOrder {
     private BigDecimal targetSoc; // 目标电量百分比
     private BigDecimal targetAmount; // 目标充电金额
     private Integer stopCondition; // 停止条件：1-时间，2-电量，3-金额，4-手动
+
+    /**
+     * 版本号（乐观锁），updateById 时自动按版本号条件更新并加一
+     */
+    @Version
+    private Integer version;
 }
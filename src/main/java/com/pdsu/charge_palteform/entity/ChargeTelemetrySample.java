@@ -0,0 +1,46 @@
+package com.pdsu.charge_palteform.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+
+@Data
+@TableName("charge_telemetry_samples")
+public class ChargeTelemetrySample {
+
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    private Long chargeOrderId;
+
+    /**
+     * 采样时间，降采样后为时间桶起点
+     */
+    private LocalDateTime sampleTime;
+
+    /**
+     * 精度：0-原始采样，1-分钟均值
+     */
+    private Integer resolution;
+
+    /**
+     * 合并的原始采样数
+     */
+    private Integer sampleCount;
+
+    private BigDecimal voltageA;
+    private BigDecimal voltageB;
+    private BigDecimal voltageC;
+    private BigDecimal currentA;
+    private BigDecimal currentB;
+    private BigDecimal currentC;
+
+    private BigDecimal power; // 瞬时功率(kW)
+
+    private BigDecimal soc;
+
+    private BigDecimal totalPower; // 累计充电量(度)
+}
@@ -0,0 +1,21 @@
+package com.pdsu.charge_palteform.entity.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+public class ChargeCurvePoint {
+    private LocalDateTime time;
+    private Integer sampleCount; // 合并的原始采样数
+    private BigDecimal voltageA;
+    private BigDecimal voltageB;
+    private BigDecimal voltageC;
+    private BigDecimal currentA;
+    private BigDecimal currentB;
+    private BigDecimal currentC;
+    private BigDecimal power; // 瞬时功率(kW)
+    private BigDecimal soc; // 电池电量百分比
+    private BigDecimal totalPower; // 累计充电量
+}
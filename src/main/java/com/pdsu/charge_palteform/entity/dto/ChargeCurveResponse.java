@@ -0,0 +1,18 @@
+package com.pdsu.charge_palteform.entity.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+public class ChargeCurveResponse {
+    private String orderNo;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private Integer rawSamples; // 参与计算的采样记录数
+    private List<ChargeCurvePoint> points;
+
+    // 充电明细（分时段）
+    private List<ChargeDetailItem> chargeDetails;
+}
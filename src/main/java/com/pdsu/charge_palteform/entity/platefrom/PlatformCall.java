@@ -0,0 +1,63 @@
+package com.pdsu.charge_palteform.entity.platefrom;
+
+import com.pdsu.charge_palteform.entity.platefrom.charge.*;
+import com.pdsu.charge_palteform.entity.platefrom.station.StationQueryPlatformRequest;
+import com.pdsu.charge_palteform.entity.platefrom.station.StationQueryResponse;
+import com.pdsu.charge_palteform.entity.platefrom.station.StationStatusRequest;
+import com.pdsu.charge_palteform.entity.platefrom.station.StationStatusResponse;
+import com.pdsu.charge_palteform.entity.platefrom.token.TokenRequest;
+import com.pdsu.charge_palteform.entity.platefrom.token.TokenResponse;
+import lombok.Getter;
+
+/**
+ * 电能平台接口描述：接口名、路径、响应类型、是否需要Token
+ *
+ * @param <Req>  业务请求（加密前的 Data）
+ * @param <Resp> 业务响应（解密后的 Data）
+ */
+@Getter
+public final class PlatformCall<Req, Resp> {
+
+    public static final PlatformCall<TokenRequest, TokenResponse> QUERY_TOKEN =
+            new PlatformCall<>("query_token", TokenResponse.class, false);
+
+    public static final PlatformCall<StationQueryPlatformRequest, StationQueryResponse> QUERY_STATIONS_INFO =
+            new PlatformCall<>("query_stations_info", StationQueryResponse.class, true);
+
+    public static final PlatformCall<StationStatusRequest, StationStatusResponse> QUERY_STATION_STATUS =
+            new PlatformCall<>("query_station_status", StationStatusResponse.class, true);
+
+    public static final PlatformCall<ConnectorAuthRequest, ConnectorAuthResponse> QUERY_EQUIP_AUTH =
+            new PlatformCall<>("query_equip_auth", ConnectorAuthResponse.class, true);
+
+    public static final PlatformCall<ChargePolicyRequest, ChargePolicyResponse> QUERY_EQUIP_BUSINESS_POLICY =
+            new PlatformCall<>("query_equip_business_policy", ChargePolicyResponse.class, true);
+
+    public static final PlatformCall<PlatformStartChargeRequest, PlatformStartChargeResponse> QUERY_START_CHARGE =
+            new PlatformCall<>("query_start_charge", PlatformStartChargeResponse.class, true);
+
+    public static final PlatformCall<PlatformStopChargeRequest, PlatformStopChargeResponse> QUERY_STOP_CHARGE =
+            new PlatformCall<>("query_stop_charge", PlatformStopChargeResponse.class, true);
+
+    public static final PlatformCall<ChargeStatusRequest, PlatformChargeStatusResponse> QUERY_EQUIP_CHARGE_STATUS =
+            new PlatformCall<>("query_equip_charge_status", PlatformChargeStatusResponse.class, true);
+
+    /** 接口名，同时用作指标名 */
+    private final String name;
+
+    /** 接口路径 */
+    private final String path;
+
+    /** 解密后的响应类型 */
+    private final Class<Resp> responseType;
+
+    /** 是否需要携带 Bearer Token */
+    private final boolean authenticated;
+
+    private PlatformCall(String name, Class<Resp> responseType, boolean authenticated) {
+        this.name = name;
+        this.path = "/" + name;
+        this.responseType = responseType;
+        this.authenticated = authenticated;
+    }
+}
@@ -0,0 +1,14 @@
+package com.pdsu.charge_palteform.entity.platefrom.station;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Data;
+
+/**
+ * 设备状态变化推送（notification_stationStatus）
+ */
+@Data
+public class StationStatusNotification {
+
+    @JsonProperty("ConnectorStatusInfo")
+    private ConnectorStatusInfo connectorStatusInfo;
+}
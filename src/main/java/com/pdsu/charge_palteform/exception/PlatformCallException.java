@@ -0,0 +1,27 @@
+package com.pdsu.charge_palteform.exception;
+
+import lombok.Getter;
+
+/**
+ * 电能平台返回 Ret != 0 时抛出，保留平台返回码供调用方区分处理
+ */
+@Getter
+public class PlatformCallException extends BusinessException {
+
+    /** 平台返回码：Token错误 */
+    public static final int RET_TOKEN_INVALID = 4002;
+
+    private final Integer ret;
+
+    public PlatformCallException(Integer ret, String message) {
+        super(message);
+        this.ret = ret;
+    }
+
+    /**
+     * 平台拒绝了请求携带的Token
+     */
+    public boolean isTokenRejected() {
+        return ret != null && ret == RET_TOKEN_INVALID;
+    }
+}
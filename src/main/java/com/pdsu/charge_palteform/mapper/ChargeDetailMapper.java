@@ -0,0 +1,31 @@
+package com.pdsu.charge_palteform.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.pdsu.charge_palteform.entity.ChargeDetail;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+@Mapper
+public interface ChargeDetailMapper extends BaseMapper<ChargeDetail> {
+
+    /**
+     * 按订单、时段开始时间批量插入或更新分时段计量
+     */
+    @Insert("<script>" +
+            "INSERT INTO charge_details " +
+            "(charge_order_id, start_time, end_time, electricity_price, service_price, power, " +
+            "electricity_fee, service_fee, create_time, update_time) VALUES " +
+            "<foreach collection='details' item='d' separator=','>" +
+            "(#{d.chargeOrderId}, #{d.startTime}, #{d.endTime}, #{d.electricityPrice}, #{d.servicePrice}, " +
+            "#{d.power}, #{d.electricityFee}, #{d.serviceFee}, NOW(), NOW())" +
+            "</foreach>" +
+            " AS new ON DUPLICATE KEY UPDATE " +
+            "end_time = new.end_time, electricity_price = new.electricity_price, " +
+            "service_price = new.service_price, power = new.power, " +
+            "electricity_fee = new.electricity_fee, service_fee = new.service_fee, update_time = NOW()" +
+            "</script>")
+    int batchUpsert(@Param("details") List<ChargeDetail> details);
+}
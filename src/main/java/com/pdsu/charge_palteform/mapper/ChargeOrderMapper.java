@@ -5,6 +5,7 @@ import com.pdsu.charge_palteform.entity.ChargeOrder;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -19,6 +20,26 @@ public interface ChargeOrderMapper extends BaseMapper<ChargeOrder> {
             "WHERE user_id = #{userId} GROUP BY status")
     List<Map<String, Object>> countOrdersByStatus(@Param("userId") Long userId);
 
+    /**
+     * 全部订单按状态分组计数，用于统计计数器对账
+     */
+    @Select("SELECT status, COUNT(*) AS count FROM charge_orders GROUP BY status")
+    List<Map<String, Object>> countAllByStatus();
+
+    /**
+     * 全部订单按充电站、状态分组计数，用于统计计数器对账
+     */
+    @Select("SELECT station_id AS stationId, status, COUNT(*) AS count FROM charge_orders " +
+            "GROUP BY station_id, status")
+    List<Map<String, Object>> countByStationAndStatus();
+
+    /**
+     * 指定时间之后创建的订单按创建日期（yyyyMMdd）、状态分组计数
+     */
+    @Select("SELECT DATE_FORMAT(create_time, '%Y%m%d') AS day, status, COUNT(*) AS count FROM charge_orders " +
+            "WHERE create_time >= #{since} GROUP BY DATE_FORMAT(create_time, '%Y%m%d'), status")
+    List<Map<String, Object>> countByCreateDayAndStatus(@Param("since") LocalDateTime since);
+
     /**
      * 查询用户最近的充电订单
      */
@@ -42,4 +63,35 @@ public interface ChargeOrderMapper extends BaseMapper<ChargeOrder> {
     @Select("SELECT * FROM charge_orders WHERE user_id = #{userId} AND station_id = #{stationId} " +
             "ORDER BY create_time DESC")
     List<ChargeOrder> getOrdersByStation(@Param("userId") Long userId, @Param("stationId") String stationId);
+
+    /**
+     * 批量写回充电中订单的累计电量、费用和电量百分比
+     * <p>
+     * 累计值取较大者，避免覆盖已写入的更新数据；同时递增版本号，让并发的按版本更新重新读取
+     */
+    @Update("<script>" +
+            "UPDATE charge_orders SET " +
+            "total_power = CASE id " +
+            "<foreach collection='orders' item='o'>WHEN #{o.id} THEN GREATEST(IFNULL(total_power, 0), IFNULL(#{o.totalPower}, 0)) </foreach>" +
+            "END, " +
+            "electricity_fee = CASE id " +
+            "<foreach collection='orders' item='o'>WHEN #{o.id} THEN GREATEST(IFNULL(electricity_fee, 0), IFNULL(#{o.electricityFee}, 0)) </foreach>" +
+            "END, " +
+            "service_fee = CASE id " +
+            "<foreach collection='orders' item='o'>WHEN #{o.id} THEN GREATEST(IFNULL(service_fee, 0), IFNULL(#{o.serviceFee}, 0)) </foreach>" +
+            "END, " +
+            "total_fee = CASE id " +
+            "<foreach collection='orders' item='o'>WHEN #{o.id} THEN GREATEST(IFNULL(total_fee, 0), IFNULL(#{o.totalFee}, 0)) </foreach>" +
+            "END, " +
+            "soc = CASE id " +
+            "<foreach collection='orders' item='o'>WHEN #{o.id} THEN IFNULL(#{o.soc}, soc) </foreach>" +
+            "END, " +
+            "version = version + 1, " +
+            "update_time = NOW() " +
+            "WHERE id IN " +
+            "<foreach collection='orders' item='o' open='(' separator=',' close=')'>" +
+            "#{o.id}" +
+            "</foreach>" +
+            "</script>")
+    int batchUpdateTelemetry(@Param("orders") List<ChargeOrder> orders);
 }
@@ -0,0 +1,69 @@
+package com.pdsu.charge_palteform.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.pdsu.charge_palteform.entity.ChargeTelemetrySample;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Mapper
+public interface ChargeTelemetrySampleMapper extends BaseMapper<ChargeTelemetrySample> {
+
+    /**
+     * 批量追加原始采样
+     */
+    @Insert("<script>" +
+            "INSERT INTO charge_telemetry_samples " +
+            "(charge_order_id, sample_time, resolution, sample_count, voltage_a, voltage_b, voltage_c, " +
+            "current_a, current_b, current_c, power, soc, total_power) VALUES " +
+            "<foreach collection='samples' item='s' separator=','>" +
+            "(#{s.chargeOrderId}, #{s.sampleTime}, 0, 1, #{s.voltageA}, #{s.voltageB}, #{s.voltageC}, " +
+            "#{s.currentA}, #{s.currentB}, #{s.currentC}, #{s.power}, #{s.soc}, #{s.totalPower})" +
+            "</foreach>" +
+            "</script>")
+    int batchInsert(@Param("samples") List<ChargeTelemetrySample> samples);
+
+    /**
+     * 把时间窗口内的原始采样按订单、分钟合并为均值记录；窗口边界需按分钟对齐
+     */
+    @Insert("INSERT INTO charge_telemetry_samples " +
+            "(charge_order_id, sample_time, resolution, sample_count, voltage_a, voltage_b, voltage_c, " +
+            "current_a, current_b, current_c, power, soc, total_power) " +
+            "SELECT charge_order_id, DATE_FORMAT(sample_time, '%Y-%m-%d %H:%i:00'), 1, COUNT(*), " +
+            "AVG(voltage_a), AVG(voltage_b), AVG(voltage_c), AVG(current_a), AVG(current_b), AVG(current_c), " +
+            "AVG(power), MAX(soc), MAX(total_power) " +
+            "FROM charge_telemetry_samples " +
+            "WHERE resolution = 0 AND sample_time >= #{from} AND sample_time < #{to} " +
+            "GROUP BY charge_order_id, DATE_FORMAT(sample_time, '%Y-%m-%d %H:%i:00')")
+    int downsampleRaw(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Delete("DELETE FROM charge_telemetry_samples " +
+            "WHERE resolution = 0 AND sample_time >= #{from} AND sample_time < #{to}")
+    int deleteRaw(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * 指定时间之前最早的原始采样时间，没有时返回 null
+     */
+    @Select("SELECT MIN(sample_time) FROM charge_telemetry_samples WHERE resolution = 0 AND sample_time < #{before}")
+    LocalDateTime selectOldestRawTime(@Param("before") LocalDateTime before);
+
+    /**
+     * 分批删除过期的分钟均值记录
+     */
+    @Delete("DELETE FROM charge_telemetry_samples " +
+            "WHERE resolution = 1 AND sample_time < #{before} LIMIT #{limit}")
+    int deleteDownsampledBefore(@Param("before") LocalDateTime before, @Param("limit") int limit);
+
+    /**
+     * 订单的充电曲线，原始采样与分钟均值按时间合并
+     */
+    @Select("SELECT sample_time, resolution, sample_count, voltage_a, voltage_b, voltage_c, " +
+            "current_a, current_b, current_c, power, soc, total_power " +
+            "FROM charge_telemetry_samples WHERE charge_order_id = #{orderId} ORDER BY sample_time")
+    List<ChargeTelemetrySample> selectCurve(@Param("orderId") Long orderId);
+}
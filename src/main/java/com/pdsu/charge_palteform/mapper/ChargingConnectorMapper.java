@@ -2,9 +2,11 @@ package com.pdsu.charge_palteform.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.pdsu.charge_palteform.entity.ChargingConnector;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.util.List;
 import java.util.Map;
@@ -31,4 +33,59 @@ public interface ChargingConnectorMapper  extends BaseMapper<ChargingConnector>
             "</script>")
     List<Map<String, Object>> batchCountConnectorsByStatus(@Param("stationIds") List<String> stationIds);
 
+    /**
+     * 批量汇总多个充电站的充电桩：按状态计数，并给出各状态下电费单价的最小、最大值
+     */
+    @Select("<script>" +
+            "SELECT station_id, status, COUNT(*) AS count, " +
+            "MIN(electricity_fee) AS min_fee, MAX(electricity_fee) AS max_fee FROM charging_connectors " +
+            "WHERE station_id IN " +
+            "<foreach collection='stationIds' item='stationId' open='(' separator=',' close=')'>" +
+            "#{stationId}" +
+            "</foreach>" +
+            " GROUP BY station_id, status" +
+            "</script>")
+    List<Map<String, Object>> batchSummarizeConnectors(@Param("stationIds") List<String> stationIds);
+
+    /**
+     * 按 connector_id 批量插入或更新充电桩基础信息
+     * 已存在的充电桩保留 status/status_update_time/current_power，实时状态与功率只由状态同步、平台推送更新
+     */
+    @Insert("<script>" +
+            "INSERT INTO charging_connectors " +
+            "(connector_id, station_id, connector_name, connector_type, rated_power, current_power, " +
+            "electricity_fee, service_fee, status, create_time, update_time) VALUES " +
+            "<foreach collection='connectors' item='c' separator=','>" +
+            "(#{c.connectorId}, #{c.stationId}, #{c.connectorName}, #{c.connectorType}, #{c.ratedPower}, " +
+            "#{c.currentPower}, #{c.electricityFee}, #{c.serviceFee}, #{c.status}, NOW(), NOW())" +
+            "</foreach>" +
+            " AS new ON DUPLICATE KEY UPDATE " +
+            "station_id = new.station_id, connector_name = new.connector_name, " +
+            "connector_type = new.connector_type, rated_power = new.rated_power, " +
+            "electricity_fee = new.electricity_fee, service_fee = new.service_fee, update_time = NOW()" +
+            "</script>")
+    int batchUpsert(@Param("connectors") List<ChargingConnector> connectors);
+
+    /**
+     * 批量写回充电桩实时状态与功率，一条语句更新多个充电桩
+     */
+    @Update("<script>" +
+            "UPDATE charging_connectors SET " +
+            "status = CASE connector_id " +
+            "<foreach collection='connectors' item='c'>WHEN #{c.connectorId} THEN #{c.status} </foreach>" +
+            "END, " +
+            "current_power = CASE connector_id " +
+            "<foreach collection='connectors' item='c'>WHEN #{c.connectorId} THEN #{c.currentPower} </foreach>" +
+            "END, " +
+            "status_update_time = CASE connector_id " +
+            "<foreach collection='connectors' item='c'>WHEN #{c.connectorId} THEN #{c.statusUpdateTime} </foreach>" +
+            "END, " +
+            "update_time = NOW() " +
+            "WHERE connector_id IN " +
+            "<foreach collection='connectors' item='c' open='(' separator=',' close=')'>" +
+            "#{c.connectorId}" +
+            "</foreach>" +
+            "</script>")
+    int batchUpdateRealtimeStatus(@Param("connectors") List<ChargingConnector> connectors);
+
 }
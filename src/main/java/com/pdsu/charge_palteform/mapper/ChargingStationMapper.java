@@ -10,13 +10,29 @@ import java.util.List;
 public interface ChargingStationMapper extends BaseMapper<ChargingStation> {
 
 
+    /**
+     * 查询附近充电站，minLat 等外接矩形参数不为空时先按矩形预过滤
+     */
     List<ChargingStation> findNearbyStations(@Param("latitude") BigDecimal latitude,
                                              @Param("longitude") BigDecimal longitude,
                                              @Param("radius") Integer radius,
+                                             @Param("minLat") BigDecimal minLat,
+                                             @Param("maxLat") BigDecimal maxLat,
+                                             @Param("minLng") BigDecimal minLng,
+                                             @Param("maxLng") BigDecimal maxLng,
                                              @Param("offset") Integer offset,
                                              @Param("size") Integer size);
 
     Long countNearbyStations(@Param("latitude") BigDecimal latitude,
                              @Param("longitude") BigDecimal longitude,
-                             @Param("radius") Integer radius);
+                             @Param("radius") Integer radius,
+                             @Param("minLat") BigDecimal minLat,
+                             @Param("maxLat") BigDecimal maxLat,
+                             @Param("minLng") BigDecimal minLng,
+                             @Param("maxLng") BigDecimal maxLng);
+
+    /**
+     * 按 station_id 批量插入或更新充电站
+     */
+    int batchUpsert(@Param("stations") List<ChargingStation> stations);
 }
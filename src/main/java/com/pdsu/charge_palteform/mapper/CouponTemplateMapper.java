@@ -3,8 +3,16 @@ package com.pdsu.charge_palteform.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.pdsu.charge_palteform.entity.CouponTemplates;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
 
 @Mapper
 public interface CouponTemplateMapper extends BaseMapper<CouponTemplates> {
 
+    /**
+     * 扣减剩余数量，不会减到负数
+     */
+    @Update("UPDATE coupon_templates SET remaining_quantity = GREATEST(remaining_quantity - #{count}, 0) " +
+            "WHERE id = #{templateId}")
+    int decreaseRemaining(@Param("templateId") Long templateId, @Param("count") int count);
 }
@@ -2,8 +2,44 @@ package com.pdsu.charge_palteform.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.pdsu.charge_palteform.entity.UserCoupon;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 @Mapper
 public interface UserCouponMapper extends BaseMapper<UserCoupon> {
+
+    /**
+     * 把一批已过期的未使用优惠券标记为已过期，走 (status, valid_end) 索引
+     *
+     * @return 本批更新的行数，小于 limit 说明已处理完
+     */
+    @Update("UPDATE user_coupons SET status = 3 WHERE status = 1 AND valid_end < #{now} LIMIT #{limit}")
+    int expireBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * 批量写入抢到的优惠券；优惠券码已存在的行被忽略，重复写入同一批不会多发
+     *
+     * @return 实际插入的行数
+     */
+    @Insert("<script>" +
+            "INSERT IGNORE INTO user_coupons " +
+            "(user_id, coupon_template_id, coupon_code, status, receive_time, valid_start, valid_end) VALUES " +
+            "<foreach collection='coupons' item='c' separator=','>" +
+            "(#{c.userId}, #{c.couponTemplateId}, #{c.couponCode}, #{c.status}, #{c.receiveTime}, " +
+            "#{c.validStart}, #{c.validEnd})" +
+            "</foreach>" +
+            "</script>")
+    int batchInsertIgnore(@Param("coupons") List<UserCoupon> coupons);
+
+    /**
+     * 领取过指定模板优惠券的用户
+     */
+    @Select("SELECT DISTINCT user_id FROM user_coupons WHERE coupon_template_id = #{templateId}")
+    List<Long> selectUserIdsByTemplate(@Param("templateId") Long templateId);
 }
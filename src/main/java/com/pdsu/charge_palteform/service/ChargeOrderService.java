@@ -52,6 +52,14 @@ public interface ChargeOrderService {
      */
     ChargeOrderDetail getOrderDetail(Long userId, String orderNo);
 
+    /**
+     * 获取充电曲线（电压、电流、功率、电量百分比）及分时段计量
+     * @param userId 用户ID
+     * @param orderNo 订单号
+     * @return 充电曲线
+     */
+    ChargeCurveResponse getChargeCurve(Long userId, String orderNo);
+
     /**
      * 处理充电状态推送（来自电能平台）
      * @param orderNo 订单号
@@ -0,0 +1,315 @@
+package com.pdsu.charge_palteform.service;
+
+import com.pdsu.charge_palteform.common.LatencyHistogram;
+import com.pdsu.charge_palteform.config.TelemetryConfig;
+import com.pdsu.charge_palteform.entity.ChargeOrder;
+import com.pdsu.charge_palteform.mapper.ChargeOrderMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 充电中订单电量、费用写回缓冲
+ * <p>
+ * 充电过程中平台每次推送、轮询带来的累计电量、费用和电量百分比只写入内存，每个订单只保留最新值，
+ * 由后台线程按固定间隔批量写回 charge_orders；同一订单在一个刷写周期内的多次变化只写一次。
+ * 状态变化、充电结束仍由调用方同步写库，写库时一并带上缓冲中的数据。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChargeTelemetryBuffer {
+
+    private final ChargeOrderMapper chargeOrderMapper;
+    private final TelemetryConfig telemetryConfig;
+
+    /** 订单ID -> 待写回的最新数据，每次合并生成新对象 */
+    private final Map<Long, Snapshot> pending = new ConcurrentHashMap<>();
+
+    private final AtomicLong buffered = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong flushBatches = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicInteger lastBatchSize = new AtomicInteger();
+    private final AtomicInteger maxBatchSize = new AtomicInteger();
+    /** 数据从进入缓冲到写回数据库的延迟 */
+    private final LatencyHistogram flushLag = new LatencyHistogram();
+    /** 单条批量更新语句耗时 */
+    private final LatencyHistogram batchDuration = new LatencyHistogram();
+    private volatile long lastFlushMillis;
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "charge-telemetry-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        long interval = Math.max(200, telemetryConfig.getFlushInterval());
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        // 停机前把未落库的数据写回
+        flushQuietly();
+    }
+
+    public boolean isEnabled() {
+        return telemetryConfig.isWriteBehind();
+    }
+
+    /**
+     * 缓存订单最新的累计电量、费用和电量百分比，累计值只保留较大者，空值不覆盖已有数据
+     */
+    public void buffer(Long orderId, String orderNo, BigDecimal totalPower, BigDecimal electricityFee,
+                       BigDecimal serviceFee, BigDecimal totalFee, BigDecimal soc) {
+        if (orderId == null) {
+            return;
+        }
+        buffered.incrementAndGet();
+        Snapshot update = new Snapshot(orderId, orderNo, totalPower, electricityFee, serviceFee, totalFee, soc,
+                System.nanoTime());
+        pending.merge(orderId, update, Snapshot::merge);
+    }
+
+    /**
+     * 查看订单尚未写回的数据，没有时返回 null
+     */
+    public Snapshot peek(Long orderId) {
+        return orderId == null ? null : pending.get(orderId);
+    }
+
+    /**
+     * 用缓冲中尚未写回的数据覆盖数据库读出的订单
+     *
+     * @return 覆盖所用的数据，没有时返回 null
+     */
+    public Snapshot overlay(ChargeOrder order) {
+        if (order == null) {
+            return null;
+        }
+        Snapshot snapshot = peek(order.getId());
+        if (snapshot == null) {
+            return null;
+        }
+        order.setTotalPower(max(order.getTotalPower(), snapshot.totalPower));
+        order.setElectricityFee(max(order.getElectricityFee(), snapshot.electricityFee));
+        order.setServiceFee(max(order.getServiceFee(), snapshot.serviceFee));
+        order.setTotalFee(max(order.getTotalFee(), snapshot.totalFee));
+        if (snapshot.soc != null) {
+            order.setSoc(snapshot.soc);
+        }
+        return snapshot;
+    }
+
+    /**
+     * 调用方已把该数据同步写库后移除；期间又有新数据合并进来时保留，由后台线程写回
+     */
+    public void remove(Long orderId, Snapshot snapshot) {
+        if (orderId != null && snapshot != null) {
+            pending.remove(orderId, snapshot);
+        }
+    }
+
+    /**
+     * 把缓冲中的数据按批写回数据库
+     *
+     * @return 写回的订单数
+     */
+    public int flush() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        int chunkSize = Math.max(1, telemetryConfig.getFlushChunkSize());
+        int total = 0;
+        List<Snapshot> batch = new ArrayList<>(chunkSize);
+        for (Long orderId : pending.keySet()) {
+            // 先取出再写回，写回期间的新数据重新进入缓冲
+            Snapshot snapshot = pending.remove(orderId);
+            if (snapshot == null) {
+                continue;
+            }
+            batch.add(snapshot);
+            if (batch.size() >= chunkSize) {
+                total += writeBatch(batch);
+                batch = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            total += writeBatch(batch);
+        }
+        lastFlushMillis = System.currentTimeMillis();
+        return total;
+    }
+
+    private int writeBatch(List<Snapshot> batch) {
+        List<ChargeOrder> rows = new ArrayList<>(batch.size());
+        for (Snapshot snapshot : batch) {
+            rows.add(snapshot.toOrder());
+        }
+        long startNanos = System.nanoTime();
+        try {
+            chargeOrderMapper.batchUpdateTelemetry(rows);
+            long endNanos = System.nanoTime();
+            batchDuration.record(endNanos - startNanos);
+            for (Snapshot snapshot : batch) {
+                flushLag.record(endNanos - snapshot.firstBufferedNanos);
+            }
+            flushBatches.incrementAndGet();
+            flushedRows.addAndGet(batch.size());
+            lastBatchSize.set(batch.size());
+            maxBatchSize.accumulateAndGet(batch.size(), Math::max);
+            log.debug("订单电量费用写回{}条", batch.size());
+            return batch.size();
+        } catch (Exception e) {
+            batchDuration.recordError(System.nanoTime() - startNanos);
+            flushFailures.incrementAndGet();
+            log.error("订单电量费用批量写回失败，{}条将在下次重试: {}", batch.size(), e.getMessage());
+            for (Snapshot snapshot : batch) {
+                pending.merge(snapshot.orderId, snapshot, Snapshot::merge);
+            }
+            return 0;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("订单电量费用写回异常", e);
+        }
+    }
+
+    /**
+     * 缓冲运行状态
+     */
+    public BufferStats getStats() {
+        BufferStats stats = new BufferStats();
+        stats.setWriteBehind(telemetryConfig.isWriteBehind());
+        stats.setPendingOrders(pending.size());
+        stats.setBuffered(buffered.get());
+        stats.setFlushedRows(flushedRows.get());
+        stats.setFlushBatches(flushBatches.get());
+        stats.setFlushFailures(flushFailures.get());
+        stats.setLastBatchSize(lastBatchSize.get());
+        stats.setMaxBatchSize(maxBatchSize.get());
+        stats.setFlushLag(flushLag.snapshot());
+        stats.setBatchDuration(batchDuration.snapshot());
+        stats.setLastFlushTime(lastFlushMillis > 0
+                ? LocalDateTime.ofInstant(Instant.ofEpochMilli(lastFlushMillis), ZoneId.systemDefault()) : null);
+        return stats;
+    }
+
+    private static BigDecimal max(BigDecimal current, BigDecimal next) {
+        if (next == null) {
+            return current;
+        }
+        return current == null || next.compareTo(current) > 0 ? next : current;
+    }
+
+    /**
+     * 订单待写回数据，不可变
+     */
+    public static final class Snapshot {
+        private final Long orderId;
+        private final String orderNo;
+        private final BigDecimal totalPower;
+        private final BigDecimal electricityFee;
+        private final BigDecimal serviceFee;
+        private final BigDecimal totalFee;
+        private final BigDecimal soc;
+        /** 首次进入缓冲的时间，用于统计写回延迟 */
+        private final long firstBufferedNanos;
+
+        private Snapshot(Long orderId, String orderNo, BigDecimal totalPower, BigDecimal electricityFee,
+                         BigDecimal serviceFee, BigDecimal totalFee, BigDecimal soc, long firstBufferedNanos) {
+            this.orderId = orderId;
+            this.orderNo = orderNo;
+            this.totalPower = totalPower;
+            this.electricityFee = electricityFee;
+            this.serviceFee = serviceFee;
+            this.totalFee = totalFee;
+            this.soc = soc;
+            this.firstBufferedNanos = firstBufferedNanos;
+        }
+
+        private static Snapshot merge(Snapshot current, Snapshot next) {
+            return new Snapshot(current.orderId,
+                    next.orderNo != null ? next.orderNo : current.orderNo,
+                    max(current.totalPower, next.totalPower),
+                    max(current.electricityFee, next.electricityFee),
+                    max(current.serviceFee, next.serviceFee),
+                    max(current.totalFee, next.totalFee),
+                    next.soc != null ? next.soc : current.soc,
+                    Math.min(current.firstBufferedNanos, next.firstBufferedNanos));
+        }
+
+        private ChargeOrder toOrder() {
+            ChargeOrder order = new ChargeOrder();
+            order.setId(orderId);
+            order.setOrderNo(orderNo);
+            order.setTotalPower(totalPower);
+            order.setElectricityFee(electricityFee);
+            order.setServiceFee(serviceFee);
+            order.setTotalFee(totalFee);
+            order.setSoc(soc);
+            return order;
+        }
+
+        public BigDecimal getTotalPower() {
+            return totalPower;
+        }
+
+        public BigDecimal getElectricityFee() {
+            return electricityFee;
+        }
+
+        public BigDecimal getServiceFee() {
+            return serviceFee;
+        }
+
+        public BigDecimal getTotalFee() {
+            return totalFee;
+        }
+
+        public BigDecimal getSoc() {
+            return soc;
+        }
+    }
+
+    @Data
+    public static class BufferStats {
+        private boolean writeBehind;
+        private int pendingOrders;
+        /** 进入缓冲的更新次数 */
+        private long buffered;
+        private long flushedRows;
+        private long flushBatches;
+        private long flushFailures;
+        private int lastBatchSize;
+        private int maxBatchSize;
+        private LatencyHistogram.Snapshot flushLag;
+        private LatencyHistogram.Snapshot batchDuration;
+        private LocalDateTime lastFlushTime;
+    }
+}
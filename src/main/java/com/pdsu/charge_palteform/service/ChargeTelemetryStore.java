@@ -0,0 +1,527 @@
+package com.pdsu.charge_palteform.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pdsu.charge_palteform.common.LatencyHistogram;
+import com.pdsu.charge_palteform.config.TelemetryConfig;
+import com.pdsu.charge_palteform.entity.ChargeDetail;
+import com.pdsu.charge_palteform.entity.ChargeOrder;
+import com.pdsu.charge_palteform.entity.ChargeTelemetrySample;
+import com.pdsu.charge_palteform.entity.dto.ChargeCurvePoint;
+import com.pdsu.charge_palteform.entity.dto.ChargeCurveResponse;
+import com.pdsu.charge_palteform.entity.dto.ChargeDetailItem;
+import com.pdsu.charge_palteform.entity.platefrom.charge.ChargeStatusData;
+import com.pdsu.charge_palteform.mapper.ChargeDetailMapper;
+import com.pdsu.charge_palteform.mapper.ChargeTelemetrySampleMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 充电过程采样存储
+ * <p>
+ * 平台推送、轮询得到的电压、电流、电量百分比按订单节流后进入内存队列，
+ * 由后台线程按批追加到 charge_telemetry_samples，平台返回的分时段计量批量写入 charge_details，
+ * 不会为每个采样单独访问数据库。超过保留时长的原始采样定期按分钟合并为均值记录，
+ * 充电曲线按订单ID走索引查询，不扫描 charge_orders。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ChargeTelemetryStore {
+
+    private static final String DOWNSAMPLE_LOCK_KEY = "telemetry:downsample:lock";
+
+    /** 只释放自己持有的锁 */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+    /** 单次降采样最多处理的小时窗口数，积压较多时分多次完成 */
+    private static final int MAX_WINDOWS_PER_RUN = 48;
+    private static final int RETENTION_DELETE_LIMIT = 5000;
+
+    private final ChargeTelemetrySampleMapper sampleMapper;
+    private final ChargeDetailMapper chargeDetailMapper;
+    private final TelemetryConfig telemetryConfig;
+    private final StringRedisTemplate redisTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final ConcurrentLinkedQueue<ChargeTelemetrySample> pendingSamples = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    /** 订单ID -> 平台最新返回的分时段计量，写入前只保留最新一份 */
+    private final Map<Long, List<ChargeStatusData.ChargeDetailData>> pendingDetails = new ConcurrentHashMap<>();
+    /** 各订单最近一次采样时间，用于节流 */
+    private final Cache<Long, Long> lastSampleMillis = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(Duration.ofHours(1))
+            .build();
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong insertedRows = new AtomicLong();
+    private final AtomicLong detailRows = new AtomicLong();
+    private final AtomicLong writeFailures = new AtomicLong();
+    private final AtomicLong downsampledRows = new AtomicLong();
+    private final AtomicLong purgedRows = new AtomicLong();
+    private final LatencyHistogram batchDuration = new LatencyHistogram();
+    private volatile LocalDateTime lastDownsampleTime;
+
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "charge-telemetry-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        long interval = Math.max(200, telemetryConfig.getFlushInterval());
+        writer.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdown();
+        // 停机前把未写入的采样落库
+        flushQuietly();
+    }
+
+    /**
+     * 记录一次充电过程数据，同一订单在采样间隔内只保留第一次
+     */
+    public void record(ChargeOrder order, ChargeStatusData statusData) {
+        if (!telemetryConfig.isSamplingEnabled() || order == null || order.getId() == null || statusData == null) {
+            return;
+        }
+        Long orderId = order.getId();
+        if (statusData.getChargeDetails() != null && !statusData.getChargeDetails().isEmpty()) {
+            pendingDetails.put(orderId, statusData.getChargeDetails());
+        }
+        if (!hasElectricalData(statusData)) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long interval = telemetryConfig.getSampleInterval();
+        boolean[] accepted = {false};
+        lastSampleMillis.asMap().compute(orderId, (id, previous) -> {
+            if (previous != null && now - previous < interval) {
+                return previous;
+            }
+            accepted[0] = true;
+            return now;
+        });
+        if (!accepted[0]) {
+            throttled.incrementAndGet();
+            return;
+        }
+        if (pendingCount.incrementAndGet() > telemetryConfig.getMaxPendingSamples()) {
+            pendingCount.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        pendingSamples.offer(toSample(orderId, statusData));
+        recorded.incrementAndGet();
+    }
+
+    /**
+     * 把待写入的采样和分时段计量按批落库
+     *
+     * @return 写入的采样数
+     */
+    public int flush() {
+        int chunkSize = Math.max(1, telemetryConfig.getFlushChunkSize());
+        int total = 0;
+        List<ChargeTelemetrySample> batch = new ArrayList<>(chunkSize);
+        ChargeTelemetrySample sample;
+        while ((sample = pendingSamples.poll()) != null) {
+            pendingCount.decrementAndGet();
+            batch.add(sample);
+            if (batch.size() >= chunkSize) {
+                total += writeSamples(batch);
+                batch = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            total += writeSamples(batch);
+        }
+        flushDetails(chunkSize);
+        return total;
+    }
+
+    private int writeSamples(List<ChargeTelemetrySample> batch) {
+        long startNanos = System.nanoTime();
+        try {
+            sampleMapper.batchInsert(batch);
+            batchDuration.record(System.nanoTime() - startNanos);
+            insertedRows.addAndGet(batch.size());
+            return batch.size();
+        } catch (Exception e) {
+            batchDuration.recordError(System.nanoTime() - startNanos);
+            writeFailures.incrementAndGet();
+            log.error("充电采样批量写入失败，{}条将在下次重试: {}", batch.size(), e.getMessage());
+            for (ChargeTelemetrySample sample : batch) {
+                if (pendingCount.incrementAndGet() > telemetryConfig.getMaxPendingSamples()) {
+                    pendingCount.decrementAndGet();
+                    dropped.incrementAndGet();
+                } else {
+                    pendingSamples.offer(sample);
+                }
+            }
+            return 0;
+        }
+    }
+
+    private void flushDetails(int chunkSize) {
+        if (pendingDetails.isEmpty()) {
+            return;
+        }
+        List<ChargeDetail> rows = new ArrayList<>(chunkSize);
+        Map<Long, List<ChargeStatusData.ChargeDetailData>> taken = new ConcurrentHashMap<>();
+        for (Long orderId : pendingDetails.keySet()) {
+            List<ChargeStatusData.ChargeDetailData> details = pendingDetails.remove(orderId);
+            if (details == null) {
+                continue;
+            }
+            taken.put(orderId, details);
+            for (ChargeStatusData.ChargeDetailData data : details) {
+                if (data.getStartTime() != null) {
+                    rows.add(toChargeDetail(orderId, data));
+                }
+            }
+            if (rows.size() >= chunkSize) {
+                writeDetails(rows, taken);
+                rows = new ArrayList<>(chunkSize);
+                taken = new ConcurrentHashMap<>();
+            }
+        }
+        if (!rows.isEmpty()) {
+            writeDetails(rows, taken);
+        }
+    }
+
+    private void writeDetails(List<ChargeDetail> rows, Map<Long, List<ChargeStatusData.ChargeDetailData>> taken) {
+        try {
+            chargeDetailMapper.batchUpsert(rows);
+            detailRows.addAndGet(rows.size());
+        } catch (Exception e) {
+            writeFailures.incrementAndGet();
+            log.error("充电分时段计量批量写入失败，{}个订单将在下次重试: {}", taken.size(), e.getMessage());
+            // 期间有更新的数据时以新数据为准
+            taken.forEach(pendingDetails::putIfAbsent);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("充电采样写入异常", e);
+        }
+    }
+
+    /**
+     * 原始采样超过保留时长后按分钟合并为均值记录，并清理超过保留天数的均值记录；
+     * 多节点部署时只有抢到锁的节点执行
+     */
+    public void downsample() {
+        String token = UUID.randomUUID().toString();
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(DOWNSAMPLE_LOCK_KEY, token, 30, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            log.debug("其它节点正在执行充电采样降采样");
+            return;
+        }
+        try {
+            LocalDateTime cutoff = LocalDateTime.now()
+                    .minusHours(Math.max(1, telemetryConfig.getRawRetentionHours()))
+                    .truncatedTo(ChronoUnit.HOURS);
+            int windows = 0;
+            long merged = 0;
+            LocalDateTime oldest;
+            while (windows < MAX_WINDOWS_PER_RUN && (oldest = sampleMapper.selectOldestRawTime(cutoff)) != null) {
+                LocalDateTime from = oldest.truncatedTo(ChronoUnit.HOURS);
+                LocalDateTime to = from.plusHours(1).isAfter(cutoff) ? cutoff : from.plusHours(1);
+                // 合并与删除在同一事务中，避免重复执行产生重复的均值记录
+                Integer rows = transactionTemplate.execute(status -> {
+                    sampleMapper.downsampleRaw(from, to);
+                    return sampleMapper.deleteRaw(from, to);
+                });
+                merged += rows != null ? rows : 0;
+                windows++;
+            }
+            downsampledRows.addAndGet(merged);
+
+            long purged = 0;
+            if (telemetryConfig.getDownsampledRetentionDays() > 0) {
+                LocalDateTime expireBefore = LocalDateTime.now().minusDays(telemetryConfig.getDownsampledRetentionDays());
+                int deleted;
+                do {
+                    deleted = sampleMapper.deleteDownsampledBefore(expireBefore, RETENTION_DELETE_LIMIT);
+                    purged += deleted;
+                } while (deleted >= RETENTION_DELETE_LIMIT);
+                purgedRows.addAndGet(purged);
+            }
+            lastDownsampleTime = LocalDateTime.now();
+            if (merged > 0 || purged > 0) {
+                log.info("充电采样降采样完成: 合并原始采样{}条（{}个小时窗口），清理过期记录{}条", merged, windows, purged);
+            }
+        } finally {
+            // 执行超过锁过期时间时锁可能已被其它节点持有，不能直接删除
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(DOWNSAMPLE_LOCK_KEY), token);
+        }
+    }
+
+    /**
+     * 查询订单充电曲线，点数超过上限时按时间均匀合并
+     */
+    public ChargeCurveResponse getCurve(ChargeOrder order) {
+        List<ChargeTelemetrySample> samples = sampleMapper.selectCurve(order.getId());
+
+        ChargeCurveResponse response = new ChargeCurveResponse();
+        response.setOrderNo(order.getOrderNo());
+        response.setStartTime(order.getStartTime());
+        response.setEndTime(order.getEndTime());
+        response.setRawSamples(samples.size());
+        response.setPoints(mergePoints(samples, Math.max(2, telemetryConfig.getMaxCurvePoints())));
+        response.setChargeDetails(getChargeDetails(order.getId()));
+        return response;
+    }
+
+    /**
+     * 查询订单分时段计量
+     */
+    public List<ChargeDetailItem> getChargeDetails(Long orderId) {
+        List<ChargeDetail> details = chargeDetailMapper.selectList(new LambdaQueryWrapper<ChargeDetail>()
+                .eq(ChargeDetail::getChargeOrderId, orderId)
+                .orderByAsc(ChargeDetail::getStartTime));
+        List<ChargeDetailItem> items = new ArrayList<>(details.size());
+        for (ChargeDetail detail : details) {
+            ChargeDetailItem item = new ChargeDetailItem();
+            item.setStartTime(detail.getStartTime());
+            item.setEndTime(detail.getEndTime());
+            item.setElectricityPrice(detail.getElectricityPrice());
+            item.setServicePrice(detail.getServicePrice());
+            item.setPower(detail.getPower());
+            item.setElectricityFee(detail.getElectricityFee());
+            item.setServiceFee(detail.getServiceFee());
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * 按时间桶合并采样：电压、电流、功率按采样数加权平均，电量百分比和累计电量取最大值
+     */
+    static List<ChargeCurvePoint> mergePoints(List<ChargeTelemetrySample> samples, int maxPoints) {
+        List<ChargeCurvePoint> points = new ArrayList<>();
+        if (samples.isEmpty()) {
+            return points;
+        }
+        if (samples.size() <= maxPoints) {
+            for (ChargeTelemetrySample sample : samples) {
+                PointAccumulator single = new PointAccumulator(sample.getSampleTime());
+                single.add(sample);
+                points.add(single.toPoint());
+            }
+            return points;
+        }
+        LocalDateTime first = samples.get(0).getSampleTime();
+        LocalDateTime last = samples.get(samples.size() - 1).getSampleTime();
+        long bucketMillis = Duration.between(first, last).toMillis() / maxPoints + 1;
+
+        PointAccumulator accumulator = null;
+        long bucket = -1;
+        for (ChargeTelemetrySample sample : samples) {
+            long sampleBucket = Duration.between(first, sample.getSampleTime()).toMillis() / bucketMillis;
+            if (accumulator == null || sampleBucket != bucket) {
+                if (accumulator != null) {
+                    points.add(accumulator.toPoint());
+                }
+                accumulator = new PointAccumulator(sample.getSampleTime());
+                bucket = sampleBucket;
+            }
+            accumulator.add(sample);
+        }
+        points.add(accumulator.toPoint());
+        return points;
+    }
+
+    private static boolean hasElectricalData(ChargeStatusData data) {
+        return data.getVoltageA() != null || data.getCurrentA() != null || data.getSoc() != null
+                || data.getTotalPower() != null;
+    }
+
+    private static ChargeTelemetrySample toSample(Long orderId, ChargeStatusData data) {
+        ChargeTelemetrySample sample = new ChargeTelemetrySample();
+        sample.setChargeOrderId(orderId);
+        sample.setSampleTime(LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+        sample.setVoltageA(data.getVoltageA());
+        sample.setVoltageB(data.getVoltageB());
+        sample.setVoltageC(data.getVoltageC());
+        sample.setCurrentA(data.getCurrentA());
+        sample.setCurrentB(data.getCurrentB());
+        sample.setCurrentC(data.getCurrentC());
+        sample.setPower(computePower(data));
+        sample.setSoc(data.getSoc());
+        sample.setTotalPower(data.getTotalPower());
+        return sample;
+    }
+
+    /**
+     * 瞬时功率(kW) = Σ 各相电压 × 电流 / 1000，缺少电压或电流的相不计入
+     */
+    private static BigDecimal computePower(ChargeStatusData data) {
+        BigDecimal watts = BigDecimal.ZERO;
+        boolean any = false;
+        BigDecimal[][] phases = {
+                {data.getVoltageA(), data.getCurrentA()},
+                {data.getVoltageB(), data.getCurrentB()},
+                {data.getVoltageC(), data.getCurrentC()}
+        };
+        for (BigDecimal[] phase : phases) {
+            if (phase[0] != null && phase[1] != null) {
+                watts = watts.add(phase[0].multiply(phase[1]));
+                any = true;
+            }
+        }
+        return any ? watts.movePointLeft(3).setScale(3, RoundingMode.HALF_UP) : null;
+    }
+
+    private static ChargeDetail toChargeDetail(Long orderId, ChargeStatusData.ChargeDetailData data) {
+        ChargeDetail detail = new ChargeDetail();
+        detail.setChargeOrderId(orderId);
+        detail.setStartTime(data.getStartTime());
+        detail.setEndTime(data.getEndTime());
+        detail.setElectricityPrice(data.getElectricityPrice() != null ? data.getElectricityPrice() : BigDecimal.ZERO);
+        detail.setServicePrice(data.getServicePrice() != null ? data.getServicePrice() : BigDecimal.ZERO);
+        detail.setPower(data.getPower());
+        detail.setElectricityFee(data.getElectricityFee());
+        detail.setServiceFee(data.getServiceFee());
+        return detail;
+    }
+
+    /**
+     * 采样存储运行状态
+     */
+    public StoreStats getStats() {
+        StoreStats stats = new StoreStats();
+        stats.setSamplingEnabled(telemetryConfig.isSamplingEnabled());
+        stats.setRecorded(recorded.get());
+        stats.setThrottled(throttled.get());
+        stats.setDropped(dropped.get());
+        stats.setPendingSamples(pendingCount.get());
+        stats.setPendingDetailOrders(pendingDetails.size());
+        stats.setInsertedRows(insertedRows.get());
+        stats.setDetailRows(detailRows.get());
+        stats.setWriteFailures(writeFailures.get());
+        stats.setDownsampledRows(downsampledRows.get());
+        stats.setPurgedRows(purgedRows.get());
+        stats.setBatchDuration(batchDuration.snapshot());
+        stats.setLastDownsampleTime(lastDownsampleTime);
+        return stats;
+    }
+
+    /**
+     * 一个时间桶内的采样累加
+     */
+    private static final class PointAccumulator {
+        private final LocalDateTime time;
+        private int count;
+        private final BigDecimal[] sums = new BigDecimal[7];
+        private final int[] weights = new int[7];
+        private BigDecimal soc;
+        private BigDecimal totalPower;
+
+        private PointAccumulator(LocalDateTime time) {
+            this.time = time;
+        }
+
+        private void add(ChargeTelemetrySample sample) {
+            int weight = sample.getSampleCount() != null ? sample.getSampleCount() : 1;
+            count += weight;
+            BigDecimal[] values = {sample.getVoltageA(), sample.getVoltageB(), sample.getVoltageC(),
+                    sample.getCurrentA(), sample.getCurrentB(), sample.getCurrentC(), sample.getPower()};
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    BigDecimal weighted = values[i].multiply(BigDecimal.valueOf(weight));
+                    sums[i] = sums[i] == null ? weighted : sums[i].add(weighted);
+                    weights[i] += weight;
+                }
+            }
+            soc = max(soc, sample.getSoc());
+            totalPower = max(totalPower, sample.getTotalPower());
+        }
+
+        private BigDecimal average(int index, int scale) {
+            return sums[index] == null ? null
+                    : sums[index].divide(BigDecimal.valueOf(weights[index]), scale, RoundingMode.HALF_UP);
+        }
+
+        private ChargeCurvePoint toPoint() {
+            ChargeCurvePoint point = new ChargeCurvePoint();
+            point.setTime(time);
+            point.setSampleCount(count);
+            point.setVoltageA(average(0, 2));
+            point.setVoltageB(average(1, 2));
+            point.setVoltageC(average(2, 2));
+            point.setCurrentA(average(3, 2));
+            point.setCurrentB(average(4, 2));
+            point.setCurrentC(average(5, 2));
+            point.setPower(average(6, 3));
+            point.setSoc(soc);
+            point.setTotalPower(totalPower);
+            return point;
+        }
+
+        private static BigDecimal max(BigDecimal current, BigDecimal next) {
+            if (next == null) {
+                return current;
+            }
+            return current == null || next.compareTo(current) > 0 ? next : current;
+        }
+    }
+
+    @Data
+    public static class StoreStats {
+        private boolean samplingEnabled;
+        private long recorded;
+        /** 采样间隔内被跳过的次数 */
+        private long throttled;
+        /** 队列已满丢弃的采样数 */
+        private long dropped;
+        private int pendingSamples;
+        private int pendingDetailOrders;
+        private long insertedRows;
+        private long detailRows;
+        private long writeFailures;
+        private long downsampledRows;
+        private long purgedRows;
+        private LatencyHistogram.Snapshot batchDuration;
+        private LocalDateTime lastDownsampleTime;
+    }
+}
@@ -8,7 +8,9 @@ import com.pdsu.charge_palteform.entity.dto.StationListResponse;
 import com.pdsu.charge_palteform.entity.dto.StationQueryRequest;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface ChargingStationService {
     /**
@@ -39,4 +41,14 @@ public interface ChargingStationService {
     ChargingStation getById(String stationId);
 
     ChargingStation getByPrimaryId(Long id);
+
+    /**
+     * 批量查询充电桩，返回 充电桩ID -> 充电桩，不存在的ID不在结果中
+     */
+    Map<String, ChargingConnector> getConnectorsByIds(Collection<String> connectorIds);
+
+    /**
+     * 批量查询充电站，返回 充电站ID -> 充电站，不存在的ID不在结果中
+     */
+    Map<String, ChargingStation> getStationsByIds(Collection<String> stationIds);
 }
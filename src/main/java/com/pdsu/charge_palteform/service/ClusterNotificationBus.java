@@ -0,0 +1,218 @@
+package com.pdsu.charge_palteform.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pdsu.charge_palteform.config.ChargingWebSocketHandler;
+import com.pdsu.charge_palteform.config.NotificationConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 集群实时通知总线
+ * <p>
+ * WebSocket 连接分散在各节点上，通知只发布一次到 Redis 频道，
+ * 每个节点收到后按用户、订单投递给本机持有的连接。
+ * 消息体在发布时序列化一次，各节点直接转发该 JSON。
+ * 收到的消息按订单号（无订单号时按用户）散列到固定的单线程投递通道，
+ * 同一订单的通知保持发布顺序，投递慢也不会阻塞其它频道的消息分发。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ClusterNotificationBus implements MessageListener {
+
+    public static final String NOTIFY_CHANNEL = "energy:ws:notify";
+
+    private final NotificationConfig notificationConfig;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong localFallback = new AtomicLong();
+
+    private ThreadPoolExecutor[] lanes;
+
+    @PostConstruct
+    public void init() {
+        NotificationConfig.Realtime realtime = notificationConfig.getRealtime();
+        if (!realtime.isClusterEnabled()) {
+            return;
+        }
+        int laneCount = Math.max(1, realtime.getDispatchLanes());
+        int capacity = Math.max(1, realtime.getDispatchQueueCapacity());
+        lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            String name = "ws-notify-lane-" + i;
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacity), r -> {
+                Thread thread = new Thread(r, name);
+                thread.setDaemon(true);
+                return thread;
+            }, (task, executor) -> {
+                if (executor.isShutdown()) {
+                    throw new RejectedExecutionException(name + " 已关闭");
+                }
+                try {
+                    // 单线程消费，阻塞入队不会打乱同一通道内的顺序
+                    executor.getQueue().put(task);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RejectedExecutionException("等待投递集群实时通知时被中断", e);
+                }
+            });
+        }
+        listenerContainer.addMessageListener(this, new ChannelTopic(NOTIFY_CHANNEL));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (lanes == null) {
+            return;
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    /**
+     * 发送给用户及订阅该订单的连接，orderNo 可为空
+     */
+    public void send(Long userId, String orderNo, Object message) {
+        Envelope envelope = new Envelope();
+        envelope.setUserId(userId);
+        envelope.setOrderNo(orderNo);
+        publish(envelope, message);
+    }
+
+    /**
+     * 广播给所有在线用户
+     */
+    public void broadcast(Object message) {
+        Envelope envelope = new Envelope();
+        envelope.setBroadcast(true);
+        publish(envelope, message);
+    }
+
+    private void publish(Envelope envelope, Object message) {
+        try {
+            envelope.setPayload(objectMapper.writeValueAsString(message));
+        } catch (Exception e) {
+            log.error("序列化实时通知失败", e);
+            return;
+        }
+
+        if (!notificationConfig.getRealtime().isClusterEnabled()) {
+            deliver(envelope);
+            return;
+        }
+        try {
+            // 本节点也订阅了该频道，由订阅回调统一投递
+            redisTemplate.convertAndSend(NOTIFY_CHANNEL, objectMapper.writeValueAsString(envelope));
+            published.incrementAndGet();
+        } catch (Exception e) {
+            // Redis 不可用时至少投递给本节点上的连接
+            log.warn("发布集群实时通知失败，仅投递本节点: {}", e.getMessage());
+            localFallback.incrementAndGet();
+            deliver(envelope);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            received.incrementAndGet();
+            Envelope envelope = objectMapper.readValue(message.getBody(), Envelope.class);
+            laneOf(envelope).execute(() -> deliverQuietly(envelope));
+        } catch (Exception e) {
+            log.warn("处理集群实时通知失败: {}", e.getMessage());
+        }
+    }
+
+    private ThreadPoolExecutor laneOf(Envelope envelope) {
+        Object key = envelope.getOrderNo() != null ? envelope.getOrderNo() : envelope.getUserId();
+        int hash = key != null ? key.hashCode() : 0;
+        return lanes[Math.floorMod(hash, lanes.length)];
+    }
+
+    private void deliverQuietly(Envelope envelope) {
+        try {
+            deliver(envelope);
+        } catch (Exception e) {
+            log.warn("投递集群实时通知失败: {}", e.getMessage());
+        }
+    }
+
+    private void deliver(Envelope envelope) {
+        if (envelope.isBroadcast()) {
+            ChargingWebSocketHandler.broadcastLocal(envelope.getPayload());
+        } else {
+            ChargingWebSocketHandler.deliverLocal(envelope.getUserId(), envelope.getOrderNo(), envelope.getPayload());
+        }
+    }
+
+    /**
+     * 通知总线统计
+     */
+    public BusStats getStats() {
+        BusStats stats = new BusStats();
+        stats.setClusterEnabled(notificationConfig.getRealtime().isClusterEnabled());
+        stats.setPublished(published.get());
+        stats.setReceived(received.get());
+        stats.setLocalFallback(localFallback.get());
+        int pendingDeliveries = 0;
+        if (lanes != null) {
+            for (ThreadPoolExecutor lane : lanes) {
+                pendingDeliveries += lane.getQueue().size();
+            }
+        }
+        stats.setPendingDeliveries(pendingDeliveries);
+        stats.setLocalOnlineUsers(ChargingWebSocketHandler.getOnlineUserCount());
+        long[] frames = ChargingWebSocketHandler.getFrameCounts();
+        stats.setSentFrames(frames[0]);
+        stats.setDroppedFrames(frames[1]);
+        stats.setFailedFrames(frames[2]);
+        return stats;
+    }
+
+    /**
+     * 频道消息
+     */
+    @Data
+    public static class Envelope {
+        private Long userId;
+        private String orderNo;
+        private boolean broadcast;
+        /** 已序列化的消息 JSON */
+        private String payload;
+    }
+
+    @Data
+    public static class BusStats {
+        private boolean clusterEnabled;
+        private long published;
+        private long received;
+        private long localFallback;
+        /** 本节点投递通道中等待投递的消息数 */
+        private int pendingDeliveries;
+        /** 本节点在线用户数 */
+        private int localOnlineUsers;
+        private long sentFrames;
+        private long droppedFrames;
+        private long failedFrames;
+    }
+}
@@ -0,0 +1,496 @@
+package com.pdsu.charge_palteform.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pdsu.charge_palteform.config.StationSyncConfig;
+import com.pdsu.charge_palteform.entity.ChargingConnector;
+import com.pdsu.charge_palteform.mapper.ChargingConnectorMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 充电桩实时状态内存索引
+ * <p>
+ * 每个充电桩分配一个整数槽位，状态、功率、状态变化时间存放在按块分配的原子数组中，读写都不加锁。
+ * 平台推送和轮询结果先写入索引，状态有变化的槽位标记为脏，由后台线程按批合并写回 charging_connectors；
+ * 同一充电桩在一个刷写周期内的多次变化只写一次。
+ * 推送只到达集群中的某一个节点，写回的同时把这批变化通过 Redis 频道广播给其它节点，
+ * 各节点按状态变化时间取较新者，保证任一节点读到的状态与推送一致。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConnectorStatusIndex implements MessageListener {
+
+    public static final String STATUS_CHANNEL = "energy:connector:status";
+
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int MAX_CHUNKS = 1024;
+    private static final int NO_STATUS = -1;
+
+    private final ChargingConnectorMapper connectorMapper;
+    private final StationSyncConfig stationSyncConfig;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    /** 本节点标识，忽略自己发布的广播 */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /** 充电桩ID -> 槽位 */
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    /** 充电站ID -> 该站所有充电桩槽位 */
+    private final Map<String, int[]> stationSlots = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<Chunk> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    private final AtomicInteger nextSlot = new AtomicInteger();
+
+    private final ConcurrentLinkedQueue<Integer> dirtySlots = new ConcurrentLinkedQueue<>();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong publishedDeltas = new AtomicLong();
+    private final AtomicLong receivedDeltas = new AtomicLong();
+    private volatile boolean loaded;
+    private volatile long lastFlushMillis;
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "connector-status-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("加载充电桩状态索引失败，将在同步时逐步建立: {}", e.getMessage());
+        }
+        listenerContainer.addMessageListener(this, new ChannelTopic(STATUS_CHANNEL));
+        long interval = Math.max(200, stationSyncConfig.getStatusFlushInterval());
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        // 停机前把未落库的状态写回
+        flushQuietly();
+    }
+
+    /**
+     * 从数据库加载所有充电桩的状态快照
+     */
+    public void reload() {
+        List<ChargingConnector> connectors = connectorMapper.selectList(new LambdaQueryWrapper<ChargingConnector>()
+                .select(ChargingConnector::getConnectorId, ChargingConnector::getStationId,
+                        ChargingConnector::getStatus, ChargingConnector::getCurrentPower,
+                        ChargingConnector::getStatusUpdateTime));
+        for (ChargingConnector connector : connectors) {
+            if (connector.getConnectorId() == null) {
+                continue;
+            }
+            int slot = register(connector.getConnectorId(), connector.getStationId());
+            Chunk chunk = chunk(slot);
+            int offset = slot & (CHUNK_SIZE - 1);
+            chunk.status.set(offset, connector.getStatus() != null ? connector.getStatus() : NO_STATUS);
+            chunk.powerWatts.set(offset, toWatts(connector.getCurrentPower()));
+            chunk.statusTime.set(offset, toMillis(connector.getStatusUpdateTime()));
+        }
+        loaded = true;
+        log.info("充电桩状态索引已加载: {}个充电桩，{}个充电站", slots.size(), stationSlots.size());
+    }
+
+    /**
+     * 登记充电桩（已存在时只补充所属充电站），不改变已有状态
+     *
+     * @return 槽位
+     */
+    public int register(String connectorId, String stationId) {
+        int slot = slots.computeIfAbsent(connectorId, id -> {
+            int newSlot = nextSlot.getAndIncrement();
+            Chunk chunk = chunk(newSlot);
+            int offset = newSlot & (CHUNK_SIZE - 1);
+            chunk.connectorIds.set(offset, id);
+            chunk.status.set(offset, NO_STATUS);
+            return newSlot;
+        });
+        if (stationId != null && chunk(slot).stationIds.compareAndSet(slot & (CHUNK_SIZE - 1), null, stationId)) {
+            stationSlots.merge(stationId, new int[]{slot}, (current, added) -> {
+                int[] merged = Arrays.copyOf(current, current.length + 1);
+                merged[current.length] = added[0];
+                return merged;
+            });
+        }
+        return slot;
+    }
+
+    /**
+     * 登记新充电桩并设置初始状态，已登记的充电桩保留现有状态
+     */
+    public void registerIfAbsent(String connectorId, String stationId, Integer status) {
+        int slot = register(connectorId, stationId);
+        if (status != null) {
+            chunk(slot).status.compareAndSet(slot & (CHUNK_SIZE - 1), NO_STATUS, status);
+        }
+    }
+
+    /**
+     * 写入充电桩状态，状态变化时标记待落库
+     *
+     * @return 状态是否发生变化
+     */
+    public boolean updateStatus(String connectorId, int status) {
+        Integer slot = slots.get(connectorId);
+        if (slot == null) {
+            // 未知充电桩（尚未同步基础信息），登记后照常写回，数据库中不存在时更新不会命中任何行
+            slot = register(connectorId, null);
+        }
+        Chunk chunk = chunk(slot);
+        int offset = slot & (CHUNK_SIZE - 1);
+        int previous = chunk.status.getAndSet(offset, status);
+        if (previous == status) {
+            return false;
+        }
+        chunk.statusTime.set(offset, System.currentTimeMillis());
+        markDirty(slot, chunk, offset);
+        return true;
+    }
+
+    /**
+     * 写入充电桩当前功率（kW）
+     */
+    public void updatePower(String connectorId, BigDecimal powerKw) {
+        Integer slot = slots.get(connectorId);
+        if (slot == null || powerKw == null) {
+            return;
+        }
+        Chunk chunk = chunk(slot);
+        int offset = slot & (CHUNK_SIZE - 1);
+        long watts = toWatts(powerKw);
+        // 以 10W 为精度比较，与数据库 decimal(8,2) 一致
+        if (chunk.powerWatts.getAndSet(offset, watts) / 10 != watts / 10) {
+            markDirty(slot, chunk, offset);
+        }
+    }
+
+    /**
+     * 查询充电桩状态，未知时返回 null
+     */
+    public Integer getStatus(String connectorId) {
+        Integer slot = slots.get(connectorId);
+        if (slot == null) {
+            return null;
+        }
+        int status = chunk(slot).status.get(slot & (CHUNK_SIZE - 1));
+        return status == NO_STATUS ? null : status;
+    }
+
+    /**
+     * 用索引中的实时状态、功率覆盖数据库读出的充电桩；
+     * 数据库中的状态比索引更新时（广播丢失等）以数据库为准，并用它校正索引
+     */
+    public ChargingConnector overlay(ChargingConnector connector) {
+        if (connector == null || connector.getConnectorId() == null) {
+            return connector;
+        }
+        Integer slot = slots.get(connector.getConnectorId());
+        if (slot == null) {
+            return connector;
+        }
+        Chunk chunk = chunk(slot);
+        int offset = slot & (CHUNK_SIZE - 1);
+        int status = chunk.status.get(offset);
+        long indexTime = chunk.statusTime.get(offset);
+        long dbTime = toMillis(connector.getStatusUpdateTime());
+        if (connector.getStatus() != null && dbTime > indexTime) {
+            chunk.status.set(offset, connector.getStatus());
+            chunk.statusTime.set(offset, dbTime);
+            chunk.powerWatts.set(offset, toWatts(connector.getCurrentPower()));
+            return connector;
+        }
+        if (status != NO_STATUS) {
+            connector.setStatus(status);
+            connector.setStatusUpdateTime(toLocalDateTime(indexTime));
+        }
+        connector.setCurrentPower(toKw(chunk.powerWatts.get(offset)));
+        return connector;
+    }
+
+    /**
+     * 统计各充电站下各状态充电桩数量
+     *
+     * @return 充电站ID -> (状态 -> 数量)；索引未加载时返回 null，调用方应回退到数据库统计
+     */
+    public Map<String, Map<Integer, Integer>> countByStatus(List<String> stationIds) {
+        if (!loaded) {
+            return null;
+        }
+        Map<String, Map<Integer, Integer>> result = new HashMap<>();
+        for (String stationId : stationIds) {
+            int[] connectorSlots = stationSlots.get(stationId);
+            if (connectorSlots == null) {
+                continue;
+            }
+            Map<Integer, Integer> counts = new HashMap<>();
+            for (int slot : connectorSlots) {
+                int status = chunk(slot).status.get(slot & (CHUNK_SIZE - 1));
+                if (status != NO_STATUS) {
+                    counts.merge(status, 1, Integer::sum);
+                }
+            }
+            result.put(stationId, counts);
+        }
+        return result;
+    }
+
+    /**
+     * 把待落库的充电桩状态按批写回数据库
+     *
+     * @return 写回的充电桩数
+     */
+    public int flush() {
+        int chunkSize = Math.max(1, stationSyncConfig.getStatusUpdateChunkSize());
+        int total = 0;
+        List<Integer> batchSlots = new ArrayList<>(chunkSize);
+        List<ChargingConnector> batch = new ArrayList<>(chunkSize);
+        Integer slot;
+        while ((slot = dirtySlots.poll()) != null) {
+            Chunk chunk = chunk(slot);
+            int offset = slot & (CHUNK_SIZE - 1);
+            // 先清除脏标记再读取，读取之后的新变化会重新入队
+            chunk.dirty.set(offset, 0);
+            int status = chunk.status.get(offset);
+            if (status == NO_STATUS) {
+                continue;
+            }
+            ChargingConnector row = new ChargingConnector();
+            row.setConnectorId(chunk.connectorIds.get(offset));
+            row.setStatus(status);
+            row.setCurrentPower(toKw(chunk.powerWatts.get(offset)));
+            row.setStatusUpdateTime(toLocalDateTime(chunk.statusTime.get(offset)));
+            batch.add(row);
+            batchSlots.add(slot);
+            if (batch.size() >= chunkSize) {
+                total += writeBatch(batch, batchSlots);
+                batch = new ArrayList<>(chunkSize);
+                batchSlots = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            total += writeBatch(batch, batchSlots);
+        }
+        lastFlushMillis = System.currentTimeMillis();
+        return total;
+    }
+
+    private int writeBatch(List<ChargingConnector> batch, List<Integer> batchSlots) {
+        // 广播与写库无关：写库失败时内存状态仍是最新的，下次重试时会再次广播
+        publish(batch);
+        try {
+            connectorMapper.batchUpdateRealtimeStatus(batch);
+            flushedRows.addAndGet(batch.size());
+            log.debug("充电桩状态写回{}条", batch.size());
+            return batch.size();
+        } catch (Exception e) {
+            flushFailures.incrementAndGet();
+            log.error("充电桩状态批量写回失败，{}条将在下次重试: {}", batch.size(), e.getMessage());
+            for (Integer slot : batchSlots) {
+                Chunk chunk = chunk(slot);
+                markDirty(slot, chunk, slot & (CHUNK_SIZE - 1));
+            }
+            return 0;
+        }
+    }
+
+    private void publish(List<ChargingConnector> batch) {
+        try {
+            StatusDeltaMessage message = new StatusDeltaMessage();
+            message.setNodeId(nodeId);
+            List<StatusDelta> deltas = new ArrayList<>(batch.size());
+            for (ChargingConnector row : batch) {
+                StatusDelta delta = new StatusDelta();
+                delta.setConnectorId(row.getConnectorId());
+                delta.setStatus(row.getStatus());
+                delta.setPowerWatts(toWatts(row.getCurrentPower()));
+                delta.setStatusTime(toMillis(row.getStatusUpdateTime()));
+                deltas.add(delta);
+            }
+            message.setDeltas(deltas);
+            redisTemplate.convertAndSend(STATUS_CHANNEL, objectMapper.writeValueAsString(message));
+            publishedDeltas.addAndGet(deltas.size());
+        } catch (Exception e) {
+            // 其它节点在读取时会用数据库中较新的状态校正
+            log.warn("广播充电桩状态变化失败: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            StatusDeltaMessage deltaMessage = objectMapper.readValue(message.getBody(), StatusDeltaMessage.class);
+            if (nodeId.equals(deltaMessage.getNodeId()) || deltaMessage.getDeltas() == null) {
+                return;
+            }
+            for (StatusDelta delta : deltaMessage.getDeltas()) {
+                apply(delta);
+            }
+            receivedDeltas.addAndGet(deltaMessage.getDeltas().size());
+        } catch (Exception e) {
+            log.warn("处理充电桩状态广播失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 应用其它节点的状态变化，不标记待落库（由发起节点写回）；状态以变化时间较新者为准
+     */
+    private void apply(StatusDelta delta) {
+        if (delta.getConnectorId() == null) {
+            return;
+        }
+        int slot = register(delta.getConnectorId(), null);
+        Chunk chunk = chunk(slot);
+        int offset = slot & (CHUNK_SIZE - 1);
+        if (delta.getStatusTime() >= chunk.statusTime.get(offset)) {
+            chunk.statusTime.set(offset, delta.getStatusTime());
+            chunk.status.set(offset, delta.getStatus());
+            chunk.powerWatts.set(offset, delta.getPowerWatts());
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("充电桩状态写回异常", e);
+        }
+    }
+
+    /**
+     * 索引运行状态
+     */
+    public IndexStats getStats() {
+        IndexStats stats = new IndexStats();
+        stats.setLoaded(loaded);
+        stats.setConnectors(slots.size());
+        stats.setStations(stationSlots.size());
+        stats.setPendingFlush(dirtySlots.size());
+        stats.setFlushedRows(flushedRows.get());
+        stats.setFlushFailures(flushFailures.get());
+        stats.setPublishedDeltas(publishedDeltas.get());
+        stats.setReceivedDeltas(receivedDeltas.get());
+        stats.setLastFlushTime(lastFlushMillis > 0 ? toLocalDateTime(lastFlushMillis) : null);
+        return stats;
+    }
+
+    private void markDirty(int slot, Chunk chunk, int offset) {
+        if (chunk.dirty.compareAndSet(offset, 0, 1)) {
+            dirtySlots.offer(slot);
+        }
+    }
+
+    private Chunk chunk(int slot) {
+        int index = slot >>> CHUNK_BITS;
+        if (index >= MAX_CHUNKS) {
+            throw new IllegalStateException("充电桩状态索引容量不足: " + slot);
+        }
+        Chunk chunk = chunks.get(index);
+        if (chunk == null) {
+            chunks.compareAndSet(index, null, new Chunk());
+            chunk = chunks.get(index);
+        }
+        return chunk;
+    }
+
+    private static long toWatts(BigDecimal powerKw) {
+        return powerKw == null ? 0 : powerKw.movePointRight(3).setScale(0, RoundingMode.HALF_UP).longValue();
+    }
+
+    private static BigDecimal toKw(long watts) {
+        return BigDecimal.valueOf(watts, 3).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time == null ? 0 : time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return millis == 0 ? null : LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+
+    /**
+     * 一块连续槽位的状态数据
+     */
+    private static final class Chunk {
+        private final AtomicReferenceArray<String> connectorIds = new AtomicReferenceArray<>(CHUNK_SIZE);
+        private final AtomicReferenceArray<String> stationIds = new AtomicReferenceArray<>(CHUNK_SIZE);
+        private final AtomicIntegerArray status = new AtomicIntegerArray(CHUNK_SIZE);
+        private final AtomicIntegerArray dirty = new AtomicIntegerArray(CHUNK_SIZE);
+        private final AtomicLongArray powerWatts = new AtomicLongArray(CHUNK_SIZE);
+        private final AtomicLongArray statusTime = new AtomicLongArray(CHUNK_SIZE);
+    }
+
+    @Data
+    public static class IndexStats {
+        private boolean loaded;
+        private int connectors;
+        private int stations;
+        private int pendingFlush;
+        private long flushedRows;
+        private long flushFailures;
+        /** 广播给其它节点的状态变化数 */
+        private long publishedDeltas;
+        /** 收到其它节点的状态变化数 */
+        private long receivedDeltas;
+        private LocalDateTime lastFlushTime;
+    }
+
+    /**
+     * 状态变化广播消息
+     */
+    @Data
+    public static class StatusDeltaMessage {
+        private String nodeId;
+        private List<StatusDelta> deltas;
+    }
+
+    @Data
+    public static class StatusDelta {
+        private String connectorId;
+        private int status;
+        private long powerWatts;
+        /** 状态变化时间（毫秒时间戳） */
+        private long statusTime;
+    }
+}
@@ -0,0 +1,131 @@
+package com.pdsu.charge_palteform.service;
+
+import com.pdsu.charge_palteform.config.CouponExpiryConfig;
+import com.pdsu.charge_palteform.mapper.UserCouponMapper;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 优惠券过期处理
+ * <p>
+ * 按固定截止时间分批执行 {@code UPDATE ... LIMIT n}，每批单独提交，不把过期优惠券读入内存，
+ * 活动结束日大量优惠券同时过期时内存占用和单个事务的锁范围都保持不变。
+ * 通过 Redis 锁保证集群中同一时间只有一个节点执行。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CouponExpiryEngine {
+
+    private static final String LOCK_KEY = "coupon:expire:lock";
+
+    /** 只释放自己持有的锁 */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    private final UserCouponMapper userCouponMapper;
+    private final CouponExpiryConfig expiryConfig;
+    private final StringRedisTemplate redisTemplate;
+
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong skippedRuns = new AtomicLong();
+    private final AtomicLong totalExpired = new AtomicLong();
+    private volatile ExpiryResult lastResult;
+
+    /**
+     * 执行一轮过期处理
+     *
+     * @return 本轮结果；其它节点正在执行时返回 null
+     */
+    public ExpiryResult run() {
+        String token = UUID.randomUUID().toString();
+        Boolean locked = redisTemplate.opsForValue()
+                .setIfAbsent(LOCK_KEY, token, expiryConfig.getLockSeconds(), TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            skippedRuns.incrementAndGet();
+            log.info("其它节点正在处理过期优惠券，本节点跳过");
+            return null;
+        }
+
+        ExpiryResult result = new ExpiryResult();
+        // 截止时间在本轮开始时确定，处理期间新到期的优惠券留给下一轮
+        LocalDateTime cutoff = LocalDateTime.now();
+        result.setCutoff(cutoff);
+        result.setStartTime(cutoff);
+        int chunkSize = Math.max(1, expiryConfig.getChunkSize());
+        long startNanos = System.nanoTime();
+        try {
+            int rows;
+            do {
+                rows = userCouponMapper.expireBatch(cutoff, chunkSize);
+                result.setExpiredRows(result.getExpiredRows() + rows);
+                result.setBatches(result.getBatches() + 1);
+                totalExpired.addAndGet(rows);
+                redisTemplate.expire(LOCK_KEY, expiryConfig.getLockSeconds(), TimeUnit.SECONDS);
+                if (rows >= chunkSize && expiryConfig.getPauseMillis() > 0) {
+                    TimeUnit.MILLISECONDS.sleep(expiryConfig.getPauseMillis());
+                }
+            } while (rows >= chunkSize);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("过期优惠券处理被中断，已处理{}张", result.getExpiredRows());
+        } finally {
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(LOCK_KEY), token);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            result.setElapsedMillis(elapsedMillis);
+            result.setRowsPerSecond(elapsedMillis > 0
+                    ? result.getExpiredRows() * 1000.0 / elapsedMillis : result.getExpiredRows());
+            runs.incrementAndGet();
+            lastResult = result;
+        }
+
+        log.info("处理过期优惠券：{}张，{}批，耗时{}ms，{}张/秒", result.getExpiredRows(), result.getBatches(),
+                result.getElapsedMillis(), String.format("%.1f", result.getRowsPerSecond()));
+        return result;
+    }
+
+    /**
+     * 运行统计
+     */
+    public ExpiryStats getStats() {
+        ExpiryStats stats = new ExpiryStats();
+        stats.setRuns(runs.get());
+        stats.setSkippedRuns(skippedRuns.get());
+        stats.setTotalExpired(totalExpired.get());
+        stats.setChunkSize(expiryConfig.getChunkSize());
+        stats.setLastResult(lastResult);
+        return stats;
+    }
+
+    @Data
+    public static class ExpiryResult {
+        private LocalDateTime startTime;
+        /** 有效期早于该时间的未使用优惠券被标记为已过期 */
+        private LocalDateTime cutoff;
+        private long expiredRows;
+        private int batches;
+        private long elapsedMillis;
+        private double rowsPerSecond;
+    }
+
+    @Data
+    public static class ExpiryStats {
+        private long runs;
+        /** 因其它节点正在执行而跳过的次数 */
+        private long skippedRuns;
+        private long totalExpired;
+        private int chunkSize;
+        private ExpiryResult lastResult;
+    }
+}
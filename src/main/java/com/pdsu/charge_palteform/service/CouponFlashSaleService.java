@@ -0,0 +1,546 @@
+package com.pdsu.charge_palteform.service;
+
+import com.pdsu.charge_palteform.common.LatencyHistogram;
+import com.pdsu.charge_palteform.config.CouponFlashSaleConfig;
+import com.pdsu.charge_palteform.entity.CouponTemplates;
+import com.pdsu.charge_palteform.entity.UserCoupon;
+import com.pdsu.charge_palteform.exception.BusinessException;
+import com.pdsu.charge_palteform.mapper.CouponTemplateMapper;
+import com.pdsu.charge_palteform.mapper.UserCouponMapper;
+import com.pdsu.charge_palteform.utils.GenerateUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 优惠券秒杀领取
+ * <p>
+ * 预热后模板的剩余库存和已领取用户集合放在 Redis 中，领取时由 Lua 脚本原子地完成
+ * “校验是否已领、校验库存、扣库存、记录用户、写入待落库队列”，不会超发也不会重复领取，领取请求不访问数据库。
+ * 后台线程把队列中的领取记录按批写入 user_coupons 并扣减模板剩余数量，优惠券码在领取时生成，
+ * 重复写入同一批记录会被唯一索引忽略，写库与出队之间宕机不会多发。
+ * 同一模板的键使用相同的哈希标签，Redis 集群下脚本涉及的键位于同一个槽。
+ * <p>
+ * 秒杀期间 Redis 是库存的唯一依据，相关键不设过期时间：结束秒杀只把库存标记为已结束并拒绝领取，
+ * 待队列全部落库后才删除这些键，之后的领取回到普通方式。
+ * 未预热时走普通方式的领取在 Redis 中登记为进行中，预热先写入“预热中”标记挡住新的普通领取，
+ * 等进行中的普通领取结束后再按数据库初始化库存，两种方式不会同时扣减同一份库存。
+ * 充电奖励、批量发放等系统发放同样经过 {@link #issue}，秒杀期间从 Redis 库存中扣减。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CouponFlashSaleService {
+
+    private static final String KEY_PREFIX = "coupon:flash:{";
+    private static final String ACTIVE_TEMPLATES_KEY = "coupon:flash:templates";
+    private static final String DRAIN_LOCK_KEY = "coupon:flash:drain:lock";
+    private static final long DRAIN_LOCK_SECONDS = 60;
+    /** 普通方式领取的登记过期时间，进程异常退出未注销时由过期兜底 */
+    private static final long FALLBACK_LEASE_SECONDS = 60;
+
+    /** 库存键的特殊取值 */
+    static final String STOCK_PREHEATING = "preheating";
+    private static final String STOCK_CLOSED = "closed";
+
+    static final long NOT_PREHEATED = -1;
+    static final long SOLD_OUT = 0;
+    static final long GRANTED = 1;
+    static final long ALREADY_RECEIVED = -2;
+    static final long PREHEATING = -3;
+    static final long CLOSED = -4;
+
+    /**
+     * KEYS: 库存、已领用户集合、待落库队列、普通领取登记；ARGV: 用户ID、队列记录、登记过期秒数、是否每人限领一张（1/0）。
+     * 未预热时登记一次普通领取，调用方处理完后需调用 {@link #releaseFallback(Long)}
+     */
+    static final DefaultRedisScript<Long> GRAB_SCRIPT = new DefaultRedisScript<>(
+            "local stock = redis.call('GET', KEYS[1]) " +
+                    "if not stock then " +
+                    "  redis.call('INCR', KEYS[4]) " +
+                    "  redis.call('EXPIRE', KEYS[4], tonumber(ARGV[3])) " +
+                    "  return -1 " +
+                    "end " +
+                    "if stock == '" + STOCK_PREHEATING + "' then return -3 end " +
+                    "if stock == '" + STOCK_CLOSED + "' then return -4 end " +
+                    "if ARGV[4] == '1' and redis.call('SISMEMBER', KEYS[2], ARGV[1]) == 1 then return -2 end " +
+                    "if tonumber(stock) <= 0 then return 0 end " +
+                    "redis.call('DECR', KEYS[1]) " +
+                    "redis.call('SADD', KEYS[2], ARGV[1]) " +
+                    "redis.call('RPUSH', KEYS[3], ARGV[2]) " +
+                    "return 1", Long.class);
+
+    /** KEYS: 普通领取登记 */
+    static final DefaultRedisScript<Long> RELEASE_FALLBACK_SCRIPT = new DefaultRedisScript<>(
+            "local n = redis.call('DECR', KEYS[1]) " +
+                    "if n <= 0 then redis.call('DEL', KEYS[1]) end " +
+                    "return n", Long.class);
+
+    /**
+     * KEYS: 库存、待落库队列；仅在没有库存键且队列为空时写入预热中标记。
+     * 返回 1 成功，0 已预热或未结束，-1 仍有未落库的领取记录
+     */
+    static final DefaultRedisScript<Long> BEGIN_PREHEAT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end " +
+                    "if redis.call('LLEN', KEYS[2]) > 0 then return -1 end " +
+                    "redis.call('SET', KEYS[1], '" + STOCK_PREHEATING + "') " +
+                    "return 1", Long.class);
+
+    /** KEYS: 库存；ARGV: 期望的当前值、新值。库存键仍为期望值时才替换 */
+    static final DefaultRedisScript<Long> REPLACE_STOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then redis.call('SET', KEYS[1], ARGV[2]) return 1 end " +
+                    "return 0", Long.class);
+
+    /** KEYS: 库存；预热中时放弃预热（返回 2），已开始领取时标记为已结束（返回 1） */
+    static final DefaultRedisScript<Long> CLOSE_SCRIPT = new DefaultRedisScript<>(
+            "local stock = redis.call('GET', KEYS[1]) " +
+                    "if not stock then return 0 end " +
+                    "if stock == '" + STOCK_PREHEATING + "' then redis.call('DEL', KEYS[1]) return 2 end " +
+                    "redis.call('SET', KEYS[1], '" + STOCK_CLOSED + "') " +
+                    "return 1", Long.class);
+
+    /** KEYS: 库存、已领用户集合、待落库队列；已结束且队列为空时删除全部键 */
+    static final DefaultRedisScript<Long> CLEANUP_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) ~= '" + STOCK_CLOSED + "' then return 0 end " +
+                    "if redis.call('LLEN', KEYS[3]) > 0 then return 0 end " +
+                    "redis.call('DEL', KEYS[1], KEYS[2], KEYS[3]) " +
+                    "return 1", Long.class);
+
+    /** 只释放自己持有的锁 */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final UserCouponMapper userCouponMapper;
+    private final CouponTemplateMapper couponTemplateMapper;
+    private final CouponTemplateCache couponTemplateCache;
+    private final TransactionTemplate transactionTemplate;
+    private final CouponFlashSaleConfig flashSaleConfig;
+
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong granted = new AtomicLong();
+    private final AtomicLong soldOut = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong persisted = new AtomicLong();
+    private final AtomicLong drainFailures = new AtomicLong();
+    /** 单次领取的 Redis 脚本耗时 */
+    private final LatencyHistogram grabLatency = new LatencyHistogram();
+    /** 单批写库（插入 + 扣减剩余数量）耗时 */
+    private final LatencyHistogram batchDuration = new LatencyHistogram();
+
+    private final ScheduledExecutorService drainer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "coupon-flash-drainer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        long interval = Math.max(50, flashSaleConfig.getDrainInterval());
+        drainer.scheduleWithFixedDelay(this::drainQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        drainer.shutdown();
+        // 停机前把已领取的优惠券写入数据库
+        drainQuietly();
+    }
+
+    /**
+     * 秒杀领取
+     *
+     * @return 优惠券码；模板未预热时返回 null，由调用方按普通方式领取，
+     * 处理完后（无论成败）必须调用 {@link #releaseFallback(Long)}
+     */
+    public String grab(Long userId, Long templateId) {
+        if (userId == null || templateId == null) {
+            return null;
+        }
+        // 预热后停用的模板不再发放
+        CouponTemplates template = couponTemplateCache.get(templateId);
+        if (template == null || template.getStatus() == null || template.getStatus() != 1) {
+            throw new BusinessException("优惠券不存在或已停用");
+        }
+        attempts.incrementAndGet();
+        String couponCode = GenerateUtils.generateCouponCode();
+        long result = execute(userId, templateId, couponCode, true);
+        if (result == NOT_PREHEATED) {
+            return null;
+        }
+        if (result == PREHEATING) {
+            rejected.incrementAndGet();
+            throw new BusinessException("活动即将开始，请稍后重试");
+        }
+        if (result == CLOSED) {
+            rejected.incrementAndGet();
+            throw new BusinessException("优惠券活动已结束");
+        }
+        if (result == SOLD_OUT) {
+            soldOut.incrementAndGet();
+            throw new BusinessException("优惠券已抢完");
+        }
+        if (result == ALREADY_RECEIVED) {
+            duplicates.incrementAndGet();
+            throw new BusinessException("您已领取过该优惠券");
+        }
+        granted.incrementAndGet();
+        return couponCode;
+    }
+
+    /**
+     * 系统发放（充电奖励、批量发放），不限每人一张。
+     * 秒杀期间同样扣减 Redis 库存并写入待落库队列，不会绕过 Redis 直接扣减数据库库存造成超发。
+     *
+     * @return 优惠券码；模板未预热时返回 null，由调用方写库发放，
+     * 处理完后（无论成败）必须调用 {@link #releaseFallback(Long)}
+     */
+    public String issue(Long userId, Long templateId) {
+        if (userId == null || templateId == null) {
+            return null;
+        }
+        String couponCode = GenerateUtils.generateCouponCode();
+        long result = execute(userId, templateId, couponCode, false);
+        if (result == NOT_PREHEATED) {
+            return null;
+        }
+        if (result == PREHEATING || result == CLOSED) {
+            rejected.incrementAndGet();
+            throw new BusinessException("优惠券秒杀活动进行中，暂停发放");
+        }
+        if (result == SOLD_OUT) {
+            soldOut.incrementAndGet();
+            throw new BusinessException("优惠券已发完");
+        }
+        granted.incrementAndGet();
+        return couponCode;
+    }
+
+    private long execute(Long userId, Long templateId, String couponCode, boolean oncePerUser) {
+        String entry = userId + "," + couponCode + "," + System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        Long result;
+        try {
+            result = redisTemplate.execute(GRAB_SCRIPT,
+                    Arrays.asList(stockKey(templateId), usersKey(templateId), queueKey(templateId),
+                            fallbackKey(templateId)),
+                    String.valueOf(userId), entry, String.valueOf(FALLBACK_LEASE_SECONDS), oncePerUser ? "1" : "0");
+            grabLatency.record(System.nanoTime() - startNanos);
+        } catch (Exception e) {
+            grabLatency.recordError(System.nanoTime() - startNanos);
+            log.error("秒杀领取优惠券失败: 用户{}, 模板{}", userId, templateId, e);
+            throw new BusinessException("领取人数过多，请稍后重试");
+        }
+        if (result == null) {
+            throw new BusinessException("领取人数过多，请稍后重试");
+        }
+        return result;
+    }
+
+    /**
+     * 普通方式领取处理完毕，注销 {@link #grab} 返回 null 时登记的进行中领取
+     */
+    public void releaseFallback(Long templateId) {
+        if (templateId == null) {
+            return;
+        }
+        try {
+            redisTemplate.execute(RELEASE_FALLBACK_SCRIPT, Collections.singletonList(fallbackKey(templateId)));
+        } catch (Exception e) {
+            // 登记会在过期后自动清除，只是预热需要多等一会
+            log.warn("注销优惠券模板{}的普通领取登记失败: {}", templateId, e.getMessage());
+        }
+    }
+
+    /**
+     * 预热：按数据库的剩余数量和已领取用户初始化 Redis，之后该模板的领取走秒杀方式。
+     * 已预热、或已结束但领取记录尚未全部落库时拒绝预热；结束后待落库完成才能再次预热。
+     */
+    public Map<String, Object> preheat(Long templateId) {
+        CouponTemplates template = couponTemplateMapper.selectById(templateId);
+        if (template == null || template.getStatus() == null || template.getStatus() != 1) {
+            throw new BusinessException("优惠券不存在或已停用");
+        }
+        String stockKey = stockKey(templateId);
+        Long begun = redisTemplate.execute(BEGIN_PREHEAT_SCRIPT,
+                Arrays.asList(stockKey, queueKey(templateId)));
+        if (begun == null || begun == 0) {
+            throw new BusinessException("该优惠券已在秒杀中，或上次秒杀的领取记录尚未落库");
+        }
+        if (begun < 0) {
+            throw new BusinessException("上次秒杀的领取记录尚未落库，请稍后重试");
+        }
+
+        boolean activated = false;
+        try {
+            // 预热中标记已挡住新的普通领取，等待已开始的普通领取写完数据库
+            awaitFallbackDrained(templateId);
+
+            template = couponTemplateMapper.selectById(templateId);
+            if (template == null || template.getStatus() == null || template.getStatus() != 1) {
+                throw new BusinessException("优惠券不存在或已停用");
+            }
+            long stock = Math.max(0, template.getRemainingQuantity());
+
+            List<Long> userIds = userCouponMapper.selectUserIdsByTemplate(templateId);
+            String usersKey = usersKey(templateId);
+            redisTemplate.delete(usersKey);
+            for (int i = 0; i < userIds.size(); i += 1000) {
+                String[] members = userIds.subList(i, Math.min(i + 1000, userIds.size())).stream()
+                        .map(String::valueOf).toArray(String[]::new);
+                redisTemplate.opsForSet().add(usersKey, members);
+            }
+            redisTemplate.opsForSet().add(ACTIVE_TEMPLATES_KEY, String.valueOf(templateId));
+            Long replaced = redisTemplate.execute(REPLACE_STOCK_SCRIPT, Collections.singletonList(stockKey),
+                    STOCK_PREHEATING, String.valueOf(stock));
+            if (replaced == null || replaced == 0) {
+                throw new BusinessException("预热期间秒杀已被结束");
+            }
+            activated = true;
+
+            log.info("优惠券模板{}秒杀预热完成: 库存{}，已领取用户{}", templateId, stock, userIds.size());
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("templateId", templateId);
+            result.put("stock", stock);
+            result.put("receivedUsers", userIds.size());
+            return result;
+        } finally {
+            if (!activated) {
+                // 预热中不会产生领取记录，撤销标记后领取直接回到普通方式
+                redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(stockKey), STOCK_PREHEATING);
+                redisTemplate.opsForSet().remove(ACTIVE_TEMPLATES_KEY, String.valueOf(templateId));
+            }
+        }
+    }
+
+    private void awaitFallbackDrained(Long templateId) {
+        String fallbackKey = fallbackKey(templateId);
+        for (int i = 0; i < 50; i++) {
+            String inFlight = redisTemplate.opsForValue().get(fallbackKey);
+            if (inFlight == null || Long.parseLong(inFlight) <= 0) {
+                return;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        throw new BusinessException("仍有领取请求正在处理，请稍后重试");
+    }
+
+    /**
+     * 结束秒杀：库存标记为已结束，之后的领取直接拒绝；
+     * 已领取的记录全部落库后由落库线程删除 Redis 中的键，领取回到普通方式
+     */
+    public void close(Long templateId) {
+        Long closed = redisTemplate.execute(CLOSE_SCRIPT, Collections.singletonList(stockKey(templateId)));
+        if (closed == null || closed == 0) {
+            throw new BusinessException("该优惠券未在秒杀中");
+        }
+        if (closed == 2) {
+            log.info("优惠券模板{}秒杀预热已取消", templateId);
+            return;
+        }
+        // 确保落库线程处理该模板，落库完成后清理
+        redisTemplate.opsForSet().add(ACTIVE_TEMPLATES_KEY, String.valueOf(templateId));
+        log.info("优惠券模板{}秒杀已结束，待领取记录落库后恢复普通领取", templateId);
+    }
+
+    /**
+     * 把各模板队列中的领取记录写入数据库；多节点部署时同一时间只有一个节点执行
+     *
+     * @return 本次写入的优惠券数
+     */
+    public int drain() {
+        String token = acquireDrainLock();
+        if (token == null) {
+            return 0;
+        }
+        try {
+            Set<String> templateIds = redisTemplate.opsForSet().members(ACTIVE_TEMPLATES_KEY);
+            if (templateIds == null || templateIds.isEmpty()) {
+                return 0;
+            }
+            int total = 0;
+            for (String templateId : templateIds) {
+                try {
+                    total += drainTemplate(Long.valueOf(templateId));
+                } catch (Exception e) {
+                    drainFailures.incrementAndGet();
+                    log.error("优惠券模板{}领取记录落库失败，将在下次重试: {}", templateId, e.getMessage());
+                }
+            }
+            return total;
+        } finally {
+            releaseDrainLock(token);
+        }
+    }
+
+    private int drainTemplate(Long templateId) {
+        String queueKey = queueKey(templateId);
+        int chunkSize = Math.max(1, flashSaleConfig.getDrainChunkSize());
+        int total = 0;
+        while (true) {
+            List<String> entries = redisTemplate.opsForList().range(queueKey, 0, chunkSize - 1);
+            if (entries == null || entries.isEmpty()) {
+                Long cleaned = redisTemplate.execute(CLEANUP_SCRIPT,
+                        Arrays.asList(stockKey(templateId), usersKey(templateId), queueKey));
+                if (cleaned != null && cleaned == 1) {
+                    // 秒杀已结束且记录已全部落库，之后的领取回到普通方式
+                    redisTemplate.opsForSet().remove(ACTIVE_TEMPLATES_KEY, String.valueOf(templateId));
+                    log.info("优惠券模板{}秒杀领取记录已全部落库", templateId);
+                }
+                return total;
+            }
+            CouponTemplates template = couponTemplateCache.get(templateId);
+            if (template == null) {
+                throw new IllegalStateException("优惠券模板不存在");
+            }
+            List<UserCoupon> coupons = new ArrayList<>(entries.size());
+            for (String entry : entries) {
+                UserCoupon coupon = toUserCoupon(template, entry);
+                if (coupon != null) {
+                    coupons.add(coupon);
+                }
+            }
+
+            long startNanos = System.nanoTime();
+            Integer inserted;
+            try {
+                inserted = transactionTemplate.execute(status -> {
+                    int rows = coupons.isEmpty() ? 0 : userCouponMapper.batchInsertIgnore(coupons);
+                    if (rows > 0) {
+                        couponTemplateMapper.decreaseRemaining(templateId, rows);
+                    }
+                    return rows;
+                });
+                batchDuration.record(System.nanoTime() - startNanos);
+            } catch (RuntimeException e) {
+                batchDuration.recordError(System.nanoTime() - startNanos);
+                throw e;
+            }
+            // 写库成功后再出队；出队前宕机时重复写入会被优惠券码唯一索引忽略
+            redisTemplate.opsForList().trim(queueKey, entries.size(), -1);
+            redisTemplate.expire(DRAIN_LOCK_KEY, DRAIN_LOCK_SECONDS, TimeUnit.SECONDS);
+
+            int rows = inserted != null ? inserted : 0;
+            persisted.addAndGet(rows);
+            total += rows;
+            log.debug("优惠券模板{}领取记录落库{}条", templateId, rows);
+            if (entries.size() < chunkSize) {
+                return total;
+            }
+        }
+    }
+
+    private UserCoupon toUserCoupon(CouponTemplates template, String entry) {
+        String[] parts = entry.split(",");
+        if (parts.length != 3) {
+            log.warn("忽略格式错误的领取记录: {}", entry);
+            return null;
+        }
+        LocalDateTime receiveTime = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli(Long.parseLong(parts[2])), ZoneId.systemDefault());
+        UserCoupon coupon = new UserCoupon();
+        coupon.setUserId(Long.valueOf(parts[0]));
+        coupon.setCouponTemplateId(template.getId());
+        coupon.setCouponCode(parts[1]);
+        coupon.setStatus(1); // 未使用
+        coupon.setReceiveTime(receiveTime);
+        if (template.getValidityType() == 1) {
+            coupon.setValidStart(template.getStartDate().atStartOfDay());
+            coupon.setValidEnd(template.getEndDate().atTime(23, 59, 59));
+        } else {
+            coupon.setValidStart(receiveTime);
+            coupon.setValidEnd(receiveTime.plusDays(template.getValidDays()));
+        }
+        return coupon;
+    }
+
+    private void drainQuietly() {
+        try {
+            drain();
+        } catch (Exception e) {
+            log.error("优惠券领取记录落库异常", e);
+        }
+    }
+
+    /**
+     * @return 锁标识，其它节点正在落库时返回 null
+     */
+    private String acquireDrainLock() {
+        String token = UUID.randomUUID().toString();
+        Boolean locked = redisTemplate.opsForValue()
+                .setIfAbsent(DRAIN_LOCK_KEY, token, DRAIN_LOCK_SECONDS, TimeUnit.SECONDS);
+        return Boolean.TRUE.equals(locked) ? token : null;
+    }
+
+    private void releaseDrainLock(String token) {
+        redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(DRAIN_LOCK_KEY), token);
+    }
+
+    /**
+     * 领取统计和各模板的 Redis 库存、待落库数量
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("attempts", attempts.get());
+        stats.put("granted", granted.get());
+        stats.put("soldOut", soldOut.get());
+        stats.put("duplicates", duplicates.get());
+        stats.put("rejected", rejected.get());
+        stats.put("persisted", persisted.get());
+        stats.put("drainFailures", drainFailures.get());
+        stats.put("grabLatency", grabLatency.snapshot());
+        stats.put("batchDuration", batchDuration.snapshot());
+
+        List<Map<String, Object>> templates = new ArrayList<>();
+        Set<String> templateIds = redisTemplate.opsForSet().members(ACTIVE_TEMPLATES_KEY);
+        if (templateIds != null) {
+            for (String templateId : templateIds) {
+                Long id = Long.valueOf(templateId);
+                Map<String, Object> template = new LinkedHashMap<>();
+                template.put("templateId", id);
+                template.put("stock", redisTemplate.opsForValue().get(stockKey(id)));
+                template.put("pending", redisTemplate.opsForList().size(queueKey(id)));
+                templates.add(template);
+            }
+        }
+        stats.put("templates", templates);
+        return stats;
+    }
+
+    static String stockKey(Long templateId) {
+        return KEY_PREFIX + templateId + "}:stock";
+    }
+
+    static String usersKey(Long templateId) {
+        return KEY_PREFIX + templateId + "}:users";
+    }
+
+    static String queueKey(Long templateId) {
+        return KEY_PREFIX + templateId + "}:queue";
+    }
+
+    static String fallbackKey(Long templateId) {
+        return KEY_PREFIX + templateId + "}:fallback";
+    }
+}
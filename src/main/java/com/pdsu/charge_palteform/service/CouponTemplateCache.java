@@ -0,0 +1,155 @@
+package com.pdsu.charge_palteform.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.pdsu.charge_palteform.config.MetadataCacheConfig;
+import com.pdsu.charge_palteform.entity.CouponTemplates;
+import com.pdsu.charge_palteform.mapper.CouponTemplateMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 优惠券模板本地缓存
+ * <p>
+ * 模板数量少且很少修改，每个节点在进程内缓存，批量转换用户优惠券时一次取齐所需模板。
+ * 模板修改后调用 {@link #invalidate}，通过 Redis 频道通知所有节点清理。
+ * 剩余库存随发放不断变化，缓存中的 remainingQuantity 仅供展示，库存校验仍需查询数据库。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CouponTemplateCache implements MessageListener {
+
+    public static final String INVALIDATE_CHANNEL = "energy:coupon_template:invalidate";
+
+    private final MetadataCacheConfig cacheConfig;
+    private final CouponTemplateMapper couponTemplateMapper;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final AtomicLong dbLoads = new AtomicLong();
+
+    private Cache<Long, CouponTemplates> templates;
+
+    @PostConstruct
+    public void init() {
+        templates = Caffeine.newBuilder()
+                .maximumSize(cacheConfig.getLocalMaxSize())
+                .expireAfterWrite(Duration.ofSeconds(cacheConfig.getLocalTtl()))
+                .recordStats()
+                .build();
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 按模板ID查询，不存在时返回 null
+     */
+    public CouponTemplates get(Long templateId) {
+        if (templateId == null) {
+            return null;
+        }
+        if (!cacheConfig.isEnabled()) {
+            dbLoads.incrementAndGet();
+            return couponTemplateMapper.selectById(templateId);
+        }
+        return copyOf(templates.get(templateId, id -> {
+            dbLoads.incrementAndGet();
+            return couponTemplateMapper.selectById(id);
+        }));
+    }
+
+    /**
+     * 批量查询模板，未缓存的模板用一次查询补齐；不存在的ID不出现在结果中
+     */
+    public Map<Long, CouponTemplates> getAll(Collection<Long> templateIds) {
+        Set<Long> ids = templateIds.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return new HashMap<>();
+        }
+        if (!cacheConfig.isEnabled()) {
+            return loadFromDb(ids);
+        }
+        Map<Long, CouponTemplates> cached = templates.getAll(ids, this::loadFromDb);
+        Map<Long, CouponTemplates> result = new HashMap<>(cached.size() * 2);
+        cached.forEach((id, template) -> result.put(id, copyOf(template)));
+        return result;
+    }
+
+    /**
+     * 模板修改后调用：清理本节点缓存并通知其它节点
+     */
+    public void invalidate(Collection<Long> templateIds) {
+        if (templateIds == null || templateIds.isEmpty()) {
+            templates.invalidateAll();
+        } else {
+            templates.invalidateAll(templateIds);
+        }
+        try {
+            redisTemplate.convertAndSend(INVALIDATE_CHANNEL,
+                    objectMapper.writeValueAsString(templateIds == null ? Collections.emptyList() : templateIds));
+        } catch (Exception e) {
+            // 其他节点的本地缓存会在过期后自然刷新
+            log.warn("发布优惠券模板缓存失效消息失败: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Long[] ids = objectMapper.readValue(message.getBody(), Long[].class);
+            if (ids.length == 0) {
+                templates.invalidateAll();
+            } else {
+                templates.invalidateAll(Arrays.asList(ids));
+            }
+        } catch (Exception e) {
+            log.warn("处理优惠券模板缓存失效消息失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Object> getStats() {
+        CacheStats cacheStats = templates.stats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", cacheConfig.isEnabled());
+        stats.put("size", templates.estimatedSize());
+        stats.put("hitCount", cacheStats.hitCount());
+        stats.put("missCount", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        stats.put("dbLoads", dbLoads.get());
+        return stats;
+    }
+
+    private Map<Long, CouponTemplates> loadFromDb(Set<? extends Long> ids) {
+        dbLoads.incrementAndGet();
+        return couponTemplateMapper.selectBatchIds(ids).stream()
+                .collect(Collectors.toMap(CouponTemplates::getId, t -> t, (a, b) -> a));
+    }
+
+    private CouponTemplates copyOf(CouponTemplates source) {
+        if (source == null) {
+            return null;
+        }
+        CouponTemplates copy = new CouponTemplates();
+        BeanUtils.copyProperties(source, copy);
+        return copy;
+    }
+}
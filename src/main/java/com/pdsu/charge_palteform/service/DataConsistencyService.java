@@ -14,6 +14,7 @@ import org.springframework.scheduling.annotation.Scheduled;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 
 @Slf4j
 @Service
@@ -147,8 +148,13 @@ public class DataConsistencyService {
                 log.info("修复缺失结束时间的订单: orderNo={}", order.getOrderNo());
 
                 // 设置结束时间为最后更新时间
-                order.setEndTime(order.getUpdateTime());
-                chargeOrderMapper.updateById(order);
+                orderStateManagerService.updateWithVersion(order, current -> {
+                    if (current.getEndTime() != null) {
+                        return false;
+                    }
+                    current.setEndTime(current.getUpdateTime());
+                    return true;
+                });
 
             } catch (Exception e) {
                 log.error("修复订单{}结束时间失败", order.getOrderNo(), e);
@@ -163,11 +169,21 @@ public class DataConsistencyService {
         log.warn("发现孤儿订单，平台查询不到: orderNo={}", order.getOrderNo());
 
         try {
-            // 将订单标记为异常
-            order.setStatus(ChargeOrderStatusEnum.FAILED.getCode());
-            order.setStopReason(1); // 平台停止
-            order.setEndTime(LocalDateTime.now());
-            chargeOrderMapper.updateById(order);
+            // 将订单标记为异常；期间订单已被其他来源结束时不再覆盖
+            Integer previousStatus = order.getStatus();
+            ChargeOrder updated = orderStateManagerService.updateWithVersion(order, current -> {
+                if (!Objects.equals(previousStatus, current.getStatus())) {
+                    return false;
+                }
+                current.setStatus(ChargeOrderStatusEnum.FAILED.getCode());
+                current.setStopReason(1); // 平台停止
+                current.setEndTime(LocalDateTime.now());
+                return true;
+            });
+            if (updated == null) {
+                log.info("孤儿订单{}状态已变化，跳过标记", order.getOrderNo());
+                return;
+            }
 
             // 通知用户
             notificationService.sendChargeFaultNotification(
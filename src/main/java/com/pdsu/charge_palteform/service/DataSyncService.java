@@ -2,10 +2,15 @@ package com.pdsu.charge_palteform.service;
 
 public interface DataSyncService {
     /**
-     * 同步充电站基础信息
+     * 增量同步充电站基础信息（只拉取上次同步后有变化的充电站，无同步记录时全量拉取）
      */
     void syncStationInfo();
 
+    /**
+     * 全量同步充电站基础信息
+     */
+    void syncAllStationInfo();
+
     /**
      * 同步充电桩状态信息
      */
@@ -0,0 +1,51 @@
+package com.pdsu.charge_palteform.service;
+
+import com.pdsu.charge_palteform.entity.platefrom.charge.ChargePolicyInfo;
+import com.pdsu.charge_palteform.entity.platefrom.charge.ChargeStatusData;
+import com.pdsu.charge_palteform.entity.platefrom.station.StationInfo;
+import com.pdsu.charge_palteform.entity.platefrom.station.StationStatusInfo;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 电能平台异步接口
+ * 基于非阻塞HTTP客户端，适合批量并发查询；失败时 future 以 BusinessException 结束
+ */
+public interface EnergyPlatformAsyncService {
+
+    /**
+     * 查询充电站信息
+     */
+    CompletableFuture<List<StationInfo>> queryStationsInfo(String lastQueryTime, Integer pageNo, Integer pageSize);
+
+    /**
+     * 查询充电站状态
+     */
+    CompletableFuture<List<StationStatusInfo>> queryStationStatus(List<String> stationIds);
+
+    /**
+     * 请求设备认证
+     */
+    CompletableFuture<Boolean> authenticateConnector(String connectorId);
+
+    /**
+     * 查询充电业务策略
+     */
+    CompletableFuture<ChargePolicyInfo> getChargePolicy(String connectorId);
+
+    /**
+     * 启动充电，返回平台订单号
+     */
+    CompletableFuture<String> startCharge(String orderNo, String connectorId, String qrCode);
+
+    /**
+     * 停止充电
+     */
+    CompletableFuture<Boolean> stopCharge(String platformOrderNo, String connectorId);
+
+    /**
+     * 查询充电状态
+     */
+    CompletableFuture<ChargeStatusData> queryChargeStatus(String platformOrderNo);
+}
@@ -0,0 +1,249 @@
+package com.pdsu.charge_palteform.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pdsu.charge_palteform.common.InstrumentedExecutor;
+import com.pdsu.charge_palteform.config.FollowUpConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 订单跟进延时任务调度
+ * <p>
+ * 启动、停止充电后需要延迟几秒再向平台查询状态。任务按到期时间存放在 Redis 有序集合中，
+ * 单个扫描线程取出到期任务交给 followUpExecutor 执行，等待期间不占用任何线程，重启后任务不丢失。
+ * 取出的任务先移入处理中集合并带租约，节点宕机未完成时租约到期会重新投递。
+ * 处理器返回未完成或抛出异常时按指数退避重试。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FollowUpScheduler {
+
+    public static final String DUE_KEY = "order:followup:due";
+    public static final String PROCESSING_KEY = "order:followup:processing";
+
+    /** 取出到期任务并移入处理中集合 */
+    private static final DefaultRedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local items = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2])) " +
+                    "for _, item in ipairs(items) do " +
+                    "  redis.call('ZREM', KEYS[1], item) " +
+                    "  redis.call('ZADD', KEYS[2], tonumber(ARGV[3]), item) " +
+                    "end " +
+                    "return items", List.class);
+
+    /** 租约到期的处理中任务放回待执行集合 */
+    private static final DefaultRedisScript<Long> RECOVER_SCRIPT = new DefaultRedisScript<>(
+            "local items = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', ARGV[1], 'LIMIT', 0, tonumber(ARGV[2])) " +
+                    "for _, item in ipairs(items) do " +
+                    "  redis.call('ZREM', KEYS[2], item) " +
+                    "  redis.call('ZADD', KEYS[1], tonumber(ARGV[1]), item) " +
+                    "end " +
+                    "return #items", Long.class);
+
+    /**
+     * 跟进任务处理器
+     */
+    public interface Handler {
+        /**
+         * @return true 表示任务完成；false 表示需要稍后重试
+         */
+        boolean handle(Task task) throws Exception;
+    }
+
+    private final FollowUpConfig followUpConfig;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final InstrumentedExecutor followUpExecutor;
+
+    private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+
+    private final AtomicLong scheduled = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong abandoned = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong localFallback = new AtomicLong();
+
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "order-followup-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        long interval = Math.max(50, followUpConfig.getPollInterval());
+        poller.scheduleWithFixedDelay(this::pollQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdown();
+    }
+
+    /**
+     * 注册某类任务的处理器
+     */
+    public void registerHandler(String type, Handler handler) {
+        handlers.put(type, handler);
+    }
+
+    /**
+     * 延迟执行跟进任务
+     */
+    public void schedule(String type, String orderNo, String platformOrderNo, long delayMillis) {
+        Task task = new Task();
+        task.setId(UUID.randomUUID().toString());
+        task.setType(type);
+        task.setOrderNo(orderNo);
+        task.setPlatformOrderNo(platformOrderNo);
+        task.setAttempt(1);
+        scheduled.incrementAndGet();
+        enqueue(task, delayMillis);
+    }
+
+    private void enqueue(Task task, long delayMillis) {
+        try {
+            redisTemplate.opsForZSet().add(DUE_KEY, objectMapper.writeValueAsString(task),
+                    System.currentTimeMillis() + delayMillis);
+        } catch (Exception e) {
+            // Redis 不可用时在本节点内存中延迟执行，重启会丢失，由定时同步兜底
+            log.warn("跟进任务写入Redis失败，改为本地延迟执行: orderNo={}, {}", task.getOrderNo(), e.getMessage());
+            localFallback.incrementAndGet();
+            poller.schedule(() -> followUpExecutor.execute(() -> run(task, null)), delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (Exception e) {
+            log.warn("扫描跟进任务失败: {}", e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void poll() {
+        long now = System.currentTimeMillis();
+        int batchSize = Math.max(1, followUpConfig.getBatchSize());
+
+        Long recoveredCount = redisTemplate.execute(RECOVER_SCRIPT, List.of(DUE_KEY, PROCESSING_KEY),
+                String.valueOf(now), String.valueOf(batchSize));
+        if (recoveredCount != null && recoveredCount > 0) {
+            recovered.addAndGet(recoveredCount);
+            log.warn("{}个跟进任务处理超时，已重新投递", recoveredCount);
+        }
+
+        List<String> items = redisTemplate.execute(CLAIM_SCRIPT, List.of(DUE_KEY, PROCESSING_KEY),
+                String.valueOf(now), String.valueOf(batchSize), String.valueOf(now + followUpConfig.getLeaseMillis()));
+        if (items == null) {
+            return;
+        }
+        for (String item : items) {
+            Task task;
+            try {
+                task = objectMapper.readValue(item, Task.class);
+            } catch (Exception e) {
+                log.error("跟进任务格式错误，已丢弃: {}", item);
+                redisTemplate.opsForZSet().remove(PROCESSING_KEY, item);
+                continue;
+            }
+            followUpExecutor.execute(() -> run(task, item));
+        }
+    }
+
+    /**
+     * 执行任务；claimed 为处理中集合中的原始成员，本地兜底执行时为 null
+     */
+    private void run(Task task, String claimed) {
+        Handler handler = handlers.get(task.getType());
+        boolean done;
+        if (handler == null) {
+            log.error("未注册的跟进任务类型: {}", task.getType());
+            done = true;
+        } else {
+            try {
+                done = handler.handle(task);
+            } catch (Exception e) {
+                log.warn("跟进任务执行失败: type={}, orderNo={}, 第{}次, {}",
+                        task.getType(), task.getOrderNo(), task.getAttempt(), e.getMessage());
+                done = false;
+            }
+        }
+
+        if (claimed != null) {
+            try {
+                redisTemplate.opsForZSet().remove(PROCESSING_KEY, claimed);
+            } catch (Exception e) {
+                log.warn("移除处理中的跟进任务失败: {}", e.getMessage());
+            }
+        }
+
+        if (done) {
+            completed.incrementAndGet();
+        } else if (task.getAttempt() >= followUpConfig.getMaxAttempts()) {
+            abandoned.incrementAndGet();
+            log.warn("跟进任务重试{}次仍未完成，交由定时同步处理: type={}, orderNo={}",
+                    task.getAttempt(), task.getType(), task.getOrderNo());
+        } else {
+            long delay = Math.min(followUpConfig.getMaxBackoff(),
+                    followUpConfig.getBackoffBase() << Math.min(task.getAttempt() - 1, 20));
+            task.setAttempt(task.getAttempt() + 1);
+            retried.incrementAndGet();
+            enqueue(task, delay);
+        }
+    }
+
+    /**
+     * 调度统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("scheduled", scheduled.get());
+        stats.put("completed", completed.get());
+        stats.put("retried", retried.get());
+        stats.put("abandoned", abandoned.get());
+        stats.put("recovered", recovered.get());
+        stats.put("localFallback", localFallback.get());
+        try {
+            stats.put("pending", redisTemplate.opsForZSet().zCard(DUE_KEY));
+            stats.put("processing", redisTemplate.opsForZSet().zCard(PROCESSING_KEY));
+        } catch (Exception e) {
+            stats.put("pending", null);
+            stats.put("processing", null);
+        }
+        stats.put("handlers", new ArrayList<>(handlers.keySet()));
+        return stats;
+    }
+
+    /**
+     * 跟进任务
+     */
+    @Data
+    public static class Task {
+        /** 唯一标识，保证内容相同的任务在有序集合中也是不同成员 */
+        private String id;
+        private String type;
+        private String orderNo;
+        private String platformOrderNo;
+        /** 当前为第几次执行 */
+        private int attempt;
+    }
+}
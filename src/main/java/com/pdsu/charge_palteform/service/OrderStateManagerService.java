@@ -1,6 +1,7 @@
 package com.pdsu.charge_palteform.service;
 
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.pdsu.charge_palteform.entity.ChargeOrder;
 import com.pdsu.charge_palteform.entity.platefrom.charge.ChargeStatusData;
@@ -10,14 +11,13 @@ import com.pdsu.charge_palteform.mapper.ChargeOrderMapper;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.concurrent.TimeUnit;
+import java.util.Objects;
+import java.util.function.Predicate;
 
 @Slf4j
 @Service
@@ -25,67 +25,84 @@ import java.util.concurrent.TimeUnit;
 public class OrderStateManagerService {
 
     private final ChargeOrderMapper chargeOrderMapper;
-    private final StringRedisTemplate redisTemplate;
     private final NotificationService notificationService;
+    private final ProgressNotificationCoalescer progressNotificationCoalescer;
+    private final ChargeTelemetryBuffer telemetryBuffer;
+    private final ChargeTelemetryStore telemetryStore;
+    private final OrderStatisticsService orderStatisticsService;
 
-    private static final String ORDER_LOCK_PREFIX = "order:lock:";
-    private static final int LOCK_EXPIRE_SECONDS = 30;
+    /** 版本冲突时的最大重试次数 */
+    private static final int MAX_CAS_ATTEMPTS = 5;
 
     /**
-     * 安全更新订单状态（带分布式锁）
+     * 安全更新订单状态
+     * <p>
+     * 不加锁：读取订单当前值和版本号，按版本号条件更新（compare-and-set），
+     * 期间被其他节点或来源修改时重新读取后再试，不会丢弃更新。
+     * 平台的累计电量、费用只增不减，充电状态和订单状态只前进不回退，乱序到达的旧数据会被忽略。
+     * 充电中只有电量、费用变化时写入 {@link ChargeTelemetryBuffer}，由其批量写回；状态变化同步写库。
      */
-    @Transactional
     public boolean updateOrderStatusSafely(String orderNo, ChargeStatusData statusData, String source) {
-        String lockKey = ORDER_LOCK_PREFIX + orderNo;
-
         try {
-            // 获取分布式锁
-            Boolean lockResult = redisTemplate.opsForValue()
-                    .setIfAbsent(lockKey, source, LOCK_EXPIRE_SECONDS, TimeUnit.SECONDS);
-
-            if (!lockResult) {
-                log.debug("获取订单{}锁失败，跳过本次更新，来源: {}", orderNo, source);
-                return false;
-            }
-
-            log.debug("获取订单{}锁成功，开始更新状态，来源: {}", orderNo, source);
-
-            // 查询当前订单状态
-            ChargeOrder currentOrder = chargeOrderMapper.selectOne(
-                    new LambdaUpdateWrapper<ChargeOrder>()
-                            .eq(ChargeOrder::getOrderNo, orderNo)
-            );
+            for (int attempt = 1; attempt <= MAX_CAS_ATTEMPTS; attempt++) {
+                // 查询当前订单状态
+                ChargeOrder currentOrder = chargeOrderMapper.selectOne(
+                        new LambdaQueryWrapper<ChargeOrder>()
+                                .eq(ChargeOrder::getOrderNo, orderNo)
+                );
+
+                if (currentOrder == null) {
+                    log.warn("订单{}不存在", orderNo);
+                    return false;
+                }
+                if (attempt == 1) {
+                    telemetryStore.record(currentOrder, statusData);
+                }
 
-            if (currentOrder == null) {
-                log.warn("订单{}不存在", orderNo);
-                return false;
-            }
+                // 以尚未写回的最新数据为比较基准
+                ChargeTelemetryBuffer.Snapshot buffered = telemetryBuffer.overlay(currentOrder);
 
-            // 构建更新对象
-            ChargeOrderUpdate updateData = buildUpdateData(currentOrder, statusData);
+                // 构建更新对象
+                ChargeOrderUpdate updateData = buildUpdateData(currentOrder, statusData);
 
-            if (!updateData.hasChanges()) {
-                log.debug("订单{}无状态变化，跳过更新", orderNo);
-                return false;
-            }
+                if (!updateData.hasChanges()) {
+                    log.debug("订单{}无状态变化，跳过更新", orderNo);
+                    return false;
+                }
 
-            // 执行数据库更新
-            boolean updateResult = executeOrderUpdate(currentOrder.getId(), updateData);
+                if (telemetryBuffer.isEnabled() && updateData.isTelemetryOnly() &&
+                        ChargeOrderStatusEnum.CHARGING.getCode().equals(currentOrder.getStatus())) {
+                    telemetryBuffer.buffer(currentOrder.getId(), currentOrder.getOrderNo(),
+                            updateData.getTotalPower(), updateData.getElectricityFee(),
+                            updateData.getServiceFee(), updateData.getTotalFee(), updateData.getSoc());
+                    sendRealtimeNotifications(currentOrder, updateData, statusData);
+                    log.debug("订单{}电量费用已缓冲，来源: {}", orderNo, source);
+                    return true;
+                }
 
-            if (updateResult) {
-                // 发送实时通知
-                sendRealtimeNotifications(currentOrder, updateData, statusData);
-                log.info("订单{}状态更新成功，来源: {}", orderNo, source);
+                // 同步写库时带上缓冲中尚未写回的数据
+                applyBuffered(updateData, buffered);
+
+                // 按版本号条件更新，失败说明订单已被修改
+                if (executeOrderUpdate(currentOrder, updateData)) {
+                    telemetryBuffer.remove(currentOrder.getId(), buffered);
+                    if (updateData.isOrderStatusChanged()) {
+                        orderStatisticsService.onStatusChange(currentOrder, currentOrder.getStatus(), updateData.getStatus());
+                    }
+                    // 发送实时通知
+                    sendRealtimeNotifications(currentOrder, updateData, statusData);
+                    log.info("订单{}状态更新成功，来源: {}", orderNo, source);
+                    return true;
+                }
+                log.debug("订单{}版本冲突，重新读取后重试，来源: {}，第{}次", orderNo, source, attempt);
             }
 
-            return updateResult;
+            log.warn("订单{}连续{}次版本冲突，放弃本次更新，来源: {}", orderNo, MAX_CAS_ATTEMPTS, source);
+            return false;
 
         } catch (Exception e) {
             log.error("更新订单{}状态异常，来源: {}", orderNo, source, e);
             return false;
-        } finally {
-            // 释放锁
-            redisTemplate.delete(lockKey);
         }
     }
 
@@ -95,9 +112,10 @@ public class OrderStateManagerService {
     private ChargeOrderUpdate buildUpdateData(ChargeOrder currentOrder, ChargeStatusData statusData) {
         ChargeOrderUpdate updateData = new ChargeOrderUpdate();
 
-        // 检查平台充电状态变化
+        // 检查平台充电状态变化，只接受向前推进的状态
         if (statusData.getChargeStatus() != null &&
-                !statusData.getChargeStatus().equals(currentOrder.getChargeStatus())) {
+                !statusData.getChargeStatus().equals(currentOrder.getChargeStatus()) &&
+                isForward(currentOrder.getChargeStatus(), statusData.getChargeStatus())) {
 
             updateData.setChargeStatus(statusData.getChargeStatus());
             updateData.setChargeStatusChanged(true);
@@ -106,34 +124,34 @@ public class OrderStateManagerService {
             PlatformChargeStatusEnum platformStatus = PlatformChargeStatusEnum.getByCode(statusData.getChargeStatus());
             if (platformStatus != null) {
                 ChargeOrderStatusEnum newOrderStatus = platformStatus.mapToOrderStatus();
-                if (newOrderStatus != null && !newOrderStatus.getCode().equals(currentOrder.getStatus())) {
+                if (newOrderStatus != null && isOrderStatusForward(currentOrder.getStatus(), newOrderStatus.getCode())) {
                     updateData.setStatus(newOrderStatus.getCode());
                     updateData.setOrderStatusChanged(true);
                 }
             }
         }
 
-        // 检查费用变化
+        // 检查费用变化：累计值只增不减，小于当前值的是乱序到达的旧数据
         if (statusData.getTotalPower() != null &&
-                statusData.getTotalPower().compareTo(currentOrder.getTotalPower() != null ? currentOrder.getTotalPower() : BigDecimal.ZERO) != 0) {
+                statusData.getTotalPower().compareTo(currentOrder.getTotalPower() != null ? currentOrder.getTotalPower() : BigDecimal.ZERO) > 0) {
             updateData.setTotalPower(statusData.getTotalPower());
             updateData.setFeeChanged(true);
         }
 
         if (statusData.getElectricityFee() != null &&
-                statusData.getElectricityFee().compareTo(currentOrder.getElectricityFee() != null ? currentOrder.getElectricityFee() : BigDecimal.ZERO) != 0) {
+                statusData.getElectricityFee().compareTo(currentOrder.getElectricityFee() != null ? currentOrder.getElectricityFee() : BigDecimal.ZERO) > 0) {
             updateData.setElectricityFee(statusData.getElectricityFee());
             updateData.setFeeChanged(true);
         }
 
         if (statusData.getServiceFee() != null &&
-                statusData.getServiceFee().compareTo(currentOrder.getServiceFee() != null ? currentOrder.getServiceFee() : BigDecimal.ZERO) != 0) {
+                statusData.getServiceFee().compareTo(currentOrder.getServiceFee() != null ? currentOrder.getServiceFee() : BigDecimal.ZERO) > 0) {
             updateData.setServiceFee(statusData.getServiceFee());
             updateData.setFeeChanged(true);
         }
 
         if (statusData.getTotalFee() != null &&
-                statusData.getTotalFee().compareTo(currentOrder.getTotalFee() != null ? currentOrder.getTotalFee() : BigDecimal.ZERO) != 0) {
+                statusData.getTotalFee().compareTo(currentOrder.getTotalFee() != null ? currentOrder.getTotalFee() : BigDecimal.ZERO) > 0) {
             updateData.setTotalFee(statusData.getTotalFee());
             updateData.setFeeChanged(true);
         }
@@ -157,12 +175,38 @@ public class OrderStateManagerService {
         return updateData;
     }
 
+    /**
+     * 本次未变化的电量、费用字段用缓冲中的数据补齐，缓冲中的累计值一定不小于数据库中的值
+     */
+    private void applyBuffered(ChargeOrderUpdate updateData, ChargeTelemetryBuffer.Snapshot buffered) {
+        if (buffered == null) {
+            return;
+        }
+        if (updateData.getTotalPower() == null) {
+            updateData.setTotalPower(buffered.getTotalPower());
+        }
+        if (updateData.getElectricityFee() == null) {
+            updateData.setElectricityFee(buffered.getElectricityFee());
+        }
+        if (updateData.getServiceFee() == null) {
+            updateData.setServiceFee(buffered.getServiceFee());
+        }
+        if (updateData.getTotalFee() == null) {
+            updateData.setTotalFee(buffered.getTotalFee());
+        }
+        if (updateData.getSoc() == null) {
+            updateData.setSoc(buffered.getSoc());
+        }
+    }
+
     /**
      * 执行订单更新
      */
-    private boolean executeOrderUpdate(Long orderId, ChargeOrderUpdate updateData) {
+    private boolean executeOrderUpdate(ChargeOrder currentOrder, ChargeOrderUpdate updateData) {
         LambdaUpdateWrapper<ChargeOrder> updateWrapper = new LambdaUpdateWrapper<ChargeOrder>()
-                .eq(ChargeOrder::getId, orderId);
+                .eq(ChargeOrder::getId, currentOrder.getId())
+                .eq(ChargeOrder::getVersion, currentOrder.getVersion())
+                .setSql("version = version + 1");
 
         if (updateData.getStatus() != null) {
             updateWrapper.set(ChargeOrder::getStatus, updateData.getStatus());
@@ -185,6 +229,9 @@ public class OrderStateManagerService {
         if (updateData.getEndTime() != null) {
             updateWrapper.set(ChargeOrder::getEndTime, updateData.getEndTime());
         }
+        if (updateData.getSoc() != null) {
+            updateWrapper.set(ChargeOrder::getSoc, updateData.getSoc());
+        }
 
         updateWrapper.set(ChargeOrder::getUpdateTime, LocalDateTime.now());
 
@@ -192,14 +239,48 @@ public class OrderStateManagerService {
         return result > 0;
     }
 
+    /**
+     * 按版本号更新整条订单
+     * <p>
+     * 订单带 {@code @Version}，更新条件附带读取时的版本号；期间被其他来源修改时重新读取，
+     * 在最新订单上再次应用修改，不会用旧数据覆盖其他来源写入的状态和费用。
+     * 订单状态发生变化时同步更新统计。
+     *
+     * @param order    已读取的订单
+     * @param modifier 在订单上应用修改，返回 false 表示修改已不再适用（如订单已被其他来源结束）
+     * @return 更新成功后的订单；修改不再适用、订单不存在或重试用尽时返回 null
+     */
+    public ChargeOrder updateWithVersion(ChargeOrder order, Predicate<ChargeOrder> modifier) {
+        ChargeOrder current = order;
+        for (int attempt = 1; attempt <= MAX_CAS_ATTEMPTS; attempt++) {
+            Integer previousStatus = current.getStatus();
+            if (!modifier.test(current)) {
+                return null;
+            }
+            if (chargeOrderMapper.updateById(current) > 0) {
+                if (!Objects.equals(previousStatus, current.getStatus())) {
+                    orderStatisticsService.onStatusChange(current, previousStatus, current.getStatus());
+                }
+                return current;
+            }
+            log.debug("订单{}版本冲突，重新读取后重试，第{}次", order.getOrderNo(), attempt);
+            current = chargeOrderMapper.selectById(order.getId());
+            if (current == null) {
+                return null;
+            }
+        }
+        log.warn("订单{}连续{}次版本冲突，放弃本次更新", order.getOrderNo(), MAX_CAS_ATTEMPTS);
+        return null;
+    }
+
     /**
      * 发送实时通知
      */
     private void sendRealtimeNotifications(ChargeOrder currentOrder, ChargeOrderUpdate updateData, ChargeStatusData statusData) {
         // 状态变化通知
         if (updateData.isChargeStatusChanged() || updateData.isOrderStatusChanged()) {
-            notificationService.sendChargeStatusNotification(
-                    currentOrder.getUserId(), currentOrder.getOrderNo(), statusData);
+            progressNotificationCoalescer.submitStatus(
+                    currentOrder.getUserId(), currentOrder.getOrderNo(), statusData, true);
         }
 
         // 进度变化通知
@@ -207,7 +288,7 @@ public class OrderStateManagerService {
             Integer chargeDuration = currentOrder.getStartTime() != null ?
                     (int) java.time.Duration.between(currentOrder.getStartTime(), LocalDateTime.now()).toMinutes() : 0;
 
-            notificationService.sendChargeProgressNotification(
+            progressNotificationCoalescer.submitProgress(
                     currentOrder.getUserId(),
                     currentOrder.getOrderNo(),
                     statusData.getSoc(),
@@ -219,6 +300,7 @@ public class OrderStateManagerService {
 
         // 完成通知
         if (updateData.isOrderStatusChanged() && ChargeOrderStatusEnum.COMPLETED.getCode().equals(updateData.getStatus())) {
+            progressNotificationCoalescer.discard(currentOrder.getOrderNo());
             // 需要重新查询完整订单信息
             ChargeOrder completedOrder = chargeOrderMapper.selectById(currentOrder.getId());
             notificationService.sendChargeCompleteNotification(currentOrder.getUserId(), completedOrder);
@@ -247,8 +329,42 @@ public class OrderStateManagerService {
         private boolean shouldAutoStop = false;
 
         public boolean hasChanges() {
-            return orderStatusChanged || chargeStatusChanged || feeChanged || timeChanged;
+            return orderStatusChanged || chargeStatusChanged || feeChanged || timeChanged || socChanged;
+        }
+
+        /**
+         * 只有电量、费用或电量百分比变化，不涉及状态、结束时间和自动停止
+         */
+        public boolean isTelemetryOnly() {
+            return (feeChanged || socChanged) && !orderStatusChanged && !chargeStatusChanged
+                    && !timeChanged && !shouldAutoStop;
+        }
+    }
+
+    /**
+     * 平台充电状态是否向前推进：启动中 → 充电中 → 停止中 → 已结束，未知状态不覆盖已知状态
+     */
+    static boolean isForward(Integer current, Integer next) {
+        if (current == null || PlatformChargeStatusEnum.UNKNOWN.getCode().equals(current)) {
+            return true;
+        }
+        if (PlatformChargeStatusEnum.UNKNOWN.getCode().equals(next)) {
+            return false;
+        }
+        return next > current;
+    }
+
+    /**
+     * 订单状态是否向前推进：待充电 → 充电中 → 充电完成，已完成、已结算、已取消、失败的订单不再回退
+     */
+    static boolean isOrderStatusForward(Integer current, Integer next) {
+        if (next == null) {
+            return false;
+        }
+        if (current == null) {
+            return true;
         }
+        return current < ChargeOrderStatusEnum.COMPLETED.getCode() && next > current;
     }
 
     // 新增：检查自动停止条件
@@ -0,0 +1,255 @@
+package com.pdsu.charge_palteform.service;
+
+import com.pdsu.charge_palteform.entity.ChargeOrder;
+import com.pdsu.charge_palteform.enums.ChargeOrderStatusEnum;
+import com.pdsu.charge_palteform.mapper.ChargeOrderMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 订单统计计数器
+ * <p>
+ * 订单创建和每次状态变化时在 Redis 哈希中增减计数：全部订单按状态、各充电站按状态、
+ * 各创建日按状态，统计接口直接读取哈希，不再对 charge_orders 做分组查询。
+ * 计数在事务提交后才生效；写入失败或并发更新造成的偏差由每晚的对账任务按数据库重建修正。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderStatisticsService {
+
+    public static final String STATUS_KEY = "order:stats:status";
+    public static final String STATION_KEY_PREFIX = "order:stats:station:";
+    public static final String DAY_KEY_PREFIX = "order:stats:day:";
+    private static final String RECONCILED_AT_KEY = "order:stats:reconciled_at";
+    private static final String RECONCILE_LOCK_KEY = "order:stats:reconcile:lock";
+    private static final String CREATED_FIELD = "created";
+
+    /** 按日计数保留天数 */
+    private static final int DAY_RETENTION_DAYS = 40;
+    /** 对账时重建最近多少天的按日计数 */
+    private static final int RECONCILE_DAYS = 35;
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    /**
+     * KEYS[1] 按日哈希，其余为按状态哈希；ARGV: 原状态（新建为空）、新状态、按日哈希过期秒数
+     */
+    private static final DefaultRedisScript<Long> TRANSITION_SCRIPT = new DefaultRedisScript<>(
+            "for i = 1, #KEYS do " +
+                    "  if ARGV[1] ~= '' then redis.call('HINCRBY', KEYS[i], ARGV[1], -1) end " +
+                    "  redis.call('HINCRBY', KEYS[i], ARGV[2], 1) " +
+                    "end " +
+                    "if ARGV[1] == '' then redis.call('HINCRBY', KEYS[1], 'created', 1) end " +
+                    "redis.call('EXPIRE', KEYS[1], tonumber(ARGV[3])) " +
+                    "return 1", Long.class);
+
+    /** 只释放自己持有的锁 */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    private final ChargeOrderMapper chargeOrderMapper;
+    private final StringRedisTemplate redisTemplate;
+
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * 订单已创建
+     */
+    public void onCreated(ChargeOrder order) {
+        onStatusChange(order, null, order.getStatus());
+    }
+
+    /**
+     * 订单状态已变化；order 用于取充电站和创建时间，状态以参数为准
+     */
+    public void onStatusChange(ChargeOrder order, Integer fromStatus, Integer toStatus) {
+        if (order == null || toStatus == null || Objects.equals(fromStatus, toStatus)) {
+            return;
+        }
+        String stationId = order.getStationId();
+        LocalDateTime createTime = order.getCreateTime();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // 事务回滚时订单变化不存在，计数也不能生效
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(stationId, createTime, fromStatus, toStatus);
+                }
+            });
+        } else {
+            apply(stationId, createTime, fromStatus, toStatus);
+        }
+    }
+
+    private void apply(String stationId, LocalDateTime createTime, Integer fromStatus, Integer toStatus) {
+        List<String> keys = new ArrayList<>(3);
+        keys.add(DAY_KEY_PREFIX + (createTime != null ? createTime.toLocalDate() : LocalDate.now()).format(DAY_FORMATTER));
+        keys.add(STATUS_KEY);
+        if (stationId != null) {
+            keys.add(STATION_KEY_PREFIX + stationId);
+        }
+        try {
+            redisTemplate.execute(TRANSITION_SCRIPT, keys,
+                    fromStatus != null ? String.valueOf(fromStatus) : "",
+                    String.valueOf(toStatus),
+                    String.valueOf(TimeUnit.DAYS.toSeconds(DAY_RETENTION_DAYS)));
+            applied.incrementAndGet();
+        } catch (Exception e) {
+            // 计数偏差由夜间对账修正
+            failed.incrementAndGet();
+            log.warn("更新订单统计计数失败: {} -> {}, {}", fromStatus, toStatus, e.getMessage());
+        }
+    }
+
+    /**
+     * 读取订单统计；stationId 为空时统计全部订单
+     */
+    public Map<String, Object> getStatistics(String stationId) {
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(STATUS_KEY))) {
+            // 首次使用尚无计数，先按数据库建立
+            reconcile();
+        }
+        Map<String, Long> byStatus = readCounts(stationId != null ? STATION_KEY_PREFIX + stationId : STATUS_KEY);
+        Map<String, Long> today = readCounts(DAY_KEY_PREFIX + LocalDate.now().format(DAY_FORMATTER));
+
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        if (stationId != null) {
+            statistics.put("stationId", stationId);
+        }
+        statistics.put("totalOrders", sumStatuses(byStatus));
+        statistics.put("pendingOrders", count(byStatus, ChargeOrderStatusEnum.CREATED));
+        statistics.put("chargingOrders", count(byStatus, ChargeOrderStatusEnum.CHARGING));
+        statistics.put("completedOrders", count(byStatus, ChargeOrderStatusEnum.COMPLETED)
+                + count(byStatus, ChargeOrderStatusEnum.SETTLED));
+        statistics.put("cancelledOrders", count(byStatus, ChargeOrderStatusEnum.CANCELLED));
+        statistics.put("failedOrders", count(byStatus, ChargeOrderStatusEnum.FAILED));
+        statistics.put("byStatus", byStatus);
+        if (stationId == null) {
+            Map<String, Object> todayStats = new LinkedHashMap<>();
+            todayStats.put("createdOrders", today.getOrDefault(CREATED_FIELD, 0L));
+            todayStats.put("chargingOrders", count(today, ChargeOrderStatusEnum.CHARGING));
+            todayStats.put("completedOrders", count(today, ChargeOrderStatusEnum.COMPLETED)
+                    + count(today, ChargeOrderStatusEnum.SETTLED));
+            todayStats.put("failedOrders", count(today, ChargeOrderStatusEnum.FAILED));
+            statistics.put("today", todayStats);
+        }
+        statistics.put("lastReconcileTime", redisTemplate.opsForValue().get(RECONCILED_AT_KEY));
+        statistics.put("counterUpdates", applied.get());
+        statistics.put("counterFailures", failed.get());
+        statistics.put("lastUpdateTime", System.currentTimeMillis());
+        return statistics;
+    }
+
+    /**
+     * 按数据库重建全部计数；多节点部署时只有抢到锁的节点执行
+     *
+     * @return 是否执行了对账
+     */
+    public boolean reconcile() {
+        String token = UUID.randomUUID().toString();
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(RECONCILE_LOCK_KEY, token, 10, TimeUnit.MINUTES);
+        if (!Boolean.TRUE.equals(locked)) {
+            log.debug("其它节点正在执行订单统计对账");
+            return false;
+        }
+        try {
+            long start = System.currentTimeMillis();
+
+            Map<String, String> statusCounts = new HashMap<>();
+            for (Map<String, Object> row : chargeOrderMapper.countAllByStatus()) {
+                statusCounts.put(String.valueOf(row.get("status")), String.valueOf(row.get("count")));
+            }
+            replaceHash(STATUS_KEY, statusCounts, 0);
+
+            Map<String, Map<String, String>> stationCounts = new HashMap<>();
+            for (Map<String, Object> row : chargeOrderMapper.countByStationAndStatus()) {
+                Object stationId = row.get("stationId");
+                if (stationId != null) {
+                    stationCounts.computeIfAbsent(String.valueOf(stationId), id -> new HashMap<>())
+                            .put(String.valueOf(row.get("status")), String.valueOf(row.get("count")));
+                }
+            }
+            stationCounts.forEach((stationId, counts) -> replaceHash(STATION_KEY_PREFIX + stationId, counts, 0));
+
+            LocalDate firstDay = LocalDate.now().minusDays(RECONCILE_DAYS - 1);
+            Map<String, Map<String, String>> dayCounts = new HashMap<>();
+            for (Map<String, Object> row : chargeOrderMapper.countByCreateDayAndStatus(firstDay.atStartOfDay())) {
+                Map<String, String> counts = dayCounts.computeIfAbsent(String.valueOf(row.get("day")), day -> new HashMap<>());
+                long count = ((Number) row.get("count")).longValue();
+                counts.put(String.valueOf(row.get("status")), String.valueOf(count));
+                counts.merge(CREATED_FIELD, String.valueOf(count),
+                        (current, added) -> String.valueOf(Long.parseLong(current) + Long.parseLong(added)));
+            }
+            for (LocalDate day = firstDay; !day.isAfter(LocalDate.now()); day = day.plusDays(1)) {
+                String dayKey = day.format(DAY_FORMATTER);
+                replaceHash(DAY_KEY_PREFIX + dayKey, dayCounts.getOrDefault(dayKey, new HashMap<>()),
+                        TimeUnit.DAYS.toSeconds(DAY_RETENTION_DAYS));
+            }
+
+            redisTemplate.opsForValue().set(RECONCILED_AT_KEY, LocalDateTime.now().toString());
+            log.info("订单统计对账完成: {}个状态，{}个充电站，{}天，耗时{}ms",
+                    statusCounts.size(), stationCounts.size(), RECONCILE_DAYS, System.currentTimeMillis() - start);
+            return true;
+        } finally {
+            // 对账超过锁过期时间时锁可能已被其它节点持有，不能直接删除
+            redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(RECONCILE_LOCK_KEY), token);
+        }
+    }
+
+    /**
+     * 先写入临时键再改名，读取方不会看到写了一半的哈希
+     */
+    private void replaceHash(String key, Map<String, String> values, long ttlSeconds) {
+        if (values.isEmpty()) {
+            redisTemplate.delete(key);
+            return;
+        }
+        String tempKey = key + ":rebuild";
+        redisTemplate.delete(tempKey);
+        redisTemplate.opsForHash().putAll(tempKey, values);
+        redisTemplate.rename(tempKey, key);
+        if (ttlSeconds > 0) {
+            redisTemplate.expire(key, ttlSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private Map<String, Long> readCounts(String key) {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+        Map<String, Long> counts = new LinkedHashMap<>();
+        entries.forEach((field, value) -> counts.put(String.valueOf(field), Long.parseLong(String.valueOf(value))));
+        return counts;
+    }
+
+    private static long count(Map<String, Long> counts, ChargeOrderStatusEnum status) {
+        return counts.getOrDefault(String.valueOf(status.getCode()), 0L);
+    }
+
+    private static long sumStatuses(Map<String, Long> counts) {
+        long total = 0;
+        for (ChargeOrderStatusEnum status : ChargeOrderStatusEnum.values()) {
+            total += count(counts, status);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,219 @@
+package com.pdsu.charge_palteform.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.pdsu.charge_palteform.common.InstrumentedExecutor;
+import com.pdsu.charge_palteform.common.LatencyHistogram;
+import com.pdsu.charge_palteform.common.RateLimiter;
+import com.pdsu.charge_palteform.config.OrderSyncConfig;
+import com.pdsu.charge_palteform.entity.ChargeOrder;
+import com.pdsu.charge_palteform.mapper.ChargeOrderMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 充电中订单状态同步引擎
+ * <p>
+ * 每轮覆盖所有充电中的订单，按 update_time 从旧到新分页读取，最久未更新的订单优先同步。
+ * 平台查询走异步客户端，通过信号量限制在途请求数、通过限流器控制请求速率；
+ * 查询结果在订单同步执行器（orderSyncExecutor）中落库。
+ * <p>
+ * 查询回调运行在 HTTP 客户端的 IO 线程上，落库不能在该线程执行，
+ * 因此执行器使用 ABORT 策略而不是 CALLER_RUNS；提交数受在途信号量限制，
+ * 执行器容量不小于最大并发时不会拒绝，拒绝时按失败计数并释放许可。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderStatusSyncEngine {
+
+    private static final String SYNC_SOURCE = "SCHEDULED_SYNC";
+
+    private final OrderSyncConfig syncConfig;
+    private final ChargeOrderMapper chargeOrderMapper;
+    private final EnergyPlatformAsyncService energyPlatformAsyncService;
+    private final OrderStateManagerService orderStateManagerService;
+    private final InstrumentedExecutor orderSyncExecutor;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final LatencyHistogram cycleDuration = new LatencyHistogram();
+    private final LatencyHistogram orderLag = new LatencyHistogram();
+
+    private RateLimiter rateLimiter;
+    private volatile CycleStats lastCycle;
+
+    @PostConstruct
+    public void init() {
+        rateLimiter = new RateLimiter(syncConfig.getRateLimit());
+    }
+
+    /**
+     * 执行一轮同步；上一轮未结束时直接跳过
+     */
+    public void runCycle() {
+        if (!syncConfig.isEnabled()) {
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.warn("上一轮充电订单同步尚未结束，跳过本轮");
+            return;
+        }
+
+        long startNanos = System.nanoTime();
+        LocalDateTime cycleStart = LocalDateTime.now();
+        int maxConcurrency = Math.max(1, syncConfig.getMaxConcurrency());
+        Semaphore inFlight = new Semaphore(maxConcurrency);
+        CycleCounters counters = new CycleCounters();
+
+        try {
+            LocalDateTime cursorTime = null;
+            Long cursorId = null;
+            while (true) {
+                List<ChargeOrder> page = loadPage(cycleStart, cursorTime, cursorId);
+                if (page.isEmpty()) {
+                    break;
+                }
+                for (ChargeOrder order : page) {
+                    inFlight.acquire();
+                    rateLimiter.acquire();
+                    dispatch(order, inFlight, counters);
+                }
+                ChargeOrder last = page.get(page.size() - 1);
+                cursorTime = last.getUpdateTime();
+                cursorId = last.getId();
+                if (page.size() < syncConfig.getBatchSize()) {
+                    break;
+                }
+            }
+            // 等待本轮所有在途请求完成
+            inFlight.acquire(maxConcurrency);
+            inFlight.release(maxConcurrency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("充电订单同步被中断");
+        } catch (Exception e) {
+            log.error("❌ 充电订单同步任务异常", e);
+        } finally {
+            long elapsed = System.nanoTime() - startNanos;
+            cycleDuration.record(elapsed);
+            lastCycle = counters.toStats(cycleStart, TimeUnit.NANOSECONDS.toMillis(elapsed));
+            running.set(false);
+            if (counters.total.get() > 0) {
+                log.info("充电订单同步完成: 共{}个，更新{}个，无变化{}个，失败{}个，耗时{}ms，最大滞后{}秒",
+                        counters.total.get(), counters.updated.get(), counters.unchanged.get(),
+                        counters.failed.get(), lastCycle.getDurationMs(), lastCycle.getMaxLagSeconds());
+            }
+        }
+    }
+
+    /**
+     * 按 (update_time, id) 游标分页读取本轮开始前更新过的充电中订单，
+     * 本轮已更新的订单 update_time 会晚于 cycleStart，不会被重复读取
+     */
+    private List<ChargeOrder> loadPage(LocalDateTime cycleStart, LocalDateTime cursorTime, Long cursorId) {
+        LambdaQueryWrapper<ChargeOrder> wrapper = new LambdaQueryWrapper<ChargeOrder>()
+                .select(ChargeOrder::getId, ChargeOrder::getOrderNo,
+                        ChargeOrder::getPlatformOrderNo, ChargeOrder::getUpdateTime)
+                .eq(ChargeOrder::getStatus, 2) // 充电中
+                .isNotNull(ChargeOrder::getPlatformOrderNo)
+                .lt(ChargeOrder::getUpdateTime, cycleStart);
+        if (cursorTime != null) {
+            wrapper.and(w -> w.gt(ChargeOrder::getUpdateTime, cursorTime)
+                    .or(o -> o.eq(ChargeOrder::getUpdateTime, cursorTime).gt(ChargeOrder::getId, cursorId)));
+        }
+        wrapper.orderByAsc(ChargeOrder::getUpdateTime)
+                .orderByAsc(ChargeOrder::getId)
+                .last("LIMIT " + syncConfig.getBatchSize());
+        return chargeOrderMapper.selectList(wrapper);
+    }
+
+    private void dispatch(ChargeOrder order, Semaphore inFlight, CycleCounters counters) {
+        counters.total.incrementAndGet();
+        if (order.getUpdateTime() != null) {
+            Duration lag = Duration.between(order.getUpdateTime(), LocalDateTime.now());
+            orderLag.record(lag.toNanos());
+            counters.maxLagSeconds.accumulateAndGet(lag.getSeconds(), Math::max);
+        }
+
+        energyPlatformAsyncService.queryChargeStatus(order.getPlatformOrderNo())
+                .thenApplyAsync(statusData -> statusData != null && orderStateManagerService
+                        .updateOrderStatusSafely(order.getOrderNo(), statusData, SYNC_SOURCE), orderSyncExecutor)
+                .whenComplete((updated, ex) -> {
+                    try {
+                        if (ex != null) {
+                            counters.failed.incrementAndGet();
+                            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                            log.debug("同步订单{}状态失败: {}", order.getOrderNo(), cause.getMessage());
+                        } else if (Boolean.TRUE.equals(updated)) {
+                            counters.updated.incrementAndGet();
+                        } else {
+                            counters.unchanged.incrementAndGet();
+                        }
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+    }
+
+    /**
+     * 同步运行状态与指标
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("syncEnabled", syncConfig.isEnabled());
+        status.put("running", running.get());
+        status.put("maxConcurrency", syncConfig.getMaxConcurrency());
+        status.put("rateLimit", syncConfig.getRateLimit());
+        status.put("lastCycle", lastCycle);
+        status.put("cycleDuration", cycleDuration.snapshot());
+        status.put("orderLag", orderLag.snapshot());
+        return status;
+    }
+
+    /**
+     * 单轮同步统计
+     */
+    @Data
+    public static class CycleStats {
+        private LocalDateTime startTime;
+        private long durationMs;
+        private int total;
+        private int updated;
+        private int unchanged;
+        private int failed;
+        /** 本轮订单距上次更新的最大时长（秒） */
+        private long maxLagSeconds;
+    }
+
+    private static class CycleCounters {
+        private final AtomicInteger total = new AtomicInteger();
+        private final AtomicInteger updated = new AtomicInteger();
+        private final AtomicInteger unchanged = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicLong maxLagSeconds = new AtomicLong();
+
+        private CycleStats toStats(LocalDateTime startTime, long durationMs) {
+            CycleStats stats = new CycleStats();
+            stats.setStartTime(startTime);
+            stats.setDurationMs(durationMs);
+            stats.setTotal(total.get());
+            stats.setUpdated(updated.get());
+            stats.setUnchanged(unchanged.get());
+            stats.setFailed(failed.get());
+            stats.setMaxLagSeconds(maxLagSeconds.get());
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.pdsu.charge_palteform.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pdsu.charge_palteform.common.LatencyHistogram;
+import com.pdsu.charge_palteform.config.EnergyPlatformConfig;
+import com.pdsu.charge_palteform.entity.platefrom.PlatformCall;
+import com.pdsu.charge_palteform.entity.platefrom.PlatformRequest;
+import com.pdsu.charge_palteform.entity.platefrom.PlatformResponse;
+import com.pdsu.charge_palteform.exception.BusinessException;
+import com.pdsu.charge_palteform.exception.PlatformCallException;
+import com.pdsu.charge_palteform.utils.PlatformCodec;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.hc.client5.http.async.methods.SimpleHttpRequest;
+import org.apache.hc.client5.http.async.methods.SimpleHttpResponse;
+import org.apache.hc.client5.http.async.methods.SimpleRequestBuilder;
+import org.apache.hc.client5.http.async.methods.SimpleRequestProducer;
+import org.apache.hc.client5.http.async.methods.SimpleResponseConsumer;
+import org.apache.hc.client5.http.impl.async.CloseableHttpAsyncClient;
+import org.apache.hc.core5.concurrent.FutureCallback;
+import org.apache.hc.core5.http.ContentType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 电能平台统一调用引擎
+ * <p>
+ * 所有平台接口走同一条路径：编码加密 -> 签名 -> POST -> 从响应流直接解析 -> 校验Ret -> 解密解析。
+ * 每个接口单独记录耗时直方图。同步调用走 RestTemplate，异步调用走非阻塞的 HttpAsyncClient。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PlatformCallExecutor {
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final EnergyPlatformConfig config;
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final PlatformCodec platformCodec;
+    private final CloseableHttpAsyncClient platformAsyncHttpClient;
+
+    private final AtomicInteger seqCounter = new AtomicInteger(1);
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * 调用平台接口
+     *
+     * @param call    接口描述
+     * @param payload 业务请求
+     * @param token   访问Token，不需要鉴权的接口传 null
+     * @return 解密后的业务响应；平台返回 Data 为空时返回 null
+     */
+    public <Req, Resp> Resp execute(PlatformCall<Req, Resp> call, Req payload, String token) {
+        long start = System.nanoTime();
+        LatencyHistogram histogram = histogram(call.getName());
+        try {
+            PlatformRequest request = buildPlatformRequest(platformCodec.encode(payload));
+            PlatformResponse response = restTemplate.execute(config.getBaseUrl() + call.getPath(), HttpMethod.POST,
+                    httpRequest -> {
+                        HttpHeaders headers = httpRequest.getHeaders();
+                        headers.setContentType(MediaType.APPLICATION_JSON);
+                        if (call.isAuthenticated() && token != null) {
+                            headers.setBearerAuth(token);
+                        }
+                        objectMapper.writeValue(httpRequest.getBody(), request);
+                    },
+                    httpResponse -> {
+                        try {
+                            return objectMapper.readValue(httpResponse.getBody(), PlatformResponse.class);
+                        } catch (Exception e) {
+                            throw new BusinessException("电能平台响应格式错误: " + e.getMessage());
+                        }
+                    });
+
+            Resp result = unwrap(call, response);
+            histogram.record(System.nanoTime() - start);
+            return result;
+        } catch (RuntimeException e) {
+            histogram.recordError(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    /**
+     * 异步调用平台接口，等待响应期间不占用调用线程
+     * <p>
+     * 返回的 future 在 IO 线程上完成，后续如有阻塞操作（数据库等）请使用 *Async 方法切换到业务线程池。
+     *
+     * @return 解密后的业务响应；平台返回 Data 为空时结果为 null
+     */
+    public <Req, Resp> CompletableFuture<Resp> executeAsync(PlatformCall<Req, Resp> call, Req payload, String token) {
+        long start = System.nanoTime();
+        LatencyHistogram histogram = histogram(call.getName());
+        CompletableFuture<Resp> future = new CompletableFuture<>();
+        try {
+            PlatformRequest request = buildPlatformRequest(platformCodec.encode(payload));
+            SimpleRequestBuilder builder = SimpleRequestBuilder.post(config.getBaseUrl() + call.getPath())
+                    .setBody(objectMapper.writeValueAsBytes(request), ContentType.APPLICATION_JSON);
+            if (call.isAuthenticated() && token != null) {
+                builder.setHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+            }
+            SimpleHttpRequest httpRequest = builder.build();
+
+            platformAsyncHttpClient.execute(SimpleRequestProducer.create(httpRequest), SimpleResponseConsumer.create(),
+                    new FutureCallback<SimpleHttpResponse>() {
+                        @Override
+                        public void completed(SimpleHttpResponse httpResponse) {
+                            try {
+                                Resp result = unwrap(call, readResponse(httpResponse));
+                                histogram.record(System.nanoTime() - start);
+                                future.complete(result);
+                            } catch (Exception e) {
+                                histogram.recordError(System.nanoTime() - start);
+                                future.completeExceptionally(e);
+                            }
+                        }
+
+                        @Override
+                        public void failed(Exception e) {
+                            histogram.recordError(System.nanoTime() - start);
+                            future.completeExceptionally(new BusinessException("电能平台请求失败: " + e.getMessage()));
+                        }
+
+                        @Override
+                        public void cancelled() {
+                            histogram.recordError(System.nanoTime() - start);
+                            future.completeExceptionally(new BusinessException("电能平台请求已取消"));
+                        }
+                    });
+        } catch (Exception e) {
+            histogram.recordError(System.nanoTime() - start);
+            future.completeExceptionally(e instanceof BusinessException ? e
+                    : new BusinessException("电能平台请求构建失败: " + e.getMessage()));
+        }
+        return future;
+    }
+
+    private PlatformResponse readResponse(SimpleHttpResponse httpResponse) {
+        if (httpResponse.getCode() == 401) {
+            throw new PlatformCallException(PlatformCallException.RET_TOKEN_INVALID,
+                    "电能平台拒绝访问Token: HTTP 401 " + httpResponse.getReasonPhrase());
+        }
+        if (httpResponse.getCode() >= 400) {
+            throw new BusinessException("电能平台HTTP错误: " + httpResponse.getCode() + " " + httpResponse.getReasonPhrase());
+        }
+        byte[] body = httpResponse.getBodyBytes();
+        if (body == null || body.length == 0) {
+            throw new BusinessException("电能平台返回空响应");
+        }
+        try {
+            return objectMapper.readValue(body, PlatformResponse.class);
+        } catch (Exception e) {
+            throw new BusinessException("电能平台响应格式错误: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 校验平台响应并解密 Data
+     */
+    public <Req, Resp> Resp unwrap(PlatformCall<Req, Resp> call, PlatformResponse response) {
+        if (response == null) {
+            throw new BusinessException("电能平台返回空响应");
+        }
+        if (response.getRet() == null) {
+            throw new BusinessException("响应中缺少Ret字段，可能是接口地址错误或服务异常");
+        }
+        if (response.getRet() != 0) {
+            log.warn("电能平台返回错误: call={}, Ret={}, Msg={}", call.getName(), response.getRet(), response.getMsg());
+            throw new PlatformCallException(response.getRet(),
+                    "电能平台返回错误: Ret=" + response.getRet() + ", Msg=" + response.getMsg());
+        }
+        if (response.getData() == null || response.getData().trim().isEmpty()) {
+            log.warn("电能平台返回的Data字段为空: call={}", call.getName());
+            return null;
+        }
+        Resp result = platformCodec.decode(response.getData(), call.getResponseType());
+        log.debug("平台接口{}响应: {}", call.getName(), result);
+        return result;
+    }
+
+    /**
+     * 构建电能平台通用请求
+     */
+    public PlatformRequest buildPlatformRequest(String encryptedData) {
+        PlatformRequest request = new PlatformRequest();
+        request.setOperatorID(config.getOperatorId());
+        request.setData(encryptedData);
+
+        String timestamp = LocalDateTime.now().format(TIMESTAMP_FORMAT);
+        request.setTimeStamp(timestamp);
+
+        String seq = String.format("%04d", seqCounter.getAndIncrement() % 10000);
+        request.setSeq(seq);
+
+        request.setSig(platformCodec.sign(encryptedData, timestamp, seq));
+        return request;
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * 各接口耗时统计快照
+     */
+    public Map<String, LatencyHistogram.Snapshot> getMetrics() {
+        Map<String, LatencyHistogram.Snapshot> metrics = new TreeMap<>();
+        histograms.forEach((name, histogram) -> metrics.put(name, histogram.snapshot()));
+        return metrics;
+    }
+}
@@ -0,0 +1,332 @@
+package com.pdsu.charge_palteform.service;
+
+import com.pdsu.charge_palteform.config.EnergyPlatformConfig;
+import com.pdsu.charge_palteform.entity.platefrom.PlatformCall;
+import com.pdsu.charge_palteform.entity.platefrom.token.TokenRequest;
+import com.pdsu.charge_palteform.entity.platefrom.token.TokenResponse;
+import com.pdsu.charge_palteform.exception.BusinessException;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 电能平台访问Token本地持有者
+ * <p>
+ * 热路径只读内存中的Token，不再访问Redis；Token到期前由后台线程提前刷新，
+ * 同一时刻只有一个线程去请求新Token，其它线程继续使用仍然有效的旧Token。
+ * Redis 仅用于多节点之间共享Token，并通过短期锁避免多个节点同时刷新。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PlatformTokenHolder {
+
+    private static final String TOKEN_CACHE_KEY = "energy:platform:token";
+    private static final String REFRESH_LOCK_KEY = "energy:platform:token:refresh_lock";
+
+    /** 值仍为期望值时才删除：只释放自己持有的锁，只删除已被拒绝的Token */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    /** 本地认为Token失效的安全余量 */
+    private static final long EXPIRY_MARGIN_SECONDS = 60;
+    /** 提前刷新的时间窗口 */
+    private static final long REFRESH_AHEAD_SECONDS = 300;
+    /** 刷新失败或等待其它节点刷新时的重试间隔 */
+    private static final long RETRY_DELAY_SECONDS = 5;
+    /** 其它节点正在刷新时，无可用Token的线程最多等待时间 */
+    private static final long PEER_WAIT_MILLIS = 3000;
+
+    private final EnergyPlatformConfig config;
+    private final StringRedisTemplate redisTemplate;
+    private final PlatformCallExecutor platformCallExecutor;
+
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    /** 保护 scheduledRefresh 的检查与替换 */
+    private final Object scheduleMonitor = new Object();
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "platform-token-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile CachedToken current;
+    private volatile ScheduledFuture<?> scheduledRefresh;
+
+    /**
+     * 获取可用的访问Token
+     */
+    public String getToken() {
+        CachedToken token = current;
+        long now = System.currentTimeMillis();
+        if (token != null && now < token.refreshAt) {
+            return token.value;
+        }
+        if (token != null && now < token.expiresAt) {
+            // 进入刷新窗口但仍有效：后台刷新，当前调用继续使用旧Token
+            triggerBackgroundRefresh();
+            return token.value;
+        }
+        return refreshBlocking();
+    }
+
+    /**
+     * 丢弃本地Token（平台提示Token失效时），下一次调用会重新获取
+     */
+    public void invalidate(String tokenValue) {
+        if (tokenValue == null) {
+            return;
+        }
+        CachedToken token = current;
+        if (token != null && token.value.equals(tokenValue)) {
+            current = null;
+            log.info("电能平台Token已失效，等待重新获取");
+        }
+        // 其它节点可能已写入新Token，只删除仍为被拒绝Token的共享值
+        redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(TOKEN_CACHE_KEY), tokenValue);
+    }
+
+    /**
+     * 当前没有可用Token：只允许一个线程去获取，其它线程等待其结果
+     */
+    private String refreshBlocking() {
+        refreshLock.lock();
+        try {
+            CachedToken token = current;
+            if (token != null && System.currentTimeMillis() < token.expiresAt) {
+                return token.value;
+            }
+            return refresh(true).value;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * 热路径在刷新窗口内调用：已有待执行或正在执行的刷新（包括失败后的延迟重试）时不再安排，
+     * 平台故障期间不会因请求量放大对 /query_token 的调用
+     */
+    private void triggerBackgroundRefresh() {
+        synchronized (scheduleMonitor) {
+            ScheduledFuture<?> pending = scheduledRefresh;
+            if (pending != null && !pending.isDone()) {
+                return;
+            }
+            scheduledRefresh = refresher.schedule(this::backgroundRefresh, 0, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 替换已安排的刷新：新Token生效后按其刷新时间安排，或刷新失败后延迟重试
+     */
+    private void scheduleRefresh(long delaySeconds) {
+        synchronized (scheduleMonitor) {
+            ScheduledFuture<?> pending = scheduledRefresh;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            scheduledRefresh = refresher.schedule(this::backgroundRefresh, delaySeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private void backgroundRefresh() {
+        if (!refreshLock.tryLock()) {
+            return;
+        }
+        try {
+            CachedToken token = current;
+            if (token != null && System.currentTimeMillis() < token.refreshAt) {
+                return;
+            }
+            refresh(false);
+        } catch (Exception e) {
+            log.warn("后台刷新电能平台Token失败，{}秒后重试: {}", RETRY_DELAY_SECONDS, e.getMessage());
+            scheduleRefresh(RETRY_DELAY_SECONDS);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * 刷新Token（调用方需持有 refreshLock）
+     *
+     * @param waitForPeer 其它节点正在刷新时是否等待其结果
+     */
+    private CachedToken refresh(boolean waitForPeer) {
+        // 1. 其它节点可能已经刷新过
+        CachedToken shared = loadShared();
+        if (shared != null) {
+            return adopt(shared);
+        }
+
+        // 2. 抢占集群刷新锁，避免多个节点同时请求 /query_token
+        String lockToken = UUID.randomUUID().toString();
+        Boolean locked = redisTemplate.opsForValue()
+                .setIfAbsent(REFRESH_LOCK_KEY, lockToken, 30, TimeUnit.SECONDS);
+        if (!Boolean.TRUE.equals(locked)) {
+            if (!waitForPeer) {
+                scheduleRefresh(RETRY_DELAY_SECONDS);
+                CachedToken token = current;
+                if (token == null) {
+                    throw new BusinessException("其它节点正在刷新电能平台Token");
+                }
+                return token;
+            }
+            CachedToken peerToken = waitForPeerRefresh();
+            if (peerToken != null) {
+                return adopt(peerToken);
+            }
+            log.warn("等待其它节点刷新Token超时，直接请求新Token");
+        }
+
+        try {
+            return adopt(requestNewToken());
+        } finally {
+            if (Boolean.TRUE.equals(locked)) {
+                // 请求超过锁过期时间时锁可能已被其它节点持有，不能直接删除
+                redisTemplate.execute(RELEASE_SCRIPT, Collections.singletonList(REFRESH_LOCK_KEY), lockToken);
+            }
+        }
+    }
+
+    private CachedToken waitForPeerRefresh() {
+        long deadline = System.currentTimeMillis() + PEER_WAIT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            CachedToken shared = loadShared();
+            if (shared != null) {
+                return shared;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从Redis读取其它节点共享的Token，剩余有效期不足刷新窗口的视为不可用
+     */
+    private CachedToken loadShared() {
+        String value = redisTemplate.opsForValue().get(TOKEN_CACHE_KEY);
+        if (value == null) {
+            return null;
+        }
+        CachedToken token = current;
+        if (token != null && token.value.equals(value)) {
+            return null;
+        }
+        Long ttl = redisTemplate.getExpire(TOKEN_CACHE_KEY, TimeUnit.SECONDS);
+        if (ttl == null || ttl <= REFRESH_AHEAD_SECONDS) {
+            return null;
+        }
+        return CachedToken.of(value, ttl);
+    }
+
+    private CachedToken adopt(CachedToken token) {
+        current = token;
+        long delayMillis = Math.max(0, token.refreshAt - System.currentTimeMillis());
+        scheduleRefresh(TimeUnit.MILLISECONDS.toSeconds(delayMillis));
+        return token;
+    }
+
+    /**
+     * 向电能平台请求新的Token，并写入Redis供其它节点共享
+     */
+    private CachedToken requestNewToken() {
+        try {
+            log.info("正在向电能平台请求新的访问Token...");
+
+            TokenRequest tokenRequest = new TokenRequest();
+            tokenRequest.setOperatorID(config.getOperatorId());
+            tokenRequest.setOperatorSecret(config.getOperatorSecret());
+
+            TokenResponse tokenResponse = platformCallExecutor.execute(PlatformCall.QUERY_TOKEN, tokenRequest, null);
+            if (tokenResponse == null) {
+                throw new BusinessException("响应数据为空");
+            }
+
+            if (tokenResponse.getSuccStat() != 0) {
+                String errorMsg = getTokenErrorMessage(tokenResponse.getFailReason());
+                throw new BusinessException("Token获取失败: " + errorMsg);
+            }
+
+            String value = tokenResponse.getAccessToken();
+            if (value == null || value.trim().isEmpty()) {
+                throw new BusinessException("返回的Token为空");
+            }
+
+            long validSeconds = Math.max(tokenResponse.getTokenAvailableTime() - EXPIRY_MARGIN_SECONDS, 60);
+            redisTemplate.opsForValue().set(TOKEN_CACHE_KEY, value, validSeconds, TimeUnit.SECONDS);
+
+            log.info("✅ 电能平台Token获取成功，有效期: {}秒", tokenResponse.getTokenAvailableTime());
+            return CachedToken.of(value, validSeconds);
+
+        } catch (Exception e) {
+            log.error("❌ 获取电能平台Token失败", e);
+            throw new BusinessException("获取电能平台Token失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取Token错误信息
+     */
+    private String getTokenErrorMessage(Integer failReason) {
+        if (failReason == null) {
+            return "未知错误";
+        }
+
+        switch (failReason) {
+            case 0:
+                return "无错误";
+            case 1:
+                return "无此运营商";
+            case 2:
+                return "密钥错误";
+            default:
+                return "自定义错误码: " + failReason;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * 内存中的Token及其过期、刷新时间点（毫秒时间戳）
+     */
+    private static final class CachedToken {
+        private final String value;
+        private final long expiresAt;
+        private final long refreshAt;
+
+        private CachedToken(String value, long expiresAt, long refreshAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.refreshAt = refreshAt;
+        }
+
+        static CachedToken of(String value, long validSeconds) {
+            long now = System.currentTimeMillis();
+            long validMillis = TimeUnit.SECONDS.toMillis(validSeconds);
+            // 有效期较短时至少在一半时提前刷新
+            long refreshAhead = Math.min(TimeUnit.SECONDS.toMillis(REFRESH_AHEAD_SECONDS), validMillis / 2);
+            return new CachedToken(value, now + validMillis, now + validMillis - refreshAhead);
+        }
+    }
+}
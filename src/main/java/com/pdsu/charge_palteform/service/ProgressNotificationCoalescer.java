@@ -0,0 +1,214 @@
+package com.pdsu.charge_palteform.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pdsu.charge_palteform.config.NotificationConfig;
+import com.pdsu.charge_palteform.entity.platefrom.charge.ChargeStatusData;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 充电进度通知合并器
+ * <p>
+ * 平台推送和定时同步可能在同一秒内多次触发同一订单的状态、进度通知。
+ * 这里按订单只保留最新的一份快照，按固定节奏统一发送；
+ * 充电状态发生变化（启动、结束、故障等）时立即发送，不等待合并。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ProgressNotificationCoalescer {
+
+    private final NotificationService notificationService;
+    private final NotificationConfig notificationConfig;
+
+    /** 待发送的最新快照，发送时整条取出 */
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    /** 各订单最近一次已发送的充电状态，用于识别状态变化 */
+    private final Cache<String, Integer> lastChargeStatus = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterAccess(Duration.ofHours(12))
+            .build();
+    /** 已结束的订单，之后提交的合并通知一律丢弃 */
+    private final Cache<String, Boolean> completedOrders = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofHours(1))
+            .build();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "progress-notify-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        long interval = notificationConfig.getRealtime().getProgressInterval();
+        if (interval > 0) {
+            flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        flushQuietly();
+    }
+
+    /**
+     * 提交充电状态通知
+     *
+     * @param transition 调用方已确认订单状态发生变化，需立即发送
+     */
+    public void submitStatus(Long userId, String orderNo, ChargeStatusData statusData, boolean transition) {
+        submitted.incrementAndGet();
+        if (!transition && isCompleted(orderNo)) {
+            // 订单已结束，迟到的状态推送不再发送
+            return;
+        }
+        Integer previous = lastChargeStatus.getIfPresent(orderNo);
+        boolean changed = transition || previous == null || !Objects.equals(previous, statusData.getChargeStatus());
+        if (changed || !coalescingEnabled()) {
+            lastChargeStatus.put(orderNo, statusData.getChargeStatus() != null ? statusData.getChargeStatus() : -1);
+            // 状态变化立即发送，已合并的旧状态不再需要；在 compute 中清除，与定时发送互斥
+            pending.computeIfPresent(orderNo, (key, current) -> {
+                current.statusData = null;
+                return current.progress != null ? current : null;
+            });
+            sent.incrementAndGet();
+            notificationService.sendChargeStatusNotification(userId, orderNo, statusData);
+            return;
+        }
+        pending.compute(orderNo, (key, current) -> {
+            if (isCompleted(key)) {
+                return current;
+            }
+            Pending next = current != null ? current : new Pending(userId);
+            next.statusData = statusData;
+            return next;
+        });
+    }
+
+    /**
+     * 提交充电进度通知，同一订单在一个发送周期内只发送最新一次
+     */
+    public void submitProgress(Long userId, String orderNo, BigDecimal soc, BigDecimal totalPower,
+                               BigDecimal totalFee, Integer chargeDuration) {
+        submitted.incrementAndGet();
+        if (!coalescingEnabled()) {
+            sent.incrementAndGet();
+            notificationService.sendChargeProgressNotification(userId, orderNo, soc, totalPower, totalFee, chargeDuration);
+            return;
+        }
+        pending.compute(orderNo, (key, current) -> {
+            if (isCompleted(key)) {
+                return current;
+            }
+            Pending next = current != null ? current : new Pending(userId);
+            next.progress = new Progress(soc, totalPower, totalFee, chargeDuration);
+            return next;
+        });
+    }
+
+    /**
+     * 订单结束后丢弃尚未发送的进度，避免在完成通知之后再推送旧进度
+     * <p>
+     * 结束标记与待发送快照在同一个 compute 中处理，定时发送要么在此之前完成，
+     * 要么在此之后看到结束标记而放弃发送。
+     */
+    public void discard(String orderNo) {
+        pending.compute(orderNo, (key, current) -> {
+            completedOrders.put(key, Boolean.TRUE);
+            return null;
+        });
+        lastChargeStatus.invalidate(orderNo);
+    }
+
+    private boolean isCompleted(String orderNo) {
+        return completedOrders.getIfPresent(orderNo) != null;
+    }
+
+    private boolean coalescingEnabled() {
+        return notificationConfig.getRealtime().getProgressInterval() > 0;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("发送合并的充电进度通知失败", e);
+        }
+    }
+
+    private void flush() {
+        for (String orderNo : pending.keySet()) {
+            // 发送只是提交到通知执行器，放在 compute 内与 discard、状态变化互斥
+            pending.computeIfPresent(orderNo, (key, item) -> {
+                if (!isCompleted(key)) {
+                    send(key, item);
+                }
+                return null;
+            });
+        }
+    }
+
+    private void send(String orderNo, Pending item) {
+        if (item.statusData != null) {
+            sent.incrementAndGet();
+            notificationService.sendChargeStatusNotification(item.userId, orderNo, item.statusData);
+        }
+        if (item.progress != null) {
+            Progress progress = item.progress;
+            sent.incrementAndGet();
+            notificationService.sendChargeProgressNotification(item.userId, orderNo,
+                    progress.soc, progress.totalPower, progress.totalFee, progress.chargeDuration);
+        }
+    }
+
+    /**
+     * 合并统计：{提交次数, 实际发送次数, 待发送订单数}
+     */
+    public long[] getCounts() {
+        return new long[]{submitted.get(), sent.get(), pending.size()};
+    }
+
+    private static final class Pending {
+        private final Long userId;
+        private volatile ChargeStatusData statusData;
+        private volatile Progress progress;
+
+        private Pending(Long userId) {
+            this.userId = userId;
+        }
+    }
+
+    private static final class Progress {
+        private final BigDecimal soc;
+        private final BigDecimal totalPower;
+        private final BigDecimal totalFee;
+        private final Integer chargeDuration;
+
+        private Progress(BigDecimal soc, BigDecimal totalPower, BigDecimal totalFee, Integer chargeDuration) {
+            this.soc = soc;
+            this.totalPower = totalPower;
+            this.totalFee = totalFee;
+            this.chargeDuration = chargeDuration;
+        }
+    }
+}
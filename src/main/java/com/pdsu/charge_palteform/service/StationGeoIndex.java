@@ -0,0 +1,255 @@
+package com.pdsu.charge_palteform.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.pdsu.charge_palteform.entity.ChargingStation;
+import com.pdsu.charge_palteform.mapper.ChargingStationMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 运营中充电站的内存空间索引
+ * <p>
+ * 按经纬度划分固定大小的网格，半径查询只扫描覆盖查询范围的网格，再按球面距离精确过滤、排序。
+ * 索引数据为不可变快照，刷新时整体替换，查询无锁。
+ * 任一节点同步充电站后都会发布元数据失效消息，各节点收到后合并刷新；另有定时全量刷新兜底。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StationGeoIndex implements MessageListener {
+
+    private static final double EARTH_RADIUS_KM = 6371;
+    private static final double KM_PER_DEGREE = 111.32;
+    /** 网格边长（度），约 5 公里 */
+    private static final double CELL_DEGREES = 0.05;
+    /** 收到失效消息后延迟刷新，合并同一轮同步的多页消息 */
+    private static final long REFRESH_DEBOUNCE_MILLIS = 2000;
+    /** 定时全量刷新间隔，兜底丢失的失效消息 */
+    private static final long PERIODIC_REFRESH_MINUTES = 10;
+
+    private final ChargingStationMapper stationMapper;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final AtomicBoolean refreshPending = new AtomicBoolean();
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "station-geo-refresher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Snapshot snapshot;
+
+    @PostConstruct
+    public void init() {
+        refreshQuietly();
+        listenerContainer.addMessageListener(this, new ChannelTopic(StationMetadataCache.INVALIDATE_CHANNEL));
+        refresher.scheduleWithFixedDelay(this::refreshQuietly,
+                PERIODIC_REFRESH_MINUTES, PERIODIC_REFRESH_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * 充电站元数据有变化（本节点或其它节点同步后发布）
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        requestRefresh();
+    }
+
+    /**
+     * 安排一次延迟刷新，已有待执行的刷新时不重复安排
+     */
+    public void requestRefresh() {
+        if (refreshPending.compareAndSet(false, true)) {
+            refresher.schedule(() -> {
+                refreshPending.set(false);
+                refreshQuietly();
+            }, REFRESH_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("刷新充电站空间索引失败，{}: {}",
+                    snapshot == null ? "附近查询将使用数据库" : "继续使用上次的索引", e.getMessage());
+        }
+    }
+
+    /**
+     * 从数据库重新加载运营中充电站并替换索引
+     */
+    public void refresh() {
+        long start = System.nanoTime();
+        List<ChargingStation> stations = stationMapper.selectList(new LambdaQueryWrapper<ChargingStation>()
+                .eq(ChargingStation::getStationStatus, 2) // 运营中
+                .isNotNull(ChargingStation::getLatitude)
+                .isNotNull(ChargingStation::getLongitude));
+        snapshot = new Snapshot(stations);
+        log.info("充电站空间索引已刷新: {}个充电站，{}个网格，耗时{}ms",
+                stations.size(), snapshot.cells.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 索引是否可用；冷启动或加载失败时调用方应回退到数据库查询
+     */
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * 索引中的充电站数
+     */
+    public int size() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.stations.length;
+    }
+
+    /**
+     * 查询半径内的充电站，按距离由近到远分页
+     *
+     * @param radiusKm 搜索半径（公里）
+     */
+    public NearbyResult queryNearby(double latitude, double longitude, double radiusKm, int offset, int size) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return new NearbyResult(Collections.emptyList(), 0);
+        }
+
+        double[] box = boundingBox(latitude, longitude, radiusKm);
+        int minCellLat = cellOf(box[0]);
+        int maxCellLat = cellOf(box[1]);
+        int minCellLng = cellOf(box[2]);
+        int maxCellLng = cellOf(box[3]);
+
+        List<long[]> hits = new ArrayList<>();
+        for (int cellLat = minCellLat; cellLat <= maxCellLat; cellLat++) {
+            for (int cellLng = minCellLng; cellLng <= maxCellLng; cellLng++) {
+                int[] members = current.cells.get(cellKey(cellLat, cellLng));
+                if (members == null) {
+                    continue;
+                }
+                for (int i : members) {
+                    double distance = distanceKm(latitude, longitude, current.latitudes[i], current.longitudes[i]);
+                    if (distance <= radiusKm) {
+                        // 距离按米取整后与下标一起排序，保证同距离时顺序稳定
+                        hits.add(new long[]{Math.round(distance * 1000), i});
+                    }
+                }
+            }
+        }
+
+        hits.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        int from = Math.min(Math.max(offset, 0), hits.size());
+        int to = Math.min(from + Math.max(size, 0), hits.size());
+        List<ChargingStation> page = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            page.add(current.stations[(int) hits.get(i)[1]]);
+        }
+        return new NearbyResult(page, hits.size());
+    }
+
+    /**
+     * 计算以某点为中心、给定半径的经纬度外接矩形
+     *
+     * @return {minLat, maxLat, minLng, maxLng}
+     */
+    public static double[] boundingBox(double latitude, double longitude, double radiusKm) {
+        double deltaLat = radiusKm / KM_PER_DEGREE;
+        double cosLat = Math.max(Math.cos(Math.toRadians(latitude)), 0.01);
+        double deltaLng = Math.min(radiusKm / (KM_PER_DEGREE * cosLat), 180);
+        return new double[]{
+                Math.max(latitude - deltaLat, -90), Math.min(latitude + deltaLat, 90),
+                Math.max(longitude - deltaLng, -180), Math.min(longitude + deltaLng, 180)
+        };
+    }
+
+    private static double distanceKm(double lat1, double lng1, double lat2, double lng2) {
+        double deltaLat = Math.toRadians(lat2 - lat1);
+        double deltaLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(deltaLat / 2) * Math.sin(deltaLat / 2) +
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) *
+                        Math.sin(deltaLng / 2) * Math.sin(deltaLng / 2);
+        return EARTH_RADIUS_KM * 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    private static int cellOf(double degrees) {
+        return (int) Math.floor(degrees / CELL_DEGREES);
+    }
+
+    private static long cellKey(int cellLat, int cellLng) {
+        return ((long) cellLat << 32) | (cellLng & 0xffffffffL);
+    }
+
+    /**
+     * 半径查询结果
+     */
+    @Getter
+    public static class NearbyResult {
+        private final List<ChargingStation> stations;
+        private final long total;
+
+        public NearbyResult(List<ChargingStation> stations, long total) {
+            this.stations = stations;
+            this.total = total;
+        }
+    }
+
+    /**
+     * 不可变的索引快照
+     */
+    private static final class Snapshot {
+        private final ChargingStation[] stations;
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private final Map<Long, int[]> cells;
+
+        private Snapshot(List<ChargingStation> list) {
+            int size = list.size();
+            stations = list.toArray(new ChargingStation[0]);
+            latitudes = new double[size];
+            longitudes = new double[size];
+            Map<Long, int[]> grid = new HashMap<>();
+            Map<Long, Integer> counts = new HashMap<>();
+            for (int i = 0; i < size; i++) {
+                latitudes[i] = stations[i].getLatitude().doubleValue();
+                longitudes[i] = stations[i].getLongitude().doubleValue();
+                long key = cellKey(cellOf(latitudes[i]), cellOf(longitudes[i]));
+                int count = counts.merge(key, 1, Integer::sum);
+                int[] members = grid.get(key);
+                if (members == null || members.length < count) {
+                    members = members == null ? new int[4] : Arrays.copyOf(members, members.length * 2);
+                    grid.put(key, members);
+                }
+                members[count - 1] = i;
+            }
+            // 去掉数组尾部空位
+            grid.replaceAll((key, members) -> Arrays.copyOf(members, counts.get(key)));
+            cells = grid;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.pdsu.charge_palteform.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.pdsu.charge_palteform.config.MetadataCacheConfig;
+import com.pdsu.charge_palteform.entity.ChargingConnector;
+import com.pdsu.charge_palteform.entity.ChargingStation;
+import com.pdsu.charge_palteform.mapper.ChargingConnectorMapper;
+import com.pdsu.charge_palteform.mapper.ChargingStationMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 充电站/充电桩元数据两级缓存
+ * <p>
+ * 一级为进程内有界缓存，二级为各节点共享的 Redis 缓存，均未命中时查询数据库并回填。
+ * 元数据只在平台同步时变化，同步落库后调用 {@link #invalidate} 删除 Redis 缓存，
+ * 并通过 Redis 频道通知所有节点清理本地缓存。
+ * 返回给调用方的都是副本，调用方修改（如叠加实时状态）不会污染缓存。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StationMetadataCache implements MessageListener {
+
+    public static final String INVALIDATE_CHANNEL = "energy:meta:invalidate";
+    private static final String STATION_KEY_PREFIX = "energy:meta:station:";
+    private static final String CONNECTOR_KEY_PREFIX = "energy:meta:connector:";
+    private static final String STATION_CONNECTORS_KEY_PREFIX = "energy:meta:station_connectors:";
+
+    private final MetadataCacheConfig cacheConfig;
+    private final ChargingStationMapper stationMapper;
+    private final ChargingConnectorMapper connectorMapper;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final AtomicLong redisHits = new AtomicLong();
+    private final AtomicLong dbLoads = new AtomicLong();
+
+    private Cache<String, ChargingStation> stations;
+    private Cache<String, ChargingConnector> connectors;
+    private Cache<String, List<ChargingConnector>> stationConnectors;
+    private JavaType connectorListType;
+
+    @PostConstruct
+    public void init() {
+        stations = newLocalCache();
+        connectors = newLocalCache();
+        stationConnectors = newLocalCache();
+        connectorListType = objectMapper.getTypeFactory().constructCollectionType(List.class, ChargingConnector.class);
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+    }
+
+    private <V> Cache<String, V> newLocalCache() {
+        return Caffeine.newBuilder()
+                .maximumSize(cacheConfig.getLocalMaxSize())
+                .expireAfterWrite(Duration.ofSeconds(cacheConfig.getLocalTtl()))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 按充电站编号查询，不存在时返回 null
+     */
+    public ChargingStation getStation(String stationId) {
+        if (!cacheConfig.isEnabled()) {
+            return loadStationFromDb(stationId);
+        }
+        return copyOf(stations.get(stationId, id -> readThrough(STATION_KEY_PREFIX + id,
+                ChargingStation.class, () -> loadStationFromDb(id))));
+    }
+
+    /**
+     * 按充电桩编号查询，不存在时返回 null
+     */
+    public ChargingConnector getConnector(String connectorId) {
+        if (!cacheConfig.isEnabled()) {
+            return loadConnectorFromDb(connectorId);
+        }
+        return copyOf(connectors.get(connectorId, id -> readThrough(CONNECTOR_KEY_PREFIX + id,
+                ChargingConnector.class, () -> loadConnectorFromDb(id))));
+    }
+
+    /**
+     * 查询充电站下的充电桩，按充电桩编号排序
+     */
+    public List<ChargingConnector> getStationConnectors(String stationId) {
+        if (!cacheConfig.isEnabled()) {
+            return loadStationConnectorsFromDb(stationId);
+        }
+        List<ChargingConnector> cached = stationConnectors.get(stationId, id -> {
+            String key = STATION_CONNECTORS_KEY_PREFIX + id;
+            List<ChargingConnector> list = readRedis(key, connectorListType);
+            if (list != null) {
+                redisHits.incrementAndGet();
+                return list;
+            }
+            list = loadStationConnectorsFromDb(id);
+            writeRedis(key, list);
+            return list;
+        });
+        return cached.stream().map(this::copyOf).collect(Collectors.toList());
+    }
+
+    /**
+     * 批量查询充电站，返回充电站编号到充电站的映射，不存在的编号不出现在结果中
+     */
+    public Map<String, ChargingStation> getStations(Collection<String> stationIds) {
+        if (!cacheConfig.isEnabled()) {
+            return loadStationsFromDb(stationIds);
+        }
+        Map<String, ChargingStation> cached = stations.getAll(stationIds, ids -> readThroughAll(ids,
+                STATION_KEY_PREFIX, ChargingStation.class, this::loadStationsFromDb));
+        return copyAll(cached);
+    }
+
+    /**
+     * 批量查询充电桩，返回充电桩编号到充电桩的映射，不存在的编号不出现在结果中
+     */
+    public Map<String, ChargingConnector> getConnectors(Collection<String> connectorIds) {
+        if (!cacheConfig.isEnabled()) {
+            return loadConnectorsFromDb(connectorIds);
+        }
+        Map<String, ChargingConnector> cached = connectors.getAll(connectorIds, ids -> readThroughAll(ids,
+                CONNECTOR_KEY_PREFIX, ChargingConnector.class, this::loadConnectorsFromDb));
+        return copyAll(cached);
+    }
+
+    /**
+     * 元数据落库后调用：删除 Redis 缓存并通知所有节点清理本地缓存
+     */
+    public void invalidate(Collection<String> stationIds, Collection<String> connectorIds) {
+        if ((stationIds == null || stationIds.isEmpty()) && (connectorIds == null || connectorIds.isEmpty())) {
+            return;
+        }
+        InvalidateMessage message = new InvalidateMessage();
+        message.setStationIds(stationIds == null ? Collections.emptyList() : new ArrayList<>(stationIds));
+        message.setConnectorIds(connectorIds == null ? Collections.emptyList() : new ArrayList<>(connectorIds));
+        evictLocal(message);
+
+        try {
+            List<String> keys = new ArrayList<>();
+            for (String stationId : message.getStationIds()) {
+                keys.add(STATION_KEY_PREFIX + stationId);
+                keys.add(STATION_CONNECTORS_KEY_PREFIX + stationId);
+            }
+            for (String connectorId : message.getConnectorIds()) {
+                keys.add(CONNECTOR_KEY_PREFIX + connectorId);
+            }
+            redisTemplate.delete(keys);
+            redisTemplate.convertAndSend(INVALIDATE_CHANNEL, objectMapper.writeValueAsString(message));
+        } catch (Exception e) {
+            // 其他节点的本地缓存会在过期后自然刷新
+            log.warn("发布元数据缓存失效消息失败: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            evictLocal(objectMapper.readValue(message.getBody(), InvalidateMessage.class));
+        } catch (Exception e) {
+            log.warn("处理元数据缓存失效消息失败: {}", e.getMessage());
+        }
+    }
+
+    private void evictLocal(InvalidateMessage message) {
+        if (message.getStationIds() != null) {
+            stations.invalidateAll(message.getStationIds());
+            stationConnectors.invalidateAll(message.getStationIds());
+        }
+        if (message.getConnectorIds() != null) {
+            connectors.invalidateAll(message.getConnectorIds());
+        }
+    }
+
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", cacheConfig.isEnabled());
+        stats.put("station", localStats(stations));
+        stats.put("connector", localStats(connectors));
+        stats.put("stationConnectors", localStats(stationConnectors));
+        stats.put("redisHits", redisHits.get());
+        stats.put("dbLoads", dbLoads.get());
+        return stats;
+    }
+
+    private Map<String, Object> localStats(Cache<String, ?> cache) {
+        CacheStats cacheStats = cache.stats();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", cache.estimatedSize());
+        stats.put("hitCount", cacheStats.hitCount());
+        stats.put("missCount", cacheStats.missCount());
+        stats.put("hitRate", cacheStats.hitRate());
+        return stats;
+    }
+
+    private <V> V readThrough(String key, Class<V> type, Supplier<V> loader) {
+        V value = readRedis(key, objectMapper.constructType(type));
+        if (value != null) {
+            redisHits.incrementAndGet();
+            return value;
+        }
+        value = loader.get();
+        if (value != null) {
+            writeRedis(key, value);
+        }
+        return value;
+    }
+
+    private <V> Map<String, V> readThroughAll(Set<? extends String> ids, String keyPrefix, Class<V> type,
+                                              Function<Collection<String>, Map<String, V>> loader) {
+        List<String> idList = new ArrayList<>(ids);
+        Map<String, V> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        List<String> values = null;
+        try {
+            values = redisTemplate.opsForValue().multiGet(idList.stream().map(id -> keyPrefix + id).collect(Collectors.toList()));
+        } catch (Exception e) {
+            log.debug("读取元数据 Redis 缓存失败: {}", e.getMessage());
+        }
+        for (int i = 0; i < idList.size(); i++) {
+            V value = values == null ? null : parse(values.get(i), objectMapper.constructType(type));
+            if (value != null) {
+                result.put(idList.get(i), value);
+            } else {
+                missing.add(idList.get(i));
+            }
+        }
+        redisHits.addAndGet(result.size());
+
+        if (!missing.isEmpty()) {
+            Map<String, V> loaded = loader.apply(missing);
+            loaded.forEach((id, value) -> writeRedis(keyPrefix + id, value));
+            result.putAll(loaded);
+        }
+        return result;
+    }
+
+    private <V> V readRedis(String key, JavaType type) {
+        try {
+            return parse(redisTemplate.opsForValue().get(key), type);
+        } catch (Exception e) {
+            log.debug("读取元数据 Redis 缓存失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private <V> V parse(String json, JavaType type) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (Exception e) {
+            log.debug("解析元数据缓存失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeRedis(String key, Object value) {
+        try {
+            redisTemplate.opsForValue().set(key, objectMapper.writeValueAsString(value),
+                    Duration.ofSeconds(cacheConfig.getRedisTtl()));
+        } catch (Exception e) {
+            log.debug("写入元数据 Redis 缓存失败: {}", e.getMessage());
+        }
+    }
+
+    private ChargingStation loadStationFromDb(String stationId) {
+        dbLoads.incrementAndGet();
+        return stationMapper.selectOne(new LambdaQueryWrapper<ChargingStation>()
+                .eq(ChargingStation::getStationId, stationId));
+    }
+
+    private ChargingConnector loadConnectorFromDb(String connectorId) {
+        dbLoads.incrementAndGet();
+        return connectorMapper.selectOne(new LambdaQueryWrapper<ChargingConnector>()
+                .eq(ChargingConnector::getConnectorId, connectorId));
+    }
+
+    private List<ChargingConnector> loadStationConnectorsFromDb(String stationId) {
+        dbLoads.incrementAndGet();
+        return connectorMapper.selectList(new LambdaQueryWrapper<ChargingConnector>()
+                .eq(ChargingConnector::getStationId, stationId)
+                .orderByAsc(ChargingConnector::getConnectorId));
+    }
+
+    private Map<String, ChargingStation> loadStationsFromDb(Collection<String> stationIds) {
+        if (stationIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        dbLoads.incrementAndGet();
+        return stationMapper.selectList(new LambdaQueryWrapper<ChargingStation>()
+                        .in(ChargingStation::getStationId, stationIds))
+                .stream()
+                .collect(Collectors.toMap(ChargingStation::getStationId, s -> s, (a, b) -> a));
+    }
+
+    private Map<String, ChargingConnector> loadConnectorsFromDb(Collection<String> connectorIds) {
+        if (connectorIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        dbLoads.incrementAndGet();
+        return connectorMapper.selectList(new LambdaQueryWrapper<ChargingConnector>()
+                        .in(ChargingConnector::getConnectorId, connectorIds))
+                .stream()
+                .collect(Collectors.toMap(ChargingConnector::getConnectorId, c -> c, (a, b) -> a));
+    }
+
+    private <V> Map<String, V> copyAll(Map<String, V> cached) {
+        Map<String, V> result = new HashMap<>(cached.size() * 2);
+        cached.forEach((id, value) -> result.put(id, copyOf(value)));
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <V> V copyOf(V source) {
+        if (source == null) {
+            return null;
+        }
+        V copy = (V) BeanUtils.instantiateClass(source.getClass());
+        BeanUtils.copyProperties(source, copy);
+        return copy;
+    }
+
+    /**
+     * 缓存失效消息
+     */
+    @Data
+    public static class InvalidateMessage {
+        private List<String> stationIds;
+        private List<String> connectorIds;
+    }
+}
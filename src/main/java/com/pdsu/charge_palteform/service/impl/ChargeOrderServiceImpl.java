@@ -3,6 +3,7 @@ package com.pdsu.charge_palteform.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.pdsu.charge_palteform.config.FollowUpConfig;
 import com.pdsu.charge_palteform.entity.ChargeOrder;
 import com.pdsu.charge_palteform.entity.ChargingConnector;
 import com.pdsu.charge_palteform.entity.ChargingStation;
@@ -18,16 +19,21 @@ import com.pdsu.charge_palteform.exception.BusinessException;
 import com.pdsu.charge_palteform.mapper.ChargeOrderMapper;
 import com.pdsu.charge_palteform.service.*;
 import com.pdsu.charge_palteform.utils.GenerateUtils;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 
@@ -43,6 +49,21 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
     private final EnergyPlatformService energyPlatformService;
     private final CouponService couponService;
     private final NotificationService notificationService;
+    private final FollowUpScheduler followUpScheduler;
+    private final FollowUpConfig followUpConfig;
+    private final ChargeTelemetryBuffer telemetryBuffer;
+    private final ChargeTelemetryStore telemetryStore;
+    private final OrderStatisticsService orderStatisticsService;
+    private final OrderStateManagerService orderStateManagerService;
+
+    private static final String FOLLOW_UP_AFTER_START = "charge_started";
+    private static final String FOLLOW_UP_AFTER_STOP = "charge_stopped";
+
+    @PostConstruct
+    public void registerFollowUpHandlers() {
+        followUpScheduler.registerHandler(FOLLOW_UP_AFTER_START, this::followUpAfterStart);
+        followUpScheduler.registerHandler(FOLLOW_UP_AFTER_STOP, this::followUpAfterStop);
+    }
 
     @Override
     @Transactional
@@ -96,6 +117,7 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
             order.setServiceFee(BigDecimal.ZERO);
 
             order.setSoc(BigDecimal.ZERO); // 初始SOC
+            order.setVersion(0);
             // 新增：设置充电控制参数
             order.setTargetChargeDuration(request.getChargeDuration());
             order.setTargetSoc(request.getTargetSoc());
@@ -107,6 +129,7 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
             if (!saveResult) {
                 throw new BusinessException("创建订单失败");
             }
+            orderStatisticsService.onCreated(order);
             log.info("创建充电订单成功: {}, ID: {}", order.getOrderNo(), order.getId());
 
             // 7. 调用电能平台启动充电
@@ -130,6 +153,9 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
                 order.setStatus(6); // 异常
                 order.setChargeStatus(5); // 未知
                 boolean updateResult = updateById(order);
+                if (updateResult) {
+                    orderStatisticsService.onStatusChange(order, 1, 6);
+                }
                 log.info("订单状态更新为异常: {}, 更新结果: {}", order.getOrderNo(), updateResult);
                 throw new BusinessException("启动充电失败：" + e.getMessage());
             }
@@ -149,16 +175,17 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
                 log.error("订单状态更新失败，订单号: {}", order.getOrderNo());
                 throw new BusinessException("订单状态更新失败");
             }
+            orderStatisticsService.onStatusChange(order, 1, 2);
 
             //发送实时启动通知
             ChargingStation station = stationService.getById(connector.getStationId());
             notificationService.sendChargeStartNotification(
                     userId, order.getOrderNo(), station.getStationName(), request.getConnectorId());
 
-            // 9. 立即从平台查询一次状态进行同步
+            // 9. 稍后从平台查询一次状态进行同步
             try {
-                log.info("立即同步平台状态...");
-                asyncSyncOrderStatus(order.getOrderNo(), platformOrderNo);
+                followUpScheduler.schedule(FOLLOW_UP_AFTER_START, order.getOrderNo(), platformOrderNo,
+                        followUpConfig.getPostStartDelay());
             } catch (Exception e) {
                 log.warn("立即同步状态失败，将由定时任务处理: {}", e.getMessage());
             }
@@ -184,18 +211,17 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
         }
     }
 
-    @Async
-    public void asyncSyncOrderStatus(String orderNo, String platformOrderNo) {
-        try {
-            // 等待3秒让平台处理
-            Thread.sleep(3000);
-
-            log.info("开始异步同步订单状态: {}", orderNo);
-            syncOrderStatusFromPlatform(orderNo, platformOrderNo);
+    /**
+     * 启动后跟进查询：同步平台状态，平台仍处于启动中时稍后重试
+     */
+    private boolean followUpAfterStart(FollowUpScheduler.Task task) {
+        log.info("开始同步启动后的订单状态: {}，第{}次", task.getOrderNo(), task.getAttempt());
+        syncOrderStatusFromPlatform(task.getOrderNo(), task.getPlatformOrderNo());
 
-        } catch (Exception e) {
-            log.error("异步同步订单状态失败: {}", e.getMessage());
-        }
+        ChargeOrder order = getOne(new LambdaQueryWrapper<ChargeOrder>()
+                .select(ChargeOrder::getId, ChargeOrder::getStatus, ChargeOrder::getChargeStatus)
+                .eq(ChargeOrder::getOrderNo, task.getOrderNo()));
+        return order == null || !Integer.valueOf(1).equals(order.getChargeStatus()); // 1-启动中
     }
 
 
@@ -240,24 +266,35 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
                 log.error("调用电能平台停止充电失败", e);
                 throw new BusinessException("停止充电失败：" + e.getMessage());
             }
-            // 3. 更新订单状态
-            order.setChargeStatus(3);
-            order.setStopReason(0);
-            order.setEndTime(LocalDateTime.now()); // 设置结束时间
-            // 立即更新数据库
-            boolean updateResult = updateById(order);
-            if (!updateResult) {
-                log.error("更新订单状态失败，订单号: {}", order.getOrderNo());
-                throw new BusinessException("更新订单状态失败");
+            // 3. 更新订单状态，期间平台推送可能已更新订单，按版本号在最新订单上应用
+            ChargeOrder updated = orderStateManagerService.updateWithVersion(order, current -> {
+                if (!Integer.valueOf(2).equals(current.getStatus())) {
+                    return false;
+                }
+                current.setChargeStatus(3);
+                current.setStopReason(0);
+                current.setEndTime(LocalDateTime.now()); // 设置结束时间
+                return true;
+            });
+            if (updated == null) {
+                ChargeOrder latest = getById(order.getId());
+                if (latest == null || Integer.valueOf(2).equals(latest.getStatus())) {
+                    log.error("更新订单状态失败，订单号: {}", order.getOrderNo());
+                    throw new BusinessException("更新订单状态失败");
+                }
+                // 平台已先行结束订单，以最新状态返回
+                updated = latest;
             }
+            order = updated;
             log.info("订单状态已更新: orderNo={}, status={}, chargeStatus={}, stopReason={}",
                     order.getOrderNo(), order.getStatus(), order.getChargeStatus(), order.getStopReason());
 
             notificationService.sendChargeStatusNotification(
                     userId, order.getOrderNo(), convertOrderToStatusData(order));
 
-            // 4. 异步查询最终状态
-            asyncQueryFinalStatus(order.getOrderNo(), order.getPlatformOrderNo());
+            // 4. 稍后查询最终状态
+            followUpScheduler.schedule(FOLLOW_UP_AFTER_STOP, order.getOrderNo(), order.getPlatformOrderNo(),
+                    followUpConfig.getPostStopDelay());
             // 5. 构建响应
             StopChargeResponse response = new StopChargeResponse();
             response.setOrderNo(order.getOrderNo());
@@ -277,66 +314,36 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
         }
     }
 
-    @Async("taskExecutor")
-    public void asyncQueryFinalStatus(String orderNo, String platformOrderNo) {
-        try {
-            // 等待5秒让平台处理停止请求
-            Thread.sleep(5000);
-            log.info("开始查询订单最终状态: {}", orderNo);
-            // 查询最终状态
-            ChargeStatusData statusData = energyPlatformService.queryChargeStatus(platformOrderNo);
-
-            if (statusData != null) {
-                ChargeOrder order = getOne(new LambdaQueryWrapper<ChargeOrder>()
-                        .eq(ChargeOrder::getOrderNo, orderNo));
-
-                if (order != null) {
-                    boolean needUpdate = false;
-                    ChargeOrder updateOrder = new ChargeOrder();
-                    updateOrder.setId(order.getId());
-
-                    // 如果平台状态是已结束，更新为充电完成
-                    if (statusData.getChargeStatus() != null && statusData.getChargeStatus() == 4) {
-                        updateOrder.setStatus(3); // 充电完成
-                        updateOrder.setChargeStatus(4); // 已结束
-                        needUpdate = true;
-                        log.info("订单{}状态更新为充电完成", orderNo);
-                    }
-
-                    // 更新最终的费用信息
-                    if (statusData.getTotalPower() != null) {
-                        updateOrder.setTotalPower(statusData.getTotalPower());
-                        needUpdate = true;
-                    }
-                    if (statusData.getElectricityFee() != null) {
-                        updateOrder.setElectricityFee(statusData.getElectricityFee());
-                        needUpdate = true;
-                    }
-                    if (statusData.getServiceFee() != null) {
-                        updateOrder.setServiceFee(statusData.getServiceFee());
-                        needUpdate = true;
-                    }
-                    if (statusData.getTotalFee() != null) {
-                        updateOrder.setTotalFee(statusData.getTotalFee());
-                        needUpdate = true;
-                    }
-
-                    // 更新最终结束时间
-                    if (statusData.getEndTime() != null) {
-                        updateOrder.setEndTime(statusData.getEndTime());
-                        needUpdate = true;
-                    }
+    /**
+     * 停止后查询最终状态，平台尚未结束时稍后重试
+     */
+    private boolean followUpAfterStop(FollowUpScheduler.Task task) {
+        String orderNo = task.getOrderNo();
+        log.info("开始查询订单最终状态: {}，第{}次", orderNo, task.getAttempt());
+        // 查询最终状态
+        ChargeStatusData statusData = energyPlatformService.queryChargeStatus(task.getPlatformOrderNo());
+
+        if (statusData == null) {
+            return false;
+        }
 
-                    if (needUpdate) {
-                        updateById(updateOrder);
-                        log.info("订单{}最终状态更新完成", orderNo);
-                    }
-                }
-            }
+        // 平台已结束时由状态管理服务完成订单，同时结束进度推送并发送完成通知；费用只增不减
+        orderStateManagerService.updateOrderStatusSafely(orderNo, statusData, "STOP_FOLLOW_UP");
+        if (!Integer.valueOf(4).equals(statusData.getChargeStatus())) {
+            // 平台尚未结束，稍后重试以获取最终费用
+            return false;
+        }
 
-        } catch (Exception e) {
-            log.error("查询订单最终状态失败: {}", e.getMessage());
+        // 版本冲突重试用尽时订单仍未结束，稍后重新查询后再写入
+        ChargeOrder order = getOne(new LambdaQueryWrapper<ChargeOrder>()
+                .select(ChargeOrder::getId, ChargeOrder::getChargeStatus)
+                .eq(ChargeOrder::getOrderNo, orderNo));
+        if (order != null && !Integer.valueOf(4).equals(order.getChargeStatus())) {
+            log.info("订单{}尚未更新为已结束，稍后重试", orderNo);
+            return false;
         }
+        log.info("订单{}最终状态更新完成", orderNo);
+        return true;
     }
 
 
@@ -349,6 +356,7 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
         if (order == null) {
             throw new BusinessException("订单不存在");
         }
+        telemetryBuffer.overlay(order);
 
         // 2. 查询充电桩和充电站信息
         ChargingConnector connector = stationService.getConnectorById(order.getConnectorId());
@@ -361,7 +369,7 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
                 ChargeStatusData statusData = energyPlatformService.queryChargeStatus(order.getPlatformOrderNo());
                 log.info("statusData: {}", statusData);
                 // 更新本地订单数据
-                updateOrderFromPlatformStatus(order, statusData);
+                order = updateOrderFromPlatformStatus(order, statusData);
             } catch (Exception e) {
                 log.warn("查询电能平台充电状态失败: {}", e.getMessage());
                 // 查询失败不影响返回本地数据
@@ -400,92 +408,65 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
     }
 
     /**
-     * 根据电能平台状态数据更新本地订单
+     * 根据电能平台状态数据更新本地订单，返回更新后的最新订单；满足停止条件时自动停止充电
      */
-    private void updateOrderFromPlatformStatus(ChargeOrder order, ChargeStatusData statusData) {
+    private ChargeOrder updateOrderFromPlatformStatus(ChargeOrder order, ChargeStatusData statusData) {
+        if (statusData == null) {
+            return order;
+        }
         try {
-            boolean needUpdate = false;
-            boolean shouldStop = false;
-
-            // 更新充电状态
-            if (statusData.getChargeStatus() != null && !statusData.getChargeStatus().equals(order.getChargeStatus())) {
-                order.setChargeStatus(statusData.getChargeStatus());
-                needUpdate = true;
-            }
-
-            // 更新SOC
-            if (statusData.getSoc() != null && statusData.getSoc().compareTo(order.getSoc() != null ? order.getSoc() : BigDecimal.ZERO) != 0) {
-                order.setSoc(statusData.getSoc());
-                needUpdate = true;
+            // 状态只前进、累计电量费用只增不减，由状态管理服务按版本号写入
+            orderStateManagerService.updateOrderStatusSafely(order.getOrderNo(), statusData, "USER_QUERY");
 
-                // 检查SOC停止条件
-                if (order.getStopCondition() != null && order.getStopCondition() == 2 &&
-                        order.getTargetSoc() != null && statusData.getSoc().compareTo(order.getTargetSoc()) >= 0) {
-                    shouldStop = true;
-                    log.info("订单{}达到目标电量{}%，准备停止充电", order.getOrderNo(), order.getTargetSoc());
-                }
+            ChargeOrder latest = getById(order.getId());
+            if (latest == null) {
+                return order;
             }
+            telemetryBuffer.overlay(latest);
 
-            // 更新费用信息
-            if (statusData.getTotalPower() != null) {
-                order.setTotalPower(statusData.getTotalPower());
-                needUpdate = true;
-            }
-            if (statusData.getElectricityFee() != null) {
-                order.setElectricityFee(statusData.getElectricityFee());
-                needUpdate = true;
-            }
-            if (statusData.getServiceFee() != null) {
-                order.setServiceFee(statusData.getServiceFee());
-                needUpdate = true;
-            }
-            if (statusData.getTotalFee() != null) {
-                order.setTotalFee(statusData.getTotalFee());
-                needUpdate = true;
-                // 检查金额停止条件
-                if (order.getStopCondition() != null && order.getStopCondition() == 3 &&
-                        order.getTargetAmount() != null && statusData.getTotalFee().compareTo(order.getTargetAmount()) >= 0) {
-                    shouldStop = true;
-                    log.info("订单{}达到目标金额{}元，准备停止充电", order.getOrderNo(), order.getTargetAmount());
-                }
+            // 仍在充电且尚未发出停止时检查停止条件
+            if (Integer.valueOf(2).equals(latest.getStatus()) && !Integer.valueOf(3).equals(latest.getChargeStatus())
+                    && reachedStopCondition(latest)) {
+                autoStopCharge(latest);
             }
+            return latest;
+        } catch (Exception e) {
+            log.error("更新订单状态失败", e);
+            return order;
+        }
+    }
 
-            // 检查时间停止条件
-            if (order.getStopCondition() != null && order.getStopCondition() == 1 &&
-                    order.getTargetChargeDuration() != null && order.getStartTime() != null) {
-                long chargedMinutes = ChronoUnit.MINUTES.between(order.getStartTime(), LocalDateTime.now());
-                if (chargedMinutes >= order.getTargetChargeDuration()) {
-                    shouldStop = true;
+    /**
+     * 订单是否达到用户设置的停止条件：1-时长，2-电量，3-金额
+     */
+    private boolean reachedStopCondition(ChargeOrder order) {
+        if (order.getStopCondition() == null) {
+            return false;
+        }
+        switch (order.getStopCondition()) {
+            case 1:
+                if (order.getTargetChargeDuration() != null && order.getStartTime() != null &&
+                        ChronoUnit.MINUTES.between(order.getStartTime(), LocalDateTime.now()) >= order.getTargetChargeDuration()) {
                     log.info("订单{}达到目标时长{}分钟，准备停止充电", order.getOrderNo(), order.getTargetChargeDuration());
+                    return true;
                 }
-            }
-
-            // 更新结束时间
-            if (statusData.getEndTime() != null && order.getEndTime() == null) {
-                order.setEndTime(statusData.getEndTime());
-                needUpdate = true;
-            }
-
-            // 根据充电状态更新订单状态
-            if (statusData.getChargeStatus() != null) {
-                if (statusData.getChargeStatus() == 4 && order.getStatus() == 2) { // 已结束
-                    order.setStatus(3); // 充电完成
-                    needUpdate = true;
+                return false;
+            case 2:
+                if (order.getTargetSoc() != null && order.getSoc() != null &&
+                        order.getSoc().compareTo(order.getTargetSoc()) >= 0) {
+                    log.info("订单{}达到目标电量{}%，准备停止充电", order.getOrderNo(), order.getTargetSoc());
+                    return true;
                 }
-            }
-
-            if (needUpdate) {
-                updateById(order);
-                log.debug("订单{}状态已从电能平台同步更新", order.getOrderNo());
-            }
-
-            // 如果满足停止条件，自动停止充电
-            if (shouldStop && order.getStatus() == 2) { // 仍在充电中
-                autoStopCharge(order);
-            }
-
-        } catch (Exception e) {
-            log.error("更新订单状态失败", e);
+                return false;
+            case 3:
+                if (order.getTargetAmount() != null && order.getTotalFee() != null &&
+                        order.getTotalFee().compareTo(order.getTargetAmount()) >= 0) {
+                    log.info("订单{}达到目标金额{}元，准备停止充电", order.getOrderNo(), order.getTargetAmount());
+                    return true;
+                }
+                return false;
+            default:
+                return false;
         }
     }
 
@@ -527,9 +508,12 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
         Page<ChargeOrder> page = new Page<>(request.getPageNum(), request.getPageSize());
         Page<ChargeOrder> result = page(page, queryWrapper);
 
+        // 一次性批量查出本页涉及的充电桩和充电站
+        OrderMetadata metadata = loadOrderMetadata(result.getRecords());
+
         // 转换为DTO
         List<ChargeOrderListItem> items = result.getRecords().stream()
-                .map(this::convertToListItem)
+                .map(order -> convertToListItem(order, metadata))
                 .collect(Collectors.toList());
 
         return PageResponse.of(items, result.getTotal(), request.getPageNum(), request.getPageSize());
@@ -544,8 +528,24 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
         if (order == null) {
             throw new BusinessException("订单不存在");
         }
+        telemetryBuffer.overlay(order);
 
-        return convertToDetail(order);
+        ChargeOrderDetail detail = convertToDetail(order, loadOrderMetadata(Collections.singletonList(order)));
+        detail.setChargeDetails(telemetryStore.getChargeDetails(order.getId()));
+        return detail;
+    }
+
+    @Override
+    public ChargeCurveResponse getChargeCurve(Long userId, String orderNo) {
+        ChargeOrder order = getOne(new LambdaQueryWrapper<ChargeOrder>()
+                .eq(ChargeOrder::getOrderNo, orderNo)
+                .eq(ChargeOrder::getUserId, userId));
+
+        if (order == null) {
+            throw new BusinessException("订单不存在");
+        }
+
+        return telemetryStore.getCurve(order);
     }
 
     @Override
@@ -586,9 +586,14 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
             );
 
             if (stopResult) {
-                order.setChargeStatus(3); // 停止中
-                order.setStopReason(5); // 自动停止
-                updateById(order);
+                orderStateManagerService.updateWithVersion(order, current -> {
+                    if (!Integer.valueOf(2).equals(current.getStatus())) {
+                        return false;
+                    }
+                    current.setChargeStatus(3); // 停止中
+                    current.setStopReason(5); // 自动停止
+                    return true;
+                });
 
                 // 发送通知
                 notificationService.sendSystemNotification(
@@ -622,10 +627,44 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
         return PlatformChargeStatusEnum.getDesc(chargeStatus);
     }
 
+    /**
+     * 批量加载订单关联的充电桩和充电站：按去重后的ID各查询一次
+     */
+    private OrderMetadata loadOrderMetadata(List<ChargeOrder> orders) {
+        Set<String> connectorIds = orders.stream()
+                .map(ChargeOrder::getConnectorId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, ChargingConnector> connectors = stationService.getConnectorsByIds(connectorIds);
+
+        Set<String> stationIds = new HashSet<>();
+        for (ChargeOrder order : orders) {
+            ChargingConnector connector = connectors.get(order.getConnectorId());
+            String stationId = connector != null ? connector.getStationId() : order.getStationId();
+            if (stationId != null) {
+                stationIds.add(stationId);
+            }
+        }
+        return new OrderMetadata(connectors, stationService.getStationsByIds(stationIds));
+    }
+
+    /**
+     * 一页订单关联的充电桩、充电站
+     */
+    private static class OrderMetadata {
+        private final Map<String, ChargingConnector> connectors;
+        private final Map<String, ChargingStation> stations;
+
+        private OrderMetadata(Map<String, ChargingConnector> connectors, Map<String, ChargingStation> stations) {
+            this.connectors = connectors;
+            this.stations = stations;
+        }
+    }
+
     /**
      * 转换为列表项DTO
      */
-    private ChargeOrderListItem convertToListItem(ChargeOrder order) {
+    private ChargeOrderListItem convertToListItem(ChargeOrder order, OrderMetadata metadata) {
         ChargeOrderListItem item = new ChargeOrderListItem();
         item.setOrderNo(order.getOrderNo());
         item.setStatus(order.getStatus());
@@ -642,23 +681,18 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
         }
 
         // 获取充电站和充电桩名称
-        try {
-            ChargingConnector connector = stationService.getConnectorById(order.getConnectorId());
-            ChargingStation station = stationService.getById(connector.getStationId());
-            item.setStationName(station.getStationName());
-            item.setConnectorName(connector.getConnectorName());
-        } catch (Exception e) {
-            log.warn("获取充电站信息失败: {}", e.getMessage());
-            item.setStationName("未知充电站");
-            item.setConnectorName("未知充电桩");
-        }
+        ChargingConnector connector = metadata.connectors.get(order.getConnectorId());
+        ChargingStation station = metadata.stations.get(
+                connector != null ? connector.getStationId() : order.getStationId());
+        item.setStationName(station != null ? station.getStationName() : "未知充电站");
+        item.setConnectorName(connector != null ? connector.getConnectorName() : "未知充电桩");
         return item;
     }
 
     /**
      * 转换为详情DTO
      */
-    private ChargeOrderDetail convertToDetail(ChargeOrder order) {
+    private ChargeOrderDetail convertToDetail(ChargeOrder order, OrderMetadata metadata) {
         ChargeOrderDetail detail = new ChargeOrderDetail();
         detail.setOrderNo(order.getOrderNo());
         detail.setStatus(order.getStatus());
@@ -680,21 +714,27 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
             detail.setChargeDuration((int) ChronoUnit.MINUTES.between(order.getStartTime(), endTime));
         }
 
-        // 获取充电站和充电桩信息
-        try {
-            ChargingConnector connector = stationService.getConnectorById(order.getConnectorId());
-            ChargingStation station = stationService.getById(connector.getStationId());
-
-            detail.setStationId(station.getStationId());
+        // 获取充电站和充电桩信息；查不到时编号仍取自订单
+        detail.setStationId(order.getStationId());
+        detail.setConnectorId(order.getConnectorId());
+        ChargingConnector connector = metadata.connectors.get(order.getConnectorId());
+        ChargingStation station = metadata.stations.get(
+                connector != null ? connector.getStationId() : order.getStationId());
+        if (station != null) {
+            if (detail.getStationId() == null) {
+                detail.setStationId(station.getStationId());
+            }
             detail.setStationName(station.getStationName());
             detail.setStationAddress(station.getAddress());
-            detail.setConnectorId(connector.getConnectorId());
+        } else {
+            log.warn("获取充电站信息失败: orderNo={}", order.getOrderNo());
+        }
+        if (connector != null) {
             detail.setConnectorName(connector.getConnectorName());
             detail.setConnectorType(connector.getConnectorType());
             detail.setConnectorTypeText(ConnectorTypeEnum.getDesc(connector.getConnectorType()));
-
-        } catch (Exception e) {
-            log.warn("获取充电站信息失败: {}", e.getMessage());
+        } else {
+            log.warn("获取充电桩信息失败: orderNo={}", order.getOrderNo());
         }
         return detail;
     }
@@ -711,91 +751,15 @@ public class ChargeOrderServiceImpl  extends ServiceImpl<ChargeOrderMapper, Char
             log.info("获取到平台状态数据: chargeStatus={}, totalPower={}, totalFee={}",
                     statusData.getChargeStatus(), statusData.getTotalPower(), statusData.getTotalFee());
 
-            ChargeOrder order = getOne(new LambdaQueryWrapper<ChargeOrder>()
-                    .eq(ChargeOrder::getOrderNo, orderNo));
-
-            if (order == null) {
-                log.warn("本地订单不存在: {}", orderNo);
-                return;
-            }
-
-            boolean needUpdate = false;
-            ChargeOrder updateOrder = new ChargeOrder();
-            updateOrder.setId(order.getId());
-
-            // 更新充电状态
-            if (statusData.getChargeStatus() != null && !statusData.getChargeStatus().equals(order.getChargeStatus())) {
-                updateOrder.setChargeStatus(statusData.getChargeStatus());
-                needUpdate = true;
-                log.info("更新充电状态: {} -> {}", order.getChargeStatus(), statusData.getChargeStatus());
-            }
-
-            // 根据充电状态更新订单状态
-            Integer newOrderStatus = mapChargeStatusToOrderStatus(statusData.getChargeStatus());
-            if (newOrderStatus != null && !newOrderStatus.equals(order.getStatus())) {
-                updateOrder.setStatus(newOrderStatus);
-                needUpdate = true;
-                log.info("更新订单状态: {} -> {}", order.getStatus(), newOrderStatus);
-            }
-
-            // 更新费用信息
-            if (statusData.getTotalPower() != null && statusData.getTotalPower().compareTo(order.getTotalPower() != null ? order.getTotalPower() : BigDecimal.ZERO) != 0) {
-                updateOrder.setTotalPower(statusData.getTotalPower());
-                needUpdate = true;
-                log.info("更新充电量: {} -> {}", order.getTotalPower(), statusData.getTotalPower());
-            }
-
-            if (statusData.getElectricityFee() != null && statusData.getElectricityFee().compareTo(order.getElectricityFee() != null ? order.getElectricityFee() : BigDecimal.ZERO) != 0) {
-                updateOrder.setElectricityFee(statusData.getElectricityFee());
-                needUpdate = true;
-            }
-
-            if (statusData.getServiceFee() != null && statusData.getServiceFee().compareTo(order.getServiceFee() != null ? order.getServiceFee() : BigDecimal.ZERO) != 0) {
-                updateOrder.setServiceFee(statusData.getServiceFee());
-                needUpdate = true;
-            }
-
-            if (statusData.getTotalFee() != null && statusData.getTotalFee().compareTo(order.getTotalFee() != null ? order.getTotalFee() : BigDecimal.ZERO) != 0) {
-                updateOrder.setTotalFee(statusData.getTotalFee());
-                needUpdate = true;
-                log.info("更新总费用: {} -> {}", order.getTotalFee(), statusData.getTotalFee());
-            }
-
-            // 更新结束时间
-            if (statusData.getEndTime() != null && order.getEndTime() == null) {
-                updateOrder.setEndTime(statusData.getEndTime());
-                needUpdate = true;
-                log.info("设置结束时间: {}", statusData.getEndTime());
-            }
-
-            if (needUpdate) {
-                boolean updateResult = updateById(updateOrder);
-                log.info("订单状态同步更新: orderNo={}, updateResult={}", orderNo, updateResult);
-            } else {
-                log.debug("订单状态无变化，无需更新: {}", orderNo);
-            }
+            // 状态只前进、累计电量费用只增不减，由状态管理服务按版本号写入
+            boolean updated = orderStateManagerService.updateOrderStatusSafely(orderNo, statusData, "PLATFORM_SYNC");
+            log.info("订单状态同步: orderNo={}, updated={}", orderNo, updated);
 
         } catch (Exception e) {
             log.error("同步订单状态异常: orderNo={}, error={}", orderNo, e.getMessage(), e);
         }
     }
 
-    /**
-     * 充电状态到订单状态的映射
-     */
-    private Integer mapChargeStatusToOrderStatus(Integer chargeStatus) {
-        if (chargeStatus == null) return null;
-
-        switch (chargeStatus) {
-            case 1: return 2; // 启动中 -> 充电中
-            case 2: return 2; // 充电中 -> 充电中
-            case 3: return 2; // 停止中 -> 充电中（保持充电中状态）
-            case 4: return 3; // 已结束 -> 充电完成
-            case 5: return null; // 未知 -> 不变更
-            default: return null;
-        }
-    }
-
     private String getStopReasonText(Integer stopReason) {
         if (stopReason == null) return "未知";
         switch (stopReason) {
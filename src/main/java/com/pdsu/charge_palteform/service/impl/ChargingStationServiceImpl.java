@@ -16,7 +16,10 @@ import com.pdsu.charge_palteform.exception.BusinessException;
 import com.pdsu.charge_palteform.mapper.ChargingConnectorMapper;
 import com.pdsu.charge_palteform.mapper.ChargingStationMapper;
 import com.pdsu.charge_palteform.service.ChargingStationService;
+import com.pdsu.charge_palteform.service.ConnectorStatusIndex;
 import com.pdsu.charge_palteform.service.DataSyncService;
+import com.pdsu.charge_palteform.service.StationGeoIndex;
+import com.pdsu.charge_palteform.service.StationMetadataCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -35,6 +38,9 @@ public class ChargingStationServiceImpl extends ServiceImpl<ChargingStationMappe
     private final ChargingStationMapper stationMapper;
     private final ChargingConnectorMapper connectorMapper;
     private final DataSyncService dataSyncService;
+    private final ConnectorStatusIndex connectorStatusIndex;
+    private final StationGeoIndex stationGeoIndex;
+    private final StationMetadataCache stationMetadataCache;
 
     @Override
     public PageResponse<StationListResponse> queryNearbyStations(StationQueryRequest request) {
@@ -45,40 +51,29 @@ public class ChargingStationServiceImpl extends ServiceImpl<ChargingStationMappe
         // 计算分页偏移量
         int offset = (request.getPageNum() - 1) * request.getPageSize();
 
-        // 查询附近充电站
-        List<ChargingStation> stations = stationMapper.findNearbyStations(
-                request.getLatitude(),
-                request.getLongitude(),
-                request.getRadius(),
-                offset,
-                request.getPageSize()
-        );
-
-        // 统计总数
-        Long total = stationMapper.countNearbyStations(
-                request.getLatitude(),
-                request.getLongitude(),
-                request.getRadius()
-        );
+        List<ChargingStation> stations;
+        long total;
+        if (stationGeoIndex.isReady()) {
+            // 内存空间索引：只扫描覆盖查询范围的网格
+            StationGeoIndex.NearbyResult nearby = stationGeoIndex.queryNearby(
+                    request.getLatitude().doubleValue(), request.getLongitude().doubleValue(),
+                    request.getRadius(), offset, request.getPageSize());
+            stations = nearby.getStations();
+            total = nearby.getTotal();
+        } else {
+            // 冷启动：数据库按外接矩形预过滤后计算距离
+            stations = findNearbyFromDb(request, offset);
+            total = countNearbyFromDb(request);
+        }
 
         // 如果本地没有数据，尝试同步
-        if (total == 0) {
+        if (total == 0 && (!stationGeoIndex.isReady() || stationGeoIndex.size() == 0)) {
             log.info("本地无充电站数据，尝试从电能平台同步...");
             try {
                 dataSyncService.syncStationInfo();
                 // 重新查询
-                stations = stationMapper.findNearbyStations(
-                        request.getLatitude(),
-                        request.getLongitude(),
-                        request.getRadius(),
-                        offset,
-                        request.getPageSize()
-                );
-                total = stationMapper.countNearbyStations(
-                        request.getLatitude(),
-                        request.getLongitude(),
-                        request.getRadius()
-                );
+                stations = findNearbyFromDb(request, offset);
+                total = countNearbyFromDb(request);
             } catch (Exception e) {
                 log.error("同步充电站数据失败", e);
                 // 同步失败不影响查询，返回空结果
@@ -91,6 +86,24 @@ public class ChargingStationServiceImpl extends ServiceImpl<ChargingStationMappe
         return PageResponse.of(responseList, total, request.getPageNum(), request.getPageSize());
     }
 
+    private List<ChargingStation> findNearbyFromDb(StationQueryRequest request, int offset) {
+        double[] box = StationGeoIndex.boundingBox(request.getLatitude().doubleValue(),
+                request.getLongitude().doubleValue(), request.getRadius());
+        return stationMapper.findNearbyStations(request.getLatitude(), request.getLongitude(), request.getRadius(),
+                BigDecimal.valueOf(box[0]), BigDecimal.valueOf(box[1]),
+                BigDecimal.valueOf(box[2]), BigDecimal.valueOf(box[3]),
+                offset, request.getPageSize());
+    }
+
+    private long countNearbyFromDb(StationQueryRequest request) {
+        double[] box = StationGeoIndex.boundingBox(request.getLatitude().doubleValue(),
+                request.getLongitude().doubleValue(), request.getRadius());
+        Long count = stationMapper.countNearbyStations(request.getLatitude(), request.getLongitude(), request.getRadius(),
+                BigDecimal.valueOf(box[0]), BigDecimal.valueOf(box[1]),
+                BigDecimal.valueOf(box[2]), BigDecimal.valueOf(box[3]));
+        return count != null ? count : 0;
+    }
+
     @Override
     public PageResponse<StationListResponse> searchStations(StationQueryRequest request) {
         LambdaQueryWrapper<ChargingStation> queryWrapper = new LambdaQueryWrapper<ChargingStation>()
@@ -129,10 +142,7 @@ public class ChargingStationServiceImpl extends ServiceImpl<ChargingStationMappe
 
     @Override
     public ChargingStation getById(String stationId) {
-        ChargingStation station = stationMapper.selectOne(
-                new LambdaQueryWrapper<ChargingStation>()
-                        .eq(ChargingStation::getStationId, stationId)
-        );
+        ChargingStation station = stationMetadataCache.getStation(stationId);
 
         if (station == null) {
             throw new BusinessException("充电站不存在，ID: " + stationId);
@@ -153,19 +163,14 @@ public class ChargingStationServiceImpl extends ServiceImpl<ChargingStationMappe
     @Override
     public StationDetailResponse getStationDetail(String stationId, BigDecimal latitude, BigDecimal longitude) {
         // 查询充电站信息
-        ChargingStation station = getOne(new LambdaQueryWrapper<ChargingStation>()
-                .eq(ChargingStation::getStationId, stationId));
+        ChargingStation station = stationMetadataCache.getStation(stationId);
 
         if (station == null) {
             throw new BusinessException("充电站不存在");
         }
 
-        // 查询充电桩信息
-        List<ChargingConnector> connectors = connectorMapper.selectList(
-                new LambdaQueryWrapper<ChargingConnector>()
-                        .eq(ChargingConnector::getStationId, stationId)
-                        .orderByAsc(ChargingConnector::getConnectorId)
-        );
+        // 查询充电桩信息，状态、功率以内存索引中的实时数据为准
+        List<ChargingConnector> connectors = getStationConnectors(stationId);
 
         // 构建响应对象
         StationDetailResponse response = new StationDetailResponse();
@@ -210,23 +215,36 @@ public class ChargingStationServiceImpl extends ServiceImpl<ChargingStationMappe
 
     @Override
     public List<ChargingConnector> getStationConnectors(String stationId) {
-        return connectorMapper.selectList(new LambdaQueryWrapper<ChargingConnector>()
-                .eq(ChargingConnector::getStationId, stationId)
-                .orderByAsc(ChargingConnector::getConnectorId));
+        List<ChargingConnector> connectors = stationMetadataCache.getStationConnectors(stationId);
+        connectors.forEach(connectorStatusIndex::overlay);
+        return connectors;
     }
 
     @Override
     public ChargingConnector getConnectorById(String connectorId) {
-        ChargingConnector connector = connectorMapper.selectOne(
-                new LambdaQueryWrapper<ChargingConnector>()
-                        .eq(ChargingConnector::getConnectorId, connectorId)
-        );
+        ChargingConnector connector = stationMetadataCache.getConnector(connectorId);
 
         if (connector == null) {
             throw new BusinessException("充电桩不存在");
         }
 
-        return connector;
+        return connectorStatusIndex.overlay(connector);
+    }
+
+    @Override
+    public Map<String, ChargingConnector> getConnectorsByIds(Collection<String> connectorIds) {
+        if (connectorIds == null || connectorIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        return stationMetadataCache.getConnectors(connectorIds);
+    }
+
+    @Override
+    public Map<String, ChargingStation> getStationsByIds(Collection<String> stationIds) {
+        if (stationIds == null || stationIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        return stationMetadataCache.getStations(stationIds);
     }
 
     /**
@@ -242,20 +260,39 @@ public class ChargingStationServiceImpl extends ServiceImpl<ChargingStationMappe
                 .map(ChargingStation::getStationId)
                 .collect(Collectors.toList());
 
-        List<Map<String, Object>> connectorStats = connectorMapper.batchCountConnectorsByStatus(stationIds);
-
-        // 按充电站ID分组
-        Map<String, Map<Integer, Integer>> stationConnectorStats = new HashMap<>();
-        for (Map<String, Object> stat : connectorStats) {
-            String stationId = (String) stat.get("station_id");
-            Integer status = (Integer) stat.get("status");
-            Integer count = ((Number) stat.get("count")).intValue();
+        // 一次分组查询得到各站各状态充电桩数量和电费范围
+        List<Map<String, Object>> connectorSummary = connectorMapper.batchSummarizeConnectors(stationIds);
+
+        Map<String, Map<Integer, Integer>> dbConnectorStats = new HashMap<>();
+        Map<String, BigDecimal[]> feeRanges = new HashMap<>();
+        for (Map<String, Object> row : connectorSummary) {
+            String stationId = (String) row.get("station_id");
+            Integer status = ((Number) row.get("status")).intValue();
+            Integer count = ((Number) row.get("count")).intValue();
+            dbConnectorStats.computeIfAbsent(stationId, k -> new HashMap<>()).put(status, count);
+
+            BigDecimal minFee = (BigDecimal) row.get("min_fee");
+            BigDecimal maxFee = (BigDecimal) row.get("max_fee");
+            if (minFee != null && maxFee != null) {
+                feeRanges.merge(stationId, new BigDecimal[]{minFee, maxFee}, (current, added) -> new BigDecimal[]{
+                        current[0].min(added[0]), current[1].max(added[1])});
+            }
+        }
 
-            stationConnectorStats.computeIfAbsent(stationId, k -> new HashMap<>())
-                    .put(status, count);
+        // 状态数量优先使用内存索引中的实时数据；索引未覆盖该站全部充电桩时使用数据库统计
+        Map<String, Map<Integer, Integer>> indexConnectorStats = connectorStatusIndex.countByStatus(stationIds);
+        Map<String, Map<Integer, Integer>> connectorStatsByStation = new HashMap<>(dbConnectorStats);
+        if (indexConnectorStats != null) {
+            indexConnectorStats.forEach((stationId, counts) -> {
+                int indexed = counts.values().stream().mapToInt(Integer::intValue).sum();
+                int stored = dbConnectorStats.getOrDefault(stationId, Collections.emptyMap())
+                        .values().stream().mapToInt(Integer::intValue).sum();
+                if (indexed > 0 && indexed == stored) {
+                    connectorStatsByStation.put(stationId, counts);
+                }
+            });
         }
 
-        // 查询价格范围（简化处理，这里可以优化为批量查询）
         return stations.stream().map(station -> {
             StationListResponse response = new StationListResponse();
             response.setStationId(station.getStationId());
@@ -278,31 +315,18 @@ public class ChargingStationServiceImpl extends ServiceImpl<ChargingStationMappe
             }
 
             // 设置充电桩统计信息
-            Map<Integer, Integer> stats = stationConnectorStats.getOrDefault(station.getStationId(), new HashMap<>());
+            Map<Integer, Integer> stats = connectorStatsByStation.getOrDefault(station.getStationId(), new HashMap<>());
             int total = stats.values().stream().mapToInt(Integer::intValue).sum();
             response.setTotalConnectors(total);
             response.setAvailableConnectors(stats.getOrDefault(1, 0)); // 空闲
             response.setChargingConnectors(stats.getOrDefault(2, 0)); // 充电中
             response.setFaultConnectors(stats.getOrDefault(255, 0)); // 故障
 
-            // 查询价格范围（这里简化处理）
-            List<ChargingConnector> connectors = getStationConnectors(station.getStationId());
-            if (!connectors.isEmpty()) {
-                OptionalDouble minFee = connectors.stream()
-                        .filter(c -> c.getElectricityFee() != null)
-                        .mapToDouble(c -> c.getElectricityFee().doubleValue())
-                        .min();
-                OptionalDouble maxFee = connectors.stream()
-                        .filter(c -> c.getElectricityFee() != null)
-                        .mapToDouble(c -> c.getElectricityFee().doubleValue())
-                        .max();
-
-                if (minFee.isPresent()) {
-                    response.setMinElectricityFee(BigDecimal.valueOf(minFee.getAsDouble()));
-                }
-                if (maxFee.isPresent()) {
-                    response.setMaxElectricityFee(BigDecimal.valueOf(maxFee.getAsDouble()));
-                }
+            // 设置价格范围
+            BigDecimal[] feeRange = feeRanges.get(station.getStationId());
+            if (feeRange != null) {
+                response.setMinElectricityFee(feeRange[0]);
+                response.setMaxElectricityFee(feeRange[1]);
             }
 
             return response;
@@ -11,17 +11,22 @@ import com.pdsu.charge_palteform.entity.dto.*;
 import com.pdsu.charge_palteform.exception.BusinessException;
 import com.pdsu.charge_palteform.mapper.CouponTemplateMapper;
 import com.pdsu.charge_palteform.mapper.UserCouponMapper;
+import com.pdsu.charge_palteform.service.CouponExpiryEngine;
+import com.pdsu.charge_palteform.service.CouponFlashSaleService;
 import com.pdsu.charge_palteform.service.CouponService;
+import com.pdsu.charge_palteform.service.CouponTemplateCache;
 import com.pdsu.charge_palteform.utils.GenerateUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -33,6 +38,9 @@ public class CouponServiceImpl extends ServiceImpl<UserCouponMapper, UserCoupon>
 
     private final CouponTemplateMapper couponTemplateMapper;
     private final UserCouponMapper userCouponMapper;
+    private final CouponTemplateCache couponTemplateCache;
+    private final CouponExpiryEngine couponExpiryEngine;
+    private final CouponFlashSaleService couponFlashSaleService;
 
 
 
@@ -97,8 +105,9 @@ public class CouponServiceImpl extends ServiceImpl<UserCouponMapper, UserCoupon>
                         .ge(UserCoupon::getValidEnd, now)
         );
 
+        Map<Long, CouponTemplates> templates = loadTemplates(availableCoupons);
         return availableCoupons.stream()
-                .map(coupon -> convertToAvailableResponse(coupon, orderAmount))
+                .map(coupon -> convertToAvailableResponse(coupon, templates.get(coupon.getCouponTemplateId()), orderAmount))
                 .filter(response -> response.isCanUse())
                 .collect(Collectors.toList());
     }
@@ -142,7 +151,10 @@ public class CouponServiceImpl extends ServiceImpl<UserCouponMapper, UserCoupon>
 
     @Override
     public BigDecimal calculateCouponDeduction(UserCoupon coupon, BigDecimal orderAmount) {
-        CouponTemplates template = couponTemplateMapper.selectById(coupon.getCouponTemplateId());
+        return calculateCouponDeduction(couponTemplateCache.get(coupon.getCouponTemplateId()), orderAmount);
+    }
+
+    private BigDecimal calculateCouponDeduction(CouponTemplates template, BigDecimal orderAmount) {
         if (template == null) {
             return BigDecimal.ZERO;
         }
@@ -178,8 +190,9 @@ public class CouponServiceImpl extends ServiceImpl<UserCouponMapper, UserCoupon>
         Page<UserCoupon> page = new Page<>(pageNum, pageSize);
         Page<UserCoupon> result = page(page, queryWrapper);
 
+        Map<Long, CouponTemplates> templates = loadTemplates(result.getRecords());
         List<UserCouponListResponse> responseList = result.getRecords().stream()
-                .map(this::convertToListResponse)
+                .map(coupon -> convertToListResponse(coupon, templates.get(coupon.getCouponTemplateId())))
                 .collect(Collectors.toList());
 
         return PageResponse.of(responseList, result.getTotal(), pageNum, pageSize);
@@ -195,9 +208,10 @@ public class CouponServiceImpl extends ServiceImpl<UserCouponMapper, UserCoupon>
                         .le(UserCoupon::getValidStart, now)
                         .ge(UserCoupon::getValidEnd, now)
         );
+        Map<Long, CouponTemplates> templates = loadTemplates(availableCoupons);
         return availableCoupons.stream()
                 .filter(coupon -> checkConnectorApplicability(coupon, connectorId)) // 先过滤适用性
-                .map(coupon -> convertToAvailableResponse(coupon, orderAmount)) // 再转换
+                .map(coupon -> convertToAvailableResponse(coupon, templates.get(coupon.getCouponTemplateId()), orderAmount)) // 再转换
                 .filter(AvailableCouponResponse::isCanUse) // 最后过滤可用性
                 .sorted((a, b) -> b.getDeductionAmount().compareTo(a.getDeductionAmount())) // 按抵扣金额降序
                 .collect(Collectors.toList());
@@ -229,6 +243,9 @@ public class CouponServiceImpl extends ServiceImpl<UserCouponMapper, UserCoupon>
         return calculateCouponDeduction(coupon, request.getOrderAmount());
     }
 
+    /**
+     * 一次查询取出用户全部优惠券，各项统计和最大可抵扣金额在同一次遍历中算出
+     */
     @Override
     public CouponStatsResponse getCouponStats(Long userId) {
         LocalDateTime now = LocalDateTime.now();
@@ -238,6 +255,10 @@ public class CouponServiceImpl extends ServiceImpl<UserCouponMapper, UserCoupon>
                 new LambdaQueryWrapper<UserCoupon>()
                         .eq(UserCoupon::getUserId, userId)
         );
+        Map<Long, CouponTemplates> templates = loadTemplates(allCoupons);
+        // 计算当前最大可抵扣金额（假设订单金额为100元）
+        BigDecimal testAmount = BigDecimal.valueOf(100);
+        BigDecimal maxAvailableDeduction = BigDecimal.ZERO;
         CouponStatsResponse stats = new CouponStatsResponse();
         stats.setTotalCount(allCoupons.size());
         int availableCount = 0;
@@ -257,12 +278,18 @@ public class CouponServiceImpl extends ServiceImpl<UserCouponMapper, UserCoupon>
                         if (coupon.getValidEnd().isBefore(threeDaysLater)) {
                             expiringSoonCount++;
                         }
+                        // 已生效且适用的优惠券参与最大可抵扣金额计算
+                        if (!now.isBefore(coupon.getValidStart()) && checkConnectorApplicability(coupon, null)) {
+                            BigDecimal deduction = calculateCouponDeduction(
+                                    templates.get(coupon.getCouponTemplateId()), testAmount);
+                            maxAvailableDeduction = maxAvailableDeduction.max(deduction);
+                        }
                     }
                     break;
                 case 2: // 已使用
                     usedCount++;
                     // 累计节省金额（这里需要从订单中获取实际抵扣金额）
-                    CouponTemplates template = couponTemplateMapper.selectById(coupon.getCouponTemplateId());
+                    CouponTemplates template = templates.get(coupon.getCouponTemplateId());
                     if (template != null) {
                         totalSaved = totalSaved.add(template.getValue());
                     }
@@ -277,69 +304,64 @@ public class CouponServiceImpl extends ServiceImpl<UserCouponMapper, UserCoupon>
         stats.setExpiredCount(expiredCount);
         stats.setExpiringSoonCount(expiringSoonCount);
         stats.setTotalSavedAmount(totalSaved);
-        // 计算当前最大可抵扣金额
-        stats.setMaxAvailableDeduction(calculateMaxAvailableDeduction(userId));
+        stats.setMaxAvailableDeduction(maxAvailableDeduction);
         return stats;
     }
 
     @Override
     public String receiveCoupon(Long userId, String couponCode, Long templateId) {
-        CouponTemplates template = null;
+        if (templateId == null) {
+            if (couponCode != null) {
+                // 通过优惠券码领取（需要在模板表中配置）
+                throw new BusinessException("优惠券码领取功能暂未实现");
+            }
+            throw new BusinessException("请提供优惠券码或模板ID");
+        }
 
-        if (templateId != null) {
+        // 已预热的模板在 Redis 中原子地扣库存、防重复领取，领取记录异步落库
+        if (couponFlashSaleService.grab(userId, templateId) != null) {
+            return "优惠券领取成功";
+        }
+        try {
             // 通过模板ID领取
-            template = couponTemplateMapper.selectOne(
+            CouponTemplates template = couponTemplateMapper.selectOne(
                     new LambdaQueryWrapper<CouponTemplates>()
                             .eq(CouponTemplates::getId, templateId)
                             .eq(CouponTemplates::getStatus, 1)
             );
-        } else if (couponCode != null) {
-            // 通过优惠券码领取（需要在模板表中配置）
-            throw new BusinessException("优惠券码领取功能暂未实现");
-        } else {
-            throw new BusinessException("请提供优惠券码或模板ID");
-        }
 
-        if (template == null) {
-            throw new BusinessException("优惠券不存在或已停用");
-        }
+            if (template == null) {
+                throw new BusinessException("优惠券不存在或已停用");
+            }
 
-        // 检查库存
-        if (template.getRemainingQuantity() <= 0) {
-            throw new BusinessException("优惠券已抢完");
-        }
+            // 检查库存
+            if (template.getRemainingQuantity() <= 0) {
+                throw new BusinessException("优惠券已抢完");
+            }
 
-        // 检查用户是否已领取过该模板的优惠券
-        long receivedCount = count(new LambdaQueryWrapper<UserCoupon>()
-                .eq(UserCoupon::getUserId, userId)
-                .eq(UserCoupon::getCouponTemplateId, template.getId()));
+            // 检查用户是否已领取过该模板的优惠券
+            long receivedCount = count(new LambdaQueryWrapper<UserCoupon>()
+                    .eq(UserCoupon::getUserId, userId)
+                    .eq(UserCoupon::getCouponTemplateId, template.getId()));
 
-        if (receivedCount > 0) {
-            throw new BusinessException("您已领取过该优惠券");
+            if (receivedCount > 0) {
+                throw new BusinessException("您已领取过该优惠券");
+            }
+            // 发放优惠券，未预热时已在 grab 中登记普通领取
+            saveUserCoupon(userId, template, "手动领取");
+            return "优惠券领取成功";
+        } finally {
+            // 普通领取结束后才允许该模板完成预热
+            couponFlashSaleService.releaseFallback(templateId);
         }
-        // 发放优惠券
-        issueUserCoupon(userId, template, "手动领取");
-        return "优惠券领取成功";
     }
 
+    /**
+     * 由 ScheduleConfig 每天定时调用，分批更新，集群中只有一个节点执行
+     */
     @Override
-    @Scheduled(cron = "0 0 2 * * ?")
     public void checkAndExpireCoupons() {
-        LocalDateTime now = LocalDateTime.now();
-        // 查询已过期但状态还是未使用的优惠券
-        List<UserCoupon> expiredCoupons = userCouponMapper.selectList(
-                new LambdaQueryWrapper<UserCoupon>()
-                        .eq(UserCoupon::getStatus, 1) // 未使用
-                        .lt(UserCoupon::getValidEnd, now) // 已过期
-        );
-        if (!expiredCoupons.isEmpty()) {
-            // 批量更新为过期状态
-            for (UserCoupon coupon : expiredCoupons) {
-                coupon.setStatus(3); // 已过期
-                updateById(coupon);
-            }
-            log.info("处理过期优惠券：{}张", expiredCoupons.size());
-        }
+        couponExpiryEngine.run();
     }
 
     @Override
@@ -353,8 +375,12 @@ public class CouponServiceImpl extends ServiceImpl<UserCouponMapper, UserCoupon>
                             .eq(CouponTemplates::getStatus, 1)
             );
             if (template != null && template.getRemainingQuantity() > 0) {
-                issueUserCoupon(userId, template, "充电完成奖励");
-                log.info("用户{}充电完成，发放奖励优惠券", userId);
+                try {
+                    issueUserCoupon(userId, template, "充电完成奖励");
+                    log.info("用户{}充电完成，发放奖励优惠券", userId);
+                } catch (BusinessException e) {
+                    log.warn("用户{}充电完成奖励优惠券未发放: {}", userId, e.getMessage());
+                }
             }
         }
     }
@@ -383,35 +409,49 @@ public class CouponServiceImpl extends ServiceImpl<UserCouponMapper, UserCoupon>
         log.info("批量发放优惠券完成，成功{}个，失败{}个", successCount, userIds.size() - successCount);
     }
 
-    private AvailableCouponResponse convertToAvailableResponse(UserCoupon coupon, BigDecimal orderAmount) {
-        CouponTemplates template = couponTemplateMapper.selectById(coupon.getCouponTemplateId());
+    /**
+     * 一次取齐一批用户优惠券对应的模板
+     */
+    private Map<Long, CouponTemplates> loadTemplates(List<UserCoupon> coupons) {
+        return couponTemplateCache.getAll(coupons.stream()
+                .map(UserCoupon::getCouponTemplateId)
+                .collect(Collectors.toList()));
+    }
+
+    private AvailableCouponResponse convertToAvailableResponse(UserCoupon coupon, CouponTemplates template, BigDecimal orderAmount) {
         AvailableCouponResponse response = new AvailableCouponResponse();
         response.setCouponId(coupon.getId());
         response.setCouponCode(coupon.getCouponCode());
+        response.setValidEnd(coupon.getValidEnd());
+        if (template == null) {
+            // 模板已删除，不可使用
+            response.setDeductionAmount(BigDecimal.ZERO);
+            response.setCanUse(false);
+            return response;
+        }
         response.setName(template.getName());
         response.setType(template.getType());
         response.setValue(template.getValue());
         response.setMinChargeAmount(template.getMinChargeAmount());
-        response.setValidEnd(coupon.getValidEnd());
         // 计算抵扣金额
-        BigDecimal deductionAmount = calculateCouponDeduction(coupon, orderAmount);
+        BigDecimal deductionAmount = calculateCouponDeduction(template, orderAmount);
         response.setDeductionAmount(deductionAmount);
         response.setCanUse(deductionAmount.compareTo(BigDecimal.ZERO) > 0);
         return response;
     }
 
-    private UserCouponListResponse convertToListResponse(UserCoupon coupon) {
-        CouponTemplates template = couponTemplateMapper.selectById(coupon.getCouponTemplateId());
-
+    private UserCouponListResponse convertToListResponse(UserCoupon coupon, CouponTemplates template) {
         UserCouponListResponse response = new UserCouponListResponse();
         response.setCouponId(coupon.getId());
         response.setCouponCode(coupon.getCouponCode());
-        response.setName(template.getName());
-        response.setDescription(buildDescription(template));
-        response.setType(template.getType());
-        response.setTypeText(getCouponTypeText(template.getType()));
-        response.setValue(template.getValue());
-        response.setMinChargeAmount(template.getMinChargeAmount());
+        if (template != null) {
+            response.setName(template.getName());
+            response.setDescription(buildDescription(template));
+            response.setType(template.getType());
+            response.setTypeText(getCouponTypeText(template.getType()));
+            response.setValue(template.getValue());
+            response.setMinChargeAmount(template.getMinChargeAmount());
+        }
         response.setStatus(coupon.getStatus());
         response.setStatusText(getCouponStatusText(coupon.getStatus()));
         response.setValidStart(coupon.getValidStart());
@@ -432,18 +472,52 @@ public class CouponServiceImpl extends ServiceImpl<UserCouponMapper, UserCoupon>
         return true;
     }
 
-    private BigDecimal calculateMaxAvailableDeduction(Long userId) {
-        // 计算用户当前最大可抵扣金额（假设订单金额为100元）
-        BigDecimal testAmount = BigDecimal.valueOf(100);
-        List<AvailableCouponResponse> availableCoupons = getAvailableCoupons(userId, testAmount, null);
+    /**
+     * 系统发放：模板在秒杀中时从 Redis 库存扣减并异步落库，否则直接写库
+     */
+    private void issueUserCoupon(Long userId, CouponTemplates template, String reason) {
+        if (couponFlashSaleService.issue(userId, template.getId()) != null) {
+            log.info("为用户{}发放优惠券成功（秒杀库存），原因：{}", userId, reason);
+            return;
+        }
+        try {
+            saveUserCoupon(userId, template, reason);
+        } finally {
+            releaseFallbackAfterCompletion(template.getId());
+        }
+    }
 
-        return availableCoupons.stream()
-                .map(AvailableCouponResponse::getDeductionAmount)
-                .max(BigDecimal::compareTo)
-                .orElse(BigDecimal.ZERO);
+    /**
+     * 普通发放写库结束后才允许该模板完成预热；在事务中时等事务结束，预热不会读到未提交的剩余数量
+     */
+    private void releaseFallbackAfterCompletion(Long templateId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    couponFlashSaleService.releaseFallback(templateId);
+                }
+            });
+        } else {
+            couponFlashSaleService.releaseFallback(templateId);
+        }
     }
 
-    private void issueUserCoupon(Long userId, CouponTemplates template, String reason) {
+    /**
+     * 写入用户优惠券并扣减模板剩余数量，剩余数量不足时不发放
+     */
+    private void saveUserCoupon(Long userId, CouponTemplates template, String reason) {
+        // 先按剩余数量条件扣减，并发发放不会把库存扣成负数
+        int decreased = couponTemplateMapper.update(null,
+                new LambdaUpdateWrapper<CouponTemplates>()
+                        .eq(CouponTemplates::getId, template.getId())
+                        .gt(CouponTemplates::getRemainingQuantity, 0)
+                        .setSql("remaining_quantity = remaining_quantity - 1")
+        );
+        if (decreased == 0) {
+            throw new BusinessException("优惠券已抢完");
+        }
+
         UserCoupon userCoupon = new UserCoupon();
         userCoupon.setUserId(userId);
         userCoupon.setCouponTemplateId(template.getId());
@@ -461,13 +535,6 @@ public class CouponServiceImpl extends ServiceImpl<UserCouponMapper, UserCoupon>
         }
 
         save(userCoupon);
-
-        // 减少模板库存
-        couponTemplateMapper.update(null,
-                new LambdaUpdateWrapper<CouponTemplates>()
-                        .eq(CouponTemplates::getId, template.getId())
-                        .setSql("remaining_quantity = remaining_quantity - 1")
-        );
         log.info("为用户{}发放优惠券成功，原因：{}", userId, reason);
     }
 
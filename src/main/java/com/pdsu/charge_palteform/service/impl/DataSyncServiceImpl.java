@@ -1,106 +1,252 @@
 package com.pdsu.charge_palteform.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.pdsu.charge_palteform.config.StationSyncConfig;
 import com.pdsu.charge_palteform.entity.ChargingConnector;
 import com.pdsu.charge_palteform.entity.ChargingStation;
 import com.pdsu.charge_palteform.entity.platefrom.station.ConnectorInfo;
 import com.pdsu.charge_palteform.entity.platefrom.station.ConnectorStatusInfo;
 import com.pdsu.charge_palteform.entity.platefrom.station.EquipmentInfo;
 import com.pdsu.charge_palteform.entity.platefrom.station.StationInfo;
+import com.pdsu.charge_palteform.entity.platefrom.station.StationStatusInfo;
 import com.pdsu.charge_palteform.mapper.ChargingConnectorMapper;
 import com.pdsu.charge_palteform.mapper.ChargingStationMapper;
+import com.pdsu.charge_palteform.service.ConnectorStatusIndex;
 import com.pdsu.charge_palteform.service.DataSyncService;
-import com.pdsu.charge_palteform.service.EnergyPlatformService;
+import com.pdsu.charge_palteform.service.EnergyPlatformAsyncService;
+import com.pdsu.charge_palteform.service.StationGeoIndex;
+import com.pdsu.charge_palteform.service.StationMetadataCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.catalina.connector.Connector;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.CollectionUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class DataSyncServiceImpl implements DataSyncService {
-    private final EnergyPlatformService energyPlatformService;
+    private static final String STATION_INFO_WATERMARK_KEY = "energy:sync:station_info:last_query_time";
+    private static final DateTimeFormatter QUERY_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final EnergyPlatformAsyncService energyPlatformAsyncService;
     private final ChargingStationMapper stationMapper;
     private final ChargingConnectorMapper connectorMapper;
+    private final StationSyncConfig stationSyncConfig;
+    private final TransactionTemplate transactionTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final ConnectorStatusIndex connectorStatusIndex;
+    private final StationGeoIndex stationGeoIndex;
+    private final StationMetadataCache stationMetadataCache;
 
     @Override
-    @Transactional
     public void syncStationInfo() {
-        log.info("开始同步充电站基础信息...");
+        String lastQueryTime = redisTemplate.opsForValue().get(STATION_INFO_WATERMARK_KEY);
+        if (lastQueryTime == null || stationMapper.selectCount(null) == 0) {
+            syncAllStationInfo();
+            return;
+        }
+        log.info("开始增量同步充电站基础信息，上次同步时间: {}", lastQueryTime);
+        syncStationInfo(lastQueryTime);
+    }
+
+    @Override
+    public void syncAllStationInfo() {
+        log.info("开始全量同步充电站基础信息...");
+        syncStationInfo(null);
+    }
+
+    /**
+     * 分页拉取并落库充电站，成功后记录本次同步开始时间作为下次增量同步的 LastQueryTime
+     *
+     * @param lastQueryTime 为 null 时拉取全部充电站
+     */
+    private void syncStationInfo(String lastQueryTime) {
+        String syncStartTime = LocalDateTime.now().format(QUERY_TIME_FORMAT);
+        long startNanos = System.nanoTime();
+        int pageSize = Math.min(100, Math.max(1, stationSyncConfig.getPageSize()));
+        int prefetchPages = Math.max(0, stationSyncConfig.getPrefetchPages());
+        int maxPages = stationSyncConfig.getMaxPages();
+
+        // 已发出请求、尚未落库的页，落库当前页时后续页的请求与解密在IO线程上并行进行
+        Deque<CompletableFuture<List<StationInfo>>> pendingPages = new ArrayDeque<>();
+        int nextPageNo = 1;
+        int pageNo = 0;
+        int totalSynced = 0;
+        boolean truncated = false;
         try {
-            int pageNo = 1;
-            int pageSize = 100;
-            boolean hasMore = true;
-            int totalSynced = 0;
+            for (int i = 0; i <= prefetchPages && (maxPages <= 0 || nextPageNo <= maxPages); i++) {
+                pendingPages.add(fetchStationPage(lastQueryTime, nextPageNo++, pageSize));
+            }
 
-            while (hasMore) {
-                // 从电能平台获取充电站信息
-                List<StationInfo> stationInfos = energyPlatformService.queryStationsInfo(
-                        null, pageNo, pageSize);
+            while (!pendingPages.isEmpty()) {
+                List<StationInfo> stationInfos = pendingPages.poll().join();
+                pageNo++;
 
                 if (CollectionUtils.isEmpty(stationInfos)) {
-                    if (pageNo == 1) {
+                    if (pageNo == 1 && lastQueryTime == null) {
                         log.warn("第一页没有获取到充电站数据，可能是电能平台配置问题或网络问题");
                     }
-                    hasMore = false;
                     break;
                 }
 
-                // 处理每个充电站
-                for (StationInfo stationInfo : stationInfos) {
-                    try {
-                        syncSingleStation(stationInfo);
-                        totalSynced++;
-                    } catch (Exception e) {
-                        log.error("同步充电站{}失败: {}", stationInfo.getStationID(), e.getMessage());
-                        // 继续处理下一个充电站，不因为单个充电站失败而终止整个同步过程
-                    }
+                // 如果返回的数据少于pageSize，说明已经是最后一页，不再预取
+                boolean lastPage = stationInfos.size() < pageSize;
+                if (!lastPage && (maxPages <= 0 || nextPageNo <= maxPages)) {
+                    pendingPages.add(fetchStationPage(lastQueryTime, nextPageNo++, pageSize));
                 }
 
-                // 如果返回的数据少于pageSize，说明已经是最后一页
-                if (stationInfos.size() < pageSize) {
-                    hasMore = false;
-                }
-                pageNo++;
-                log.info("已同步第{}页，本页{}个充电站，累计{}个", pageNo - 1, stationInfos.size(), totalSynced);
+                // 每页单独提交事务，不再整轮同步持有一个大事务
+                Integer pageSynced = transactionTemplate.execute(status -> persistStationPage(stationInfos));
+                totalSynced += pageSynced != null ? pageSynced : 0;
+                // 本页提交后再让各节点的元数据缓存失效，避免缓存读回旧数据
+                invalidateMetadataCache(stationInfos);
+                log.info("已同步第{}页，本页{}个充电站，累计{}个", pageNo, stationInfos.size(), totalSynced);
 
-                // 防止无限循环，最多同步100页
-                if (pageNo > 100) {
-                    log.warn("已同步100页，停止同步以防止无限循环");
-                    hasMore = false;
+                if (lastPage) {
+                    break;
+                }
+                if (pendingPages.isEmpty()) {
+                    log.warn("已同步{}页，达到配置的最大页数，停止同步", maxPages);
+                    truncated = true;
                 }
             }
 
+            // 只有完整拉取后才推进增量同步时间，避免漏掉未拉取的充电站
+            if (!truncated) {
+                redisTemplate.opsForValue().set(STATION_INFO_WATERMARK_KEY, syncStartTime);
+            }
             if (totalSynced > 0) {
-                log.info("✅ 充电站基础信息同步完成，共同步{}个充电站", totalSynced);
+                refreshStationGeoIndex();
+            }
+
+            double seconds = Math.max((System.nanoTime() - startNanos) / 1e9d, 0.001);
+            if (lastQueryTime != null) {
+                log.info("✅ 充电站增量同步完成，{}之后有变化的充电站{}个，耗时{}s",
+                        lastQueryTime, totalSynced, String.format("%.2f", seconds));
+            } else if (totalSynced > 0) {
+                log.info("✅ 充电站基础信息同步完成，共同步{}个充电站，{}页，耗时{}s，吞吐{}个/秒",
+                        totalSynced, pageNo, String.format("%.2f", seconds), String.format("%.1f", totalSynced / seconds));
             } else {
                 log.warn("⚠️  没有同步到任何充电站数据，请检查电能平台配置或网络连接");
             }
 
         } catch (Exception e) {
-            log.error("❌ 同步充电站基础信息失败", e);
-            throw new RuntimeException("同步充电站信息失败: " + e.getMessage(), e);
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.error("❌ 同步充电站基础信息失败，已提交{}页共{}个充电站", Math.max(0, pageNo - 1), totalSynced, cause);
+            throw new RuntimeException("同步充电站信息失败: " + cause.getMessage(), cause);
+        } finally {
+            pendingPages.forEach(future -> future.cancel(false));
+        }
+    }
+
+    private void refreshStationGeoIndex() {
+        try {
+            stationGeoIndex.refresh();
+        } catch (Exception e) {
+            log.error("刷新充电站空间索引失败: {}", e.getMessage());
+        }
+    }
+
+    private CompletableFuture<List<StationInfo>> fetchStationPage(String lastQueryTime, int pageNo, int pageSize) {
+        return energyPlatformAsyncService.queryStationsInfo(lastQueryTime, pageNo, pageSize);
+    }
+
+    /**
+     * 落库一页充电站
+     */
+    private int persistStationPage(List<StationInfo> stationInfos) {
+        long start = System.nanoTime();
+        int synced;
+        if (stationSyncConfig.isBatchUpsert()) {
+            try {
+                synced = upsertStationPage(stationInfos);
+            } catch (Exception e) {
+                // 单条语句失败整体不生效，退回逐行落库以跳过个别异常数据
+                log.warn("批量upsert充电站失败，本页改为逐行同步: {}", e.getMessage());
+                synced = syncStationPageByRow(stationInfos);
+            }
+        } else {
+            synced = syncStationPageByRow(stationInfos);
+        }
+        log.debug("本页落库{}个充电站，方式={}，耗时{}ms", synced,
+                stationSyncConfig.isBatchUpsert() ? "批量upsert" : "逐行", (System.nanoTime() - start) / 1_000_000);
+        return synced;
+    }
+
+    /**
+     * 批量 upsert 一页充电站及其充电桩，按 uk_station_id / uk_connector_id 去重
+     */
+    private int upsertStationPage(List<StationInfo> stationInfos) {
+        List<ChargingStation> stations = new ArrayList<>(stationInfos.size());
+        List<ChargingConnector> connectors = new ArrayList<>();
+        for (StationInfo stationInfo : stationInfos) {
+            stations.add(convertToChargingStation(stationInfo));
+            if (CollectionUtils.isEmpty(stationInfo.getEquipmentInfos())) {
+                continue;
+            }
+            for (EquipmentInfo equipmentInfo : stationInfo.getEquipmentInfos()) {
+                if (CollectionUtils.isEmpty(equipmentInfo.getConnectorInfos())) {
+                    continue;
+                }
+                for (ConnectorInfo connectorInfo : equipmentInfo.getConnectorInfos()) {
+                    connectors.add(convertToChargingConnector(stationInfo.getStationID(), equipmentInfo, connectorInfo));
+                }
+            }
+        }
+
+        int chunkSize = Math.max(1, stationSyncConfig.getUpsertChunkSize());
+        for (int i = 0; i < stations.size(); i += chunkSize) {
+            stationMapper.batchUpsert(stations.subList(i, Math.min(i + chunkSize, stations.size())));
+        }
+        for (int i = 0; i < connectors.size(); i += chunkSize) {
+            connectorMapper.batchUpsert(connectors.subList(i, Math.min(i + chunkSize, connectors.size())));
         }
+        // upsert 不回读已有状态，这里只登记归属，状态以数据库和后续推送为准
+        connectors.forEach(connector -> connectorStatusIndex.register(connector.getConnectorId(), connector.getStationId()));
+        log.debug("批量upsert {}个充电站、{}个充电桩", stations.size(), connectors.size());
+        return stations.size();
+    }
+
+    /**
+     * 逐行落库一页充电站，单个充电站失败不影响本页其它充电站
+     */
+    private int syncStationPageByRow(List<StationInfo> stationInfos) {
+        int synced = 0;
+        for (StationInfo stationInfo : stationInfos) {
+            try {
+                syncSingleStation(stationInfo);
+                synced++;
+            } catch (Exception e) {
+                log.error("同步充电站{}失败: {}", stationInfo.getStationID(), e.getMessage());
+                // 继续处理下一个充电站，不因为单个充电站失败而终止整个同步过程
+            }
+        }
+        return synced;
     }
 
     @Override
-    @Transactional
     public void syncConnectorStatus() {
         log.info("开始同步充电桩状态信息...");
         try {
-            // 获取所有充电站ID
-            List<ChargingStation> stations = stationMapper.selectList(null);
-            List<String> stationIds = stations.stream()
-                    .map(ChargingStation::getStationId)
+            // 只查询充电站ID，不加载整行
+            List<String> stationIds = stationMapper.selectObjs(new LambdaQueryWrapper<ChargingStation>()
+                            .select(ChargingStation::getStationId))
+                    .stream()
+                    .map(String::valueOf)
                     .collect(Collectors.toList());
 
             if (CollectionUtils.isEmpty(stationIds)) {
@@ -109,42 +255,47 @@ public class DataSyncServiceImpl implements DataSyncService {
             }
 
             log.info("找到{}个充电站，开始同步状态信息", stationIds.size());
-            log.info("充电站ID列表: {}", stationIds);
 
-            // 分批查询状态（每次最多50个）
+            // 分批查询状态（每次最多50个），所有批次同时发出，不逐批阻塞等待
             int batchSize = 50;
             int totalBatches = (int) Math.ceil((double) stationIds.size() / batchSize);
             int successfulBatches = 0;
+            int changedConnectors = 0;
 
+            List<CompletableFuture<List<StationStatusInfo>>> batchFutures = new ArrayList<>(totalBatches);
             for (int i = 0; i < stationIds.size(); i += batchSize) {
-                int currentBatch = (i / batchSize) + 1;
-                try {
-                    int endIndex = Math.min(i + batchSize, stationIds.size());
-                    List<String> batchIds = stationIds.subList(i, endIndex);
+                int endIndex = Math.min(i + batchSize, stationIds.size());
+                batchFutures.add(energyPlatformAsyncService.queryStationStatus(
+                        new ArrayList<>(stationIds.subList(i, endIndex))));
+            }
 
-                    log.debug("正在同步第{}/{}批充电站状态，包含{}个充电站", currentBatch, totalBatches, batchIds.size());
-                    log.debug("本批充电站ID: {}", batchIds); // 添加这行日志
-                    // 查询这批充电站的状态
-                    var statusInfos = energyPlatformService.queryStationStatus(batchIds);
-                    log.info("电能平台返回状态信息: statusInfos={}", statusInfos);
+            for (int i = 0; i < batchFutures.size(); i++) {
+                int currentBatch = i + 1;
+                try {
+                    List<StationStatusInfo> statusInfos = batchFutures.get(i).join();
 
                     if (!CollectionUtils.isEmpty(statusInfos)) {
-                        // 更新充电桩状态
-                        for (var statusInfo : statusInfos) {
+                        // 只更新状态有变化的充电桩
+                        List<ConnectorStatusInfo> connectorStatuses = new ArrayList<>();
+                        for (StationStatusInfo statusInfo : statusInfos) {
                             if (statusInfo.getStationStatusInfos() != null) {
-                                updateConnectorStatus(statusInfo.getStationStatusInfos());
+                                connectorStatuses.addAll(statusInfo.getStationStatusInfos());
                             }
                         }
+                        changedConnectors += updateChangedConnectorStatus(connectorStatuses);
                         successfulBatches++;
                     }
                     log.debug("第{}/{}批充电桩状态同步完成", currentBatch, totalBatches);
                 } catch (Exception e) {
-                    log.error("第{}/{}批充电桩状态同步失败: {}", currentBatch, totalBatches, e.getMessage());
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    log.error("第{}/{}批充电桩状态同步失败: {}", currentBatch, totalBatches, cause.getMessage());
                     // 继续处理下一批，不因为单批失败而终止整个同步过程
                 }
             }
 
-            log.info("✅ 充电桩状态同步完成，成功同步{}/{}批", successfulBatches, totalBatches);
+            // 轮询结果立即写回，不等待后台刷写周期
+            connectorStatusIndex.flush();
+            log.info("✅ 充电桩状态同步完成，成功同步{}/{}批，状态变化{}个", successfulBatches, totalBatches, changedConnectors);
 
         } catch (Exception e) {
             log.error("❌ 同步充电桩状态失败", e);
@@ -157,7 +308,7 @@ public class DataSyncServiceImpl implements DataSyncService {
         log.info("开始全量数据同步...");
         try {
             // 先同步基础信息，再同步状态信息
-            syncStationInfo();
+            syncAllStationInfo();
             // 等待一段时间，确保基础信息同步完成
             Thread.sleep(2000);
             syncConnectorStatus();
@@ -171,6 +322,23 @@ public class DataSyncServiceImpl implements DataSyncService {
         }
     }
 
+    private void invalidateMetadataCache(List<StationInfo> stationInfos) {
+        List<String> stationIds = new ArrayList<>(stationInfos.size());
+        List<String> connectorIds = new ArrayList<>();
+        for (StationInfo stationInfo : stationInfos) {
+            stationIds.add(stationInfo.getStationID());
+            if (CollectionUtils.isEmpty(stationInfo.getEquipmentInfos())) {
+                continue;
+            }
+            for (EquipmentInfo equipmentInfo : stationInfo.getEquipmentInfos()) {
+                if (!CollectionUtils.isEmpty(equipmentInfo.getConnectorInfos())) {
+                    equipmentInfo.getConnectorInfos().forEach(c -> connectorIds.add(c.getConnectorID()));
+                }
+            }
+        }
+        stationMetadataCache.invalidate(stationIds, connectorIds);
+    }
+
     /**
      * 同步单个充电站信息
      */
@@ -266,6 +434,7 @@ public class DataSyncServiceImpl implements DataSyncService {
                     connectorMapper.insert(connector);
                     log.debug("➕ 新增充电桩: {}", connector.getConnectorId());
                 }
+                connectorStatusIndex.registerIfAbsent(connector.getConnectorId(), stationId, connector.getStatus());
 
                 syncedCount++;
             } catch (Exception e) {
@@ -281,36 +450,21 @@ public class DataSyncServiceImpl implements DataSyncService {
     }
 
     /**
-     * 更新充电桩状态
+     * 写入充电桩状态索引，只有状态变化的充电桩会被合并写回数据库
+     *
+     * @return 状态变化的充电桩数
      */
-    private void updateConnectorStatus(List<ConnectorStatusInfo> statusInfos) {
-        if (CollectionUtils.isEmpty(statusInfos)) {
-            return;
-        }
-
-        int updatedCount = 0;
+    private int updateChangedConnectorStatus(List<ConnectorStatusInfo> statusInfos) {
+        int changedCount = 0;
         for (ConnectorStatusInfo statusInfo : statusInfos) {
-            try {
-                int updated = connectorMapper.update(null,
-                        new LambdaUpdateWrapper<ChargingConnector>()
-                                .eq(ChargingConnector::getConnectorId, statusInfo.getConnectorID())
-                                .set(ChargingConnector::getStatus, statusInfo.getStatus())
-                                .set(ChargingConnector::getStatusUpdateTime, LocalDateTime.now())
-                                .set(ChargingConnector::getUpdateTime, LocalDateTime.now()) // 手动设置
-                );
-
-                if (updated > 0) {
-                    updatedCount++;
-                    log.debug("更新充电桩{}状态为: {}", statusInfo.getConnectorID(), statusInfo.getStatus());
-                } else {
-                    log.warn("充电桩{}不存在，无法更新状态", statusInfo.getConnectorID());
-                }
-            } catch (Exception e) {
-                log.error("更新充电桩{}状态失败: {}", statusInfo.getConnectorID(), e.getMessage());
+            if (statusInfo.getConnectorID() == null || statusInfo.getStatus() == null) {
+                continue;
+            }
+            if (connectorStatusIndex.updateStatus(statusInfo.getConnectorID(), statusInfo.getStatus())) {
+                changedCount++;
             }
         }
-
-        log.debug("成功更新{}个充电桩状态", updatedCount);
+        return changedCount;
     }
 
     /**
@@ -0,0 +1,360 @@
+package com.pdsu.charge_palteform.service.impl;
+
+import com.pdsu.charge_palteform.config.EnergyPlatformConfig;
+import com.pdsu.charge_palteform.entity.platefrom.PlatformCall;
+import com.pdsu.charge_palteform.entity.platefrom.charge.*;
+import com.pdsu.charge_palteform.entity.platefrom.station.*;
+import com.pdsu.charge_palteform.exception.BusinessException;
+import com.pdsu.charge_palteform.exception.PlatformCallException;
+import com.pdsu.charge_palteform.service.EnergyPlatformAsyncService;
+import com.pdsu.charge_palteform.service.PlatformCallExecutor;
+import com.pdsu.charge_palteform.service.PlatformTokenHolder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EnergyPlatformAsyncServiceImpl implements EnergyPlatformAsyncService {
+
+    private final EnergyPlatformConfig config;
+    private final PlatformCallExecutor platformCallExecutor;
+    private final PlatformTokenHolder platformTokenHolder;
+    private final AtomicInteger seqCounter = new AtomicInteger(1);
+
+    @Override
+    public CompletableFuture<List<StationInfo>> queryStationsInfo(String lastQueryTime, Integer pageNo, Integer pageSize) {
+        log.info("查询电能平台充电站信息: lastQueryTime={}, pageNo={}, pageSize={}", lastQueryTime, pageNo, pageSize);
+        StationQueryPlatformRequest queryRequest = new StationQueryPlatformRequest();
+        queryRequest.setLastQueryTime(lastQueryTime);
+        queryRequest.setPageNo(pageNo);
+        queryRequest.setPageSize(pageSize);
+
+        return call(PlatformCall.QUERY_STATIONS_INFO, queryRequest).handle((queryResponse, ex) -> {
+            if (ex != null) {
+                throw failure("查询充电站信息失败", ex);
+            }
+            if (queryResponse == null || queryResponse.getStationInfos() == null) {
+                log.warn("⚠️  充电站列表为空，返回空列表");
+                return new ArrayList<>();
+            }
+
+            List<StationInfo> stationInfos = queryResponse.getStationInfos();
+            int totalConnectors = stationInfos.stream()
+                    .filter(station -> station.getEquipmentInfos() != null)
+                    .flatMap(station -> station.getEquipmentInfos().stream())
+                    .mapToInt(equipment -> equipment.getConnectorInfos() != null ? equipment.getConnectorInfos().size() : 0)
+                    .sum();
+            log.info("📈 查询汇总: Total={}, 本页充电站数量={}, 充电桩数量={}",
+                    queryResponse.getTotal(), stationInfos.size(), totalConnectors);
+            return stationInfos;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<StationStatusInfo>> queryStationStatus(List<String> stationIds) {
+        log.info("查询{}个充电站状态", stationIds.size());
+        StationStatusRequest statusRequest = new StationStatusRequest();
+        statusRequest.setStationIDs(stationIds);
+
+        return call(PlatformCall.QUERY_STATION_STATUS, statusRequest).handle((statusResponse, ex) -> {
+            if (ex != null) {
+                throw failure("查询充电站状态失败", ex);
+            }
+            if (statusResponse == null || statusResponse.getStationStatusInfos() == null) {
+                log.warn("状态响应中没有StationStatusInfos字段");
+                return new ArrayList<>();
+            }
+            log.info("成功查询到{}个充电站的状态信息", statusResponse.getStationStatusInfos().size());
+            return statusResponse.getStationStatusInfos();
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> authenticateConnector(String connectorId) {
+        log.info("请求设备认证: {}", connectorId);
+        ConnectorAuthRequest authRequest = new ConnectorAuthRequest();
+        authRequest.setEquipAuthSeq(generateAuthSeq());
+        authRequest.setConnectorID(connectorId);
+
+        return call(PlatformCall.QUERY_EQUIP_AUTH, authRequest).handle((authResponse, ex) -> {
+            if (ex != null) {
+                Throwable cause = unwrap(ex);
+                if (cause instanceof PlatformCallException) {
+                    log.error("设备认证失败，平台返回错误: Ret={}", ((PlatformCallException) cause).getRet());
+                    return false;
+                }
+                throw failure("设备认证失败", cause);
+            }
+            if (authResponse == null) {
+                log.error("设备认证失败，平台未返回认证结果");
+                return false;
+            }
+
+            boolean success = authResponse.getSuccStat() == 0;
+            if (!success) {
+                log.warn("设备认证失败，原因代码: {}", authResponse.getFailReason());
+            }
+            log.info("设备认证结果: {}", success ? "成功" : "失败");
+            return success;
+        });
+    }
+
+    @Override
+    public CompletableFuture<ChargePolicyInfo> getChargePolicy(String connectorId) {
+        log.info("查询充电业务策略: {}", connectorId);
+        ChargePolicyRequest policyRequest = new ChargePolicyRequest();
+        policyRequest.setEquipBizSeq(generateBizSeq());
+        policyRequest.setConnectorID(connectorId);
+
+        return call(PlatformCall.QUERY_EQUIP_BUSINESS_POLICY, policyRequest).handle((policyResponse, ex) -> {
+            if (ex != null) {
+                throw failure("查询充电策略失败", ex);
+            }
+            if (policyResponse == null) {
+                throw new BusinessException("查询充电策略失败");
+            }
+            if (policyResponse.getSuccStat() != 0) {
+                throw new BusinessException("查询充电策略失败，错误代码: " + policyResponse.getFailReason());
+            }
+            return convertToChargePolicyInfo(policyResponse);
+        });
+    }
+
+    @Override
+    public CompletableFuture<String> startCharge(String orderNo, String connectorId, String qrCode) {
+        log.info("请求启动充电: orderNo={}, connectorId={}", orderNo, connectorId);
+        PlatformStartChargeRequest startRequest = new PlatformStartChargeRequest();
+        startRequest.setStartChargeSeq(generateChargeSeq(orderNo));
+        startRequest.setConnectorID(connectorId);
+        if (qrCode != null && !qrCode.trim().isEmpty()) {
+            startRequest.setQRCode(qrCode);
+        }
+
+        return call(PlatformCall.QUERY_START_CHARGE, startRequest).handle((startResponse, ex) -> {
+            if (ex != null) {
+                throw failure("启动充电失败", ex);
+            }
+            if (startResponse == null) {
+                throw new BusinessException("启动充电请求失败");
+            }
+            if (startResponse.getSuccStat() != 0) {
+                String errorMsg = getStartChargeErrorMessage(startResponse.getFailReason());
+                throw new BusinessException("启动充电失败: " + errorMsg);
+            }
+            log.info("启动充电成功，平台订单号: {}", startResponse.getStartChargeSeq());
+            return startResponse.getStartChargeSeq();
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> stopCharge(String platformOrderNo, String connectorId) {
+        log.info("请求停止充电: platformOrderNo={}, connectorId={}", platformOrderNo, connectorId);
+        PlatformStopChargeRequest stopRequest = new PlatformStopChargeRequest();
+        stopRequest.setStartChargeSeq(platformOrderNo);
+        stopRequest.setConnectorID(connectorId);
+
+        return call(PlatformCall.QUERY_STOP_CHARGE, stopRequest).handle((stopResponse, ex) -> {
+            if (ex != null) {
+                Throwable cause = unwrap(ex);
+                if (cause instanceof PlatformCallException) {
+                    log.error("停止充电请求失败，平台返回错误: Ret={}", ((PlatformCallException) cause).getRet());
+                    return false;
+                }
+                throw failure("停止充电失败", cause);
+            }
+            if (stopResponse == null) {
+                log.error("停止充电请求失败，平台未返回结果");
+                return false;
+            }
+
+            boolean success = stopResponse.getSuccStat() == 0;
+            if (!success) {
+                log.warn("停止充电失败，原因代码: {}", stopResponse.getFailReason());
+            }
+            log.info("停止充电结果: {}", success ? "成功" : "失败");
+            return success;
+        });
+    }
+
+    @Override
+    public CompletableFuture<ChargeStatusData> queryChargeStatus(String platformOrderNo) {
+        log.debug("查询充电状态: {}", platformOrderNo);
+        ChargeStatusRequest statusRequest = new ChargeStatusRequest();
+        statusRequest.setStartChargeSeq(platformOrderNo);
+
+        return call(PlatformCall.QUERY_EQUIP_CHARGE_STATUS, statusRequest).handle((statusResponse, ex) -> {
+            if (ex != null) {
+                throw failure("查询充电状态失败", ex);
+            }
+            if (statusResponse == null) {
+                throw new BusinessException("查询充电状态失败");
+            }
+            return convertToChargeStatusData(statusResponse);
+        });
+    }
+
+    /**
+     * 校验配置、获取Token后发起异步调用；同步阶段的异常同样通过 future 返回。
+     * 平台拒绝Token时丢弃本地Token，后续调用会重新获取
+     */
+    private <Req, Resp> CompletableFuture<Resp> call(PlatformCall<Req, Resp> call, Req payload) {
+        if (!config.isComplete()) {
+            return CompletableFuture.failedFuture(new BusinessException("电能平台配置不完整，请联系管理员配置相关参数"));
+        }
+        try {
+            String token = platformTokenHolder.getToken();
+            return platformCallExecutor.executeAsync(call, payload, token).whenComplete((result, ex) -> {
+                if (ex != null && unwrap(ex) instanceof PlatformCallException
+                        && ((PlatformCallException) unwrap(ex)).isTokenRejected()) {
+                    platformTokenHolder.invalidate(token);
+                }
+            });
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static Throwable unwrap(Throwable ex) {
+        return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+    }
+
+    /**
+     * 统一包装失败原因，已是业务异常的保留原始信息
+     */
+    private static CompletionException failure(String action, Throwable ex) {
+        Throwable cause = unwrap(ex);
+        log.error("{}: {}", action, cause.getMessage());
+        BusinessException error = cause instanceof BusinessException && !(cause instanceof PlatformCallException)
+                ? (BusinessException) cause
+                : new BusinessException(action + ": " + cause.getMessage());
+        return new CompletionException(error);
+    }
+
+    // 辅助方法
+    private String generateAuthSeq() {
+        return config.getOperatorId() + System.currentTimeMillis();
+    }
+
+    private String generateBizSeq() {
+        return config.getOperatorId() + System.currentTimeMillis();
+    }
+
+    private String generateChargeSeq(String orderNo) {
+        return config.getOperatorId() + orderNo.substring(2) + String.format("%04d", seqCounter.getAndIncrement() % 10000);
+    }
+
+    private String getStartChargeErrorMessage(Integer failReason) {
+        if (failReason == null) return "未知错误";
+        switch (failReason) {
+            case 0: return "无错误";
+            case 1: return "此设备不存在";
+            case 2: return "此设备离线";
+            case 3: return "电桩枪口充电中";
+            default: return "错误代码: " + failReason;
+        }
+    }
+
+    private ChargePolicyInfo convertToChargePolicyInfo(ChargePolicyResponse response) {
+        ChargePolicyInfo info = new ChargePolicyInfo();
+        info.setConnectorId(response.getConnectorID());
+        info.setSumPeriod(response.getSumPeriod());
+
+        if (response.getPolicyInfos() != null && !response.getPolicyInfos().isEmpty()) {
+            List<ChargePolicyInfo.PolicyPeriod> periods = response.getPolicyInfos().stream()
+                    .map(policy -> {
+                        ChargePolicyInfo.PolicyPeriod period = new ChargePolicyInfo.PolicyPeriod();
+                        period.setStartTime(policy.getStartTime());
+                        period.setElectricityPrice(new BigDecimal(policy.getElecPrice()));
+                        period.setServicePrice(new BigDecimal(policy.getSevicePrice()));
+                        return period;
+                    })
+                    .collect(Collectors.toList());
+            info.setPeriods(periods);
+
+            // 设置当前费率（这里简化为第一个时段的费率）
+            if (!periods.isEmpty()) {
+                info.setCurrentElectricityPrice(periods.get(0).getElectricityPrice());
+                info.setCurrentServicePrice(periods.get(0).getServicePrice());
+            }
+        }
+
+        return info;
+    }
+
+    private ChargeStatusData convertToChargeStatusData(PlatformChargeStatusResponse response) {
+        ChargeStatusData data = new ChargeStatusData();
+        data.setPlatformOrderNo(response.getStartChargeSeq());
+        data.setConnectorId(response.getConnectorID());
+        data.setChargeStatus(response.getStartChargeSeqStat());
+        data.setConnectorStatus(response.getConnectorStatus());
+
+        // 电气参数
+        data.setCurrentA(response.getCurrentA());
+        data.setCurrentB(response.getCurrentB());
+        data.setCurrentC(response.getCurrentC());
+        data.setVoltageA(response.getVoltageA());
+        data.setVoltageB(response.getVoltageB());
+        data.setVoltageC(response.getVoltageC());
+        data.setSoc(response.getSoc());
+
+        // 时间信息
+        try {
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+            if (response.getStartTime() != null && !response.getStartTime().trim().isEmpty()) {
+                data.setStartTime(LocalDateTime.parse(response.getStartTime(), formatter));
+            }
+            if (response.getEndTime() != null && !response.getEndTime().trim().isEmpty()) {
+                data.setEndTime(LocalDateTime.parse(response.getEndTime(), formatter));
+            }
+        } catch (Exception e) {
+            log.warn("解析时间格式失败: {}", e.getMessage());
+        }
+
+        // 费用信息
+        data.setTotalPower(response.getTotalPower());
+        data.setElectricityFee(response.getElecMoney());
+        data.setServiceFee(response.getSeviceMoney());
+        data.setTotalFee(response.getTotalMoney());
+
+        // 充电明细
+        if (response.getChargeDetails() != null && !response.getChargeDetails().isEmpty()) {
+            List<ChargeStatusData.ChargeDetailData> details = response.getChargeDetails().stream()
+                    .map(detail -> {
+                        ChargeStatusData.ChargeDetailData detailData = new ChargeStatusData.ChargeDetailData();
+                        try {
+                            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+                            if (detail.getDetailStartTime() != null) {
+                                detailData.setStartTime(LocalDateTime.parse(detail.getDetailStartTime(), formatter));
+                            }
+                            if (detail.getDetailEndTime() != null) {
+                                detailData.setEndTime(LocalDateTime.parse(detail.getDetailEndTime(), formatter));
+                            }
+                        } catch (Exception e) {
+                            log.warn("解析明细时间格式失败: {}", e.getMessage());
+                        }
+                        detailData.setElectricityPrice(detail.getElecPrice());
+                        detailData.setServicePrice(detail.getSevicePrice());
+                        detailData.setPower(detail.getDetailPower());
+                        detailData.setElectricityFee(detail.getDetailElecMoney());
+                        detailData.setServiceFee(detail.getDetailSeviceMoney());
+                        return detailData;
+                    })
+                    .collect(Collectors.toList());
+            data.setChargeDetails(details);
+        }
+
+        return data;
+    }
+}
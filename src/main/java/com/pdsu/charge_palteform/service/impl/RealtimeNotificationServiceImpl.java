@@ -1,11 +1,11 @@
 package com.pdsu.charge_palteform.service.impl;
 
-import com.pdsu.charge_palteform.config.ChargingWebSocketHandler;
 import com.pdsu.charge_palteform.entity.ChargeOrder;
 import com.pdsu.charge_palteform.entity.ChargingConnector;
 import com.pdsu.charge_palteform.entity.ChargingStation;
 import com.pdsu.charge_palteform.entity.platefrom.charge.ChargeStatusData;
 import com.pdsu.charge_palteform.service.ChargingStationService;
+import com.pdsu.charge_palteform.service.ClusterNotificationBus;
 import com.pdsu.charge_palteform.service.NotificationService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,11 +24,12 @@ import java.util.Map;
 public class RealtimeNotificationServiceImpl implements NotificationService {
 
     private final ChargingStationService stationService;
+    private final ClusterNotificationBus notificationBus;
 
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     @Override
-    @Async
+    @Async("notificationExecutor")
     public void sendChargeStartNotification(Long userId, String orderNo, String stationName, String connectorId) {
         log.info("发送充电启动实时通知: userId={}, orderNo={}", userId, orderNo);
 
@@ -42,15 +43,12 @@ public class RealtimeNotificationServiceImpl implements NotificationService {
         message.put("content", String.format("您在%s的充电已开始", stationName));
         message.put("timestamp", LocalDateTime.now().format(TIME_FORMATTER));
 
-        // 发送给指定用户
-        ChargingWebSocketHandler.sendToUser(userId, message);
-
-        // 发送给订阅该订单的连接
-        ChargingWebSocketHandler.sendToOrder(orderNo, message);
+        // 发送给指定用户及订阅该订单的连接
+        notificationBus.send(userId, orderNo, message);
     }
 
     @Override
-    @Async
+    @Async("notificationExecutor")
     public void sendChargeStatusNotification(Long userId, String orderNo, ChargeStatusData statusData) {
         log.info("发送充电状态变化通知: userId={}, orderNo={}, status={}",
                 userId, orderNo, statusData.getChargeStatus());
@@ -83,12 +81,11 @@ public class RealtimeNotificationServiceImpl implements NotificationService {
 
         message.put("timestamp", LocalDateTime.now().format(TIME_FORMATTER));
 
-        ChargingWebSocketHandler.sendToUser(userId, message);
-        ChargingWebSocketHandler.sendToOrder(orderNo, message);
+        notificationBus.send(userId, orderNo, message);
     }
 
     @Override
-    @Async
+    @Async("progressNotificationExecutor")
     public void sendChargeProgressNotification(Long userId, String orderNo,
                                                BigDecimal soc, BigDecimal totalPower, BigDecimal totalFee, Integer chargeDuration) {
         log.debug("发送充电进度实时通知: userId={}, orderNo={}, soc={}", userId, orderNo, soc);
@@ -102,12 +99,11 @@ public class RealtimeNotificationServiceImpl implements NotificationService {
         message.put("chargeDuration", chargeDuration);
         message.put("timestamp", LocalDateTime.now().format(TIME_FORMATTER));
 
-        ChargingWebSocketHandler.sendToUser(userId, message);
-        ChargingWebSocketHandler.sendToOrder(orderNo, message);
+        notificationBus.send(userId, orderNo, message);
     }
 
     @Override
-    @Async
+    @Async("notificationExecutor")
     public void sendChargeCompleteNotification(Long userId, ChargeOrder order) {
         log.info("发送充电完成实时通知: userId={}, orderNo={}", userId, order.getOrderNo());
 
@@ -139,12 +135,11 @@ public class RealtimeNotificationServiceImpl implements NotificationService {
                 order.getTotalFee() != null ? order.getTotalFee() : BigDecimal.ZERO));
         message.put("timestamp", LocalDateTime.now().format(TIME_FORMATTER));
 
-        ChargingWebSocketHandler.sendToUser(userId, message);
-        ChargingWebSocketHandler.sendToOrder(order.getOrderNo(), message);
+        notificationBus.send(userId, order.getOrderNo(), message);
     }
 
     @Override
-    @Async
+    @Async("notificationExecutor")
     public void sendChargeFaultNotification(Long userId, String orderNo, String connectorId, String reason) {
         log.info("发送充电异常实时通知: userId={}, orderNo={}, reason={}", userId, orderNo, reason);
 
@@ -158,14 +153,11 @@ public class RealtimeNotificationServiceImpl implements NotificationService {
         message.put("content", String.format("充电桩%s发生异常：%s", connectorId, reason));
         message.put("timestamp", LocalDateTime.now().format(TIME_FORMATTER));
 
-        ChargingWebSocketHandler.sendToUser(userId, message);
-        if (orderNo != null) {
-            ChargingWebSocketHandler.sendToOrder(orderNo, message);
-        }
+        notificationBus.send(userId, orderNo, message);
     }
 
     @Override
-    @Async
+    @Async("notificationExecutor")
     public void sendPaymentSuccessNotification(Long userId, String orderNo, BigDecimal amount) {
         log.info("发送支付成功实时通知: userId={}, orderNo={}, amount={}", userId, orderNo, amount);
 
@@ -177,12 +169,11 @@ public class RealtimeNotificationServiceImpl implements NotificationService {
         message.put("content", String.format("订单%s支付成功，金额%.2f元", orderNo, amount));
         message.put("timestamp", LocalDateTime.now().format(TIME_FORMATTER));
 
-        ChargingWebSocketHandler.sendToUser(userId, message);
-        ChargingWebSocketHandler.sendToOrder(orderNo, message);
+        notificationBus.send(userId, orderNo, message);
     }
 
     @Override
-    @Async
+    @Async("notificationExecutor")
     public void sendSystemNotification(Long userId, String title, String content) {
         log.info("发送系统通知: userId={}, title={}", userId, title);
 
@@ -193,10 +184,10 @@ public class RealtimeNotificationServiceImpl implements NotificationService {
         message.put("timestamp", LocalDateTime.now().format(TIME_FORMATTER));
 
         if (userId != null) {
-            ChargingWebSocketHandler.sendToUser(userId, message);
+            notificationBus.send(userId, null, message);
         } else {
             // 系统广播
-            ChargingWebSocketHandler.broadcast(message);
+            notificationBus.broadcast(message);
         }
     }
 
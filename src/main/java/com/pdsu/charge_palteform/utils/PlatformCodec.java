@@ -0,0 +1,229 @@
+package com.pdsu.charge_palteform.utils;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pdsu.charge_palteform.config.EnergyPlatformConfig;
+import com.pdsu.charge_palteform.exception.BusinessException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 电能平台报文编解码器
+ * <p>
+ * 密钥、IV、签名前缀在首次使用时计算一次；Cipher 和 Mac 按线程复用，
+ * 加解密直接在字节缓冲区上完成，JSON 与密文之间不再经过中间字符串。
+ * 与 {@link AesUtil} / {@link HMacMD5} 的算法完全一致，可互相解密、验签。
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PlatformCodec {
+
+    private static final String AES_ALGORITHM = "AES/CBC/PKCS5Padding";
+    private static final String HMAC_ALGORITHM = "HmacMD5";
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private final EnergyPlatformConfig config;
+    private final ObjectMapper objectMapper;
+
+    private volatile KeyMaterial keyMaterial;
+
+    private final ThreadLocal<Cipher> encryptCipher = ThreadLocal.withInitial(() -> newCipher(Cipher.ENCRYPT_MODE));
+    private final ThreadLocal<Cipher> decryptCipher = ThreadLocal.withInitial(() -> newCipher(Cipher.DECRYPT_MODE));
+    private final ThreadLocal<Mac> signMac = ThreadLocal.withInitial(this::newMac);
+    private final ThreadLocal<ByteBuffer> scratchBuffer = ThreadLocal.withInitial(() -> ByteBuffer.allocate(4096));
+
+    /**
+     * 序列化并加密请求数据，返回 Base64 密文
+     */
+    public String encode(Object payload) {
+        try {
+            return encrypt(objectMapper.writeValueAsBytes(payload));
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("平台请求数据编码失败", e);
+            throw new BusinessException("平台请求数据编码失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 解密 Base64 密文并直接反序列化为目标类型
+     */
+    public <T> T decode(String encryptedData, Class<T> type) {
+        return decode(encryptedData, objectMapper.constructType(type));
+    }
+
+    public <T> T decode(String encryptedData, JavaType type) {
+        ByteBuffer plain = decryptToBuffer(encryptedData);
+        try {
+            return objectMapper.readValue(plain.array(), 0, plain.limit(), type);
+        } catch (Exception e) {
+            log.error("平台响应数据解析失败: {}", e.getMessage());
+            throw new BusinessException("平台响应数据解析失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * AES加密，返回 Base64 密文
+     */
+    public String encrypt(byte[] plain) {
+        Cipher cipher = encryptCipher.get();
+        try {
+            ByteBuffer out = scratch(cipher.getOutputSize(plain.length));
+            cipher.doFinal(ByteBuffer.wrap(plain), out);
+            out.flip();
+            ByteBuffer encoded = Base64.getEncoder().encode(out);
+            return new String(encoded.array(), 0, encoded.limit(), StandardCharsets.ISO_8859_1);
+        } catch (Exception e) {
+            encryptCipher.remove();
+            log.error("AES加密异常: ", e);
+            throw new BusinessException("AES加密失败: " + e.getMessage());
+        }
+    }
+
+    public String encrypt(String content) {
+        return encrypt(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * AES解密，返回明文字符串（仅用于需要原文的场景，常规解析请用 decode）
+     */
+    public String decrypt(String encryptedData) {
+        ByteBuffer plain = decryptToBuffer(encryptedData);
+        return new String(plain.array(), 0, plain.limit(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 计算请求签名：HMAC-MD5(OperatorID + Data + TimeStamp + Seq)，大写十六进制
+     */
+    public String sign(String encryptedData, String timestamp, String seq) {
+        Mac mac = signMac.get();
+        mac.update(keyMaterial().operatorIdBytes);
+        mac.update(encryptedData.getBytes(StandardCharsets.UTF_8));
+        mac.update(timestamp.getBytes(StandardCharsets.UTF_8));
+        mac.update(seq.getBytes(StandardCharsets.UTF_8));
+        return toHex(mac.doFinal());
+    }
+
+    /**
+     * 解密结果写入线程内复用的缓冲区，返回的缓冲区在同一线程下一次编解码前有效
+     */
+    private ByteBuffer decryptToBuffer(String encryptedData) {
+        if (encryptedData == null || encryptedData.isEmpty()) {
+            throw new BusinessException("平台数据为空，无法解密");
+        }
+        Cipher cipher = decryptCipher.get();
+        try {
+            ByteBuffer in = Base64.getDecoder().decode(
+                    ByteBuffer.wrap(encryptedData.getBytes(StandardCharsets.ISO_8859_1)));
+            ByteBuffer out = scratch(cipher.getOutputSize(in.remaining()));
+            cipher.doFinal(in, out);
+            out.flip();
+            return out;
+        } catch (Exception e) {
+            decryptCipher.remove();
+            log.error("AES解密异常: {}", e.getMessage());
+            throw new BusinessException("AES解密失败: " + e.getMessage());
+        }
+    }
+
+    private ByteBuffer scratch(int capacity) {
+        ByteBuffer buffer = scratchBuffer.get();
+        if (buffer.capacity() < capacity) {
+            buffer = ByteBuffer.allocate(Math.max(capacity, buffer.capacity() * 2));
+            scratchBuffer.set(buffer);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private Cipher newCipher(int mode) {
+        KeyMaterial material = keyMaterial();
+        try {
+            Cipher cipher = Cipher.getInstance(AES_ALGORITHM);
+            // CBC 模式下 doFinal 之后 Cipher 会回到 init 时的状态，可直接复用
+            cipher.init(mode, material.aesKey, material.iv);
+            return cipher;
+        } catch (Exception e) {
+            throw new BusinessException("初始化AES加解密器失败: " + e.getMessage());
+        }
+    }
+
+    private Mac newMac() {
+        KeyMaterial material = keyMaterial();
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(material.sigKey);
+            return mac;
+        } catch (Exception e) {
+            throw new BusinessException("初始化签名器失败: " + e.getMessage());
+        }
+    }
+
+    private KeyMaterial keyMaterial() {
+        KeyMaterial material = keyMaterial;
+        if (material == null) {
+            synchronized (this) {
+                material = keyMaterial;
+                if (material == null) {
+                    material = KeyMaterial.from(config);
+                    keyMaterial = material;
+                }
+            }
+        }
+        return material;
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int v = bytes[i] & 0xFF;
+            chars[i * 2] = HEX_DIGITS[v >>> 4];
+            chars[i * 2 + 1] = HEX_DIGITS[v & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 预先计算好的密钥材料
+     */
+    private static final class KeyMaterial {
+        private final SecretKeySpec aesKey;
+        private final IvParameterSpec iv;
+        private final SecretKeySpec sigKey;
+        private final byte[] operatorIdBytes;
+
+        private KeyMaterial(SecretKeySpec aesKey, IvParameterSpec iv, SecretKeySpec sigKey, byte[] operatorIdBytes) {
+            this.aesKey = aesKey;
+            this.iv = iv;
+            this.sigKey = sigKey;
+            this.operatorIdBytes = operatorIdBytes;
+        }
+
+        static KeyMaterial from(EnergyPlatformConfig config) {
+            if (isBlank(config.getDataSecret()) || isBlank(config.getDataSecretIv())
+                    || isBlank(config.getSigSecret()) || isBlank(config.getOperatorId())) {
+                throw new BusinessException("电能平台配置不完整，请联系管理员配置相关参数");
+            }
+            return new KeyMaterial(
+                    new SecretKeySpec(config.getDataSecret().getBytes(StandardCharsets.UTF_8), "AES"),
+                    new IvParameterSpec(config.getDataSecretIv().getBytes(StandardCharsets.UTF_8)),
+                    new SecretKeySpec(config.getSigSecret().getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM),
+                    config.getOperatorId().getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static boolean isBlank(String value) {
+            return value == null || value.trim().isEmpty();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.pdsu.charge_palteform.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void emptySnapshotIsZero() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMeanMs());
+        assertEquals(0, snapshot.getP99Ms());
+        assertEquals(0, snapshot.getMaxMs());
+    }
+
+    @Test
+    void percentilesUseBucketUpperBound() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        histogram.recordError(TimeUnit.MILLISECONDS.toNanos(100));
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(1, snapshot.getErrors());
+        assertEquals(100.0, snapshot.getMaxMs(), 1e-9);
+        assertEquals(1.99, snapshot.getMeanMs(), 1e-9);
+        // 1000 微秒落在 [512, 1024) 桶，分位数取桶上界
+        assertEquals(1.024, snapshot.getP50Ms(), 1e-9);
+        assertEquals(1.024, snapshot.getP99Ms(), 1e-9);
+    }
+
+    @Test
+    void percentileNeverExceedsMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(600));
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0.6, snapshot.getP50Ms(), 1e-9);
+        assertTrue(snapshot.getP99Ms() <= snapshot.getMaxMs());
+    }
+
+    @Test
+    void negativeAndHugeDurationsAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(2, histogram.getCount());
+        assertEquals(2, snapshot.getCount());
+        assertEquals(TimeUnit.NANOSECONDS.toMicros(Long.MAX_VALUE) / 1000.0, snapshot.getMaxMs(), 1e-3);
+    }
+}
@@ -0,0 +1,48 @@
+package com.pdsu.charge_palteform.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+
+    @Test
+    void rejectsNonPositiveRate() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(-1));
+    }
+
+    @Test
+    void firstPermitIsImmediate() {
+        RateLimiter limiter = new RateLimiter(1);
+        long waited = limiter.acquire();
+        assertTrue(waited < TimeUnit.MILLISECONDS.toNanos(50), "首个许可不应等待: " + waited);
+    }
+
+    @Test
+    void permitsAreSpacedByInterval() {
+        RateLimiter limiter = new RateLimiter(20);
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            limiter.acquire();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 6 个许可之间有 5 个 50ms 间隔
+        assertTrue(elapsedMillis >= 240, "发放过快: " + elapsedMillis + "ms");
+        assertTrue(elapsedMillis < 2000, "发放过慢: " + elapsedMillis + "ms");
+    }
+
+    @Test
+    void idleTimeIsNotBanked() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(10);
+        limiter.acquire();
+        TimeUnit.MILLISECONDS.sleep(500);
+        limiter.acquire();
+        // 空闲期间不累积许可，紧接着的请求仍需等待一个间隔
+        long waited = limiter.acquire();
+        assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(80), "空闲后许可被累积: " + waited);
+    }
+}
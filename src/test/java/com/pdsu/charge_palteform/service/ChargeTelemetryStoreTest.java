@@ -0,0 +1,93 @@
+package com.pdsu.charge_palteform.service;
+
+import com.pdsu.charge_palteform.entity.ChargeTelemetrySample;
+import com.pdsu.charge_palteform.entity.dto.ChargeCurvePoint;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChargeTelemetryStoreTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 8, 0, 0);
+
+    @Test
+    void emptySamplesGiveNoPoints() {
+        assertTrue(ChargeTelemetryStore.mergePoints(Collections.emptyList(), 10).isEmpty());
+    }
+
+    @Test
+    void samplesWithinLimitAreReturnedOneToOne() {
+        List<ChargeTelemetrySample> samples = Arrays.asList(
+                sample(0, "220", "10", "1.5", null),
+                sample(30, "221", "11", "1.6", null));
+
+        List<ChargeCurvePoint> points = ChargeTelemetryStore.mergePoints(samples, 10);
+
+        assertEquals(2, points.size());
+        assertEquals(START, points.get(0).getTime());
+        assertEquals(1, points.get(0).getSampleCount());
+        assertEquals(new BigDecimal("220.00"), points.get(0).getVoltageA());
+        assertEquals(new BigDecimal("11"), points.get(1).getSoc());
+        assertEquals(new BigDecimal("1.6"), points.get(1).getTotalPower());
+    }
+
+    @Test
+    void samplesBeyondLimitAreMergedIntoTimeBuckets() {
+        List<ChargeTelemetrySample> samples = Arrays.asList(
+                sample(0, "200", "10", "1.0", null),
+                sample(1, "220", "20", "2.0", null),
+                sample(2, "230", "30", "3.0", null),
+                sample(3, "250", "40", "4.0", null));
+
+        List<ChargeCurvePoint> points = ChargeTelemetryStore.mergePoints(samples, 2);
+
+        assertEquals(2, points.size());
+        ChargeCurvePoint first = points.get(0);
+        assertEquals(START, first.getTime());
+        assertEquals(2, first.getSampleCount());
+        assertEquals(new BigDecimal("210.00"), first.getVoltageA());
+        // 电量百分比、累计电量取桶内最大值
+        assertEquals(new BigDecimal("20"), first.getSoc());
+        assertEquals(new BigDecimal("2.0"), first.getTotalPower());
+
+        ChargeCurvePoint second = points.get(1);
+        assertEquals(START.plusSeconds(2), second.getTime());
+        assertEquals(new BigDecimal("240.00"), second.getVoltageA());
+        assertEquals(new BigDecimal("40"), second.getSoc());
+    }
+
+    @Test
+    void downsampledRowsAreWeightedBySampleCount() {
+        ChargeTelemetrySample downsampled = sample(0, "100", "10", "1.0", 3);
+        ChargeTelemetrySample raw = sample(1, "200", "12", "1.2", null);
+        raw.setCurrentA(new BigDecimal("16"));
+        List<ChargeTelemetrySample> samples = Arrays.asList(downsampled, raw, sample(10, "210", "15", "1.5", null));
+
+        List<ChargeCurvePoint> points = ChargeTelemetryStore.mergePoints(samples, 2);
+
+        assertEquals(2, points.size());
+        ChargeCurvePoint merged = points.get(0);
+        assertEquals(4, merged.getSampleCount());
+        assertEquals(new BigDecimal("125.00"), merged.getVoltageA());
+        // 缺少电流的记录不参与电流均值
+        assertEquals(new BigDecimal("16.00"), merged.getCurrentA());
+        assertNull(merged.getVoltageB());
+    }
+
+    private static ChargeTelemetrySample sample(int offsetSeconds, String voltageA, String soc, String totalPower,
+                                                Integer sampleCount) {
+        ChargeTelemetrySample sample = new ChargeTelemetrySample();
+        sample.setSampleTime(START.plusSeconds(offsetSeconds));
+        sample.setVoltageA(new BigDecimal(voltageA));
+        sample.setSoc(new BigDecimal(soc));
+        sample.setTotalPower(new BigDecimal(totalPower));
+        sample.setSampleCount(sampleCount);
+        return sample;
+    }
+}
@@ -0,0 +1,216 @@
+package com.pdsu.charge_palteform.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 秒杀 Lua 脚本在真实 Redis 上的行为：不超发、不重复领取、预热与结束的状态切换。
+ * <p>
+ * 需要可用的 Redis，默认不执行：
+ * {@code mvn test -Dtest=CouponFlashSaleScriptTest -Dredis.host=localhost}
+ */
+@EnabledIfSystemProperty(named = "redis.host", matches = ".+")
+class CouponFlashSaleScriptTest {
+
+    private static final int THREADS = 16;
+
+    private LettuceConnectionFactory connectionFactory;
+    private StringRedisTemplate redisTemplate;
+    private Long templateId;
+
+    @BeforeEach
+    void setUp() {
+        RedisStandaloneConfiguration config = new RedisStandaloneConfiguration(
+                System.getProperty("redis.host"), Integer.getInteger("redis.port", 6379));
+        connectionFactory = new LettuceConnectionFactory(config);
+        connectionFactory.afterPropertiesSet();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+        // 每个用例使用不同的模板，避免与其它数据冲突
+        templateId = ThreadLocalRandom.current().nextLong(1_000_000_000L, Long.MAX_VALUE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        redisTemplate.delete(Arrays.asList(CouponFlashSaleService.stockKey(templateId),
+                CouponFlashSaleService.usersKey(templateId), CouponFlashSaleService.queueKey(templateId),
+                CouponFlashSaleService.fallbackKey(templateId)));
+        connectionFactory.destroy();
+    }
+
+    @Test
+    void concurrentGrabsNeverOversell() throws Exception {
+        redisTemplate.opsForValue().set(CouponFlashSaleService.stockKey(templateId), "10");
+
+        List<Long> results = runConcurrently(200, i -> grab(i, true));
+
+        assertEquals(10, count(results, CouponFlashSaleService.GRANTED));
+        assertEquals(190, count(results, CouponFlashSaleService.SOLD_OUT));
+        assertEquals("0", redisTemplate.opsForValue().get(CouponFlashSaleService.stockKey(templateId)));
+        assertEquals(10L, redisTemplate.opsForList().size(CouponFlashSaleService.queueKey(templateId)));
+        assertEquals(10L, redisTemplate.opsForSet().size(CouponFlashSaleService.usersKey(templateId)));
+    }
+
+    @Test
+    void concurrentGrabsBySameUserGrantOnce() throws Exception {
+        redisTemplate.opsForValue().set(CouponFlashSaleService.stockKey(templateId), "10");
+
+        List<Long> results = runConcurrently(50, i -> grab(42, true));
+
+        assertEquals(1, count(results, CouponFlashSaleService.GRANTED));
+        assertEquals(49, count(results, CouponFlashSaleService.ALREADY_RECEIVED));
+        assertEquals("9", redisTemplate.opsForValue().get(CouponFlashSaleService.stockKey(templateId)));
+        assertEquals(1L, redisTemplate.opsForList().size(CouponFlashSaleService.queueKey(templateId)));
+    }
+
+    @Test
+    void systemIssueSkipsOncePerUserButNotStock() throws Exception {
+        redisTemplate.opsForValue().set(CouponFlashSaleService.stockKey(templateId), "5");
+        redisTemplate.opsForSet().add(CouponFlashSaleService.usersKey(templateId), "42");
+
+        List<Long> results = runConcurrently(20, i -> grab(42, false));
+
+        assertEquals(5, count(results, CouponFlashSaleService.GRANTED));
+        assertEquals(15, count(results, CouponFlashSaleService.SOLD_OUT));
+        assertEquals("0", redisTemplate.opsForValue().get(CouponFlashSaleService.stockKey(templateId)));
+        // 已领过的用户再通过秒杀领取仍被拒绝
+        assertEquals(CouponFlashSaleService.ALREADY_RECEIVED, grab(42, true));
+    }
+
+    @Test
+    void notPreheatedRegistersFallbackUntilReleased() {
+        String fallbackKey = CouponFlashSaleService.fallbackKey(templateId);
+
+        assertEquals(CouponFlashSaleService.NOT_PREHEATED, grab(1, true));
+        assertEquals(CouponFlashSaleService.NOT_PREHEATED, grab(2, false));
+        assertEquals("2", redisTemplate.opsForValue().get(fallbackKey));
+        assertTrue(redisTemplate.getExpire(fallbackKey) > 0);
+
+        execute(CouponFlashSaleService.RELEASE_FALLBACK_SCRIPT, fallbackKey);
+        execute(CouponFlashSaleService.RELEASE_FALLBACK_SCRIPT, fallbackKey);
+        assertFalse(redisTemplate.hasKey(fallbackKey));
+        assertNull(redisTemplate.opsForValue().get(CouponFlashSaleService.stockKey(templateId)));
+    }
+
+    @Test
+    void preheatingBlocksGrabsUntilStockIsSet() {
+        String stockKey = CouponFlashSaleService.stockKey(templateId);
+        String queueKey = CouponFlashSaleService.queueKey(templateId);
+
+        assertEquals(1L, execute(CouponFlashSaleService.BEGIN_PREHEAT_SCRIPT, stockKey, queueKey));
+        assertEquals(0L, execute(CouponFlashSaleService.BEGIN_PREHEAT_SCRIPT, stockKey, queueKey));
+        assertEquals(CouponFlashSaleService.PREHEATING, grab(1, true));
+        assertEquals(CouponFlashSaleService.PREHEATING, grab(1, false));
+        assertNull(redisTemplate.opsForValue().get(CouponFlashSaleService.fallbackKey(templateId)));
+
+        assertEquals(1L, redisTemplate.execute(CouponFlashSaleService.REPLACE_STOCK_SCRIPT,
+                Collections.singletonList(stockKey), CouponFlashSaleService.STOCK_PREHEATING, "3"));
+        assertEquals(CouponFlashSaleService.GRANTED, grab(1, true));
+    }
+
+    @Test
+    void preheatWaitsForPendingQueue() {
+        String stockKey = CouponFlashSaleService.stockKey(templateId);
+        String queueKey = CouponFlashSaleService.queueKey(templateId);
+        redisTemplate.opsForList().rightPush(queueKey, "1,CODE,0");
+
+        assertEquals(-1L, execute(CouponFlashSaleService.BEGIN_PREHEAT_SCRIPT, stockKey, queueKey));
+        assertFalse(redisTemplate.hasKey(stockKey));
+    }
+
+    @Test
+    void closeCancelsPreheatOrRejectsGrabs() {
+        String stockKey = CouponFlashSaleService.stockKey(templateId);
+        String queueKey = CouponFlashSaleService.queueKey(templateId);
+
+        assertEquals(0L, execute(CouponFlashSaleService.CLOSE_SCRIPT, stockKey));
+
+        execute(CouponFlashSaleService.BEGIN_PREHEAT_SCRIPT, stockKey, queueKey);
+        assertEquals(2L, execute(CouponFlashSaleService.CLOSE_SCRIPT, stockKey));
+        assertFalse(redisTemplate.hasKey(stockKey));
+
+        redisTemplate.opsForValue().set(stockKey, "5");
+        assertEquals(CouponFlashSaleService.GRANTED, grab(1, true));
+        assertEquals(1L, execute(CouponFlashSaleService.CLOSE_SCRIPT, stockKey));
+        assertEquals(CouponFlashSaleService.CLOSED, grab(2, true));
+        assertEquals(CouponFlashSaleService.CLOSED, grab(2, false));
+        assertEquals(1L, redisTemplate.opsForList().size(queueKey));
+    }
+
+    @Test
+    void cleanupOnlyAfterCloseAndDrain() {
+        String stockKey = CouponFlashSaleService.stockKey(templateId);
+        String usersKey = CouponFlashSaleService.usersKey(templateId);
+        String queueKey = CouponFlashSaleService.queueKey(templateId);
+        redisTemplate.opsForValue().set(stockKey, "5");
+        grab(1, true);
+
+        // 未结束时不清理
+        assertEquals(0L, execute(CouponFlashSaleService.CLEANUP_SCRIPT, stockKey, usersKey, queueKey));
+        execute(CouponFlashSaleService.CLOSE_SCRIPT, stockKey);
+        // 仍有待落库记录时不清理
+        assertEquals(0L, execute(CouponFlashSaleService.CLEANUP_SCRIPT, stockKey, usersKey, queueKey));
+
+        redisTemplate.opsForList().trim(queueKey, 1, -1);
+        assertEquals(1L, execute(CouponFlashSaleService.CLEANUP_SCRIPT, stockKey, usersKey, queueKey));
+        assertFalse(redisTemplate.hasKey(stockKey));
+        assertFalse(redisTemplate.hasKey(usersKey));
+    }
+
+    private long grab(long userId, boolean oncePerUser) {
+        Long result = redisTemplate.execute(CouponFlashSaleService.GRAB_SCRIPT,
+                Arrays.asList(CouponFlashSaleService.stockKey(templateId), CouponFlashSaleService.usersKey(templateId),
+                        CouponFlashSaleService.queueKey(templateId), CouponFlashSaleService.fallbackKey(templateId)),
+                String.valueOf(userId), userId + ",CODE" + System.nanoTime() + "," + System.currentTimeMillis(),
+                "60", oncePerUser ? "1" : "0");
+        assertNotNull(result);
+        return result;
+    }
+
+    private Long execute(RedisScript<Long> script, String... keys) {
+        return redisTemplate.execute(script, Arrays.asList(keys));
+    }
+
+    private interface Attempt {
+        long run(int index);
+    }
+
+    private static List<Long> runConcurrently(int attempts, Attempt attempt) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Callable<Long>> tasks = new ArrayList<>(attempts);
+            for (int i = 0; i < attempts; i++) {
+                int index = i;
+                tasks.add(() -> attempt.run(index));
+            }
+            List<Long> results = new ArrayList<>(attempts);
+            for (Future<Long> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long count(List<Long> results, long value) {
+        return results.stream().filter(result -> result == value).count();
+    }
+}
@@ -0,0 +1,293 @@
+package com.pdsu.charge_palteform.service;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.pdsu.charge_palteform.config.TelemetryConfig;
+import com.pdsu.charge_palteform.entity.ChargeOrder;
+import com.pdsu.charge_palteform.entity.platefrom.charge.ChargeStatusData;
+import com.pdsu.charge_palteform.mapper.ChargeOrderMapper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderStateManagerServiceTest {
+
+    private static final int STARTING = 1;
+    private static final int CHARGING = 2;
+    private static final int STOPPING = 3;
+    private static final int FINISHED = 4;
+    private static final int UNKNOWN = 5;
+
+    private static final int ORDER_CREATED = 1;
+    private static final int ORDER_CHARGING = 2;
+    private static final int ORDER_COMPLETED = 3;
+    private static final int ORDER_SETTLED = 4;
+
+    private static final long ORDER_ID = 100L;
+    private static final String ORDER_NO = "CO202401010001";
+
+    private ChargeOrderMapper chargeOrderMapper;
+    private NotificationService notificationService;
+    private ProgressNotificationCoalescer coalescer;
+    private OrderStatisticsService orderStatisticsService;
+    private ChargeTelemetryBuffer telemetryBuffer;
+    private TelemetryConfig telemetryConfig;
+    private OrderStateManagerService service;
+
+    @BeforeAll
+    static void initTableInfo() {
+        // LambdaUpdateWrapper 解析列名依赖实体的表信息
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), ChargeOrder.class);
+    }
+
+    @BeforeEach
+    void setUp() {
+        chargeOrderMapper = mock(ChargeOrderMapper.class);
+        notificationService = mock(NotificationService.class);
+        coalescer = mock(ProgressNotificationCoalescer.class);
+        orderStatisticsService = mock(OrderStatisticsService.class);
+        telemetryConfig = new TelemetryConfig();
+        // 不调用 init，缓冲不会自行写回
+        telemetryBuffer = new ChargeTelemetryBuffer(chargeOrderMapper, telemetryConfig);
+        service = new OrderStateManagerService(chargeOrderMapper, notificationService, coalescer,
+                telemetryBuffer, mock(ChargeTelemetryStore.class), orderStatisticsService);
+    }
+
+    @Test
+    void acceptsAnyStatusWhenCurrentIsMissingOrUnknown() {
+        assertTrue(OrderStateManagerService.isForward(null, STARTING));
+        assertTrue(OrderStateManagerService.isForward(null, UNKNOWN));
+        assertTrue(OrderStateManagerService.isForward(UNKNOWN, CHARGING));
+        assertTrue(OrderStateManagerService.isForward(UNKNOWN, FINISHED));
+    }
+
+    @Test
+    void acceptsForwardTransitions() {
+        assertTrue(OrderStateManagerService.isForward(STARTING, CHARGING));
+        assertTrue(OrderStateManagerService.isForward(CHARGING, STOPPING));
+        assertTrue(OrderStateManagerService.isForward(STOPPING, FINISHED));
+        assertTrue(OrderStateManagerService.isForward(STARTING, FINISHED));
+    }
+
+    @Test
+    void rejectsBackwardAndRepeatedTransitions() {
+        assertFalse(OrderStateManagerService.isForward(CHARGING, STARTING));
+        assertFalse(OrderStateManagerService.isForward(FINISHED, CHARGING));
+        assertFalse(OrderStateManagerService.isForward(STOPPING, STOPPING));
+    }
+
+    @Test
+    void unknownNeverOverwritesKnownStatus() {
+        assertFalse(OrderStateManagerService.isForward(STARTING, UNKNOWN));
+        assertFalse(OrderStateManagerService.isForward(FINISHED, UNKNOWN));
+    }
+
+    @Test
+    void orderStatusNeverLeavesTerminalStates() {
+        assertTrue(OrderStateManagerService.isOrderStatusForward(null, ORDER_CHARGING));
+        assertTrue(OrderStateManagerService.isOrderStatusForward(ORDER_CREATED, ORDER_CHARGING));
+        assertTrue(OrderStateManagerService.isOrderStatusForward(ORDER_CHARGING, ORDER_COMPLETED));
+        assertFalse(OrderStateManagerService.isOrderStatusForward(ORDER_CHARGING, ORDER_CHARGING));
+        assertFalse(OrderStateManagerService.isOrderStatusForward(ORDER_COMPLETED, ORDER_CHARGING));
+        assertFalse(OrderStateManagerService.isOrderStatusForward(ORDER_SETTLED, ORDER_COMPLETED));
+        assertFalse(OrderStateManagerService.isOrderStatusForward(ORDER_CHARGING, null));
+    }
+
+    @Test
+    void versionConflictRereadsAndRetriesWithNewVersion() {
+        when(chargeOrderMapper.selectOne(any(Wrapper.class)))
+                .thenReturn(order(7, ORDER_CHARGING, STOPPING, "10"), order(8, ORDER_CHARGING, STOPPING, "12"));
+        when(chargeOrderMapper.update(isNull(), any(Wrapper.class))).thenReturn(0, 1);
+
+        assertTrue(service.updateOrderStatusSafely(ORDER_NO, status(FINISHED, "15"), "TEST"));
+
+        ArgumentCaptor<Wrapper> captor = ArgumentCaptor.forClass(Wrapper.class);
+        verify(chargeOrderMapper, times(2)).update(isNull(), captor.capture());
+        List<Wrapper> updates = captor.getAllValues();
+        assertVersionCondition(updates.get(0), 7);
+        assertVersionCondition(updates.get(1), 8);
+
+        // 只统计成功的那次状态变化，完成时结束进度推送并发送完成通知
+        verify(orderStatisticsService, times(1)).onStatusChange(any(ChargeOrder.class), eq(ORDER_CHARGING), eq(ORDER_COMPLETED));
+        verify(coalescer).discard(ORDER_NO);
+        verify(notificationService).sendChargeCompleteNotification(eq(1L), any());
+    }
+
+    @Test
+    void givesUpAfterMaxVersionConflicts() {
+        when(chargeOrderMapper.selectOne(any(Wrapper.class)))
+                .thenAnswer(inv -> order(7, ORDER_CHARGING, STOPPING, "10"));
+        when(chargeOrderMapper.update(isNull(), any(Wrapper.class))).thenReturn(0);
+
+        assertFalse(service.updateOrderStatusSafely(ORDER_NO, status(FINISHED, "15"), "TEST"));
+
+        verify(chargeOrderMapper, times(5)).update(isNull(), any(Wrapper.class));
+        verify(orderStatisticsService, never()).onStatusChange(any(), any(), any());
+        verify(notificationService, never()).sendChargeCompleteNotification(any(), any());
+    }
+
+    @Test
+    void staleStatusAndLowerTotalsAreIgnored() {
+        when(chargeOrderMapper.selectOne(any(Wrapper.class)))
+                .thenReturn(order(7, ORDER_COMPLETED, FINISHED, "20"));
+
+        assertFalse(service.updateOrderStatusSafely(ORDER_NO, status(CHARGING, "10"), "TEST"));
+
+        verify(chargeOrderMapper, never()).update(any(), any(Wrapper.class));
+        verify(orderStatisticsService, never()).onStatusChange(any(), any(), any());
+    }
+
+    @Test
+    void staleChargeStatusDoesNotReopenCompletedOrder() {
+        // 停止充电后订单已完成，但充电状态仍停留在启动中
+        when(chargeOrderMapper.selectOne(any(Wrapper.class)))
+                .thenReturn(order(7, ORDER_COMPLETED, STARTING, "20"));
+        when(chargeOrderMapper.update(isNull(), any(Wrapper.class))).thenReturn(1);
+
+        assertTrue(service.updateOrderStatusSafely(ORDER_NO, status(CHARGING, null), "TEST"));
+
+        ArgumentCaptor<Wrapper> captor = ArgumentCaptor.forClass(Wrapper.class);
+        verify(chargeOrderMapper).update(isNull(), captor.capture());
+        List<String> columns = setColumns(captor.getValue());
+        assertTrue(columns.contains("charge_status"), columns.toString());
+        assertFalse(columns.contains("status"), columns.toString());
+        verify(orderStatisticsService, never()).onStatusChange(any(), any(), any());
+    }
+
+    @Test
+    void telemetryOnlyChangeIsBufferedWithoutWriting() {
+        when(chargeOrderMapper.selectOne(any(Wrapper.class)))
+                .thenReturn(order(7, ORDER_CHARGING, CHARGING, "10"));
+
+        assertTrue(service.updateOrderStatusSafely(ORDER_NO, status(CHARGING, "12"), "TEST"));
+
+        verify(chargeOrderMapper, never()).update(any(), any(Wrapper.class));
+        assertEquals(new BigDecimal("12"), telemetryBuffer.peek(ORDER_ID).getTotalPower());
+    }
+
+    @Test
+    void statusWriteCarriesBufferedTelemetry() {
+        telemetryBuffer.buffer(ORDER_ID, ORDER_NO, new BigDecimal("30"), null, null, new BigDecimal("45"), null);
+        when(chargeOrderMapper.selectOne(any(Wrapper.class)))
+                .thenReturn(order(7, ORDER_CHARGING, CHARGING, "10"));
+        when(chargeOrderMapper.update(isNull(), any(Wrapper.class))).thenReturn(1);
+
+        // 只推进充电状态，不带电量
+        assertTrue(service.updateOrderStatusSafely(ORDER_NO, status(STOPPING, null), "TEST"));
+
+        ArgumentCaptor<Wrapper> captor = ArgumentCaptor.forClass(Wrapper.class);
+        verify(chargeOrderMapper).update(isNull(), captor.capture());
+        Wrapper update = captor.getValue();
+        List<String> columns = setColumns(update);
+        assertTrue(columns.contains("total_power"), columns.toString());
+        assertTrue(columns.contains("total_fee"), columns.toString());
+        assertTrue(paramValues(update).contains(new BigDecimal("30")));
+        assertTrue(paramValues(update).contains(new BigDecimal("45")));
+        // 已同步写库的缓冲数据被移除
+        assertNull(telemetryBuffer.peek(ORDER_ID));
+    }
+
+    @Test
+    void updateWithVersionReappliesModifierOnFreshOrder() {
+        ChargeOrder stale = order(7, ORDER_CHARGING, CHARGING, "10");
+        when(chargeOrderMapper.updateById(any(ChargeOrder.class))).thenReturn(0, 1);
+        when(chargeOrderMapper.selectById(ORDER_ID)).thenReturn(order(8, ORDER_CHARGING, CHARGING, "12"));
+
+        ChargeOrder updated = service.updateWithVersion(stale, current -> {
+            current.setChargeStatus(STOPPING);
+            return true;
+        });
+
+        assertNotNull(updated);
+        assertEquals(8, updated.getVersion());
+        assertEquals(STOPPING, updated.getChargeStatus());
+        assertEquals(new BigDecimal("12"), updated.getTotalPower());
+        verify(chargeOrderMapper, times(2)).updateById(any(ChargeOrder.class));
+        verify(orderStatisticsService, never()).onStatusChange(any(), any(), any());
+    }
+
+    @Test
+    void updateWithVersionStopsWhenModifierNoLongerApplies() {
+        when(chargeOrderMapper.updateById(any(ChargeOrder.class))).thenReturn(0);
+        when(chargeOrderMapper.selectById(ORDER_ID)).thenReturn(order(8, ORDER_COMPLETED, FINISHED, "20"));
+
+        ChargeOrder updated = service.updateWithVersion(order(7, ORDER_CHARGING, CHARGING, "10"),
+                current -> Integer.valueOf(ORDER_CHARGING).equals(current.getStatus()));
+
+        assertNull(updated);
+        verify(chargeOrderMapper, times(1)).updateById(any(ChargeOrder.class));
+    }
+
+    @Test
+    void updateWithVersionRecordsStatusChange() {
+        when(chargeOrderMapper.updateById(any(ChargeOrder.class))).thenReturn(1);
+
+        ChargeOrder updated = service.updateWithVersion(order(7, ORDER_CHARGING, STOPPING, "10"), current -> {
+            current.setStatus(ORDER_COMPLETED);
+            return true;
+        });
+
+        assertNotNull(updated);
+        verify(orderStatisticsService).onStatusChange(updated, ORDER_CHARGING, ORDER_COMPLETED);
+    }
+
+    private static void assertVersionCondition(Wrapper update, int version) {
+        assertTrue(update.getSqlSegment().contains("version ="), update.getSqlSegment());
+        assertTrue(update.getSqlSet().contains("version = version + 1"), update.getSqlSet());
+        assertTrue(paramValues(update).contains(version));
+    }
+
+    /**
+     * SET 子句中的列名
+     */
+    private static List<String> setColumns(Wrapper update) {
+        return Arrays.stream(update.getSqlSet().split(","))
+                .map(assignment -> assignment.split("=")[0].trim())
+                .collect(Collectors.toList());
+    }
+
+    private static Collection<Object> paramValues(Wrapper update) {
+        return ((AbstractWrapper<?, ?, ?>) update).getParamNameValuePairs().values();
+    }
+
+    private static ChargeOrder order(int version, int status, int chargeStatus, String totalPower) {
+        ChargeOrder order = new ChargeOrder();
+        order.setId(ORDER_ID);
+        order.setOrderNo(ORDER_NO);
+        order.setUserId(1L);
+        order.setVersion(version);
+        order.setStatus(status);
+        order.setChargeStatus(chargeStatus);
+        order.setTotalPower(new BigDecimal(totalPower));
+        return order;
+    }
+
+    private static ChargeStatusData status(int chargeStatus, String totalPower) {
+        ChargeStatusData data = new ChargeStatusData();
+        data.setChargeStatus(chargeStatus);
+        if (totalPower != null) {
+            data.setTotalPower(new BigDecimal(totalPower));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,122 @@
+package com.pdsu.charge_palteform.service;
+
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.pdsu.charge_palteform.entity.ChargingStation;
+import com.pdsu.charge_palteform.mapper.ChargingStationMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class StationGeoIndexTest {
+
+    private static final double CENTER_LAT = 34.0;
+    private static final double CENTER_LNG = 113.0;
+
+    private ChargingStationMapper stationMapper;
+    private StationGeoIndex index;
+
+    @BeforeEach
+    void setUp() {
+        stationMapper = mock(ChargingStationMapper.class);
+        index = new StationGeoIndex(stationMapper, mock(RedisMessageListenerContainer.class));
+    }
+
+    @Test
+    void boundingBoxAtEquatorIsOneDegreePerDegreeOfArc() {
+        double[] box = StationGeoIndex.boundingBox(0, 0, 111.32);
+        assertArrayEquals(new double[]{-1, 1, -1, 1}, box, 1e-9);
+    }
+
+    @Test
+    void boundingBoxWidensLongitudeAwayFromEquator() {
+        double[] box = StationGeoIndex.boundingBox(60, 10, 111.32);
+        assertEquals(59, box[0], 1e-9);
+        assertEquals(61, box[1], 1e-9);
+        // cos(60°) = 0.5，经度跨度加倍
+        assertEquals(8, box[2], 1e-9);
+        assertEquals(12, box[3], 1e-9);
+    }
+
+    @Test
+    void boundingBoxIsClampedAtPolesAndAntimeridian() {
+        double[] box = StationGeoIndex.boundingBox(89.9, 179.9, 50);
+        assertEquals(90, box[1], 1e-9);
+        assertEquals(180, box[3], 1e-9);
+        assertTrue(box[2] >= -180);
+    }
+
+    @Test
+    void queryBeforeLoadReturnsEmpty() {
+        assertFalse(index.isReady());
+        StationGeoIndex.NearbyResult result = index.queryNearby(CENTER_LAT, CENTER_LNG, 10, 0, 10);
+        assertEquals(0, result.getTotal());
+        assertTrue(result.getStations().isEmpty());
+    }
+
+    @Test
+    void queryNearbyFiltersByRadiusAndSortsByDistance() {
+        load(station("far", 34.18, 113.0),      // 约 20km
+                station("mid", 34.05, 113.0),   // 约 5.6km，位于相邻网格
+                station("center", 34.0, 113.0),
+                station("near", 34.0, 113.01),  // 约 0.9km
+                station("west", 34.0, 112.96)); // 约 3.7km，跨网格
+
+        StationGeoIndex.NearbyResult result = index.queryNearby(CENTER_LAT, CENTER_LNG, 10, 0, 10);
+
+        assertEquals(4, result.getTotal());
+        assertEquals(Arrays.asList("center", "near", "west", "mid"), ids(result.getStations()));
+    }
+
+    @Test
+    void queryNearbyPagesResults() {
+        load(station("a", 34.0, 113.0), station("b", 34.0, 113.01),
+                station("c", 34.0, 113.02), station("d", 34.0, 113.03));
+
+        StationGeoIndex.NearbyResult page = index.queryNearby(CENTER_LAT, CENTER_LNG, 10, 1, 2);
+        assertEquals(4, page.getTotal());
+        assertEquals(Arrays.asList("b", "c"), ids(page.getStations()));
+
+        StationGeoIndex.NearbyResult beyond = index.queryNearby(CENTER_LAT, CENTER_LNG, 10, 10, 2);
+        assertEquals(4, beyond.getTotal());
+        assertTrue(beyond.getStations().isEmpty());
+    }
+
+    @Test
+    void refreshReplacesSnapshot() {
+        load(station("old", 34.0, 113.0));
+        assertEquals(1, index.size());
+
+        load(station("new1", 34.0, 113.0), station("new2", 34.0, 113.001));
+        assertEquals(2, index.size());
+        assertEquals(Arrays.asList("new1", "new2"),
+                ids(index.queryNearby(CENTER_LAT, CENTER_LNG, 1, 0, 10).getStations()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void load(ChargingStation... stations) {
+        when(stationMapper.selectList(any(Wrapper.class))).thenReturn(Arrays.asList(stations));
+        index.refresh();
+    }
+
+    private static ChargingStation station(String id, double latitude, double longitude) {
+        ChargingStation station = new ChargingStation();
+        station.setStationId(id);
+        station.setLatitude(BigDecimal.valueOf(latitude));
+        station.setLongitude(BigDecimal.valueOf(longitude));
+        return station;
+    }
+
+    private static List<String> ids(List<ChargingStation> stations) {
+        return stations.stream().map(ChargingStation::getStationId).collect(Collectors.toList());
+    }
+}
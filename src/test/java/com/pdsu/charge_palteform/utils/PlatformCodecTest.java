@@ -0,0 +1,88 @@
+package com.pdsu.charge_palteform.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pdsu.charge_palteform.config.EnergyPlatformConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * PlatformCodec 与 AesUtil / HMacMD5 的结果必须逐字节一致
+ */
+class PlatformCodecTest {
+
+    private static final String DATA_SECRET = "a2164ada0026ccf7";
+    private static final String DATA_SECRET_IV = "82c91325e74bef0f";
+    private static final String SIG_SECRET = "9af2e7b2d7562ad5";
+    private static final String OPERATOR_ID = "MA01H3BQ2";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private PlatformCodec codec;
+
+    @BeforeEach
+    void setUp() {
+        EnergyPlatformConfig config = new EnergyPlatformConfig();
+        config.setOperatorId(OPERATOR_ID);
+        config.setDataSecret(DATA_SECRET);
+        config.setDataSecretIv(DATA_SECRET_IV);
+        config.setSigSecret(SIG_SECRET);
+        codec = new PlatformCodec(config, objectMapper);
+    }
+
+    @Test
+    void encodeMatchesAesUtil() throws Exception {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("StartChargeSeq", "MA01H3BQ2202401011200001234");
+        payload.put("ConnectorID", "3702120244102_1");
+        payload.put("QRCode", "");
+
+        String expected = AesUtil.encrypt(objectMapper.writeValueAsString(payload), DATA_SECRET, DATA_SECRET_IV);
+        assertEquals(expected, codec.encode(payload));
+    }
+
+    @Test
+    void encryptMatchesAesUtilForMultiBlockAndUnicode() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            content.append("充电站").append(i).append(',');
+        }
+        String expected = AesUtil.encrypt(content.toString(), DATA_SECRET, DATA_SECRET_IV);
+        assertEquals(expected, codec.encrypt(content.toString()));
+        // 第二次使用同一线程复用的 Cipher 和缓冲区，结果不变
+        assertEquals(expected, codec.encrypt(content.toString()));
+    }
+
+    @Test
+    void decodeReadsAesUtilCiphertext() {
+        String json = "{\"OperatorID\":\"MA01H3BQ2\",\"SuccStat\":0,\"AccessToken\":\"token-123\",\"TokenAvailableTime\":7200}";
+        String encrypted = AesUtil.encrypt(json, DATA_SECRET, DATA_SECRET_IV);
+
+        assertEquals(json, codec.decrypt(encrypted));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> decoded = codec.decode(encrypted, Map.class);
+        assertEquals("token-123", decoded.get("AccessToken"));
+        assertEquals(7200, decoded.get("TokenAvailableTime"));
+    }
+
+    @Test
+    void decryptIsInverseOfEncrypt() {
+        String content = "{\"StationIDs\":[\"1\",\"2\",\"3\"]}";
+        assertEquals(content, AesUtil.decrypt(codec.encrypt(content), DATA_SECRET, DATA_SECRET_IV));
+        assertEquals(content, codec.decrypt(codec.encrypt(content)));
+    }
+
+    @Test
+    void signMatchesHMacMD5() {
+        String data = AesUtil.encrypt("{\"PageNo\":1,\"PageSize\":50}", DATA_SECRET, DATA_SECRET_IV);
+        String timestamp = "20240101120000";
+        String seq = "0001";
+
+        String expected = HMacMD5.getHmacMd5Str(SIG_SECRET, OPERATOR_ID + data + timestamp + seq);
+        assertEquals(expected, codec.sign(data, timestamp, seq));
+        assertEquals(expected, codec.sign(data, timestamp, seq));
+    }
+}
@@ -0,0 +1,100 @@
+package com.pdsu.charge_palteform.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pdsu.charge_palteform.config.EnergyPlatformConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * PlatformCodec 与 AesUtil / HMacMD5 的单线程耗时对比（每次调用平均纳秒）。
+ * <p>
+ * 耗时与机器相关，不做断言，默认不执行：
+ * {@code mvn test -Dtest=PlatformCodecTimingTest -Dbenchmark=true}
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class PlatformCodecTimingTest {
+
+    private static final String DATA_SECRET = "a2164ada0026ccf7";
+    private static final String DATA_SECRET_IV = "82c91325e74bef0f";
+    private static final String SIG_SECRET = "9af2e7b2d7562ad5";
+    private static final String OPERATOR_ID = "MA01H3BQ2";
+
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 200_000;
+
+    private PlatformCodec codec;
+    private String payload;
+
+    @BeforeEach
+    void setUp() {
+        EnergyPlatformConfig config = new EnergyPlatformConfig();
+        config.setOperatorId(OPERATOR_ID);
+        config.setDataSecret(DATA_SECRET);
+        config.setDataSecretIv(DATA_SECRET_IV);
+        config.setSigSecret(SIG_SECRET);
+        codec = new PlatformCodec(config, new ObjectMapper());
+
+        // 与一次充电状态查询响应大小相近的报文
+        StringBuilder json = new StringBuilder("{\"StartChargeSeq\":\"MA01H3BQ2202401011200001234\",\"ChargeDetails\":[");
+        for (int i = 0; i < 8; i++) {
+            json.append(i > 0 ? "," : "")
+                    .append("{\"DetailStartTime\":\"2024-01-01 12:00:00\",\"ElecPrice\":0.8,\"SevicePrice\":0.4,\"DetailPower\":")
+                    .append(i).append(".5}");
+        }
+        payload = json.append("]}").toString();
+    }
+
+    @Test
+    void encrypt() {
+        String encrypted = AesUtil.encrypt(payload, DATA_SECRET, DATA_SECRET_IV);
+        assertEquals(encrypted, codec.encrypt(payload));
+        compare("encrypt",
+                () -> AesUtil.encrypt(payload, DATA_SECRET, DATA_SECRET_IV),
+                () -> codec.encrypt(payload));
+    }
+
+    @Test
+    void decrypt() {
+        String encrypted = AesUtil.encrypt(payload, DATA_SECRET, DATA_SECRET_IV);
+        compare("decrypt",
+                () -> AesUtil.decrypt(encrypted, DATA_SECRET, DATA_SECRET_IV),
+                () -> codec.decrypt(encrypted));
+    }
+
+    @Test
+    void sign() {
+        String encrypted = AesUtil.encrypt(payload, DATA_SECRET, DATA_SECRET_IV);
+        compare("sign",
+                () -> HMacMD5.getHmacMd5Str(SIG_SECRET, OPERATOR_ID + encrypted + "20240101120000" + "0001"),
+                () -> codec.sign(encrypted, "20240101120000", "0001"));
+    }
+
+    private static void compare(String name, Supplier<String> legacy, Supplier<String> current) {
+        long legacyNanos = measure(legacy);
+        long currentNanos = measure(current);
+        System.out.printf("%-8s AesUtil/HMacMD5 %,8d ns/op, PlatformCodec %,8d ns/op, %.2fx%n",
+                name, legacyNanos, currentNanos, (double) legacyNanos / Math.max(1, currentNanos));
+    }
+
+    private static long measure(Supplier<String> operation) {
+        int sink = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            sink += operation.get().length();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += operation.get().length();
+        }
+        long elapsed = System.nanoTime() - start;
+        // 使用结果，避免被 JIT 消除
+        if (sink == 42) {
+            System.out.println();
+        }
+        return elapsed / ITERATIONS;
+    }
+}